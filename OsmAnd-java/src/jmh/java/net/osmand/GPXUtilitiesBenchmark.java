@@ -0,0 +1,139 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading, writing and analysis of a generated track with a given number of points:
+ * <pre>
+ * gradle jmh -Pjmh.include=GPXUtilitiesBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GPXUtilitiesBenchmark {
+
+	@Param({"10000", "100000"})
+	public int points;
+
+	private GPXFile gpx;
+	private byte[] content;
+	private ExecutorService executor;
+	private File gpxFile;
+	private File cacheFile;
+
+	@Setup(Level.Trial)
+	public void generateTrack() throws IOException {
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		gpx = new GPXFile("benchmark");
+		Track track = new Track();
+		TrkSegment segment = new TrkSegment();
+		long time = 1500000000000L;
+		for (int i = 0; i < points; i++) {
+			double lat = 52.40 + 0.0001 * i * Math.cos(i / 1000d);
+			double lon = 4.85 + 0.0001 * i * Math.sin(i / 1000d);
+			segment.points.add(new WptPt(lat, lon, time + i * 1000L, 10 + (i % 50), 5 + (i % 7), 3));
+		}
+		track.segments.add(segment);
+		gpx.tracks.add(track);
+		content = writeGpx().getBytes("UTF-8");
+		gpxFile = File.createTempFile("benchmark", ".gpx");
+		GPXUtilities.writeGpxFile(gpxFile, gpx);
+		cacheFile = GPXBinaryCache.getCacheFile(gpxFile);
+		GPXBinaryCache.load(gpxFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		executor.shutdownNow();
+		gpxFile.delete();
+		cacheFile.delete();
+	}
+
+	private String writeGpx() {
+		StringWriter writer = new StringWriter();
+		Exception e = GPXUtilities.writeGpx(writer, gpx, null);
+		if (e != null) {
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+
+	@Benchmark
+	public int loadGpx() {
+		GPXFile f = GPXUtilities.loadGPXFile(new ByteArrayInputStream(content));
+		return f.tracks.get(0).segments.get(0).points.size();
+	}
+
+	@Benchmark
+	public int loadGpxFile() {
+		return GPXUtilities.loadGPXFile(gpxFile).tracks.get(0).segments.get(0).points.size();
+	}
+
+	@Benchmark
+	public int loadGpxCache() throws IOException {
+		return GPXBinaryCache.readFromFile(cacheFile).getGpxFile().tracks.get(0).segments.get(0).points.size();
+	}
+
+	@Benchmark
+	public int writeGpxFile() {
+		return writeGpx().length();
+	}
+
+	@Benchmark
+	public int readTrackPointsStream() throws IOException {
+		return GPXStreamReader.readTrackPoints(new ByteArrayInputStream(content)).size();
+	}
+
+	@Benchmark
+	public int writeTrackPointsStream() throws IOException {
+		StringWriter writer = new StringWriter();
+		GPXStreamWriter w = new GPXStreamWriter(writer, null);
+		w.startTrack(null);
+		w.startSegment();
+		for (WptPt p : gpx.tracks.get(0).segments.get(0).points) {
+			w.writePoint(p.lat, p.lon, p.ele, p.time, p.speed);
+		}
+		w.finish();
+		return writer.getBuffer().length();
+	}
+
+	@Benchmark
+	public float analysis() {
+		return gpx.getAnalysis(0).totalDistance;
+	}
+
+	@Benchmark
+	public float analysisParallelDistances() {
+		return gpx.getAnalysis(0, executor).totalDistance;
+	}
+}
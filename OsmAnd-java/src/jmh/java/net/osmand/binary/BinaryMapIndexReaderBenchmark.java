@@ -0,0 +1,101 @@
+package net.osmand.binary;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map, POI and POI name requests on a synthetic city written by {@link SyntheticObfWriter}:
+ * <pre>
+ * gradle jmh -Pjmh.include=BinaryMapIndexReaderBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BinaryMapIndexReaderBenchmark {
+
+	@Param({"64"})
+	public int citySize;
+
+	@Param({"false", "true"})
+	public boolean memoryMapped;
+
+	private SyntheticObfWriter city;
+	private File file;
+	private BinaryMapIndexReader reader;
+
+	@Setup(Level.Trial)
+	public void openMap() throws IOException {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, citySize, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, true, memoryMapped);
+	}
+
+	@TearDown(Level.Trial)
+	public void closeMap() throws IOException {
+		reader.close();
+		file.delete();
+	}
+
+	private int searchMap(int left, int right, int top, int bottom, int zoom) throws IOException {
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(left, right, top, bottom,
+				zoom, null);
+		List<BinaryMapDataObject> res = reader.searchMapIndex(req);
+		return res.size();
+	}
+
+	@Benchmark
+	public int searchMapQuarter() throws IOException {
+		int w = (city.getRight31() - city.getLeft31()) / 2;
+		int h = (city.getBottom31() - city.getTop31()) / 2;
+		return searchMap(city.getLeft31() + w / 2, city.getLeft31() + w / 2 + w, city.getTop31() + h / 2,
+				city.getTop31() + h / 2 + h, 16);
+	}
+
+	@Benchmark
+	public int searchMapOverview() throws IOException {
+		return searchMap(city.getLeft31(), city.getRight31(), city.getTop31(), city.getBottom31(), 13);
+	}
+
+	@Benchmark
+	public int searchPoi() throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(city.getLeft31(), city.getRight31(),
+				city.getTop31(), city.getBottom31(), 16, BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+		return reader.searchPoi(req).size();
+	}
+
+	@Benchmark
+	public int searchPoiByName() throws IOException {
+		int x = (city.getLeft31() + city.getRight31()) / 2;
+		int y = (city.getTop31() + city.getBottom31()) / 2;
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(x, y, "royal caf",
+				city.getLeft31(), city.getRight31(), city.getTop31(), city.getBottom31(),
+				(ResultMatcher<Amenity>) null);
+		return reader.searchPoiByName(req).size();
+	}
+}
@@ -0,0 +1,112 @@
+package net.osmand.binary;
+
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.router.RoutingContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reverse geocoding of gps fixes in a synthetic city written by {@link SyntheticObfWriter}: every point
+ * with its own {@link RoutingContext} vs {@link BatchReverseGeocoder}. Fixes are random walks of vehicles,
+ * so many of them are close to each other.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReverseGeocodingBenchmark {
+
+	@Param({"64"})
+	public int citySize;
+
+	@Param({"1000"})
+	public int pointsCount;
+
+	private File file;
+	private BinaryMapIndexReader[] readers;
+	private List<LatLon> points;
+
+	@Setup(Level.Trial)
+	public void openMap() throws IOException {
+		SyntheticObfWriter city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, citySize,
+				SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+		Random rnd = new Random(7);
+		points = new ArrayList<LatLon>();
+		while (points.size() < pointsCount) {
+			// vehicle reports every 5 seconds driving ~10 m/s
+			LatLon p = city.getNode(1 + rnd.nextInt(citySize - 2), 1 + rnd.nextInt(citySize - 2));
+			for (int k = 0; k < 50 && points.size() < pointsCount; k++) {
+				p = new LatLon(p.getLatitude() + rnd.nextGaussian() * 0.0003, p.getLongitude() + rnd.nextGaussian() * 0.0005);
+				points.add(p);
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void closeMap() throws IOException {
+		readers[0].close();
+		file.delete();
+	}
+
+	private RoutingContext buildContext() {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		return new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+	}
+
+	@Benchmark
+	public int reverseGeocodeEachPoint() throws IOException {
+		int found = 0;
+		GeocodingUtilities gu = new GeocodingUtilities();
+		for (LatLon p : points) {
+			List<GeocodingResult> res = gu.reverseGeocodingSearch(buildContext(), p.getLatitude(), p.getLongitude(),
+					false);
+			found += gu.sortGeocodingResults(Arrays.asList(readers), res, null).size();
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int reverseGeocodeBatch() throws IOException {
+		int found = 0;
+		BatchReverseGeocoder geocoder = new BatchReverseGeocoder(buildContext(), Arrays.asList(readers));
+		for (List<GeocodingResult> res : geocoder.reverseGeocode(points)) {
+			found += res.size();
+		}
+		return found;
+	}
+}
@@ -0,0 +1,107 @@
+package net.osmand.map;
+
+import net.osmand.binary.BinaryMapDataObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in region queries over synthetic region polygons: ray casting ({@link OsmandRegions#contain})
+ * over polygons with bounding box containing point (as found by map index search) vs {@link RegionsSpatialIndex}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RegionsSpatialIndexBenchmark {
+
+	private static final int POLYGONS = 1000;
+	private static final int VERTICES = 4000;
+	private static final int QUERIES = 1024;
+
+	private List<BinaryMapDataObject> objects;
+	private RegionsSpatialIndex index;
+	private OsmandRegions linear;
+	private int[] bboxes;
+	private int[] queries;
+
+	@Setup(Level.Trial)
+	public void generateRegions() {
+		Random rnd = new Random(1);
+		objects = new ArrayList<BinaryMapDataObject>();
+		for (int i = 0; i < POLYGONS; i++) {
+			int cx = rnd.nextInt(1 << 30) + (1 << 29);
+			int cy = rnd.nextInt(1 << 30) + (1 << 29);
+			int[] coordinates = new int[2 * (VERTICES + 1)];
+			for (int j = 0; j < VERTICES; j++) {
+				double a = 2 * Math.PI * j / VERTICES;
+				double r = (1 << 24) * (1 + 0.3 * Math.sin(a * 17) + 0.1 * rnd.nextDouble());
+				coordinates[2 * j] = cx + (int) (Math.cos(a) * r);
+				coordinates[2 * j + 1] = cy + (int) (Math.sin(a) * r);
+			}
+			coordinates[2 * VERTICES] = coordinates[0];
+			coordinates[2 * VERTICES + 1] = coordinates[1];
+			objects.add(new BinaryMapDataObject(i, coordinates, null, 0, true, new int[0], null, 0, 0));
+		}
+		bboxes = new int[4 * POLYGONS];
+		for (int i = 0; i < POLYGONS; i++) {
+			BinaryMapDataObject o = objects.get(i);
+			bboxes[4 * i] = bboxes[4 * i + 1] = Integer.MAX_VALUE;
+			for (int j = 0; j < o.getPointsLength(); j++) {
+				bboxes[4 * i] = Math.min(bboxes[4 * i], o.getPoint31XTile(j));
+				bboxes[4 * i + 1] = Math.min(bboxes[4 * i + 1], o.getPoint31YTile(j));
+				bboxes[4 * i + 2] = Math.max(bboxes[4 * i + 2], o.getPoint31XTile(j));
+				bboxes[4 * i + 3] = Math.max(bboxes[4 * i + 3], o.getPoint31YTile(j));
+			}
+		}
+		index = new RegionsSpatialIndex(objects);
+		linear = new OsmandRegions();
+		queries = new int[2 * QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			BinaryMapDataObject o = objects.get(rnd.nextInt(POLYGONS));
+			queries[2 * i] = o.getPoint31XTile(0) - rnd.nextInt(1 << 25);
+			queries[2 * i + 1] = o.getPoint31YTile(0) + rnd.nextInt(1 << 23) - (1 << 22);
+		}
+	}
+
+	@Benchmark
+	public int rayCasting() {
+		int found = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			int x = queries[2 * i];
+			int y = queries[2 * i + 1];
+			for (int j = 0; j < POLYGONS; j++) {
+				if (x >= bboxes[4 * j] && y >= bboxes[4 * j + 1] && x <= bboxes[4 * j + 2] && y <= bboxes[4 * j + 3]
+						&& linear.contain(objects.get(j), x, y)) {
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int spatialIndex() {
+		int found = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			found += index.query(queries[2 * i], queries[2 * i + 1]).size();
+		}
+		return found;
+	}
+}
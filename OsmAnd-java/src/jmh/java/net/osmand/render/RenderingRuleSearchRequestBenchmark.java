@@ -0,0 +1,172 @@
+package net.osmand.render;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapIndexReader.TagValuePair;
+import net.osmand.binary.SyntheticObfWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering rules evaluation of a tile of synthetic map objects (order, line / polygon / point and text rules
+ * as renderer does it) by rule tree and by {@link CompiledRenderingRules}:
+ * <pre>
+ * gradle jmh -Pjmh.include=RenderingRuleSearchRequestBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RenderingRuleSearchRequestBenchmark {
+
+	private static final int ZOOM = 16;
+	private static final String[] FILLER_TAGS = { "amenity", "shop", "leisure", "natural", "landuse", "railway",
+			"waterway", "tourism" };
+
+	private RenderingRulesStorage storage;
+	private RenderingRuleSearchRequest interpreted;
+	private RenderingRuleSearchRequest compiled;
+	private BinaryMapDataObject[] objects;
+
+	@Setup(Level.Trial)
+	public void loadTile() throws IOException, XmlPullParserException {
+		storage = new RenderingRulesStorage("synthetic", new HashMap<String, String>());
+		storage.parseRulesFromXmlInputStream(new ByteArrayInputStream(buildStyle().getBytes("UTF-8")), null);
+		interpreted = new RenderingRuleSearchRequest(storage);
+		compiled = new RenderingRuleSearchRequest(storage);
+		compiled.setCompiledRules(CompiledRenderingRules.compile(storage));
+
+		SyntheticObfWriter city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, 32,
+				SyntheticObfWriter.DEFAULT_SPACING);
+		File file = File.createTempFile("synthetic", ".obf");
+		try {
+			city.writeFile(file);
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+			SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(city.getLeft31(),
+					city.getRight31(), city.getTop31(), city.getBottom31(), ZOOM, null);
+			List<BinaryMapDataObject> res = reader.searchMapIndex(req);
+			objects = res.toArray(new BinaryMapDataObject[0]);
+			reader.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Benchmark
+	public int renderTileRuleTree() {
+		return renderTile(interpreted);
+	}
+
+	@Benchmark
+	public int renderTileCompiled() {
+		return renderTile(compiled);
+	}
+
+	private int renderTile(RenderingRuleSearchRequest req) {
+		int found = 0;
+		for (BinaryMapDataObject obj : objects) {
+			int[] types = obj.getTypes();
+			for (int j = 0; j < types.length; j++) {
+				TagValuePair pair = obj.getMapIndex().decodeType(types[j]);
+				req.setInitialTagValueZoom(pair.tag, pair.value, ZOOM, obj);
+				req.setIntFilter(req.ALL.R_LAYER, obj.getSimpleLayer());
+				req.setBooleanFilter(req.ALL.R_AREA, obj.isArea());
+				req.setBooleanFilter(req.ALL.R_POINT, obj.getPointsLength() == 1);
+				req.setBooleanFilter(req.ALL.R_CYCLE, obj.isCycle());
+				if (!req.search(RenderingRulesStorage.ORDER_RULES)) {
+					continue;
+				}
+				int objectType = req.getIntPropertyValue(req.ALL.R_OBJECT_TYPE);
+				req.setInitialTagValueZoom(pair.tag, pair.value, ZOOM, obj);
+				int state = objectType == 3 ? RenderingRulesStorage.POLYGON_RULES
+						: (objectType == 2 ? RenderingRulesStorage.LINE_RULES : RenderingRulesStorage.POINT_RULES);
+				if (req.search(state)) {
+					found++;
+				}
+				if (obj.getName() != null) {
+					req.setInitialTagValueZoom(pair.tag, pair.value, ZOOM, obj);
+					if (req.search(RenderingRulesStorage.TEXT_RULES)) {
+						found++;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	private static String buildStyle() {
+		StringBuilder b = new StringBuilder();
+		b.append("<renderingStyle name=\"synthetic\" depends=\"\" version=\"1\">\n");
+		b.append("<renderingAttribute name=\"roadWidth\">\n");
+		b.append("<case minzoom=\"15\" attrIntValue=\"6\"/><case attrIntValue=\"3\"/>\n");
+		b.append("</renderingAttribute>\n");
+		b.append("<order>\n");
+		b.append("<switch><case tag=\"highway\" value=\"primary\" order=\"40\"/>");
+		b.append("<case tag=\"highway\" value=\"residential\" order=\"30\"/>");
+		b.append("<apply objectType=\"2\"/></switch>\n");
+		b.append("<case tag=\"building\" value=\"yes\" layer=\"1\" order=\"65\" objectType=\"3\"/>\n");
+		b.append("<case tag=\"building\" value=\"yes\" order=\"60\" objectType=\"3\"/>\n");
+		b.append("<case tag=\"oneway\" value=\"yes\" order=\"100\" objectType=\"1\"/>\n");
+		appendFiller(b, "order=\"10\" objectType=\"3\"");
+		b.append("</order>\n");
+		b.append("<line>\n<switch tag=\"highway\">\n");
+		b.append("<case value=\"primary\" minzoom=\"8\" color=\"#ff8080\" strokeWidth=\"$roadWidth\">");
+		b.append("<apply nightMode=\"true\" color=\"#804040\"/><apply layer=\"1\" shadowRadius=\"2\"/></case>\n");
+		b.append("<case value=\"residential\" minzoom=\"13\" maxzoom=\"14\" color=\"#ffffff\" strokeWidth=\"2\"/>\n");
+		b.append("<case value=\"residential\" minzoom=\"15\" color=\"#ffffff\" strokeWidth=\"$roadWidth\"/>\n");
+		b.append("<case value=\"\" minzoom=\"15\" color=\"#eeeeee\" strokeWidth=\"1\"/>\n");
+		b.append("</switch>\n");
+		appendFiller(b, "minzoom=\"12\" color=\"#3030ff\" strokeWidth=\"1\"");
+		b.append("</line>\n");
+		b.append("<polygon>\n");
+		b.append("<case tag=\"building\" value=\"yes\" minzoom=\"15\" color=\"#cccccc\">");
+		b.append("<apply nightMode=\"true\" color=\"#333333\"/></case>\n");
+		appendFiller(b, "minzoom=\"10\" color=\"#99cc99\"");
+		b.append("</polygon>\n");
+		b.append("<point>\n");
+		appendFiller(b, "minzoom=\"16\" icon=\"dot\"");
+		b.append("</point>\n");
+		b.append("<text>\n<switch tag=\"highway\" minzoom=\"13\">\n");
+		b.append("<case value=\"primary\" textSize=\"12\" textColor=\"#000000\"/>\n");
+		b.append("<case value=\"\" minzoom=\"15\" textSize=\"10\" textColor=\"#333333\"/>\n");
+		b.append("</switch>\n");
+		appendFiller(b, "minzoom=\"17\" textSize=\"11\"");
+		b.append("</text>\n");
+		b.append("</renderingStyle>\n");
+		return b.toString();
+	}
+
+	// rules for tags which are not on the map, so lookups work with style of realistic size
+	private static void appendFiller(StringBuilder b, String attrs) {
+		for (String tag : FILLER_TAGS) {
+			b.append("<switch tag=\"").append(tag).append("\">\n");
+			for (int i = 0; i < 16; i++) {
+				b.append("<case value=\"v").append(i).append("\" ").append(attrs).append("/>\n");
+			}
+			b.append("</switch>\n");
+		}
+	}
+}
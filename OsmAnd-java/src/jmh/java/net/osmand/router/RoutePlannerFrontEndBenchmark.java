@@ -0,0 +1,175 @@
+package net.osmand.router;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route calculation, result preparation and gpx approximation (step routing vs map matching vs chunks in parallel) across a synthetic city written by {@link SyntheticObfWriter},
+ * no map files are needed:
+ * <pre>
+ * gradle jmh -Pjmh.include=RoutePlannerFrontEndBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RoutePlannerFrontEndBenchmark {
+
+	@Param({"64"})
+	public int citySize;
+
+	@Param({"car"})
+	public String profile;
+
+	// standard deviation of gps noise of approximated track (meters)
+	@Param({"5", "15"})
+	public double trackNoise;
+
+	private File file;
+	private BinaryMapIndexReader[] readers;
+	private LatLon start;
+	private LatLon end;
+	private RoutingContext preparedCtx;
+	// noisy track along the route, point every 10 m
+	private List<LatLon> track;
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void openMap() throws IOException, InterruptedException {
+		SyntheticObfWriter city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, citySize,
+				SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+		start = city.getNode(1, 1);
+		end = city.getNode(citySize - 2, citySize - 4);
+		preparedCtx = buildContext();
+		new RoutePlannerFrontEnd().searchRoute(preparedCtx, start, end, Collections.<LatLon>emptyList());
+		if (preparedCtx.finalRouteSegment == null) {
+			throw new IllegalStateException("Route is not found in synthetic city");
+		}
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		track = generateTrack(new RoutePlannerFrontEnd().searchRoute(buildContext(), start, end,
+				Collections.<LatLon>emptyList()));
+	}
+
+	private List<LatLon> generateTrack(List<RouteSegmentResult> route) {
+		Random rnd = new Random(3);
+		List<LatLon> res = new ArrayList<LatLon>();
+		for (RouteSegmentResult r : route) {
+			int d = r.isForwardDirection() ? 1 : -1;
+			for (int i = r.getStartPointIndex(); i != r.getEndPointIndex(); i += d) {
+				LatLon a = r.getPoint(i);
+				LatLon b = r.getPoint(i + d);
+				int steps = Math.max(1, (int) (MapUtils.getDistance(a, b) / 10));
+				for (int k = 0; k < steps; k++) {
+					double lat = a.getLatitude() + (b.getLatitude() - a.getLatitude()) * k / steps;
+					double lon = a.getLongitude() + (b.getLongitude() - a.getLongitude()) * k / steps;
+					// 1 degree of latitude is ~111 km
+					lat += rnd.nextGaussian() * trackNoise / 111000;
+					lon += rnd.nextGaussian() * trackNoise / 111000 / Math.cos(Math.toRadians(lat));
+					res.add(new LatLon(lat, lon));
+				}
+			}
+		}
+		return res;
+	}
+
+	@TearDown(Level.Trial)
+	public void closeMap() throws IOException {
+		executor.shutdown();
+		readers[0].close();
+		file.delete();
+	}
+
+	private RoutingContext buildContext() {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build(profile, memoryLimits,
+				new HashMap<String, String>());
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		ctx.leftSideNavigation = false;
+		return ctx;
+	}
+
+	@Benchmark
+	public int searchRoute() throws IOException, InterruptedException {
+		RoutingContext ctx = buildContext();
+		List<RouteSegmentResult> res = new RoutePlannerFrontEnd().searchRoute(ctx, start, end,
+				Collections.<LatLon>emptyList());
+		return res == null ? -1 : res.size();
+	}
+
+	@Benchmark
+	public int prepareResult() throws IOException {
+		List<RouteSegmentResult> res = new RouteResultPreparation().prepareResult(preparedCtx,
+				preparedCtx.finalRouteSegment);
+		return res.size();
+	}
+
+	private GpxRouteApproximation approximate(boolean mapMatching) throws IOException, InterruptedException {
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		frontEnd.setUseMapMatchingApproximation(mapMatching);
+		GpxRouteApproximation gctx = new GpxRouteApproximation(buildContext());
+		List<GpxPoint> points = frontEnd.generateGpxPoints(gctx, new LocationsHolder(track));
+		return frontEnd.searchGpxRoute(gctx, points, null);
+	}
+
+	@Benchmark
+	public int approximateGpxByRouting() throws IOException, InterruptedException {
+		return approximate(false).routeDistanceUnmatched;
+	}
+
+	@Benchmark
+	public int approximateGpxByMapMatching() throws IOException, InterruptedException {
+		return approximate(true).routeDistanceUnmatched;
+	}
+
+	@Benchmark
+	public int approximateGpxInChunks() throws IOException, InterruptedException {
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		GpxRouteApproximation gctx = new GpxRouteApproximation(buildContext());
+		List<GpxPoint> points = frontEnd.generateGpxPoints(gctx, new LocationsHolder(track));
+		ParallelGpxApproximator approximator = new ParallelGpxApproximator(frontEnd, executor);
+		// route is ~12 km long
+		approximator.chunkDistance = 4000;
+		approximator.overlapDistance = 1000;
+		return approximator.searchGpxRoute(gctx, points, null).routeDistanceUnmatched;
+	}
+}
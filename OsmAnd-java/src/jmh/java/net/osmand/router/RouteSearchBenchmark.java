@@ -0,0 +1,98 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full route calculation on real maps (long car routes are most sensitive to A* queue performance):
+ * <pre>
+ * gradle jmh -Pjmh.include=RouteSearchBenchmark -Dosmand.benchmark.obf=/maps/Germany.obf,/maps/Austria.obf \
+ *     -Dosmand.benchmark.start=52.52,13.40 -Dosmand.benchmark.end=48.14,11.58
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouteSearchBenchmark {
+
+	@Param({"false", "true"})
+	public boolean useIndexedHeap;
+
+	@Param({"car"})
+	public String profile;
+
+	private BinaryMapIndexReader[] readers;
+	private LatLon start;
+	private LatLon end;
+	private RoutingConfiguration.Builder builder;
+
+	@Setup(Level.Trial)
+	public void openMaps() throws IOException {
+		String files = System.getProperty("osmand.benchmark.obf");
+		String st = System.getProperty("osmand.benchmark.start");
+		String en = System.getProperty("osmand.benchmark.end");
+		if (files == null || st == null || en == null) {
+			throw new IllegalStateException("osmand.benchmark.obf, osmand.benchmark.start, osmand.benchmark.end should be specified");
+		}
+		List<BinaryMapIndexReader> list = new ArrayList<BinaryMapIndexReader>();
+		for (String f : files.split(",")) {
+			File file = new File(f.trim());
+			list.add(new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file));
+		}
+		readers = list.toArray(new BinaryMapIndexReader[0]);
+		start = parseLatLon(st);
+		end = parseLatLon(en);
+		builder = RoutingConfiguration.getDefault();
+	}
+
+	private static LatLon parseLatLon(String s) {
+		String[] ll = s.split(",");
+		return new LatLon(Double.parseDouble(ll[0].trim()), Double.parseDouble(ll[1].trim()));
+	}
+
+	@TearDown(Level.Trial)
+	public void closeMaps() throws IOException {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+
+	@Benchmark
+	public int searchRoute() throws IOException, InterruptedException {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 10,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = builder.build(profile, memoryLimits);
+		config.useIndexedHeap = useIndexedHeap;
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd();
+		RoutingContext ctx = fe.buildRoutingContext(config, null, readers, RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		ctx.leftSideNavigation = false;
+		List<RouteSegmentResult> res = fe.searchRoute(ctx, start, end, Collections.<LatLon>emptyList());
+		return res == null ? -1 : res.size();
+	}
+}
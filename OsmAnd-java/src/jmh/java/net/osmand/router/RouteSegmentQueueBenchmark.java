@@ -0,0 +1,132 @@
+package net.osmand.router;
+
+import net.osmand.NativeLibrary;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A* frontier: {@link java.util.PriorityQueue} with SegmentsComparator vs {@link RouteSegmentHeap}.
+ * Workload is a synthetic Dijkstra-like expansion over random graph. When shorter distance to queued segment is
+ * found, heap updates priority of the segment in place (decrease-key), PriorityQueue gets new entry with shorter
+ * distance and entries left with longer distance are skipped when polled (keys of queued entries are not changed).
+ * Real routes are measured by {@link RouteSearchBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouteSegmentQueueBenchmark {
+
+	private static final int NEIGHBOURS = 4;
+
+	@Param({"false", "true"})
+	public boolean useIndexedHeap;
+
+	@Param({"100000", "1000000"})
+	public int segmentsCount;
+
+	private RoutingContext ctx;
+	private RouteSegment[] segments;
+	private int[] edges;
+	private float[] edgeCost;
+	private float[] heuristic;
+	private boolean[] visited;
+
+	@Setup(Level.Trial)
+	public void setUpGraph() {
+		RoutingConfiguration config = new RoutingConfiguration();
+		config.useIndexedHeap = useIndexedHeap;
+		ctx = new RoutingContext(config, null, new BinaryMapIndexReader[0], RouteCalculationMode.NORMAL);
+		Random rnd = new Random(segmentsCount);
+		segments = new RouteSegment[segmentsCount];
+		edges = new int[segmentsCount * NEIGHBOURS];
+		edgeCost = new float[segmentsCount * NEIGHBOURS];
+		heuristic = new float[segmentsCount];
+		visited = new boolean[segmentsCount];
+		for (int i = 0; i < segmentsCount; i++) {
+			// segment index is encoded into start/end to find it without extra map
+			segments[i] = new RouteSegment(null, i >>> 16, i & 0xffff);
+			heuristic[i] = rnd.nextFloat() * 1000;
+			for (int k = 0; k < NEIGHBOURS; k++) {
+				edges[i * NEIGHBOURS + k] = rnd.nextInt(segmentsCount);
+				edgeCost[i * NEIGHBOURS + k] = 1 + rnd.nextFloat() * 100;
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void resetSegments() {
+		for (RouteSegment s : segments) {
+			s.distanceFromStart = Float.MAX_VALUE;
+			s.distanceToEnd = 0;
+			s.parentRoute = null;
+		}
+		Arrays.fill(visited, false);
+	}
+
+	private RouteSegment queueEntry(RouteSegment segment, boolean decreaseKey) {
+		if (decreaseKey) {
+			return segment;
+		}
+		RouteSegment entry = new RouteSegment(null, segment.getSegmentStart(), segment.getSegmentEnd());
+		entry.distanceFromStart = segment.distanceFromStart;
+		entry.distanceToEnd = segment.distanceToEnd;
+		return entry;
+	}
+
+	@Benchmark
+	public int expandGraph() {
+		Queue<RouteSegment> queue = BinaryRoutePlanner.createSegmentsQueue(ctx);
+		boolean decreaseKey = queue instanceof RouteSegmentHeap;
+		RouteSegment start = segments[0];
+		start.distanceFromStart = 0;
+		start.distanceToEnd = heuristic[0];
+		start.parentRoute = RouteSegment.NULL;
+		queue.add(queueEntry(start, decreaseKey));
+		int visitedCount = 0;
+		RouteSegment entry;
+		while ((entry = queue.poll()) != null) {
+			int ind = (entry.getSegmentStart() << 16) | (entry.getSegmentEnd() & 0xffff);
+			if (visited[ind]) {
+				// PriorityQueue entry with longer distance
+				continue;
+			}
+			visited[ind] = true;
+			visitedCount++;
+			RouteSegment segment = segments[ind];
+			for (int k = 0; k < NEIGHBOURS; k++) {
+				int nextInd = edges[ind * NEIGHBOURS + k];
+				RouteSegment next = segments[nextInd];
+				float dist = segment.distanceFromStart + edgeCost[ind * NEIGHBOURS + k];
+				if (!visited[nextInd] && dist < next.distanceFromStart) {
+					next.distanceFromStart = dist;
+					next.distanceToEnd = heuristic[nextInd];
+					next.parentRoute = segment;
+					queue.add(queueEntry(next, decreaseKey));
+				}
+			}
+		}
+		return visitedCount;
+	}
+}
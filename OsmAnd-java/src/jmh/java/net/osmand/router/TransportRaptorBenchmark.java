@@ -0,0 +1,115 @@
+package net.osmand.router;
+
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransportRaptorPlanner} on synthetic city: grid of stops with horizontal and vertical lines
+ * in both directions and trips every few minutes during the day.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransportRaptorBenchmark {
+
+	private static final double STEP = 0.004;
+
+	@Param({"30", "60"})
+	public int gridSize;
+
+	@Param({"false", "true"})
+	public boolean useSchedule;
+
+	private TransportRoutingConfiguration cfg;
+	private List<TransportRoute> routes;
+	private TransportTimetable timetable;
+	private LatLon[] queries;
+	private int query;
+
+	@Setup(Level.Trial)
+	public void setUpNetwork() {
+		cfg = new TransportRoutingConfiguration(null, new HashMap<String, String>());
+		cfg.useSchedule = useSchedule;
+		cfg.scheduleTimeOfDay = 8 * 60 * 6;
+		cfg.maxRouteTime = 3 * 3600;
+		TransportStop[][] stops = new TransportStop[gridSize][gridSize];
+		long id = 1;
+		for (int i = 0; i < gridSize; i++) {
+			for (int j = 0; j < gridSize; j++) {
+				TransportStop s = new TransportStop();
+				s.setId(id++);
+				s.setName("Stop " + i + " " + j);
+				s.setLocation(52 + i * STEP, 4 + j * STEP * 1.6);
+				stops[i][j] = s;
+			}
+		}
+		Random rnd = new Random(gridSize);
+		routes = new ArrayList<TransportRoute>();
+		for (int line = 0; line < gridSize; line++) {
+			for (int dir = 0; dir < 4; dir++) {
+				List<TransportStop> lst = new ArrayList<TransportStop>();
+				for (int k = 0; k < gridSize; k++) {
+					int p = dir % 2 == 0 ? k : gridSize - 1 - k;
+					lst.add(dir < 2 ? stops[line][p] : stops[p][line]);
+				}
+				TransportRoute r = new TransportRoute();
+				r.setId(id++);
+				r.setRef(String.valueOf(routes.size()));
+				r.setName(r.getRef());
+				r.setType("bus");
+				r.setForwardStops(lst);
+				TransportSchedule sc = r.getOrCreateSchedule();
+				int interval = 18 + rnd.nextInt(60);
+				sc.tripIntervals.add((6 * 3600 + rnd.nextInt(600)) / 10);
+				for (int t = 1; t < 16 * 3600 / (interval * 10); t++) {
+					sc.tripIntervals.add(interval);
+				}
+				for (int k = 1; k < lst.size(); k++) {
+					sc.avgStopIntervals.add(6 + rnd.nextInt(6));
+				}
+				routes.add(r);
+			}
+		}
+		timetable = TransportTimetable.build(cfg, routes);
+		queries = new LatLon[64];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = stops[rnd.nextInt(gridSize)][rnd.nextInt(gridSize)].getLocation();
+		}
+	}
+
+	@Benchmark
+	public TransportTimetable buildTimetable() {
+		return TransportTimetable.build(cfg, routes);
+	}
+
+	@Benchmark
+	public List<TransportRouteResult> paretoQuery() {
+		LatLon start = queries[query++ % queries.length];
+		LatLon end = queries[query++ % queries.length];
+		return new TransportRaptorPlanner(timetable).buildRoute(start, end);
+	}
+}
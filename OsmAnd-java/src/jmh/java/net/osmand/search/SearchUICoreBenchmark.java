@@ -0,0 +1,90 @@
+package net.osmand.search;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultCollection;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchSettings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full text search on a synthetic city written by {@link SyntheticObfWriter}. Search is called synchronously
+ * so typing delays of {@link SearchUICore#search} are not measured:
+ * <pre>
+ * gradle jmh -Pjmh.include=SearchUICoreBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchUICoreBenchmark {
+
+	@Param({"64"})
+	public int citySize;
+
+	@Param({"royal caf", "cafe", "Grand Market"})
+	public String query;
+
+	@Param({"false", "true"})
+	public boolean normalizedNameKeys;
+
+	private File file;
+	private BinaryMapIndexReader reader;
+	private SearchUICore core;
+	private SearchSettings settings;
+
+	@Setup(Level.Trial)
+	public void openMap() throws IOException {
+		SyntheticObfWriter city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, citySize,
+				SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		core.init();
+		settings = new SearchSettings(Collections.singletonList(reader))
+				.setOriginalLocation(city.getNode(citySize / 2, citySize / 2)).setLang("en", false)
+				.setNormalizedNameKeys(normalizedNameKeys);
+	}
+
+	@TearDown(Level.Trial)
+	public void closeMap() throws IOException {
+		reader.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public int search() {
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings).generateNewPhrase(query, settings);
+		SearchResultMatcher matcher = new SearchResultMatcher(null, phrase, 1, new AtomicInteger(1), -1);
+		core.searchInternal(phrase, matcher);
+		SearchResultCollection collection = new SearchResultCollection(phrase);
+		collection.addSearchResults(matcher.getRequestResults(), true, true);
+		return collection.getCurrentSearchResults().size();
+	}
+}
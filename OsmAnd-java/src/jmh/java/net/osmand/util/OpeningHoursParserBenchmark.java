@@ -0,0 +1,61 @@
+package net.osmand.util;
+
+import net.osmand.util.OpeningHoursParser.OpeningHours;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and evaluation of typical opening_hours values (done for every POI shown in search results):
+ * <pre>
+ * gradle jmh -Pjmh.include=OpeningHoursParserBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OpeningHoursParserBenchmark {
+
+	private static final String[] HOURS = { "Mo-Fr 08:00-20:00; Sa 09:00-18:00", "24/7",
+			"Mo-Sa 07:00-22:00; Su 09:00-21:00", "Mo-Fr 09:00-12:00,13:00-18:00; PH off",
+			"Tu-Su 10:00-18:00; Mo off; Dec 24-Dec 26 off", "Mo-Th 11:00-23:00; Fr-Sa 11:00-01:00; Su 12:00-22:00",
+			"sunrise-sunset", "Apr-Oct: Mo-Su 08:00-20:00; Nov-Mar: Mo-Su 09:00-17:00" };
+
+	private final Calendar cal = Calendar.getInstance();
+
+	@Benchmark
+	public int parse() {
+		int cnt = 0;
+		for (String h : HOURS) {
+			if (OpeningHoursParser.parseOpenedHours(h) != null) {
+				cnt++;
+			}
+		}
+		return cnt;
+	}
+
+	@Benchmark
+	public int parseAndCheck() {
+		int cnt = 0;
+		for (String h : HOURS) {
+			OpeningHours oh = OpeningHoursParser.parseOpenedHours(h);
+			if (oh != null && oh.isOpenedForTime(cal)) {
+				cnt++;
+			}
+		}
+		return cnt;
+	}
+}
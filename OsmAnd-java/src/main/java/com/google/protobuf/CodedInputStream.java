@@ -33,6 +33,7 @@ package com.google.protobuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +69,18 @@ public final class CodedInputStream {
     return new CodedInputStream(raf);
   }
 
+  /**
+   * Create a new CodedInputStream decoding directly from a memory mapped file.
+   * The file is split into {@code chunks} of {@code chunkSize} bytes each (the
+   * last one may be shorter), because a single mapping can't exceed 2 GB.
+   * Chunks are never modified, so they could be shared between many streams,
+   * every stream keeps its own cursor. Positions of stream are int, so total
+   * length of chunks can't exceed 2 GB either.
+   */
+  public static CodedInputStream newInstance(ByteBuffer[] chunks, int chunkSize) {
+    return new CodedInputStream(chunks, chunkSize);
+  }
+
   /**
    * Create a new CodedInputStream wrapping the given byte array slice.
    */
@@ -222,7 +235,7 @@ public final class CodedInputStream {
   /** Read a {@code string} field value from the stream. */
   public String readString() throws IOException {
     final int size = readRawVarint32();
-    if (size <= (bufferSize - bufferPos) && size > 0) {
+    if (mapped == null && size <= (bufferSize - bufferPos) && size > 0) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final String result = new String(buffer, bufferPos, size, "UTF-8");
@@ -324,7 +337,7 @@ public final class CodedInputStream {
     final int size = readRawVarint32();
     if (size == 0) {
       return ByteString.EMPTY;
-    } else if (size <= (bufferSize - bufferPos) && size > 0) {
+    } else if (mapped == null && size <= (bufferSize - bufferPos) && size > 0) {
       // Fast path:  We already have the bytes in a contiguous buffer, so
       //   just copy directly from it.
       final ByteString result = ByteString.copyFrom(buffer, bufferPos, size);
@@ -539,6 +552,12 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  // osmand change: memory mapped mode, buffer is null and current chunk is used instead
+  private ByteBuffer[] mappedChunks;
+  private ByteBuffer[] mappedViews;
+  private ByteBuffer mapped;
+  private int mappedChunkSize;
+  private long mappedLength;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -586,6 +605,23 @@ public final class CodedInputStream {
 		input = null;
 	}
 
+	private CodedInputStream(final ByteBuffer[] chunks, final int chunkSize) {
+		buffer = null;
+		this.bufferSize = 0;
+		bufferPos = 0;
+		totalBytesRetired = 0;
+		this.mappedChunks = chunks;
+		this.mappedViews = new ByteBuffer[chunks.length];
+		this.mappedChunkSize = chunkSize;
+		for (ByteBuffer c : chunks) {
+			mappedLength += c.limit();
+		}
+		if (mappedLength > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Mapped data over 2 GB is not supported: " + mappedLength);
+		}
+		input = null;
+	}
+
   private CodedInputStream(final InputStream input) {
     buffer = new byte[BUFFER_SIZE];
     bufferSize = 0;
@@ -748,6 +784,23 @@ public final class CodedInputStream {
       }
     }
 
+    if (mappedChunks != null) {
+      // osmand change: switch to the next chunk, nothing is copied
+      final long pointer = (long) totalBytesRetired + bufferPos;
+      if (pointer >= mappedLength) {
+        if (mustSucceed) {
+          throw InvalidProtocolBufferException.truncatedMessage();
+        } else {
+          return false;
+        }
+      }
+      positionMapped(pointer);
+      if (totalBytesRetired + bufferSize + bufferSizeAfterLimit > sizeLimit) {
+        throw InvalidProtocolBufferException.sizeLimitExceeded();
+      }
+      return true;
+    }
+
     totalBytesRetired += bufferSize;
 
     bufferPos = 0;
@@ -797,9 +850,55 @@ public final class CodedInputStream {
     if (bufferPos == bufferSize) {
       refillBuffer(true);
     }
+    if (mapped != null) {
+      return mapped.get(bufferPos++);
+    }
     return buffer[bufferPos++];
   }
 
+  // osmand change
+  private void positionMapped(long pointer) throws IOException {
+    if (pointer > currentLimit) {
+      throw InvalidProtocolBufferException.truncatedMessage();
+    }
+    int chunk = (int) (pointer / mappedChunkSize);
+    if (chunk == mappedChunks.length && pointer == mappedLength) {
+      // end of file exactly at the chunk border
+      chunk--;
+    }
+    if (chunk < 0 || chunk >= mappedChunks.length) {
+      throw InvalidProtocolBufferException.truncatedMessage();
+    }
+    if (mappedViews[chunk] == null) {
+      // own view to keep position independent from other streams over the same mapping
+      mappedViews[chunk] = mappedChunks[chunk].duplicate();
+    }
+    mapped = mappedViews[chunk];
+    // mapped file is not longer than 2 GB (see MappedObfFile), so chunk start fits int
+    totalBytesRetired = chunk * mappedChunkSize;
+    bufferPos = (int) (pointer - totalBytesRetired);
+    bufferSize = mapped.limit();
+    bufferSizeAfterLimit = 0;
+    recomputeBufferSizeAfterLimit();
+  }
+
+  // osmand change
+  private byte[] readMappedBytes(final int size) throws IOException {
+    final byte[] bytes = new byte[size];
+    int pos = 0;
+    while (pos < size) {
+      if (bufferPos == bufferSize) {
+        refillBuffer(true);
+      }
+      int n = Math.min(size - pos, bufferSize - bufferPos);
+      mapped.position(bufferPos);
+      mapped.get(bytes, pos, n);
+      bufferPos += n;
+      pos += n;
+    }
+    return bytes;
+  }
+
   /**
    * Read a fixed size of bytes from the input.
    *
@@ -818,6 +917,10 @@ public final class CodedInputStream {
       throw InvalidProtocolBufferException.truncatedMessage();
     }
 
+    if (mappedChunks != null) {
+      return readMappedBytes(size);
+    }
+
     if (size <= bufferSize - bufferPos) {
       // We have all the bytes we need already.
       final byte[] bytes = new byte[size];
@@ -941,7 +1044,9 @@ public final class CodedInputStream {
       bufferPos = bufferSize;
 
       // osmand change
-      if(raf != null) {
+      if (mappedChunks != null) {
+         positionMapped((long) totalBytesRetired + bufferPos + size - pos);
+      } else if(raf != null) {
          bufferPos = 0;
          bufferSize = 0;
       	 int n = raf.skipBytes(size - pos);
@@ -972,6 +1077,8 @@ public final class CodedInputStream {
 			  throw InvalidProtocolBufferException.truncatedMessage();
 		  }
 		  bufferPos = (int) (pointer - totalBytesRetired);
+	  } else if (mappedChunks != null) {
+		  positionMapped(pointer);
 	  } else {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
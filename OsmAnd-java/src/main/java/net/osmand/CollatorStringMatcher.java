@@ -1,5 +1,6 @@
 package net.osmand;
 
+import java.text.Normalizer;
 import java.util.Locale;
 
 
@@ -15,6 +16,7 @@ public class CollatorStringMatcher implements StringMatcher {
 	private final Collator collator;
 	private final StringMatcherMode mode;
 	private final String part;
+	private final boolean normalizedKeys;
 	
 	public static enum StringMatcherMode {
 		// tests only first word as base starts with part
@@ -32,7 +34,16 @@ public class CollatorStringMatcher implements StringMatcher {
 	}
 
 	public CollatorStringMatcher(String part, StringMatcherMode mode) {
+		this(part, mode, false);
+	}
+
+	/**
+	 * @param normalizedKeys if true part and names are folded with {@link #normalizeKey(String)} and compared
+	 * as plain strings instead of calling collator for each substring
+	 */
+	public CollatorStringMatcher(String part, StringMatcherMode mode, boolean normalizedKeys) {
 		this.collator = OsmAndCollator.primaryCollator();
+		this.normalizedKeys = normalizedKeys;
 		part = simplifyStringAndAlignChars(part);
 		if (part.length() > 0 && part.charAt(part.length() - 1) == '.') {
 			part = part.substring(0, part.length() - 1);
@@ -42,7 +53,7 @@ public class CollatorStringMatcher implements StringMatcher {
 				mode = StringMatcherMode.CHECK_ONLY_STARTS_WITH;
 			}
 		}
-		this.part = part;
+		this.part = normalizedKeys ? normalizeKey(part) : part;
 		this.mode = mode;
 		
 	}
@@ -50,11 +61,154 @@ public class CollatorStringMatcher implements StringMatcher {
 	public Collator getCollator() {
 		return collator;
 	}
-	
+
+	public boolean isNormalizedKeys() {
+		return normalizedKeys;
+	}
+
 	@Override
 	public boolean matches(String name) {
+		if (normalizedKeys) {
+			return nmatches(normalizeKey(name), part, mode);
+		}
 		return cmatches(collator, name, part, mode);
 	}
+
+	/**
+	 * Matches name already folded with {@link #normalizeKey(String)}, so folded names could be cached
+	 * and checked against many matchers
+	 */
+	public boolean matchesNormalized(String nameKey) {
+		if (!normalizedKeys) {
+			return cmatches(collator, nameKey, part, mode);
+		}
+		return nmatches(nameKey, part, mode);
+	}
+
+	/**
+	 * Folds string to the key comparable by plain string operations: lower case, 'ß' to 'ss',
+	 * ligatures expanded and diacritics of latin letters dropped. It is close to primary collator
+	 * (but not equal, i.e. word separators are not ignored), other scripts keep marks as in collator.
+	 */
+	public static String normalizeKey(String s) {
+		int len = s.length();
+		boolean lowerCase = true;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				return foldKey(s);
+			}
+			if (c >= 'A' && c <= 'Z') {
+				lowerCase = false;
+			}
+		}
+		return lowerCase ? s : s.toLowerCase(Locale.US);
+	}
+
+	private static String foldKey(String s) {
+		String decomposed = Normalizer.normalize(simplifyStringAndAlignChars(s), Normalizer.Form.NFD);
+		StringBuilder b = new StringBuilder(decomposed.length());
+		boolean marksKept = false;
+		char base = 0;
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if (Character.getType(c) == Character.NON_SPACING_MARK) {
+				if (base < 0x250) {
+					continue;
+				}
+				marksKept = true;
+				b.append(c);
+				continue;
+			}
+			base = c;
+			switch (c) {
+			case '\u00e6':
+				b.append("ae");
+				break;
+			case '\u0153':
+				b.append("oe");
+				break;
+			case '\u00fe':
+				b.append("th");
+				break;
+			default:
+				b.append(c);
+				break;
+			}
+		}
+		String key = b.toString();
+		// compose back so cyrillic letters with marks could not be matched by prefix without mark
+		return marksKept ? Normalizer.normalize(key, Normalizer.Form.NFC) : key;
+	}
+
+	/**
+	 * Same as {@link #cmatches} but both strings are folded with {@link #normalizeKey(String)}
+	 */
+	public static boolean nmatches(String fullNameKey, String partKey, StringMatcherMode mode) {
+		switch (mode) {
+		case CHECK_CONTAINS:
+			for (int i = 0; i <= fullNameKey.length() - partKey.length(); i++) {
+				if (regionMatches(fullNameKey, i, partKey)) {
+					return true;
+				}
+			}
+			return false;
+		case CHECK_EQUALS_FROM_SPACE:
+			return nstartsWith(fullNameKey, partKey, true, true, true);
+		case CHECK_STARTS_FROM_SPACE:
+			return nstartsWith(fullNameKey, partKey, true, true, false);
+		case CHECK_STARTS_FROM_SPACE_NOT_BEGINNING:
+			return nstartsWith(fullNameKey, partKey, false, true, false);
+		case CHECK_ONLY_STARTS_WITH:
+			return nstartsWith(fullNameKey, partKey, true, false, false);
+		case CHECK_EQUALS:
+			return nstartsWith(fullNameKey, partKey, false, false, true);
+		}
+		return false;
+	}
+
+	private static boolean nstartsWith(String searchIn, String theStart, boolean checkBeginning, boolean checkSpaces,
+			boolean equals) {
+		int searchInLength = searchIn.length();
+		int startLength = theStart.length();
+		if (startLength == 0) {
+			return true;
+		}
+		if (startLength > searchInLength) {
+			return false;
+		}
+		if (checkBeginning && regionMatches(searchIn, 0, theStart)) {
+			if (!equals || startLength == searchInLength || isSpace(searchIn.charAt(startLength))) {
+				return true;
+			}
+		}
+		if (checkSpaces) {
+			for (int i = 1; i <= searchInLength - startLength; i++) {
+				if (isSpace(searchIn.charAt(i - 1)) && !isSpace(searchIn.charAt(i))
+						&& regionMatches(searchIn, i, theStart)) {
+					if (!equals || i + startLength == searchInLength || isSpace(searchIn.charAt(i + startLength))) {
+						return true;
+					}
+				}
+			}
+		}
+		if (!checkBeginning && !checkSpaces && equals) {
+			return startLength == searchInLength && regionMatches(searchIn, 0, theStart);
+		}
+		return false;
+	}
+
+	// word separators are not distinguished as by collator ("saint-michel" and "saint michel")
+	private static boolean regionMatches(String s, int offset, String part) {
+		for (int i = 0; i < part.length(); i++) {
+			char c = s.charAt(offset + i);
+			char p = part.charAt(i);
+			if (c != p && !(isSpace(c) && isSpace(p))) {
+				return false;
+			}
+		}
+		return true;
+	}
 	
 	
 	public static boolean cmatches(Collator collator, String fullName, String part, StringMatcherMode mode){
@@ -134,7 +288,8 @@ public class CollatorStringMatcher implements StringMatcher {
 	public static boolean cstartsWith(Collator collator, String fullTextP, String theStart, 
 			boolean checkBeginning, boolean checkSpaces, boolean equals) {
 		// FUTURE: This is not effective code, it runs on each comparision
-		// It would be more efficient to normalize all strings in file and normalize search string before collator  
+		// It would be more efficient to normalize all strings in file and normalize search string before collator
+		// (see normalizedKeys mode and nmatches)
 		theStart = alignChars(theStart);
 		String searchIn = simplifyStringAndAlignChars(fullTextP);
 		int searchInLength = searchIn.length();
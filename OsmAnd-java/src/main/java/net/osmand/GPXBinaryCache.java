@@ -0,0 +1,664 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXExtensions;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Route;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Binary copy of parsed gpx file with its {@link GPXTrackAnalysis}, stored in cache file next to gpx file
+ * ({@link #getCacheFile(File)}). It is written after the first parse by {@link #load(File)} and used
+ * instead of xml while gpx file has the same name, size and modification time.
+ * <p>
+ * Points of tracks, routes and waypoints are coded as varints: coordinates are deltas of 1e-7 degrees,
+ * time is delta in milliseconds, elevation is delta in centimeters, speed and hdop are in hundredths.
+ * Value which can't be restored exactly from such representation is stored as raw double, so loaded file
+ * has the same values as parsed one. Texts of points (name, desc, type, cmt and link) are stored only for points
+ * which have any of them. Stored analysis has no chart data (elevationData, speedData are empty),
+ * it is calculated by {@link GPXFile#getAnalysis(long)} as usual.
+ * Files with osmand route segments ({@link TrkSegment#routeSegments}) or metadata author, copyright or bounds
+ * are not cached.
+ */
+public class GPXBinaryCache {
+
+	private static final Log log = PlatformUtil.getLog(GPXBinaryCache.class);
+
+	static final int MAGIC = 0x4f475831; // "OGX1"
+	static final int VERSION = 2;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int HAS_ELE = 1;
+	private static final int HAS_TIME = 1 << 1;
+	private static final int HAS_SPEED = 1 << 2;
+	private static final int HAS_HDOP = 1 << 3;
+	private static final int HAS_HEADING = 1 << 4;
+	// extensions are only "speed" written by gpx writer
+	private static final int SPEED_EXTENSION = 1 << 5;
+	// lat, lon, ele, speed and hdop are raw doubles
+	private static final int RAW_VALUES = 1 << 6;
+	private static final int HAS_EXTENSIONS = 1 << 7;
+	// name, desc, type, cmt and link
+	private static final int HAS_TEXT = 1 << 8;
+
+	private static final double COORDINATES_MULTIPLIER = 1e7;
+	private static final double VALUES_MULTIPLIER = 100;
+
+	private final String sourceName;
+	private final long sourceLength;
+	private final long sourceLastModified;
+	private final GPXFile gpxFile;
+	private final GPXTrackAnalysis analysis;
+
+	GPXBinaryCache(String sourceName, long sourceLength, long sourceLastModified, GPXFile gpxFile,
+			GPXTrackAnalysis analysis) {
+		this.sourceName = sourceName;
+		this.sourceLength = sourceLength;
+		this.sourceLastModified = sourceLastModified;
+		this.gpxFile = gpxFile;
+		this.analysis = analysis;
+	}
+
+	public GPXFile getGpxFile() {
+		return gpxFile;
+	}
+
+	/**
+	 * @return analysis of file or null if file is not read
+	 */
+	public GPXTrackAnalysis getAnalysis() {
+		return analysis;
+	}
+
+	public static File getCacheFile(File gpx) {
+		String name = gpx.getName();
+		int ext = name.lastIndexOf('.');
+		return new File(gpx.getParentFile(), (ext > 0 ? name.substring(0, ext) : name) + ".gpxcache.osmand");
+	}
+
+	/**
+	 * @return true if cache was written for the same (not modified) file
+	 */
+	public boolean isValidFor(File gpx) {
+		return sourceName.equals(gpx.getName()) && sourceLength == gpx.length()
+				&& sourceLastModified == gpx.lastModified();
+	}
+
+	/**
+	 * @return cached gpx file or null if cache doesn't exist or it is written for another version of gpx file
+	 */
+	public static GPXBinaryCache loadFor(File gpx) {
+		File f = getCacheFile(gpx);
+		if (!f.exists()) {
+			return null;
+		}
+		try {
+			GPXBinaryCache cache = readFromFile(f);
+			if (cache.isValidFor(gpx)) {
+				cache.gpxFile.path = gpx.getAbsolutePath();
+				if (cache.analysis != null) {
+					cache.analysis.name = cache.gpxFile.path;
+				}
+				return cache;
+			}
+			log.info("Gpx cache " + f.getName() + " is outdated");
+		} catch (IOException e) {
+			log.error("Failed to read gpx cache " + f.getName(), e);
+		}
+		return null;
+	}
+
+	/**
+	 * Reads gpx file from valid cache file, otherwise parses gpx file and writes cache for the next time.
+	 * File with parse error is returned with error and without analysis.
+	 */
+	public static GPXBinaryCache load(File gpx) {
+		GPXBinaryCache cache = loadFor(gpx);
+		if (cache != null) {
+			return cache;
+		}
+		long length = gpx.length();
+		long lastModified = gpx.lastModified();
+		GPXFile gpxFile = GPXUtilities.loadGPXFile(gpx);
+		if (gpxFile.error != null) {
+			return new GPXBinaryCache(gpx.getName(), length, lastModified, gpxFile, null);
+		}
+		cache = new GPXBinaryCache(gpx.getName(), length, lastModified, gpxFile, gpxFile.getAnalysis(lastModified));
+		if (isSupported(gpxFile)) {
+			File f = getCacheFile(gpx);
+			try {
+				cache.writeToFile(f);
+			} catch (IOException e) {
+				log.error("Failed to write gpx cache " + f.getName(), e);
+				f.delete();
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * @return true if everything loaded from gpx file is kept by cache
+	 */
+	public static boolean isSupported(GPXFile gpxFile) {
+		if (gpxFile.metadata.author != null || gpxFile.metadata.copyright != null || gpxFile.metadata.bounds != null) {
+			return false;
+		}
+		for (Track t : gpxFile.tracks) {
+			for (TrkSegment s : t.segments) {
+				if (!s.routeSegments.isEmpty() || !s.routeTypes.isEmpty()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public void writeToFile(File file) throws IOException {
+		// cache file is replaced only when it is completely written
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, sourceName);
+			out.writeLong(sourceLength);
+			out.writeLong(sourceLastModified);
+			writeGpxFile(out);
+			writeAnalysis(out);
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+				throw new IOException("Failed to rename " + tmp.getName());
+			}
+		}
+	}
+
+	public static GPXBinaryCache readFromFile(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buf.remaining() < 8 || buf.getInt() != MAGIC) {
+				throw new IOException("Not a gpx cache file " + file.getName());
+			}
+			int version = buf.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported gpx cache version " + version + " in " + file.getName());
+			}
+			try {
+				String sourceName = readString(buf);
+				long sourceLength = buf.getLong();
+				long sourceLastModified = buf.getLong();
+				GPXFile gpxFile = readGpxFile(buf);
+				gpxFile.modifiedTime = sourceLastModified;
+				GPXTrackAnalysis analysis = readAnalysis(buf);
+				return new GPXBinaryCache(sourceName, sourceLength, sourceLastModified, gpxFile, analysis);
+			} catch (BufferUnderflowException | IllegalStateException e) {
+				throw new IOException("Gpx cache file " + file.getName() + " is corrupted", e);
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void writeGpxFile(DataOutputStream out) throws IOException {
+		writeString(out, gpxFile.author);
+		writeString(out, gpxFile.metadata.name);
+		writeString(out, gpxFile.metadata.desc);
+		writeString(out, gpxFile.metadata.link);
+		writeString(out, gpxFile.metadata.keywords);
+		writeVarint(out, zigzag(gpxFile.metadata.time));
+		writeExtensions(out, gpxFile.metadata);
+		writeExtensions(out, gpxFile);
+
+		List<WptPt> points = gpxFile.getPoints();
+		writeVarint(out, points.size());
+		for (WptPt p : points) {
+			// waypoints are not close to each other, no deltas
+			writePoint(out, p, new PointsCoder());
+		}
+		List<Track> tracks = new ArrayList<>();
+		for (Track t : gpxFile.tracks) {
+			if (!t.generalTrack) {
+				tracks.add(t);
+			}
+		}
+		writeVarint(out, tracks.size());
+		for (Track t : tracks) {
+			writeString(out, t.name);
+			writeString(out, t.desc);
+			writeExtensions(out, t);
+			writeVarint(out, t.segments.size());
+			for (TrkSegment s : t.segments) {
+				writeString(out, s.name);
+				writeExtensions(out, s);
+				writePoints(out, s.points);
+			}
+		}
+		writeVarint(out, gpxFile.routes.size());
+		for (Route r : gpxFile.routes) {
+			writeString(out, r.name);
+			writeString(out, r.desc);
+			writeExtensions(out, r);
+			writePoints(out, r.points);
+		}
+	}
+
+	private static GPXFile readGpxFile(ByteBuffer buf) {
+		GPXFile gpxFile = new GPXFile(readString(buf));
+		gpxFile.metadata.name = readString(buf);
+		gpxFile.metadata.desc = readString(buf);
+		gpxFile.metadata.link = readString(buf);
+		gpxFile.metadata.keywords = readString(buf);
+		gpxFile.metadata.time = unzigzag(readVarint(buf));
+		readExtensions(buf, gpxFile.metadata);
+		readExtensions(buf, gpxFile);
+
+		int pointsCount = readInt(buf);
+		List<WptPt> points = new ArrayList<>(pointsCount);
+		for (int i = 0; i < pointsCount; i++) {
+			points.add(readPoint(buf, new PointsCoder()));
+		}
+		gpxFile.addPoints(points);
+		int tracksCount = readInt(buf);
+		for (int i = 0; i < tracksCount; i++) {
+			Track t = new Track();
+			t.name = readString(buf);
+			t.desc = readString(buf);
+			readExtensions(buf, t);
+			int segmentsCount = readInt(buf);
+			for (int j = 0; j < segmentsCount; j++) {
+				TrkSegment s = new TrkSegment();
+				s.name = readString(buf);
+				readExtensions(buf, s);
+				readPoints(buf, s.points);
+				t.segments.add(s);
+			}
+			gpxFile.tracks.add(t);
+		}
+		int routesCount = readInt(buf);
+		for (int i = 0; i < routesCount; i++) {
+			Route r = new Route();
+			r.name = readString(buf);
+			r.desc = readString(buf);
+			readExtensions(buf, r);
+			readPoints(buf, r.points);
+			gpxFile.routes.add(r);
+		}
+		gpxFile.addGeneralTrack();
+		return gpxFile;
+	}
+
+	private void writeAnalysis(DataOutputStream out) throws IOException {
+		GPXTrackAnalysis a = analysis;
+		out.writeBoolean(a != null);
+		if (a == null) {
+			return;
+		}
+		writeString(out, a.name);
+		out.writeFloat(a.totalDistance);
+		out.writeFloat(a.totalDistanceWithoutGaps);
+		out.writeInt(a.totalTracks);
+		out.writeLong(a.startTime);
+		out.writeLong(a.endTime);
+		out.writeLong(a.timeSpan);
+		out.writeLong(a.timeSpanWithoutGaps);
+		out.writeLong(a.timeMoving);
+		out.writeLong(a.timeMovingWithoutGaps);
+		out.writeFloat(a.totalDistanceMoving);
+		out.writeFloat(a.totalDistanceMovingWithoutGaps);
+		out.writeDouble(a.diffElevationUp);
+		out.writeDouble(a.diffElevationDown);
+		out.writeDouble(a.avgElevation);
+		out.writeDouble(a.minElevation);
+		out.writeDouble(a.maxElevation);
+		out.writeFloat(a.minSpeed);
+		out.writeFloat(a.maxSpeed);
+		out.writeFloat(a.avgSpeed);
+		out.writeDouble(a.minHdop);
+		out.writeDouble(a.maxHdop);
+		out.writeInt(a.points);
+		out.writeInt(a.wptPoints);
+		out.writeDouble(a.metricEnd);
+		out.writeDouble(a.secondaryMetricEnd);
+		out.writeDouble(a.left);
+		out.writeDouble(a.right);
+		out.writeDouble(a.top);
+		out.writeDouble(a.bottom);
+		out.writeBoolean(a.hasElevationData);
+		out.writeBoolean(a.hasSpeedData);
+		out.writeBoolean(a.hasSpeedInTrack);
+		Set<String> categories = a.wptCategoryNames == null ? Collections.<String>emptySet() : a.wptCategoryNames;
+		out.writeBoolean(a.wptCategoryNames != null);
+		writeVarint(out, categories.size());
+		for (String c : categories) {
+			writeString(out, c);
+		}
+		out.writeBoolean(a.locationStart != null);
+		if (a.locationStart != null) {
+			writePoint(out, a.locationStart, new PointsCoder());
+		}
+		out.writeBoolean(a.locationEnd != null);
+		if (a.locationEnd != null) {
+			writePoint(out, a.locationEnd, new PointsCoder());
+		}
+	}
+
+	private static GPXTrackAnalysis readAnalysis(ByteBuffer buf) {
+		if (buf.get() == 0) {
+			return null;
+		}
+		GPXTrackAnalysis a = new GPXTrackAnalysis();
+		a.name = readString(buf);
+		a.totalDistance = buf.getFloat();
+		a.totalDistanceWithoutGaps = buf.getFloat();
+		a.totalTracks = buf.getInt();
+		a.startTime = buf.getLong();
+		a.endTime = buf.getLong();
+		a.timeSpan = buf.getLong();
+		a.timeSpanWithoutGaps = buf.getLong();
+		a.timeMoving = buf.getLong();
+		a.timeMovingWithoutGaps = buf.getLong();
+		a.totalDistanceMoving = buf.getFloat();
+		a.totalDistanceMovingWithoutGaps = buf.getFloat();
+		a.diffElevationUp = buf.getDouble();
+		a.diffElevationDown = buf.getDouble();
+		a.avgElevation = buf.getDouble();
+		a.minElevation = buf.getDouble();
+		a.maxElevation = buf.getDouble();
+		a.minSpeed = buf.getFloat();
+		a.maxSpeed = buf.getFloat();
+		a.avgSpeed = buf.getFloat();
+		a.minHdop = buf.getDouble();
+		a.maxHdop = buf.getDouble();
+		a.points = buf.getInt();
+		a.wptPoints = buf.getInt();
+		a.metricEnd = buf.getDouble();
+		a.secondaryMetricEnd = buf.getDouble();
+		a.left = buf.getDouble();
+		a.right = buf.getDouble();
+		a.top = buf.getDouble();
+		a.bottom = buf.getDouble();
+		a.hasElevationData = buf.get() != 0;
+		a.hasSpeedData = buf.get() != 0;
+		a.hasSpeedInTrack = buf.get() != 0;
+		boolean hasCategories = buf.get() != 0;
+		int categoriesCount = readInt(buf);
+		Set<String> categories = new LinkedHashSet<>();
+		for (int i = 0; i < categoriesCount; i++) {
+			categories.add(readString(buf));
+		}
+		a.wptCategoryNames = hasCategories ? categories : null;
+		if (buf.get() != 0) {
+			a.locationStart = readPoint(buf, new PointsCoder());
+		}
+		if (buf.get() != 0) {
+			a.locationEnd = readPoint(buf, new PointsCoder());
+		}
+		a.elevationData = new ArrayList<>();
+		a.speedData = new ArrayList<>();
+		return a;
+	}
+
+	private static void writePoints(DataOutputStream out, List<WptPt> points) throws IOException {
+		writeVarint(out, points.size());
+		PointsCoder coder = new PointsCoder();
+		for (WptPt p : points) {
+			writePoint(out, p, coder);
+		}
+	}
+
+	private static void readPoints(ByteBuffer buf, List<WptPt> points) {
+		int count = readInt(buf);
+		PointsCoder coder = new PointsCoder();
+		for (int i = 0; i < count; i++) {
+			points.add(readPoint(buf, coder));
+		}
+	}
+
+	private static void writePoint(DataOutputStream out, WptPt p, PointsCoder coder) throws IOException {
+		int lat = (int) Math.round(p.lat * COORDINATES_MULTIPLIER);
+		int lon = (int) Math.round(p.lon * COORDINATES_MULTIPLIER);
+		long ele = Math.round(p.ele * VALUES_MULTIPLIER);
+		long speed = Math.round(p.speed * VALUES_MULTIPLIER);
+		long hdop = Math.round(p.hdop * VALUES_MULTIPLIER);
+		boolean hasEle = !Double.isNaN(p.ele);
+		boolean hasSpeed = p.speed != 0;
+		boolean hasHdop = !Double.isNaN(p.hdop);
+		boolean raw = !same(p.lat, lat / COORDINATES_MULTIPLIER) || !same(p.lon, lon / COORDINATES_MULTIPLIER)
+				|| (hasEle && !same(p.ele, ele / VALUES_MULTIPLIER))
+				|| (hasSpeed && !same(p.speed, decodeSpeed(speed)))
+				|| (hasHdop && !same(p.hdop, hdop / VALUES_MULTIPLIER));
+		Map<String, String> extensions = p.getExtensionsToRead();
+		boolean speedExtension = extensions.size() == 1 && hasSpeed
+				&& speedExtension(p.speed).equals(extensions.get("speed"));
+		boolean hasText = p.name != null || p.desc != null || p.category != null || p.comment != null
+				|| p.link != null;
+		int flags = (hasEle ? HAS_ELE : 0) | (p.time != 0 ? HAS_TIME : 0) | (hasSpeed ? HAS_SPEED : 0)
+				| (hasHdop ? HAS_HDOP : 0) | (!Float.isNaN(p.heading) ? HAS_HEADING : 0)
+				| (speedExtension ? SPEED_EXTENSION : (!extensions.isEmpty() ? HAS_EXTENSIONS : 0))
+				| (raw ? RAW_VALUES : 0) | (hasText ? HAS_TEXT : 0);
+		writeVarint(out, flags);
+		if (raw) {
+			out.writeDouble(p.lat);
+			out.writeDouble(p.lon);
+		} else {
+			writeVarint(out, zigzag(lat - coder.lat));
+			writeVarint(out, zigzag(lon - coder.lon));
+			coder.lat = lat;
+			coder.lon = lon;
+		}
+		if (hasEle) {
+			if (raw) {
+				out.writeDouble(p.ele);
+			} else {
+				writeVarint(out, zigzag(ele - coder.ele));
+				coder.ele = ele;
+			}
+		}
+		if (p.time != 0) {
+			writeVarint(out, zigzag(p.time - coder.time));
+			coder.time = p.time;
+		}
+		if (hasSpeed) {
+			if (raw) {
+				out.writeDouble(p.speed);
+			} else {
+				writeVarint(out, zigzag(speed));
+			}
+		}
+		if (hasHdop) {
+			if (raw) {
+				out.writeDouble(p.hdop);
+			} else {
+				writeVarint(out, zigzag(hdop));
+			}
+		}
+		if (!Float.isNaN(p.heading)) {
+			out.writeFloat(p.heading);
+		}
+		if ((flags & HAS_EXTENSIONS) != 0) {
+			writeExtensions(out, p);
+		}
+		if (hasText) {
+			writeString(out, p.name);
+			writeString(out, p.desc);
+			writeString(out, p.category);
+			writeString(out, p.comment);
+			writeString(out, p.link);
+		}
+	}
+
+	private static WptPt readPoint(ByteBuffer buf, PointsCoder coder) {
+		int flags = readInt(buf);
+		boolean raw = (flags & RAW_VALUES) != 0;
+		WptPt p = new WptPt();
+		if (raw) {
+			p.lat = buf.getDouble();
+			p.lon = buf.getDouble();
+		} else {
+			coder.lat += (int) unzigzag(readVarint(buf));
+			coder.lon += (int) unzigzag(readVarint(buf));
+			p.lat = coder.lat / COORDINATES_MULTIPLIER;
+			p.lon = coder.lon / COORDINATES_MULTIPLIER;
+		}
+		if ((flags & HAS_ELE) != 0) {
+			if (raw) {
+				p.ele = buf.getDouble();
+			} else {
+				coder.ele += unzigzag(readVarint(buf));
+				p.ele = coder.ele / VALUES_MULTIPLIER;
+			}
+		}
+		if ((flags & HAS_TIME) != 0) {
+			coder.time += unzigzag(readVarint(buf));
+			p.time = coder.time;
+		}
+		if ((flags & HAS_SPEED) != 0) {
+			p.speed = raw ? buf.getDouble() : decodeSpeed(unzigzag(readVarint(buf)));
+		}
+		if ((flags & HAS_HDOP) != 0) {
+			p.hdop = raw ? buf.getDouble() : unzigzag(readVarint(buf)) / VALUES_MULTIPLIER;
+		}
+		if ((flags & HAS_HEADING) != 0) {
+			p.heading = buf.getFloat();
+		}
+		if ((flags & SPEED_EXTENSION) != 0) {
+			p.getExtensionsToWrite().put("speed", speedExtension(p.speed));
+		} else if ((flags & HAS_EXTENSIONS) != 0) {
+			readExtensions(buf, p);
+		}
+		if ((flags & HAS_TEXT) != 0) {
+			p.name = readString(buf);
+			p.desc = readString(buf);
+			p.category = readString(buf);
+			p.comment = readString(buf);
+			p.link = readString(buf);
+		}
+		return p;
+	}
+
+	// gpx parser reads speed as float
+	private static double decodeSpeed(long speed) {
+		return (float) (speed / VALUES_MULTIPLIER);
+	}
+
+	private static String speedExtension(double speed) {
+		char[] chars = new char[32];
+		return new String(chars, 0, GPXStreamWriter.formatDecimal(speed, 1, 0, chars));
+	}
+
+	private static boolean same(double value, double restored) {
+		return Double.doubleToLongBits(value) == Double.doubleToLongBits(restored);
+	}
+
+	private static void writeExtensions(DataOutputStream out, GPXExtensions e) throws IOException {
+		Map<String, String> extensions = e.getExtensionsToRead();
+		writeVarint(out, extensions.size());
+		for (Entry<String, String> entry : extensions.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private static void readExtensions(ByteBuffer buf, GPXExtensions e) {
+		int count = readInt(buf);
+		if (count > 0) {
+			Map<String, String> extensions = e.getExtensionsToWrite();
+			for (int i = 0; i < count; i++) {
+				String key = readString(buf);
+				extensions.put(key, readString(buf));
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			writeVarint(out, 0);
+		} else {
+			byte[] bytes = s.getBytes(UTF_8);
+			writeVarint(out, bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int len = readInt(buf);
+		if (len == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[len - 1];
+		buf.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void writeVarint(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarint(ByteBuffer buf) {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buf.get();
+			result |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IllegalStateException("Malformed varint");
+	}
+
+	private static int readInt(ByteBuffer buf) {
+		long v = readVarint(buf);
+		if (v < 0 || v > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Malformed count " + v);
+		}
+		return (int) v;
+	}
+
+	private static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	// previous values of points list
+	private static class PointsCoder {
+		int lat;
+		int lon;
+		long ele;
+		long time;
+	}
+}
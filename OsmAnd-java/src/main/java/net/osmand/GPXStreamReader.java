@@ -0,0 +1,581 @@
+package net.osmand;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Streaming reader of track points (trk / trkseg / trkpt) of GPX. In contrast to
+ * {@link GPXUtilities#loadGPXFile(InputStream)} it doesn't build {@link GPXUtilities.WptPt} objects and
+ * extension maps: markup is scanned directly from bytes, lat, lon, ele, time and speed of points are parsed
+ * without intermediate strings and passed to listener in chunks of {@link GPXTrackPoints}.
+ * Waypoints, routes, metadata and other extensions are skipped.
+ */
+public class GPXStreamReader {
+
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private static final byte[] TRK = "trk".getBytes(ASCII);
+	private static final byte[] TRKSEG = "trkseg".getBytes(ASCII);
+	private static final byte[] TRKPT = "trkpt".getBytes(ASCII);
+	private static final byte[] LAT = "lat".getBytes(ASCII);
+	private static final byte[] LON = "lon".getBytes(ASCII);
+	private static final byte[] ELE = "ele".getBytes(ASCII);
+	private static final byte[] TIME = "time".getBytes(ASCII);
+	private static final byte[] SPEED = "speed".getBytes(ASCII);
+
+	private static final int TEXT_NONE = 0;
+	private static final int TEXT_ELE = 1;
+	private static final int TEXT_TIME = 2;
+	private static final int TEXT_SPEED = 3;
+
+	private static final double[] POWERS_OF_TEN = new double[23];
+	private static final float[] FLOAT_POWERS_OF_TEN = new float[11];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+		for (int i = 0; i < FLOAT_POWERS_OF_TEN.length; i++) {
+			FLOAT_POWERS_OF_TEN[i] = (float) POWERS_OF_TEN[i];
+		}
+	}
+
+	public interface TrackPointsListener {
+
+		/**
+		 * New segment is started, following chunks belong to it. Points of trk without trkseg
+		 * form a segment as well.
+		 */
+		void startSegment(int trackIndex, int segmentIndex);
+
+		/**
+		 * Next points of current segment, chunk is reused after return.
+		 */
+		void points(GPXTrackPoints chunk);
+	}
+
+	private final InputStream in;
+	private final byte[] buf;
+	private int pos;
+	private int limit;
+
+	private byte[] name = new byte[64];
+	private int nameLength;
+	private byte[] value = new byte[64];
+	private int valueLength;
+
+	private final GPXTrackPoints chunk;
+	private final int chunkSize;
+	private TrackPointsListener listener;
+
+	private int trackIndex = -1;
+	private int segmentIndex = -1;
+	private boolean inTrack;
+	private boolean inSegment;
+	private boolean segmentStarted;
+	private boolean inPoint;
+	private int textTarget = TEXT_NONE;
+
+	private double pointLat;
+	private double pointLon;
+	private float pointEle;
+	private long pointTime;
+	private float pointSpeed;
+
+	public GPXStreamReader(InputStream in) {
+		this(in, DEFAULT_CHUNK_SIZE);
+	}
+
+	public GPXStreamReader(InputStream in, int chunkSize) {
+		this.in = in;
+		this.buf = new byte[1 << 16];
+		this.chunkSize = Math.max(chunkSize, 1);
+		this.chunk = new GPXTrackPoints(this.chunkSize);
+	}
+
+	/**
+	 * Reads all track points to one buffer, segments are marked by start indexes.
+	 */
+	public static GPXTrackPoints readTrackPoints(InputStream in) throws IOException {
+		final GPXTrackPoints points = new GPXTrackPoints();
+		new GPXStreamReader(in).read(new TrackPointsListener() {
+			@Override
+			public void startSegment(int trackIndex, int segmentIndex) {
+				points.startSegment();
+			}
+
+			@Override
+			public void points(GPXTrackPoints chunk) {
+				points.ensureCapacity(points.size() + chunk.size());
+				for (int i = 0; i < chunk.size(); i++) {
+					points.add(chunk.getLatitude(i), chunk.getLongitude(i), chunk.getElevation(i), chunk.getTime(i),
+							chunk.getSpeed(i));
+				}
+			}
+		});
+		return points;
+	}
+
+	public void read(TrackPointsListener listener) throws IOException {
+		this.listener = listener;
+		int c;
+		while ((c = next()) != -1) {
+			if (c != '<') {
+				if (textTarget != TEXT_NONE) {
+					readText(c);
+				}
+				continue;
+			}
+			c = next();
+			if (c == '?') {
+				skipTo('?', '>');
+			} else if (c == '!') {
+				skipDeclaration();
+			} else if (c == '/') {
+				readName(next());
+				skipTo('>');
+				endElement();
+			} else if (c != -1) {
+				readName(c);
+				startElement();
+			}
+		}
+		flush();
+	}
+
+	private void startElement() throws IOException {
+		boolean point = false;
+		boolean segment = false;
+		boolean track = false;
+		if (inSegment || inTrack) {
+			if (!inPoint && nameIs(TRKPT)) {
+				point = true;
+			} else if (inPoint) {
+				textTarget = nameIs(ELE) ? TEXT_ELE : (nameIs(TIME) ? TEXT_TIME : (nameIs(SPEED) ? TEXT_SPEED : TEXT_NONE));
+			} else if (nameIs(TRKSEG)) {
+				segment = true;
+				startSegment();
+				inSegment = true;
+			}
+		} else if (nameIs(TRK)) {
+			track = true;
+			inTrack = true;
+			trackIndex++;
+			segmentStarted = false;
+		}
+		if (point) {
+			pointLat = 0;
+			pointLon = 0;
+			pointEle = Float.NaN;
+			pointTime = 0;
+			pointSpeed = 0;
+		}
+		boolean empty = readAttributes(point);
+		if (point) {
+			if (empty) {
+				addPoint();
+			} else {
+				inPoint = true;
+			}
+		} else if (empty) {
+			textTarget = TEXT_NONE;
+			if (segment) {
+				inSegment = false;
+			} else if (track) {
+				inTrack = false;
+			}
+		}
+	}
+
+	private void endElement() throws IOException {
+		textTarget = TEXT_NONE;
+		if (inPoint && nameIs(TRKPT)) {
+			inPoint = false;
+			addPoint();
+		} else if (!inPoint && inSegment && nameIs(TRKSEG)) {
+			inSegment = false;
+			flush();
+		} else if (!inPoint && inTrack && nameIs(TRK)) {
+			inTrack = false;
+			inSegment = false;
+			flush();
+		}
+	}
+
+	private void startSegment() throws IOException {
+		flush();
+		segmentIndex++;
+		segmentStarted = true;
+		listener.startSegment(trackIndex, segmentIndex);
+	}
+
+	private void addPoint() throws IOException {
+		if (!inSegment && !segmentStarted) {
+			// points directly in trk
+			startSegment();
+		}
+		chunk.add(pointLat, pointLon, pointEle, pointTime, pointSpeed);
+		if (chunk.size() >= chunkSize) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		if (chunk.size() > 0) {
+			listener.points(chunk);
+			chunk.clear();
+		}
+	}
+
+	// returns true for empty element
+	private boolean readAttributes(boolean point) throws IOException {
+		int c = next();
+		while (c != -1) {
+			if (c == '>') {
+				return false;
+			} else if (c == '/') {
+				skipTo('>');
+				return true;
+			} else if (c > ' ') {
+				nameLength = 0;
+				while (c != '=' && c > ' ' && c != -1) {
+					appendName(c);
+					c = next();
+				}
+				while (c != '"' && c != '\'' && c != -1) {
+					c = next();
+				}
+				int quote = c;
+				valueLength = 0;
+				while ((c = next()) != quote && c != -1) {
+					appendValue(c);
+				}
+				if (point) {
+					if (nameIs(LAT)) {
+						pointLat = parseDouble(value, 0, valueLength, 0);
+					} else if (nameIs(LON)) {
+						pointLon = parseDouble(value, 0, valueLength, 0);
+					}
+				}
+			}
+			c = next();
+		}
+		return false;
+	}
+
+	private void readText(int c) throws IOException {
+		valueLength = 0;
+		while (c != '<' && c != -1) {
+			appendValue(c);
+			c = next();
+		}
+		if (c != -1) {
+			pos--;
+		}
+		if (textTarget == TEXT_ELE) {
+			pointEle = parseFloat(value, 0, valueLength, Float.NaN);
+		} else if (textTarget == TEXT_TIME) {
+			pointTime = parseTime(value, 0, valueLength);
+		} else if (textTarget == TEXT_SPEED) {
+			float s = parseFloat(value, 0, valueLength, Float.NaN);
+			if (!Float.isNaN(s)) {
+				pointSpeed = s;
+			}
+		}
+		textTarget = TEXT_NONE;
+	}
+
+	private void readName(int c) throws IOException {
+		nameLength = 0;
+		while (c > ' ' && c != '>' && c != '/' && c != -1) {
+			if (c == ':') {
+				// local name
+				nameLength = 0;
+			} else {
+				appendName(c);
+			}
+			c = next();
+		}
+		if (c != -1) {
+			pos--;
+		}
+	}
+
+	private void skipDeclaration() throws IOException {
+		int c = next();
+		if (c == '-') {
+			next();
+			skipTo('-', '-', '>');
+		} else if (c == '[') {
+			skipTo(']', ']', '>');
+		} else {
+			skipTo('>');
+		}
+	}
+
+	private void skipTo(int... seq) throws IOException {
+		int matched = 0;
+		int c;
+		while (matched < seq.length && (c = next()) != -1) {
+			if (c == seq[matched]) {
+				matched++;
+			} else {
+				matched = c == seq[0] ? 1 : 0;
+			}
+		}
+	}
+
+	private boolean nameIs(byte[] n) {
+		if (nameLength != n.length) {
+			return false;
+		}
+		for (int i = 0; i < nameLength; i++) {
+			if (name[i] != n[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void appendName(int c) {
+		if (nameLength == name.length) {
+			name = Arrays.copyOf(name, nameLength * 2);
+		}
+		name[nameLength++] = (byte) c;
+	}
+
+	private void appendValue(int c) {
+		if (valueLength == value.length) {
+			value = Arrays.copyOf(value, valueLength * 2);
+		}
+		value[valueLength++] = (byte) c;
+	}
+
+	private int next() throws IOException {
+		if (pos == limit) {
+			limit = in.read(buf, 0, buf.length);
+			pos = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buf[pos++] & 0xff;
+	}
+
+	/**
+	 * Parses decimal number, the result is the same as {@link Double#parseDouble(String)} of trimmed text.
+	 */
+	public static double parseDouble(byte[] b, int start, int end, double defValue) {
+		long mantissa = 0;
+		int digits = 0;
+		int exp = 0;
+		int i = skipSpaces(b, start, end);
+		end = trimSpaces(b, i, end);
+		int from = i;
+		boolean negative = false;
+		if (i < end && (b[i] == '-' || b[i] == '+')) {
+			negative = b[i] == '-';
+			i++;
+		}
+		boolean dot = false;
+		boolean any = false;
+		for (; i < end; i++) {
+			int c = b[i];
+			if (c >= '0' && c <= '9') {
+				any = true;
+				if (digits > 0 || c != '0') {
+					digits++;
+				}
+				if (digits <= 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (dot) {
+						exp--;
+					}
+				} else if (!dot) {
+					exp++;
+				}
+			} else if (c == '.' && !dot) {
+				dot = true;
+			} else {
+				break;
+			}
+		}
+		if (!any || i < end || digits > 15 || exp < -22) {
+			return slowParseDouble(b, from, end, defValue);
+		}
+		double v = exp < 0 ? mantissa / POWERS_OF_TEN[-exp] : mantissa * POWERS_OF_TEN[exp];
+		return negative ? -v : v;
+	}
+
+	/**
+	 * Parses decimal number, the result is the same as {@link Float#parseFloat(String)} of trimmed text.
+	 */
+	public static float parseFloat(byte[] b, int start, int end, float defValue) {
+		long mantissa = 0;
+		int digits = 0;
+		int exp = 0;
+		int i = skipSpaces(b, start, end);
+		end = trimSpaces(b, i, end);
+		int from = i;
+		boolean negative = false;
+		if (i < end && (b[i] == '-' || b[i] == '+')) {
+			negative = b[i] == '-';
+			i++;
+		}
+		boolean dot = false;
+		boolean any = false;
+		for (; i < end; i++) {
+			int c = b[i];
+			if (c >= '0' && c <= '9') {
+				any = true;
+				if (digits > 0 || c != '0') {
+					digits++;
+				}
+				if (digits <= 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (dot) {
+						exp--;
+					}
+				}
+			} else if (c == '.' && !dot) {
+				dot = true;
+			} else {
+				break;
+			}
+		}
+		// float arithmetic is exact for mantissa < 2^24 and powers up to 10^10
+		if (!any || i < end || mantissa >= (1 << 24) || digits > 18 || exp < -10 || exp > 0) {
+			String s = new String(b, from, end - from, ASCII);
+			try {
+				return Float.parseFloat(s);
+			} catch (NumberFormatException e) {
+				return defValue;
+			}
+		}
+		float v = (float) mantissa / FLOAT_POWERS_OF_TEN[-exp];
+		return negative ? -v : v;
+	}
+
+	private static double slowParseDouble(byte[] b, int start, int end, double defValue) {
+		try {
+			return Double.parseDouble(new String(b, start, end - start, ASCII));
+		} catch (NumberFormatException e) {
+			return defValue;
+		}
+	}
+
+	/**
+	 * Parses ISO-8601 date time yyyy-MM-ddTHH:mm:ss[.SSS][Z|+HH:mm|-HH:mm], time without zone is UTC.
+	 * Returns 0 for other formats as {@link GPXUtilities#parseTime(String)}.
+	 */
+	public static long parseTime(byte[] b, int start, int end) {
+		int i = skipSpaces(b, start, end);
+		end = trimSpaces(b, i, end);
+		if (end - i < 19 || b[i + 4] != '-' || b[i + 7] != '-' || (b[i + 10] != 'T' && b[i + 10] != 't'
+				&& b[i + 10] != ' ') || b[i + 13] != ':' || b[i + 16] != ':') {
+			return 0;
+		}
+		int year = digits(b, i, 4);
+		int month = digits(b, i + 5, 2);
+		int day = digits(b, i + 8, 2);
+		int hour = digits(b, i + 11, 2);
+		int minute = digits(b, i + 14, 2);
+		int second = digits(b, i + 17, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 24 || minute < 0
+				|| minute > 59 || second < 0 || second > 60) {
+			return 0;
+		}
+		i += 19;
+		int millis = 0;
+		if (i < end && (b[i] == '.' || b[i] == ',')) {
+			i++;
+			int scale = 100;
+			int from = i;
+			while (i < end && b[i] >= '0' && b[i] <= '9') {
+				millis += (b[i] - '0') * scale;
+				scale /= 10;
+				i++;
+			}
+			if (i == from) {
+				return 0;
+			}
+		}
+		int offset = 0;
+		if (i < end) {
+			if (b[i] == 'Z' || b[i] == 'z') {
+				i++;
+			} else if (b[i] == '+' || b[i] == '-') {
+				int sign = b[i] == '-' ? -1 : 1;
+				int oh = end - i >= 3 ? digits(b, i + 1, 2) : -1;
+				i += 3;
+				int om = 0;
+				if (i < end) {
+					if (b[i] == ':') {
+						i++;
+					}
+					om = end - i >= 2 ? digits(b, i, 2) : -1;
+					i += 2;
+				}
+				if (oh < 0 || om < 0) {
+					return 0;
+				}
+				offset = sign * (oh * 60 + om);
+			}
+			if (i != end) {
+				return 0;
+			}
+		}
+		long days = daysFromCivil(year, month, day);
+		return (((days * 24 + hour) * 60 + minute - offset) * 60 + second) * 1000 + millis;
+	}
+
+	public static long parseTime(String text) {
+		if (text == null) {
+			return 0;
+		}
+		byte[] b = text.getBytes(ASCII);
+		return parseTime(b, 0, b.length);
+	}
+
+	// days since 1970-01-01 of proleptic gregorian date
+	static long daysFromCivil(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097L + doe - 719468;
+	}
+
+	private static int digits(byte[] b, int start, int count) {
+		int v = 0;
+		for (int i = start; i < start + count; i++) {
+			int c = b[i] - '0';
+			if (c < 0 || c > 9) {
+				return -1;
+			}
+			v = v * 10 + c;
+		}
+		return v;
+	}
+
+	private static int skipSpaces(byte[] b, int start, int end) {
+		while (start < end && b[start] <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	private static int trimSpaces(byte[] b, int start, int end) {
+		while (end > start && b[end - 1] <= ' ') {
+			end--;
+		}
+		return end;
+	}
+}
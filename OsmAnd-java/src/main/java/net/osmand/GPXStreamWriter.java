@@ -0,0 +1,266 @@
+package net.osmand;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer of tracks which doesn't need whole {@link GPXUtilities.GPXFile} in memory. Points are written
+ * as they come in the same format as {@link GPXUtilities#writeGpx}, numbers and time are formatted
+ * to a reused char buffer.
+ * <pre>
+ * GPXStreamWriter w = new GPXStreamWriter(writer, "OsmAnd");
+ * w.startTrack("name");
+ * w.startSegment();
+ * w.writePoint(lat, lon, ele, time, speed);
+ * w.endSegment();
+ * w.endTrack();
+ * w.finish();
+ * </pre>
+ */
+public class GPXStreamWriter implements Closeable {
+
+	private static final String INDENT_TRACK = "\n  ";
+	private static final String INDENT_SEGMENT = "\n    ";
+	private static final String INDENT_POINT = "\n      ";
+	private static final String INDENT_POINT_TAG = "\n        ";
+	private static final String INDENT_EXTENSION = "\n          ";
+
+	private final Writer out;
+	private final char[] chars = new char[32];
+	private boolean inTrack;
+	private boolean inSegment;
+	private boolean finished;
+
+	public GPXStreamWriter(Writer out, String creator) throws IOException {
+		this.out = out;
+		out.write("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n<gpx version=\"1.1\"");
+		if (creator != null) {
+			out.write(" creator=\"");
+			writeEscaped(creator);
+			out.write('"');
+		}
+		out.write(" xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:osmand=\"https://osmand.net\""
+				+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+				+ " xsi:schemaLocation=\"http://www.topografix.com/GPX/1/1 http://www.topografix.com/GPX/1/1/gpx.xsd\">");
+	}
+
+	public void startTrack(String name) throws IOException {
+		if (inTrack || finished) {
+			throw new IllegalStateException("Track can't be started");
+		}
+		inTrack = true;
+		out.write(INDENT_TRACK);
+		out.write("<trk>");
+		if (name != null) {
+			out.write(INDENT_SEGMENT);
+			out.write("<name>");
+			writeEscaped(name);
+			out.write("</name>");
+		}
+	}
+
+	public void startSegment() throws IOException {
+		if (!inTrack || inSegment) {
+			throw new IllegalStateException("Segment can't be started");
+		}
+		inSegment = true;
+		out.write(INDENT_SEGMENT);
+		out.write("<trkseg>");
+	}
+
+	/**
+	 * Writes point of current segment, NaN elevation, 0 time and speed are omitted.
+	 */
+	public void writePoint(double lat, double lon, double ele, long time, double speed) throws IOException {
+		if (!inSegment) {
+			throw new IllegalStateException("Point is out of segment");
+		}
+		out.write(INDENT_POINT);
+		out.write("<trkpt lat=\"");
+		writeDecimal(lat, 7, 2);
+		out.write("\" lon=\"");
+		writeDecimal(lon, 7, 2);
+		out.write("\">");
+		if (!Double.isNaN(ele)) {
+			out.write(INDENT_POINT_TAG);
+			out.write("<ele>");
+			writeDecimal(ele, 1, 0);
+			out.write("</ele>");
+		}
+		if (time != 0) {
+			out.write(INDENT_POINT_TAG);
+			out.write("<time>");
+			out.write(chars, 0, formatTime(time, chars));
+			out.write("</time>");
+		}
+		if (speed > 0) {
+			out.write(INDENT_POINT_TAG);
+			out.write("<extensions>");
+			out.write(INDENT_EXTENSION);
+			out.write("<osmand:speed>");
+			writeDecimal(speed, 1, 0);
+			out.write("</osmand:speed>");
+			out.write(INDENT_POINT_TAG);
+			out.write("</extensions>");
+		}
+		out.write(INDENT_POINT);
+		out.write("</trkpt>");
+	}
+
+	public void writePoints(GPXTrackPoints points, int from, int to) throws IOException {
+		for (int i = from; i < to; i++) {
+			writePoint(points.getLatitude(i), points.getLongitude(i), points.getElevation(i), points.getTime(i),
+					points.getSpeed(i));
+		}
+	}
+
+	public void endSegment() throws IOException {
+		if (!inSegment) {
+			throw new IllegalStateException("Segment is not started");
+		}
+		inSegment = false;
+		out.write(INDENT_SEGMENT);
+		out.write("</trkseg>");
+	}
+
+	public void endTrack() throws IOException {
+		if (inSegment) {
+			endSegment();
+		}
+		if (!inTrack) {
+			throw new IllegalStateException("Track is not started");
+		}
+		inTrack = false;
+		out.write(INDENT_TRACK);
+		out.write("</trk>");
+	}
+
+	/**
+	 * Closes open elements and flushes output, underlying writer stays open.
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		if (inTrack) {
+			endTrack();
+		}
+		finished = true;
+		out.write("\n</gpx>\n");
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeDecimal(double v, int maxFraction, int minFraction) throws IOException {
+		out.write(chars, 0, formatDecimal(v, maxFraction, minFraction, chars));
+	}
+
+	private void writeEscaped(String s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '&') {
+				out.write("&amp;");
+			} else if (c == '<') {
+				out.write("&lt;");
+			} else if (c == '>') {
+				out.write("&gt;");
+			} else if (c == '"') {
+				out.write("&quot;");
+			} else {
+				out.write(c);
+			}
+		}
+	}
+
+	/**
+	 * Formats value rounded to maxFraction digits (at most 9), trailing zeros are removed up to minFraction digits.
+	 * Returns length of the text in buffer.
+	 */
+	static int formatDecimal(double v, int maxFraction, int minFraction, char[] buf) {
+		long scale = 1;
+		for (int i = 0; i < maxFraction; i++) {
+			scale *= 10;
+		}
+		long scaled = Math.round(Math.abs(v) * scale);
+		long integer = scaled / scale;
+		long fraction = scaled % scale;
+		int len = 0;
+		if (v < 0 && scaled != 0) {
+			buf[len++] = '-';
+		}
+		len = appendLong(integer, buf, len);
+		int digits = maxFraction;
+		while (digits > minFraction && fraction % 10 == 0) {
+			fraction /= 10;
+			digits--;
+		}
+		if (digits > 0) {
+			buf[len++] = '.';
+			for (int i = digits - 1; i >= 0; i--) {
+				buf[len + i] = (char) ('0' + fraction % 10);
+				fraction /= 10;
+			}
+			len += digits;
+		}
+		return len;
+	}
+
+	/**
+	 * Formats UTC time as yyyy-MM-ddTHH:mm:ssZ like {@link GPXUtilities#formatTime(long)}.
+	 * Returns length of the text in buffer.
+	 */
+	static int formatTime(long time, char[] buf) {
+		long seconds = time / 1000 - (time % 1000 < 0 ? 1 : 0);
+		long days = seconds / 86400 - (seconds % 86400 < 0 ? 1 : 0);
+		int secondOfDay = (int) (seconds - days * 86400);
+		// civil from days
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		int doe = (int) (z - era * 146097);
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int day = doy - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+		int len = 0;
+		len = appendPadded(year, 4, buf, len);
+		buf[len++] = '-';
+		len = appendPadded(month, 2, buf, len);
+		buf[len++] = '-';
+		len = appendPadded(day, 2, buf, len);
+		buf[len++] = 'T';
+		len = appendPadded(secondOfDay / 3600, 2, buf, len);
+		buf[len++] = ':';
+		len = appendPadded(secondOfDay / 60 % 60, 2, buf, len);
+		buf[len++] = ':';
+		len = appendPadded(secondOfDay % 60, 2, buf, len);
+		buf[len++] = 'Z';
+		return len;
+	}
+
+	private static int appendPadded(long v, int width, char[] buf, int len) {
+		for (int i = width - 1; i >= 0; i--) {
+			buf[len + i] = (char) ('0' + v % 10);
+			v /= 10;
+		}
+		return len + width;
+	}
+
+	private static int appendLong(long v, char[] buf, int len) {
+		int digits = 1;
+		for (long t = v / 10; t > 0; t /= 10) {
+			digits++;
+		}
+		return appendPadded(v, digits, buf, len);
+	}
+}
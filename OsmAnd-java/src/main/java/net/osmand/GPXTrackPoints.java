@@ -0,0 +1,155 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Track points stored in primitive columns instead of {@link WptPt} objects.
+ * Missing elevation is NaN, missing time and speed are 0 as in {@link WptPt}.
+ * Points are split into segments by start indexes.
+ */
+public class GPXTrackPoints {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private double[] lat;
+	private double[] lon;
+	private float[] ele;
+	private long[] time;
+	private float[] speed;
+	private int size;
+	private final TIntArrayList segmentStarts = new TIntArrayList();
+
+	public GPXTrackPoints() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public GPXTrackPoints(int capacity) {
+		capacity = Math.max(capacity, 1);
+		lat = new double[capacity];
+		lon = new double[capacity];
+		ele = new float[capacity];
+		time = new long[capacity];
+		speed = new float[capacity];
+	}
+
+	public void add(double lat, double lon, float ele, long time, float speed) {
+		if (size == this.lat.length) {
+			ensureCapacity(size * 2);
+		}
+		this.lat[size] = lat;
+		this.lon[size] = lon;
+		this.ele[size] = ele;
+		this.time[size] = time;
+		this.speed[size] = speed;
+		size++;
+	}
+
+	public void ensureCapacity(int capacity) {
+		if (capacity > lat.length) {
+			lat = Arrays.copyOf(lat, capacity);
+			lon = Arrays.copyOf(lon, capacity);
+			ele = Arrays.copyOf(ele, capacity);
+			time = Arrays.copyOf(time, capacity);
+			speed = Arrays.copyOf(speed, capacity);
+		}
+	}
+
+	/**
+	 * Next added points belong to a new segment.
+	 */
+	public void startSegment() {
+		segmentStarts.add(size);
+	}
+
+	public void clear() {
+		size = 0;
+		segmentStarts.clear();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getLatitude(int i) {
+		return lat[i];
+	}
+
+	public double getLongitude(int i) {
+		return lon[i];
+	}
+
+	public float getElevation(int i) {
+		return ele[i];
+	}
+
+	public long getTime(int i) {
+		return time[i];
+	}
+
+	public float getSpeed(int i) {
+		return speed[i];
+	}
+
+	// columns are exposed for bulk processing, only first size() values are valid
+	public double[] getLatitudes() {
+		return lat;
+	}
+
+	public double[] getLongitudes() {
+		return lon;
+	}
+
+	public float[] getElevations() {
+		return ele;
+	}
+
+	public long[] getTimes() {
+		return time;
+	}
+
+	public float[] getSpeeds() {
+		return speed;
+	}
+
+	public int getSegmentsCount() {
+		return segmentStarts.isEmpty() && size > 0 ? 1 : segmentStarts.size();
+	}
+
+	public int getSegmentStart(int segment) {
+		return segmentStarts.isEmpty() ? 0 : segmentStarts.get(segment);
+	}
+
+	public int getSegmentEnd(int segment) {
+		return segment + 1 < segmentStarts.size() ? segmentStarts.get(segment + 1) : size;
+	}
+
+	public WptPt getPoint(int i) {
+		WptPt p = new WptPt();
+		p.lat = lat[i];
+		p.lon = lon[i];
+		p.ele = ele[i];
+		p.time = time[i];
+		p.speed = speed[i];
+		return p;
+	}
+
+	public List<TrkSegment> toTrkSegments() {
+		List<TrkSegment> segments = new ArrayList<>();
+		for (int s = 0; s < getSegmentsCount(); s++) {
+			TrkSegment segment = new TrkSegment();
+			int end = getSegmentEnd(s);
+			for (int i = getSegmentStart(s); i < end; i++) {
+				segment.points.add(getPoint(i));
+			}
+			segments.add(segment);
+		}
+		return segments;
+	}
+}
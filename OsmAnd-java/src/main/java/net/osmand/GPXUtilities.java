@@ -46,6 +46,9 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class GPXUtilities {
 
@@ -646,6 +649,9 @@ public class GPXUtilities {
 	}
 
 	public static class GPXTrackAnalysis {
+		// points of one task of parallel distance calculation, shorter tracks are analyzed in calling thread
+		public static final int PARALLEL_CHUNK_POINTS = 4096;
+
 		public String name;
 		
 		public float totalDistance = 0;
@@ -741,7 +747,25 @@ public class GPXUtilities {
 			return new GPXTrackAnalysis().prepareInformation(filetimestamp, new SplitSegment(segment));
 		}
 
+		/**
+		 * Same analysis as {@link #segment(long, TrkSegment)}, only distances between points are calculated
+		 * by distanceExecutor (see {@link #prepareInformation(long, ExecutorService, SplitSegment...)}).
+		 */
+		public static GPXTrackAnalysis segment(long filetimestamp, TrkSegment segment, ExecutorService distanceExecutor) {
+			return new GPXTrackAnalysis().prepareInformation(filetimestamp, distanceExecutor, new SplitSegment(segment));
+		}
+
 		public GPXTrackAnalysis prepareInformation(long filestamp, SplitSegment... splitSegments) {
+			return prepareInformation(filestamp, null, splitSegments);
+		}
+
+		/**
+		 * With distanceExecutor only distances between points of long tracks are calculated in parallel chunks
+		 * (see {@link #PARALLEL_CHUNK_POINTS}). All other statistics (totals, time in motion, elevation gain/loss,
+		 * speed) are accumulated in calling thread in points order, so result is identical to sequential analysis.
+		 */
+		public GPXTrackAnalysis prepareInformation(long filestamp, ExecutorService distanceExecutor, SplitSegment... splitSegments) {
+			float[][] distances = distanceExecutor == null ? null : calculateDistances(distanceExecutor, splitSegments);
 			float[] calculations = new float[1];
 
 			long startTimeOfSingleSegment = 0;
@@ -761,7 +785,8 @@ public class GPXUtilities {
 			elevationData = new ArrayList<>();
 			speedData = new ArrayList<>();
 
-			for (final SplitSegment s : splitSegments) {
+			for (int i = 0; i < splitSegments.length; i++) {
+				final SplitSegment s = splitSegments[i];
 				final int numberOfPoints = s.getNumberOfPoints();
 				float segmentDistance = 0f;
 				metricEnd += s.metricEnd;
@@ -851,7 +876,11 @@ public class GPXUtilities {
 						// totalDistance += MapUtils.getDistance(prev.lat, prev.lon, point.lat, point.lon);
 						// using ellipsoidal 'distanceBetween' instead of spherical haversine (MapUtils.getDistance) is
 						// a little more exact, also seems slightly faster:
-						net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+						if (distances != null) {
+							calculations[0] = distances[i][j];
+						} else {
+							net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+						}
 						totalDistance += calculations[0];
 						segmentDistance += calculations[0];
 						point.distance = segmentDistance;
@@ -977,6 +1006,60 @@ public class GPXUtilities {
 			return this;
 		}
 
+		/**
+		 * Returns distances to previous point for each point of split segments or null if track is too short
+		 * to split work. Distance calculation dominates analysis time, rest of statistics is not split into
+		 * chunks as it depends on order of points: float sums, speed derived from distance only until first
+		 * point with recorded speed, cumulative point distance used by elevation window of whole segment.
+		 */
+		private static float[][] calculateDistances(ExecutorService executor, SplitSegment... splitSegments) {
+			int totalPoints = 0;
+			for (SplitSegment s : splitSegments) {
+				totalPoints += s.getNumberOfPoints();
+			}
+			if (totalPoints < PARALLEL_CHUNK_POINTS * 2) {
+				return null;
+			}
+			float[][] distances = new float[splitSegments.length][];
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < splitSegments.length; i++) {
+				final SplitSegment s = splitSegments[i];
+				final float[] d = new float[Math.max(s.getNumberOfPoints(), 0)];
+				distances[i] = d;
+				for (int start = 1; start < d.length; start += PARALLEL_CHUNK_POINTS) {
+					final int from = start;
+					final int to = Math.min(start + PARALLEL_CHUNK_POINTS, d.length);
+					futures.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							float[] calculations = new float[1];
+							WptPt prev = s.get(from - 1);
+							for (int j = from; j < to; j++) {
+								WptPt point = s.get(j);
+								net.osmand.Location.distanceBetween(prev.lat, prev.lon, point.lat, point.lon, calculations);
+								d[j] = calculations[0];
+								prev = point;
+							}
+						}
+					}));
+				}
+			}
+			try {
+				for (Future<?> f : futures) {
+					f.get();
+				}
+			} catch (InterruptedException e) {
+				for (Future<?> f : futures) {
+					f.cancel(true);
+				}
+				Thread.currentThread().interrupt();
+				return null;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+			return distances;
+		}
+
 		public abstract static class ElevationDiffsCalculator {
 
 			public static final double CALCULATED_GPX_WINDOW_LENGTH = 10d;
@@ -1436,12 +1519,27 @@ public class GPXUtilities {
 		public GPXTrackAnalysis getAnalysis(long fileTimestamp,
 		                                    Double fromDistance,
 		                                    Double toDistance) {
+			return getAnalysis(fileTimestamp, fromDistance, toDistance, null);
+		}
+
+		/**
+		 * Same analysis as {@link #getAnalysis(long)}, only distances between points of long tracks are
+		 * calculated by distanceExecutor (see {@link GPXTrackAnalysis#prepareInformation(long, ExecutorService, SplitSegment...)}).
+		 */
+		public GPXTrackAnalysis getAnalysis(long fileTimestamp, ExecutorService distanceExecutor) {
+			return getAnalysis(fileTimestamp, null, null, distanceExecutor);
+		}
+
+		public GPXTrackAnalysis getAnalysis(long fileTimestamp,
+		                                    Double fromDistance,
+		                                    Double toDistance,
+		                                    ExecutorService distanceExecutor) {
 			GPXTrackAnalysis g = new GPXTrackAnalysis();
 			g.wptPoints = points.size();
 			g.name = path;
 			g.wptCategoryNames = getWaypointCategories(true);
 			List<SplitSegment> segments = getSplitSegments(g, fromDistance, toDistance);
-			g.prepareInformation(fileTimestamp, segments.toArray(new SplitSegment[0]));
+			g.prepareInformation(fileTimestamp, distanceExecutor, segments.toArray(new SplitSegment[0]));
 			return g;
 		}
 
@@ -116,13 +116,37 @@ public class TspAnt {
             l.add(end);
         }
         n = l.size() ;
+        double[][] costs = new double[n][n];
+		for (int i = 0; i < n ; i++) {
+			for (int j = 1; j < n ; j++) {
+				costs[i][j] = MapUtils.getDistance(l.get(i), l.get(j));
+			}
+		}
+		return readGraph(costs, keepEndPoint);
+    }
+
+    /**
+     * @param costs road costs (i.e. from RouteMatrixCalculator) between start point (0), intermediates and end point (last)
+     */
+    public TspAnt readGraph(float[][] costs, boolean keepEndPoint) {
+    	double[][] c = new double[costs.length][costs.length];
+    	for (int i = 0; i < costs.length; i++) {
+    		for (int j = 0; j < costs.length; j++) {
+    			c[i][j] = costs[i][j];
+    		}
+    	}
+    	return readGraph(c, keepEndPoint);
+    }
+
+    private TspAnt readGraph(double[][] costs, boolean keepEndPoint) {
+        n = costs.length;
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
 		for (int i = 0; i < n ; i++) {
 			double maxIWeight = 0;
 			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
+				double d = Math.rint(costs[i][j]) + 0.1;
 				maxIWeight = Math.max(d, maxIWeight);
 				graph[i][j] = d;
 			}
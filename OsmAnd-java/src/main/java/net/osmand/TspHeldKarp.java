@@ -26,6 +26,18 @@ public class TspHeldKarp {
   /// OSMAND Modification
 	public TspHeldKarp readInput(List<LatLon> ls, boolean returnToInitialPoint) {
 		n = ls.size();
+		float[][] distances = new float[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				distances[i][j] = (float) MapUtils.getDistance(ls.get(i), ls.get(j));
+			}
+		}
+		return readInput(distances, returnToInitialPoint);
+	}
+
+	// costs could be road times or distances from RouteMatrixCalculator
+	public TspHeldKarp readInput(float[][] costs, boolean returnToInitialPoint) {
+		n = costs.length;
 		order = new int[n];
 		cost = new double[n][n];
 		// TSPLIB distances are rounded to the nearest integer to avoid the sum of square roots problem
@@ -35,7 +47,7 @@ public class TspHeldKarp {
 				if (!returnToInitialPoint && (j == 0)) {
 					cost[i][j] = 0;
 				} else {
-					cost[i][j] = Math.rint(MapUtils.getDistance(ls.get(i), ls.get(j)));
+					cost[i][j] = Math.rint(costs[i][j]);
 				}
 			}
 			System.out.println(Arrays.toString(cost[i]));
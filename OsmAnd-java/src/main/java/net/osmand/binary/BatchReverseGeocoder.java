@@ -0,0 +1,228 @@
+package net.osmand.binary;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.data.LatLon;
+import net.osmand.data.Street;
+import net.osmand.router.RoutingContext;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reverse geocoding of many points (e.g. gps fixes) with state shared across them. Points of batch are processed
+ * in order of routing tiles with one {@link RoutingContext}, so tiles are loaded once for all points nearby.
+ * Results are memoized by cells of {@link #cacheZoom} (all points of cell get results found for the first point
+ * with distances to themselves), streets found by name are memoized by file and coarse tile and buildings
+ * of a street are read only once.
+ * <p>
+ * Not thread safe, each thread should use its own instance with its own context and readers.
+ */
+public class BatchReverseGeocoder extends GeocodingUtilities {
+
+	private static final Log log = PlatformUtil.getLog(BatchReverseGeocoder.class);
+
+	// 22 zoom cell is ~10 m at equator
+	public static final int DEFAULT_CACHE_ZOOM = 22;
+	public static final int DEFAULT_CACHE_SIZE = 100000;
+	// 10 zoom tile is ~40 km at equator, similar to radius of streets search
+	private static final int STREETS_CACHE_ZOOM = 10;
+	private static final int STREETS_CACHE_SIZE = 10000;
+
+	private final RoutingContext ctx;
+	private final List<BinaryMapIndexReader> readers;
+	public boolean allowEmptyNames = false;
+	public int cacheZoom = DEFAULT_CACHE_ZOOM;
+
+	private final Map<Long, List<GeocodingResult>> resultsCache;
+	private final Map<BinaryMapIndexReader, Map<String, List<Street>>> streetsCache =
+			new IdentityHashMap<BinaryMapIndexReader, Map<String, List<Street>>>();
+	private final Set<Street> preloadedStreets = Collections.newSetFromMap(new IdentityHashMap<Street, Boolean>());
+
+	// stats
+	public int points;
+	public int cacheHits;
+	public int streetSearches;
+	public int streetCacheHits;
+	public int buildingLoads;
+	public long routeSearchTime;
+	public long addressTime;
+	public long totalTime;
+
+	public BatchReverseGeocoder(RoutingContext ctx, List<BinaryMapIndexReader> readers) {
+		this(ctx, readers, DEFAULT_CACHE_SIZE);
+	}
+
+	public BatchReverseGeocoder(RoutingContext ctx, List<BinaryMapIndexReader> readers, final int cacheSize) {
+		this.ctx = ctx;
+		this.readers = readers;
+		resultsCache = new LinkedHashMap<Long, List<GeocodingResult>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, List<GeocodingResult>> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * @return results for every point in the same order as points (each list is sorted by distance)
+	 */
+	public List<List<GeocodingResult>> reverseGeocode(List<LatLon> pointsList) throws IOException {
+		long nanoTime = System.nanoTime();
+		int sz = pointsList.size();
+		final long[] tiles = new long[sz];
+		final long[] cells = new long[sz];
+		Integer[] order = new Integer[sz];
+		int tileShift = 31 - ctx.config.ZOOM_TO_LOAD_TILES;
+		for (int i = 0; i < sz; i++) {
+			LatLon l = pointsList.get(i);
+			int x31 = MapUtils.get31TileNumberX(l.getLongitude());
+			int y31 = MapUtils.get31TileNumberY(l.getLatitude());
+			tiles[i] = (((long) (x31 >> tileShift)) << 31) + (y31 >> tileShift);
+			cells[i] = getCellId(x31, y31);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				int c = Long.compare(tiles[o1], tiles[o2]);
+				return c != 0 ? c : Long.compare(cells[o1], cells[o2]);
+			}
+		});
+		List<GeocodingResult>[] res = createResultsArray(sz);
+		for (int i : order) {
+			res[i] = reverseGeocode(pointsList.get(i), cells[i]);
+		}
+		totalTime += System.nanoTime() - nanoTime;
+		log.info(getStats());
+		return Arrays.asList(res);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<GeocodingResult>[] createResultsArray(int sz) {
+		return new List[sz];
+	}
+
+	public List<GeocodingResult> reverseGeocode(LatLon point) throws IOException {
+		long nanoTime = System.nanoTime();
+		List<GeocodingResult> res = reverseGeocode(point, getCellId(MapUtils.get31TileNumberX(point.getLongitude()),
+				MapUtils.get31TileNumberY(point.getLatitude())));
+		totalTime += System.nanoTime() - nanoTime;
+		return res;
+	}
+
+	private List<GeocodingResult> reverseGeocode(LatLon point, long cellId) throws IOException {
+		points++;
+		List<GeocodingResult> cached = resultsCache.get(cellId);
+		if (cached != null) {
+			cacheHits++;
+			List<GeocodingResult> res = new ArrayList<GeocodingResult>(cached.size());
+			for (GeocodingResult c : cached) {
+				GeocodingResult r = new GeocodingResult(c);
+				r.buildingInterpolation = c.buildingInterpolation;
+				r.searchPoint = point;
+				res.add(r);
+			}
+			Collections.sort(res, DISTANCE_COMPARATOR);
+			return res;
+		}
+		long nanoTime = System.nanoTime();
+		List<GeocodingResult> roads = reverseGeocodingSearch(ctx, point.getLatitude(), point.getLongitude(),
+				allowEmptyNames);
+		long routeTime = System.nanoTime();
+		List<GeocodingResult> res = sortGeocodingResults(readers, roads, null);
+		routeSearchTime += routeTime - nanoTime;
+		addressTime += System.nanoTime() - routeTime;
+		resultsCache.put(cellId, new ArrayList<GeocodingResult>(res));
+		return res;
+	}
+
+	private long getCellId(int x31, int y31) {
+		int shift = 31 - cacheZoom;
+		return (((long) (x31 >> shift)) << 31) + (y31 >> shift);
+	}
+
+	@Override
+	protected List<Street> searchStreetsByName(BinaryMapIndexReader reader, GeocodingResult road, String mainWord,
+			ResultMatcher<GeocodingResult> result) throws IOException {
+		int shift = 31 - STREETS_CACHE_ZOOM;
+		int tx = MapUtils.get31TileNumberX(road.searchPoint.getLongitude()) >> shift;
+		int ty = MapUtils.get31TileNumberY(road.searchPoint.getLatitude()) >> shift;
+		Map<String, List<Street>> readerCache = streetsCache.get(reader);
+		if (readerCache == null) {
+			readerCache = new LinkedHashMap<String, List<Street>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, List<Street>> eldest) {
+					if (size() > STREETS_CACHE_SIZE) {
+						preloadedStreets.removeAll(eldest.getValue());
+						return true;
+					}
+					return false;
+				}
+			};
+			streetsCache.put(reader, readerCache);
+		}
+		String key = tx + " " + ty + " " + mainWord;
+		List<Street> streets = readerCache.get(key);
+		if (streets != null) {
+			streetCacheHits++;
+			return streets;
+		}
+		streetSearches++;
+		// search around tile, so streets near every point of tile are found (distance is checked by caller)
+		LatLon center = new LatLon(MapUtils.getLatitudeFromTile(STREETS_CACHE_ZOOM, ty + 0.5),
+				MapUtils.getLongitudeFromTile(STREETS_CACHE_ZOOM, tx + 0.5));
+		LatLon corner = new LatLon(MapUtils.getLatitudeFromTile(STREETS_CACHE_ZOOM, ty),
+				MapUtils.getLongitudeFromTile(STREETS_CACHE_ZOOM, tx));
+		GeocodingResult tileRoad = new GeocodingResult();
+		tileRoad.connectionPoint = center;
+		tileRoad.searchPoint = center;
+		int radius = (int) (MapUtils.getDistance(center, corner) + STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS);
+		streets = searchStreetsByName(reader, tileRoad, mainWord, DISTANCE_STREET_NAME_PROXIMITY_BY_NAME + radius,
+				result);
+		readerCache.put(key, streets);
+		return streets;
+	}
+
+	@Override
+	protected void preloadBuildings(BinaryMapIndexReader reader, Street street) throws IOException {
+		// buildings are added to street by every read
+		if (preloadedStreets.add(street)) {
+			buildingLoads++;
+			super.preloadBuildings(reader, street);
+		}
+	}
+
+	public void clearCache() {
+		resultsCache.clear();
+		streetsCache.clear();
+		preloadedStreets.clear();
+	}
+
+	public double getThroughput() {
+		return totalTime == 0 ? 0 : points / (totalTime / 1e9);
+	}
+
+	public String getStats() {
+		return String.format("Reverse geocoding: %d points, %.0f points/s, %d cached (%.1f%%), route search %d ms, "
+				+ "address %d ms, streets searches %d (cached %d), buildings loaded %d",
+				points, getThroughput(), cacheHits, points == 0 ? 0 : cacheHits * 100.0 / points,
+				routeSearchTime / (1000 * 1000), addressTime / (1000 * 1000), streetSearches, streetCacheHits,
+				buildingLoads);
+	}
+}
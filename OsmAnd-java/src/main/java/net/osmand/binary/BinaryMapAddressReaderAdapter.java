@@ -13,6 +13,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import net.osmand.CollatorStringMatcher;
+import net.osmand.OsmAndCollator;
 import net.osmand.PlatformUtil;
 import net.osmand.StringMatcher;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
@@ -600,18 +601,66 @@ public class BinaryMapAddressReaderAdapter {
 		}
 	}
 
-	public void searchAddressDataByName(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
-		TIntArrayList loffsets = new TIntArrayList();
-		CollatorStringMatcher stringMatcher = new CollatorStringMatcher(req.nameQuery, req.matcherMode);
+	private CityMatcher createCityPostcodeMatcher(StringMatcher stringMatcher, SearchRequest<MapObject> req) {
 		String postcode = Postcode.normalize(req.nameQuery, map.getCountryName());
-		final CityMatcher postcodeMatcher = new DefaultCityMatcher(new CollatorStringMatcher(postcode, req.matcherMode));
+		final CityMatcher postcodeMatcher = new DefaultCityMatcher(new CollatorStringMatcher(postcode, req.matcherMode,
+				req.normalizedNameKeys));
 		final CityMatcher cityMatcher = new DefaultCityMatcher(stringMatcher);
-		final CityMatcher cityPostcodeMatcher = new CityMatcher() {
+		return new CityMatcher() {
 			@Override
 			public boolean matches(City city) {
 				return city.isPostcode() ? postcodeMatcher.matches(city) : cityMatcher.matches(city);
 			}
 		};
+	}
+
+	private static boolean matchesStreet(StringMatcher stringMatcher, Street s) {
+		boolean matches = stringMatcher.matches(s.getName());
+		if (!matches) {
+			for (String n : s.getOtherNames()) {
+				matches = stringMatcher.matches(n);
+				if (matches) {
+					break;
+				}
+			}
+		}
+		return matches;
+	}
+
+	protected boolean refineAddressDataByName(NameIndexSearchCache<MapObject> cache, SearchRequest<MapObject> req) {
+		String country = map.getCountryName();
+		if (!Postcode.normalize(req.nameQuery, country).startsWith(Postcode.normalize(cache.getQuery(), country))) {
+			return false;
+		}
+		CollatorStringMatcher stringMatcher = new CollatorStringMatcher(req.nameQuery, req.matcherMode,
+				req.normalizedNameKeys);
+		CityMatcher cityPostcodeMatcher = createCityPostcodeMatcher(stringMatcher, req);
+		List<MapObject> found = new ArrayList<MapObject>();
+		for (MapObject o : cache.getObjects()) {
+			boolean matches = o instanceof Street ? matchesStreet(stringMatcher, (Street) o)
+					: cityPostcodeMatcher.matches((City) o);
+			if (matches) {
+				found.add(o);
+			}
+		}
+		LOG.info("Refined address search by name '" + req.nameQuery + "' in memory. Found " + found.size() + " of "
+				+ cache.getObjects().size());
+		cache.refined(req.nameQuery, req.matcherMode, found);
+		for (MapObject o : found) {
+			if (req.isCancelled()) {
+				break;
+			}
+			publishRawData(req, o);
+			req.publish(o);
+		}
+		return true;
+	}
+
+	public void searchAddressDataByName(AddressRegion reg, SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
+		TIntArrayList loffsets = new TIntArrayList();
+		CollatorStringMatcher stringMatcher = new CollatorStringMatcher(req.nameQuery, req.matcherMode,
+				req.normalizedNameKeys);
+		CityMatcher cityPostcodeMatcher = createCityPostcodeMatcher(stringMatcher, req);
 		long time = System.currentTimeMillis();
 		int indexOffset = 0;
 		while (true) {
@@ -626,11 +675,19 @@ public class BinaryMapAddressReaderAdapter {
 			case OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER:
 				int length = readInt();
 				indexOffset = codedIS.getTotalBytesRead();
+				SidecarNameIndex sidecar = map.getSidecarNameIndex(req);
+				if (sidecar != null) {
+					sidecar.searchAddress(map.addressIndexes.indexOf(reg), req.nameQuery, loffsets);
+					codedIS.skipRawBytes(length);
+					break;
+				}
 				int oldLimit = codedIS.pushLimit(length);
 				// here offsets are sorted by distance
 				TIntArrayList charsList = new TIntArrayList();
 				charsList.add(0);
-				map.readIndexedStringTable(stringMatcher.getCollator(), Collections.singletonList(req.nameQuery), "", Collections.singletonList(loffsets), charsList);
+				String query = req.normalizedNameKeys ? CollatorStringMatcher.normalizeKey(req.nameQuery) : req.nameQuery;
+				map.readIndexedStringTable(stringMatcher.getCollator(), req.normalizedNameKeys,
+						Collections.singletonList(query), "", Collections.singletonList(loffsets), charsList);
 				codedIS.popLimit(oldLimit);
 				break;
 			case OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER:
@@ -708,16 +765,10 @@ public class BinaryMapAddressReaderAdapter {
 										MapUtils.get31TileNumberY(l.getLatitude()) >> 7, obj.isPostcode() ? obj.getName() : null,
 										reg.attributeTagsTable);
 								publishRawData(req, s);
-								boolean matches = stringMatcher.matches(s.getName());
-								if (!matches) {
-									for (String n : s.getOtherNames()) {
-										matches = stringMatcher.matches(n);
-										if (matches) {
-											break;
-										}
+								if (matchesStreet(stringMatcher, s)) {
+									if (req.nameIndexCache != null) {
+										req.nameIndexCache.add(s);
 									}
-								}
-								if (matches) {
 									req.publish(s);
 								}
 								codedIS.popLimit(old);
@@ -737,6 +788,9 @@ public class BinaryMapAddressReaderAdapter {
 							City obj = readCityHeader(req, cityPostcodeMatcher, list.get(j), reg.attributeTagsTable);
 							publishRawData(req, obj);
 							if (obj != null && !published.contains(offset)) {
+								if (req.nameIndexCache != null) {
+									req.nameIndexCache.add(obj);
+								}
 								req.publish(obj);
 								published.add(offset);
 							}
@@ -755,6 +809,77 @@ public class BinaryMapAddressReaderAdapter {
 
 	}
 
+	protected void collectAddressNames(SidecarNameIndex.SectionBuilder builder) throws IOException {
+		TIntArrayList loffsets = new TIntArrayList();
+		int indexOffset = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER:
+				int length = readInt();
+				indexOffset = codedIS.getTotalBytesRead();
+				int oldLimit = codedIS.pushLimit(length);
+				// empty query matches all keys
+				TIntArrayList charsList = new TIntArrayList();
+				charsList.add(0);
+				map.readIndexedStringTable(OsmAndCollator.primaryCollator(), true, Collections.singletonList(""), "",
+						Collections.singletonList(loffsets), charsList);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER:
+				loffsets.sort();
+				for (int j = 0; j < loffsets.size(); j++) {
+					int shift = loffsets.get(j);
+					if (j > 0 && shift == loffsets.get(j - 1)) {
+						continue;
+					}
+					codedIS.seek(indexOffset + shift);
+					int len = codedIS.readRawVarint32();
+					int oldLim = codedIS.pushLimit(len);
+					int stag = 0;
+					do {
+						int st = codedIS.readTag();
+						stag = WireFormat.getTagFieldNumber(st);
+						if (stag == AddressNameIndexData.ATOM_FIELD_NUMBER) {
+							int slen = codedIS.readRawVarint32();
+							int soldLim = codedIS.pushLimit(slen);
+							collectAddressNames(builder, shift);
+							codedIS.popLimit(soldLim);
+						} else if (stag != 0) {
+							skipUnknownField(st);
+						}
+					} while (stag != 0);
+					codedIS.popLimit(oldLim);
+				}
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void collectAddressNames(SidecarNameIndex.SectionBuilder builder, int shift) throws IOException {
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case AddressNameIndexDataAtom.NAMEEN_FIELD_NUMBER:
+			case AddressNameIndexDataAtom.NAME_FIELD_NUMBER:
+				builder.addName(codedIS.readString(), shift);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	private void readAddressNameData(SearchRequest<MapObject> req, TIntArrayList[] refs,
 			TIntArrayList[] refsContainer, int fp) throws IOException {
 		TIntArrayList toAdd = null;
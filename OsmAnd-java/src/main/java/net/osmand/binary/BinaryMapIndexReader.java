@@ -102,6 +102,7 @@ public class BinaryMapIndexReader {
 	
 	
 	private final RandomAccessFile raf;
+	private final MappedObfFile mappedFile;
 	protected final File file;
 	/*private*/ int version;
 	/*private*/ long dateCreated;
@@ -114,6 +115,7 @@ public class BinaryMapIndexReader {
 	/*private*/ List<RouteRegion> routingIndexes = new ArrayList<RouteRegion>();
 	/*private*/ List<BinaryIndexPart> indexes = new ArrayList<BinaryIndexPart>();
 	TLongObjectHashMap<IncompleteTransportRoute> incompleteTransportRoutes = null;
+	private SidecarNameIndex sidecarNameIndex;
 	
 	protected CodedInputStream codedIS;
 
@@ -126,21 +128,30 @@ public class BinaryMapIndexReader {
 
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file) throws IOException {
-		this.raf = raf;
-		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
-		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
-		transportAdapter = new BinaryMapTransportReaderAdapter(this);
-		addressAdapter = new BinaryMapAddressReaderAdapter(this);
-		poiAdapter = new BinaryMapPoiReaderAdapter(this);
-		routeAdapter = new BinaryMapRouteReaderAdapter(this);
-		init();
+		this(raf, file, true);
 	}
 
 	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init) throws IOException {
+		this(raf, file, init, false);
+	}
+
+	/**
+	 * @param memoryMapped decode directly from memory mapped file instead of reading file by small buffers,
+	 *                     mapping is shared with all readers created with this reader as referenceToSameFile
+	 */
+	public BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, boolean memoryMapped) throws IOException {
+		this(raf, file, init, memoryMapped ? MappedObfFile.map(raf) : null);
+	}
+
+	BinaryMapIndexReader(final RandomAccessFile raf, File file, boolean init, MappedObfFile mappedFile) throws IOException {
 		this.raf = raf;
 		this.file = file;
-		codedIS = CodedInputStream.newInstance(raf);
+		this.mappedFile = mappedFile;
+		if (mappedFile != null) {
+			codedIS = mappedFile.newCodedInputStream();
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		transportAdapter = new BinaryMapTransportReaderAdapter(this);
 		addressAdapter = new BinaryMapAddressReaderAdapter(this);
@@ -154,7 +165,12 @@ public class BinaryMapIndexReader {
 	public BinaryMapIndexReader(final RandomAccessFile raf, BinaryMapIndexReader referenceToSameFile) throws IOException {
 		this.raf = raf;
 		this.file = referenceToSameFile.file;
-		codedIS = CodedInputStream.newInstance(raf);
+		mappedFile = referenceToSameFile.mappedFile;
+		if (mappedFile != null) {
+			codedIS = mappedFile.newCodedInputStream();
+		} else {
+			codedIS = CodedInputStream.newInstance(raf);
+		}
 		codedIS.setSizeLimit(Integer.MAX_VALUE); // 2048 MB
 		version = referenceToSameFile.version;
 		dateCreated = referenceToSameFile.dateCreated;
@@ -169,6 +185,7 @@ public class BinaryMapIndexReader {
 		routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
 		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
 		basemap = referenceToSameFile.basemap;
+		sidecarNameIndex = referenceToSameFile.sidecarNameIndex;
 		calculateCenterPointForRegions();
 	}
 
@@ -394,10 +411,56 @@ public class BinaryMapIndexReader {
 		return raf;
 	}
 
+	public boolean isMemoryMapped() {
+		return mappedFile != null;
+	}
+
 	public File getFile() {
 		return file;
 	}
 
+	public SidecarNameIndex getSidecarNameIndex() {
+		return sidecarNameIndex;
+	}
+
+	/**
+	 * Name index is used instead of obf name indexes by search requests with normalized name keys
+	 */
+	public void setSidecarNameIndex(SidecarNameIndex sidecarNameIndex) {
+		this.sidecarNameIndex = sidecarNameIndex;
+	}
+
+	/**
+	 * Attaches sidecar name index stored next to the file if it was built for this file
+	 * @return true if index is loaded
+	 */
+	public boolean loadSidecarNameIndex() {
+		sidecarNameIndex = SidecarNameIndex.loadFor(file);
+		return sidecarNameIndex != null;
+	}
+
+	SidecarNameIndex getSidecarNameIndex(SearchRequest<?> req) {
+		return req.normalizedNameKeys ? sidecarNameIndex : null;
+	}
+
+	void collectPoiNames(PoiRegion poiIndex, SidecarNameIndex.SectionBuilder builder) throws IOException {
+		poiAdapter.initCategories(poiIndex);
+		codedIS.seek(poiIndex.filePointer);
+		int old = codedIS.pushLimit(poiIndex.length);
+		poiAdapter.collectPoiNames(poiIndex, builder);
+		codedIS.popLimit(old);
+	}
+
+	void collectAddressNames(AddressRegion reg, SidecarNameIndex.SectionBuilder builder) throws IOException {
+		if (reg.indexNameOffset != -1) {
+			codedIS.seek(reg.indexNameOffset);
+			int len = readInt();
+			int old = codedIS.pushLimit(len);
+			addressAdapter.collectAddressNames(builder);
+			codedIS.popLimit(old);
+		}
+	}
+
 	public String getCountryName() {
 		List<String> rg = getRegionNames();
 		if(rg.size() > 0) {
@@ -564,6 +627,15 @@ public class BinaryMapIndexReader {
 		return false;
 	}
 	
+	/**
+	 * Reads string table which is initialized lazily by search otherwise
+	 */
+	public void initTransportIndex(TransportIndex index) throws IOException {
+		if (index.stringTable != null) {
+			transportAdapter.initializeStringTable(index, null);
+		}
+	}
+
 	public List<TransportStop> searchTransportIndex(TransportIndex index, SearchRequest<TransportStop> req) throws IOException {
 		if (index.stopsFileLength == 0 || index.right < req.left || index.left > req.right || index.top > req.bottom
 				|| index.bottom < req.top) {
@@ -869,6 +941,43 @@ public class BinaryMapIndexReader {
 	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req) throws IOException {
 		return searchMapIndex(req, null);
 	}
+
+	/**
+	 * Reads encoding rules and trees of all levels which are initialized lazily by search otherwise
+	 * (structure shared by readers of {@link BinaryMapReaderPool} is initialized before it's used by cursors)
+	 */
+	public void initMapIndex(MapIndex mapIndex) throws IOException {
+		initMapEncodingRules(mapIndex);
+		for (MapRoot root : mapIndex.getRoots()) {
+			initMapTrees(root);
+		}
+	}
+
+	private void initMapEncodingRules(MapIndex mapIndex) throws IOException {
+		// lazy initializing rules
+		if (mapIndex.encodingRules.isEmpty()) {
+			codedIS.seek(mapIndex.filePointer);
+			int oldLimit = codedIS.pushLimit(mapIndex.length);
+			readMapIndex(mapIndex, true);
+			codedIS.popLimit(oldLimit);
+		}
+	}
+
+	private List<MapTree> initMapTrees(MapRoot root) throws IOException {
+		// lazy initializing trees, list is assigned to root only when all trees are read
+		List<MapTree> trees = root.trees;
+		if (trees == null) {
+			MapRoot level = new MapRoot();
+			level.trees = new ArrayList<MapTree>();
+			codedIS.seek(root.filePointer);
+			int oldLimit = codedIS.pushLimit(root.length);
+			readMapLevel(level);
+			codedIS.popLimit(oldLimit);
+			trees = level.trees;
+			root.trees = trees;
+		}
+		return trees;
+	}
 	
 	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex) throws IOException {
 		req.numberOfVisitedObjects = 0;
@@ -880,31 +989,14 @@ public class BinaryMapIndexReader {
 			if(filterMapIndex != null && mapIndex != filterMapIndex) {
 				continue;
 			}
-			// lazy initializing rules
-			if (mapIndex.encodingRules.isEmpty()) {
-				codedIS.seek(mapIndex.filePointer);
-				int oldLimit = codedIS.pushLimit(mapIndex.length);
-				readMapIndex(mapIndex, true);
-				codedIS.popLimit(oldLimit);
-			}
+			initMapEncodingRules(mapIndex);
 			for (MapRoot index : mapIndex.getRoots()) {
 				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
 					if (index.right < req.left || index.left > req.right || index.top > req.bottom || index.bottom < req.top) {
 						continue;
 					}
 
-
-
-					// lazy initializing trees
-					if (index.trees == null) {
-						index.trees = new ArrayList<MapTree>();
-						codedIS.seek(index.filePointer);
-						int oldLimit = codedIS.pushLimit(index.length);
-						readMapLevel(index);
-						codedIS.popLimit(oldLimit);
-					}
-
-					for (MapTree tree : index.trees) {
+					for (MapTree tree : initMapTrees(index)) {
 						if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
 							continue;
 						}
@@ -1299,6 +1391,14 @@ public class BinaryMapIndexReader {
 	}
 
 	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
+		NameIndexSearchCache<MapObject> cache = req.nameIndexCache;
+		if (cache != null) {
+			if (cache.canRefine(req, req.nameQuery, req.matcherMode, typeFilter)
+					&& addressAdapter.refineAddressDataByName(cache, req)) {
+				return req.getSearchResults();
+			}
+			cache.startRead(req, req.nameQuery, req.matcherMode, typeFilter);
+		}
 		for (AddressRegion reg : addressIndexes) {
 			if (reg.indexNameOffset != -1) {
 				codedIS.seek(reg.indexNameOffset);
@@ -1308,6 +1408,9 @@ public class BinaryMapIndexReader {
 				codedIS.popLimit(old);
 			}
 		}
+		if (cache != null) {
+			cache.finishRead(req);
+		}
 		return req.getSearchResults();
 	}
 
@@ -1329,6 +1432,15 @@ public class BinaryMapIndexReader {
 		if (req.nameQuery == null || req.nameQuery.length() == 0) {
 			throw new IllegalArgumentException();
 		}
+		NameIndexSearchCache<Amenity> cache = req.nameIndexCache;
+		if (cache != null) {
+			String query = BinaryMapPoiReaderAdapter.normalizeSearchPoiByNameQuery(req.nameQuery);
+			if (cache.canRefine(req, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE, null)) {
+				poiAdapter.refinePoiByName(cache, req);
+				return req.getSearchResults();
+			}
+			cache.startRead(req, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE, null);
+		}
 		for (PoiRegion poiIndex : poiIndexes) {
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
@@ -1336,6 +1448,9 @@ public class BinaryMapIndexReader {
 			poiAdapter.searchPoiByName(poiIndex, req);
 			codedIS.popLimit(old);
 		}
+		if (cache != null) {
+			cache.finishRead(req);
+		}
 		return req.getSearchResults();
 	}
 
@@ -1705,6 +1820,8 @@ public class BinaryMapIndexReader {
 
 		String nameQuery = null;
 		StringMatcherMode matcherMode = StringMatcherMode.CHECK_STARTS_FROM_SPACE;
+		boolean normalizedNameKeys = false;
+		NameIndexSearchCache<T> nameIndexCache = null;
 		SearchFilter searchFilter = null;
 
 		SearchPoiTypeFilter poiTypeFilter = null;
@@ -1782,6 +1899,30 @@ public class BinaryMapIndexReader {
 			this.interrupted = interrupted;
 		}
 
+		public boolean isNormalizedNameKeys() {
+			return normalizedNameKeys;
+		}
+
+		/**
+		 * Name query and names are folded once to keys (see {@link CollatorStringMatcher#normalizeKey(String)})
+		 * instead of collator comparisons for each substring
+		 */
+		public void setNormalizedNameKeys(boolean normalizedNameKeys) {
+			this.normalizedNameKeys = normalizedNameKeys;
+		}
+
+		public NameIndexSearchCache<T> getNameIndexCache() {
+			return nameIndexCache;
+		}
+
+		/**
+		 * Search by name refines objects found by previous query of the same file (if possible)
+		 * and stores found objects to the cache for the next one
+		 */
+		public void setNameIndexCache(NameIndexSearchCache<T> nameIndexCache) {
+			this.nameIndexCache = nameIndexCache;
+		}
+
 		public boolean limitExceeded() {
 			return limit != -1 && searchResults.size() > limit;
 		}
@@ -2403,6 +2544,15 @@ public class BinaryMapIndexReader {
 	}
 
 	void readIndexedStringTable(Collator instance, List<String> queries, String prefix, List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
+		readIndexedStringTable(instance, false, queries, prefix, listOffsets, matchedCharacters);
+	}
+
+	/**
+	 * @param normalizedKeys queries are already folded with {@link CollatorStringMatcher#normalizeKey(String)},
+	 * table keys are folded once and matched without collator
+	 */
+	void readIndexedStringTable(Collator instance, boolean normalizedKeys, List<String> queries, String prefix,
+			List<TIntArrayList> listOffsets, TIntArrayList matchedCharacters) throws IOException {
 		String key = null;
 		boolean[] matched = new boolean[matchedCharacters.size()];
 		boolean shouldWeReadSubtable = false;
@@ -2418,6 +2568,7 @@ public class BinaryMapIndexReader {
 					key = prefix + key;
 				}
 				shouldWeReadSubtable = false;
+				String normalizedKey = normalizedKeys ? CollatorStringMatcher.normalizeKey(key) : null;
 				for (int i = 0; i < queries.size(); i++) {
 					int charMatches = matchedCharacters.get(i);
 					String query = queries.get(i);
@@ -2427,7 +2578,8 @@ public class BinaryMapIndexReader {
 					}
 					
 					// check query is part of key (the best matching)
-					if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+					if (normalizedKeys ? normalizedKey.startsWith(query)
+							: CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
 						if (query.length() >= charMatches) {
 							if (query.length() > charMatches) {
 								matchedCharacters.set(i, query.length());
@@ -2436,7 +2588,8 @@ public class BinaryMapIndexReader {
 							matched[i] = true;
 						}
 						// check key is part of query
-					} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+					} else if (normalizedKeys ? query.startsWith(normalizedKey)
+							: CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
 						if (key.length() >= charMatches) {
 							if (key.length() > charMatches) {
 								matchedCharacters.set(i, key.length());
@@ -2467,7 +2620,7 @@ public class BinaryMapIndexReader {
 							subqueries.set(i, null);
 						}
 					}
-					readIndexedStringTable(instance, subqueries, key, listOffsets, matchedCharacters);
+					readIndexedStringTable(instance, normalizedKeys, subqueries, key, listOffsets, matchedCharacters);
 				} else {
 					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
 				}
@@ -285,15 +285,18 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	public void initCategories(PoiRegion region) throws IOException {
-		if (region.categories.isEmpty()) {
-			codedIS.seek(region.filePointer);
-			int oldLimit = codedIS.pushLimit(region.length);
-			readPoiIndex(region, true);
-			codedIS.popLimit(oldLimit);
+		// region could be shared between readers of the same file (see BinaryMapReaderPool)
+		synchronized (region) {
+			if (region.categories.isEmpty()) {
+				codedIS.seek(region.filePointer);
+				int oldLimit = codedIS.pushLimit(region.length);
+				readPoiIndex(region, true);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
-	private String normalizeSearchPoiByNameQuery(String query) {
+	static String normalizeSearchPoiByNameQuery(String query) {
 		return query.replace("\"", "").toLowerCase();
 	}
 
@@ -301,7 +304,7 @@ public class BinaryMapPoiReaderAdapter {
 		TIntLongHashMap offsets = new TIntLongHashMap();
 		String query = normalizeSearchPoiByNameQuery(req.nameQuery);
 		CollatorStringMatcher matcher = new CollatorStringMatcher(query,
-				StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE, req.normalizedNameKeys);
 		long time = System.currentTimeMillis();
 		int indexOffset = codedIS.getTotalBytesRead();
 		while (true) {
@@ -315,6 +318,12 @@ public class BinaryMapPoiReaderAdapter {
 				return;
 			case OsmandOdb.OsmAndPoiIndex.NAMEINDEX_FIELD_NUMBER:
 				int length = readInt();
+				SidecarNameIndex sidecar = map.getSidecarNameIndex(req);
+				if (sidecar != null) {
+					sidecar.searchPoi(map.poiIndexes.indexOf(region), query, req, offsets);
+					codedIS.skipRawBytes(length);
+					break;
+				}
 				int oldLimit = codedIS.pushLimit(length);
 				// here offsets are sorted by distance
 				offsets = readPoiNameIndex(matcher.getCollator(), query, req);
@@ -388,13 +397,18 @@ public class BinaryMapPoiReaderAdapter {
 				int oldLimit = codedIS.pushLimit(length);
 				offset = codedIS.getTotalBytesRead();
 				List<String> queries = Algorithms.splitByWordsLowercase(query);
+				if (req.normalizedNameKeys) {
+					for (int i = 0; i < queries.size(); i++) {
+						queries.set(i, CollatorStringMatcher.normalizeKey(queries.get(i)));
+					}
+				}
 				TIntArrayList charsList = new TIntArrayList(queries.size());
 				listOffsets = new ArrayList<TIntArrayList>(queries.size());
 				while (listOffsets.size() < queries.size()) {
 					charsList.add(0);
 					listOffsets.add(new TIntArrayList());
 				}
-				map.readIndexedStringTable(instance, queries, "", listOffsets, charsList);
+				map.readIndexedStringTable(instance, req.normalizedNameKeys, queries, "", listOffsets, charsList);
 				codedIS.popLimit(oldLimit);
 				break;
 			}
@@ -495,6 +509,89 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	protected void collectPoiNames(PoiRegion region, SidecarNameIndex.SectionBuilder builder) throws IOException {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, Integer.MAX_VALUE, 0,
+				Integer.MAX_VALUE, -1, null, null);
+		int indexOffset = codedIS.getTotalBytesRead();
+		TIntLongHashMap offsetsMap = new TIntLongHashMap();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiIndex.BOXES_FIELD_NUMBER:
+				int length = readInt();
+				int oldLimit = codedIS.pushLimit(length);
+				readBoxField(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, 0, 0, 0, offsetsMap, null, req, region);
+				codedIS.popLimit(oldLimit);
+				break;
+			case OsmandOdb.OsmAndPoiIndex.POIDATA_FIELD_NUMBER:
+				int[] offsets = offsetsMap.keys();
+				Arrays.sort(offsets);
+				for (int j = 0; j < offsets.length; j++) {
+					codedIS.seek(offsets[j] + indexOffset);
+					int len = readInt();
+					int oldLim = codedIS.pushLimit(len);
+					collectPoiNames(offsets[j], builder, req, region);
+					codedIS.popLimit(oldLim);
+				}
+				codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+				return;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	private void collectPoiNames(int shift, SidecarNameIndex.SectionBuilder builder, SearchRequest<Amenity> req,
+			PoiRegion region) throws IOException {
+		int x = 0;
+		int y = 0;
+		int zoom = 0;
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return;
+			case OsmandOdb.OsmAndPoiBoxData.X_FIELD_NUMBER:
+				x = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.ZOOM_FIELD_NUMBER:
+				zoom = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.Y_FIELD_NUMBER:
+				y = codedIS.readUInt32();
+				break;
+			case OsmandOdb.OsmAndPoiBoxData.POIDATA_FIELD_NUMBER:
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				Amenity am = readPoiPoint(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, x, y, zoom, req, region, false);
+				codedIS.popLimit(oldLim);
+				if (am != null) {
+					int x31 = x << (31 - zoom);
+					int y31 = y << (31 - zoom);
+					builder.addName(am.getName(), shift, x31, y31);
+					builder.addName(am.getEnName(true), shift, x31, y31);
+					for (String s : am.getOtherNames()) {
+						builder.addName(s, shift, x31, y31);
+					}
+					for (String key : am.getAdditionalInfoKeys()) {
+						if (key.contains("_name") || key.equals("brand")) {
+							builder.addName(am.getAdditionalInfo(key), shift, x31, y31);
+						}
+					}
+				}
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
 	protected void searchPoiIndex(int left31, int right31, int top31, int bottom31,
 			SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		int indexOffset = codedIS.getTotalBytesRead();
@@ -563,6 +660,59 @@ public class BinaryMapPoiReaderAdapter {
 		}
 	}
 
+	private static boolean matchesName(CollatorStringMatcher matcher, String name) {
+		// normalized keys are already lower case
+		return matcher.matches(matcher.isNormalizedKeys() ? name : name.toLowerCase());
+	}
+
+	private static boolean matchesName(CollatorStringMatcher matcher, Amenity am) {
+		boolean matches = matchesName(matcher, am.getName()) ||
+				matchesName(matcher, am.getEnName(true));
+		if (!matches) {
+			for (String s : am.getOtherNames()) {
+				matches = matchesName(matcher, s);
+				if (matches) {
+					break;
+				}
+			}
+			if (!matches) {
+				for (String key : am.getAdditionalInfoKeys()) {
+					if(!key.contains("_name") && 
+						!key.equals("brand")) {
+						continue;
+					}
+					matches = matcher.matches(am.getAdditionalInfo(key));
+					if (matches) {
+						break;
+					}
+				}
+			}
+		}
+		return matches;
+	}
+
+	protected void refinePoiByName(NameIndexSearchCache<Amenity> cache, SearchRequest<Amenity> req) {
+		String query = normalizeSearchPoiByNameQuery(req.nameQuery);
+		CollatorStringMatcher matcher = new CollatorStringMatcher(query,
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE, req.normalizedNameKeys);
+		List<Amenity> found = new ArrayList<Amenity>();
+		for (Amenity am : cache.getObjects()) {
+			if (matchesName(matcher, am)) {
+				found.add(am);
+			}
+		}
+		LOG.info("Refined poi search by name '" + query + "' in memory. Found " + found.size() + " of "
+				+ cache.getObjects().size());
+		cache.refined(query, StringMatcherMode.CHECK_STARTS_FROM_SPACE, found);
+		for (Amenity am : found) {
+			if (req.isCancelled() || req.limitExceeded()) {
+				return;
+			}
+			req.collectRawData(am);
+			req.publish(am);
+		}
+	}
+
 	private void readPoiData(CollatorStringMatcher matcher, SearchRequest<Amenity> req, PoiRegion region) throws IOException {
 		int x = 0;
 		int y = 0;
@@ -590,33 +740,12 @@ public class BinaryMapPoiReaderAdapter {
 				int oldLim = codedIS.pushLimit(len);
 				Amenity am = readPoiPoint(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, x, y, zoom, req, region, false);
 				codedIS.popLimit(oldLim);
-				if (am != null) {
-					boolean matches = matcher.matches(am.getName().toLowerCase()) ||
-							matcher.matches(am.getEnName(true).toLowerCase());
-					if (!matches) {
-						for (String s : am.getOtherNames()) {
-							matches = matcher.matches(s.toLowerCase());
-							if (matches) {
-								break;
-							}
-						}
-						if (!matches) {
-							for (String key : am.getAdditionalInfoKeys()) {
-								if(!key.contains("_name") && 
-									!key.equals("brand")) {
-									continue;
-								}
-								matches = matcher.matches(am.getAdditionalInfo(key));
-								if (matches) {
-									break;
-								}
-							}
-						}
-					}
-					if (matches) {
-						req.collectRawData(am);
-						req.publish(am);
+				if (am != null && matchesName(matcher, am)) {
+					if (req.nameIndexCache != null) {
+						req.nameIndexCache.add(am);
 					}
+					req.collectRawData(am);
+					req.publish(am);
 				}
 				break;
 			default:
@@ -0,0 +1,168 @@
+package net.osmand.binary;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
+
+import org.apache.commons.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pool of readers over the same obf file for concurrent requests.
+ * <p>
+ * File structure ({@link BinaryMapIndexReader.MapIndex}, {@link RouteRegion}, {@link PoiRegion},
+ * {@link BinaryMapAddressReaderAdapter.AddressRegion}, {@link BinaryMapTransportReaderAdapter.TransportIndex})
+ * with decoding rules is parsed once by the shared reader, every acquired reader is only a cursor
+ * (own {@link com.google.protobuf.CodedInputStream}) over the shared structure.
+ * Acquired reader should be used by one thread and returned with {@link #release(BinaryMapIndexReader)}.
+ */
+public class BinaryMapReaderPool {
+
+	private static final Log log = PlatformUtil.getLog(BinaryMapReaderPool.class);
+	public static final int DEFAULT_MAX_IDLE_READERS = 8;
+
+	private final File file;
+	private final BinaryMapIndexReader sharedReader;
+	private final int maxIdleReaders;
+	private final List<BinaryMapIndexReader> idleReaders = new ArrayList<BinaryMapIndexReader>();
+	private int acquiredReaders;
+	private int createdReaders;
+	private boolean closed;
+
+	public BinaryMapReaderPool(File file, boolean memoryMapped) throws IOException {
+		this(new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file, true, memoryMapped),
+				DEFAULT_MAX_IDLE_READERS);
+	}
+
+	/**
+	 * @param sharedReader initialized reader which structure is shared, pool owns it and closes it in {@link #close()}
+	 */
+	public BinaryMapReaderPool(BinaryMapIndexReader sharedReader, int maxIdleReaders) throws IOException {
+		this.file = sharedReader.getFile();
+		this.sharedReader = sharedReader;
+		this.maxIdleReaders = maxIdleReaders;
+		initSharedStructure();
+	}
+
+	// lazy parts of structure are read once here, so cursors don't modify shared structure while others read it
+	private void initSharedStructure() throws IOException {
+		for (MapIndex mapIndex : sharedReader.getMapIndexes()) {
+			sharedReader.initMapIndex(mapIndex);
+		}
+		sharedReader.initCategories();
+		for (RouteRegion routeRegion : sharedReader.getRoutingIndexes()) {
+			sharedReader.initRouteRegion(routeRegion);
+		}
+		for (TransportIndex transportIndex : sharedReader.getTransportIndexes()) {
+			sharedReader.initTransportIndex(transportIndex);
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Reader to access file structure, it should not be used to read from file!
+	 */
+	public BinaryMapIndexReader getSharedReader() {
+		return sharedReader;
+	}
+
+	public BinaryMapIndexReader acquire() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				throw new IOException("Reader pool is closed " + file.getName());
+			}
+			acquiredReaders++;
+			if (!idleReaders.isEmpty()) {
+				return idleReaders.remove(idleReaders.size() - 1);
+			}
+			createdReaders++;
+		}
+		try {
+			return new BinaryMapIndexReader(new RandomAccessFile(file, "r"), sharedReader);
+		} catch (IOException e) {
+			synchronized (this) {
+				acquiredReaders--;
+				createdReaders--;
+			}
+			throw e;
+		}
+	}
+
+	public void release(BinaryMapIndexReader reader) {
+		synchronized (this) {
+			acquiredReaders--;
+			if (!closed && idleReaders.size() < maxIdleReaders) {
+				idleReaders.add(reader);
+				return;
+			}
+		}
+		closeReader(reader);
+	}
+
+	public <T> T execute(ReaderTask<T> task) throws IOException {
+		BinaryMapIndexReader reader = acquire();
+		try {
+			return task.run(reader);
+		} finally {
+			release(reader);
+		}
+	}
+
+	public synchronized int getAcquiredReaders() {
+		return acquiredReaders;
+	}
+
+	public synchronized int getIdleReaders() {
+		return idleReaders.size();
+	}
+
+	public synchronized int getCreatedReaders() {
+		return createdReaders;
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Closes idle readers and shared reader, acquired readers are closed when they are released.
+	 */
+	public void close() {
+		List<BinaryMapIndexReader> toClose;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			toClose = new ArrayList<BinaryMapIndexReader>(idleReaders);
+			idleReaders.clear();
+		}
+		for (BinaryMapIndexReader r : toClose) {
+			closeReader(r);
+		}
+		closeReader(sharedReader);
+	}
+
+	private void closeReader(BinaryMapIndexReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			log.error("Fail to close " + file.getName(), e);
+		}
+	}
+
+	public interface ReaderTask<T> {
+
+		T run(BinaryMapIndexReader reader) throws IOException;
+	}
+}
@@ -22,9 +22,11 @@ import org.apache.commons.logging.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -312,6 +314,8 @@ public class BinaryMapRouteReaderAdapter {
 		int destinationTypeRule = -1;
 		int destinationRefTypeRule = -1;
 		private RouteRegion referenceRouteRegion;
+		// interned sets of types, id is index of set (see RouteDataObject.getTypesId)
+		private final Map<TypesKey, Integer> typesIds = new HashMap<TypesKey, Integer>();
 
 		public String getPartName() {
 			return "Routing";
@@ -321,7 +325,7 @@ public class BinaryMapRouteReaderAdapter {
 			return OsmandOdb.OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER;
 		}
 		
-		public int searchRouteEncodingRule(String tag, String value) {
+		public synchronized int searchRouteEncodingRule(String tag, String value) {
 			if(decodingRules == null) {
 				decodingRules = new LinkedHashMap<String, Integer>();
 				for(int i = 1; i < routeEncodingRules.size(); i++) {
@@ -349,7 +353,7 @@ public class BinaryMapRouteReaderAdapter {
 			return routeEncodingRules.get(id);
 		}
 
-		public void initRouteEncodingRule(int id, String tags, String val) {
+		public synchronized void initRouteEncodingRule(int id, String tags, String val) {
 			decodingRules = null;
 			while (routeEncodingRules.size() <= id) {
 				routeEncodingRules.add(null);
@@ -410,6 +414,23 @@ public class BinaryMapRouteReaderAdapter {
 			return basesubregions;
 		}
 
+		/**
+		 * @return small id of types set, the same for equal sets (routers keep evaluated values by this id)
+		 */
+		public synchronized int getTypesId(int[] types) {
+			TypesKey key = new TypesKey(types);
+			Integer id = typesIds.get(key);
+			if (id == null) {
+				id = typesIds.size();
+				typesIds.put(new TypesKey(types.clone()), id);
+			}
+			return id;
+		}
+
+		public synchronized int getTypesIdsCount() {
+			return typesIds.size();
+		}
+
 		public double getLeftLongitude() {
 			double l = 180;
 			for(RouteSubregion s : subregions) {
@@ -539,7 +560,7 @@ public class BinaryMapRouteReaderAdapter {
 		}
 
 
-		public int findOrCreateRouteType(String tag, String value) {
+		public synchronized int findOrCreateRouteType(String tag, String value) {
 			int ruleId = searchRouteEncodingRule(tag, value);
 			if(ruleId == -1) {
 				ruleId = routeEncodingRules.size() ;
@@ -552,6 +573,26 @@ public class BinaryMapRouteReaderAdapter {
 	}
 	
 	// Used in C++
+	private static class TypesKey {
+		private final int[] types;
+		private final int hash;
+
+		TypesKey(int[] types) {
+			this.types = types;
+			this.hash = Arrays.hashCode(types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TypesKey && Arrays.equals(types, ((TypesKey) obj).types);
+		}
+	}
+
 	public static class RouteSubregion {
 		private final static int INT_SIZE = 4;
 		public final RouteRegion routeReg;
@@ -1033,11 +1074,14 @@ public class BinaryMapRouteReaderAdapter {
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException, InvalidProtocolBufferException {
-		if (routeReg.routeEncodingRules.isEmpty()) {
-			codedIS.seek(routeReg.filePointer);
-			int oldLimit = codedIS.pushLimit(routeReg.length);
-			readRouteIndex(routeReg);
-			codedIS.popLimit(oldLimit);
+		// region could be shared between readers of the same file (see BinaryMapReaderPool)
+		synchronized (routeReg) {
+			if (routeReg.routeEncodingRules.isEmpty()) {
+				codedIS.seek(routeReg.filePointer);
+				int oldLimit = codedIS.pushLimit(routeReg.length);
+				readRouteIndex(routeReg);
+				codedIS.popLimit(oldLimit);
+			}
 		}
 	}
 
@@ -1045,15 +1089,18 @@ public class BinaryMapRouteReaderAdapter {
 	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
-		if (rs.dataObjects == null) {
-			codedIS.seek(rs.filePointer + rs.shiftToData);
-			int limit = codedIS.readRawVarint32();
-			int oldLimit = codedIS.pushLimit(limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
-			codedIS.popLimit(oldLimit);
+		List<RouteDataObject> res;
+		synchronized (rs) {
+			if (rs.dataObjects == null) {
+				codedIS.seek(rs.filePointer + rs.shiftToData);
+				int limit = codedIS.readRawVarint32();
+				int oldLimit = codedIS.pushLimit(limit);
+				readRouteTreeData(rs, idMap, restrictionMap);
+				codedIS.popLimit(oldLimit);
+			}
+			res = rs.dataObjects;
+			rs.dataObjects = null;
 		}
-		List<RouteDataObject> res = rs.dataObjects;
-		rs.dataObjects = null;
 		return res;
 	}
 	
@@ -1069,20 +1116,24 @@ public class BinaryMapRouteReaderAdapter {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<RestrictionInfo> restrictionMap = new TLongObjectHashMap<RestrictionInfo>();
 		for (RouteSubregion rs : toLoad) {
-			if (rs.dataObjects == null) {
-				codedIS.seek(rs.filePointer + rs.shiftToData);
-				int limit = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
-				codedIS.popLimit(oldLimit);
+			List<RouteDataObject> dataObjects;
+			synchronized (rs) {
+				if (rs.dataObjects == null) {
+					codedIS.seek(rs.filePointer + rs.shiftToData);
+					int limit = codedIS.readRawVarint32();
+					int oldLimit = codedIS.pushLimit(limit);
+					readRouteTreeData(rs, idMap, restrictionMap);
+					codedIS.popLimit(oldLimit);
+				}
+				dataObjects = rs.dataObjects;
+				// free objects
+				rs.dataObjects = null;
 			}
-			for (RouteDataObject ro : rs.dataObjects) {
+			for (RouteDataObject ro : dataObjects) {
 				if (ro != null) {
 					matcher.publish(ro);
 				}
 			}
-			// free objects
-			rs.dataObjects = null;
 		}
 	}
 
@@ -1090,11 +1141,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						int old = codedIS.pushLimit(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -1111,11 +1164,13 @@ public class BinaryMapRouteReaderAdapter {
 			List<RouteSubregion> toLoad) throws IOException {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
-				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+				synchronized (rs) {
+					if (rs.subregions == null) {
+						codedIS.seek(rs.filePointer);
+						int old = codedIS.pushLimit(rs.length);
+						readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+						codedIS.popLimit(old);
+					}
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -492,8 +492,10 @@ public class BinaryMapTransportReaderAdapter {
 
 	protected TIntObjectHashMap<String> initializeStringTable(TransportIndex ind,
 			TIntObjectHashMap<String> requested) throws IOException {
-		if (ind.stringTable.stringTable == null) {
-			ind.stringTable.stringTable = new TIntObjectHashMap<>();
+		TIntObjectHashMap<String> stringTable = ind.stringTable.stringTable;
+		if (stringTable == null) {
+			// table is assigned to index only when it is read completely
+			stringTable = new TIntObjectHashMap<>();
 			codedIS.seek(ind.stringTable.fileOffset);
 			int oldLimit = codedIS.pushLimit(ind.stringTable.length);
 			int current = 0;
@@ -505,7 +507,7 @@ public class BinaryMapTransportReaderAdapter {
 					break;
 				case OsmandOdb.StringTable.S_FIELD_NUMBER:
 					String value = codedIS.readString();
-					ind.stringTable.stringTable.put(current, value);
+					stringTable.put(current, value);
 					current++;
 					break;
 				default:
@@ -514,8 +516,9 @@ public class BinaryMapTransportReaderAdapter {
 				}
 			}
 			codedIS.popLimit(oldLimit);
+			ind.stringTable.stringTable = stringTable;
 		}
-		return ind.stringTable.stringTable;
+		return stringTable;
 	}
 
 	protected void initializeNames(boolean onlyDescription, net.osmand.data.TransportRoute dataObject,
@@ -237,7 +237,9 @@ public class GeocodingUtilities {
 		final boolean addCommonWordsFinal = addCommonWords;
 		final List<String> streetNamesUsedFinal = streetNamesUsed;
 		if (streetNamesUsedFinal.size() > 0) {
-			log.info("Search street by name " + road.streetName + " " + streetNamesUsedFinal);
+			if (log.isDebugEnabled()) {
+				log.debug("Search street by name " + road.streetName + " " + streetNamesUsedFinal);
+			}
 			String mainWord = "";
 			for (int i = 0; i < streetNamesUsedFinal.size(); i++) {
 				String s = streetNamesUsedFinal.get(i);
@@ -245,36 +247,21 @@ public class GeocodingUtilities {
 					mainWord = s;
 				}
 			}
-			SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
-					new ResultMatcher<MapObject>() {
-						@Override
-						public boolean publish(MapObject object) {
-							if (object instanceof Street
-									&& prepareStreetName(object.getName(), addCommonWordsFinal).equals(streetNamesUsedFinal)) {
-								double d = MapUtils.getDistance(object.getLocation(), road.searchPoint.getLatitude(),
-										road.searchPoint.getLongitude());
-								// double check to suport old format
-								if (d < DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
-									GeocodingResult rs = new GeocodingResult(road);
-									rs.street = (Street) object;
-									// set connection point to sort
-									rs.connectionPoint = rs.street.getLocation();
-									rs.city = rs.street.getCity();
-									streetsList.add(rs);
-									return true;
-								}
-								return false;
-							}
-							return false;
-						}
-
-						@Override
-						public boolean isCancelled() {
-							return result != null && result.isCancelled();
-						}
-					}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
-			req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), DISTANCE_STREET_NAME_PROXIMITY_BY_NAME);
-			reader.searchAddressDataByName(req);
+			for (Street street : searchStreetsByName(reader, road, mainWord, result)) {
+				if (prepareStreetName(street.getName(), addCommonWordsFinal).equals(streetNamesUsedFinal)) {
+					double d = MapUtils.getDistance(street.getLocation(), road.searchPoint.getLatitude(),
+							road.searchPoint.getLongitude());
+					// double check to suport old format
+					if (d < DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
+						GeocodingResult rs = new GeocodingResult(road);
+						rs.street = street;
+						// set connection point to sort
+						rs.connectionPoint = rs.street.getLocation();
+						rs.city = rs.street.getCity();
+						streetsList.add(rs);
+					}
+				}
+			}
 		}
 
 		final List<GeocodingResult> res = new ArrayList<GeocodingResult>();
@@ -318,6 +305,83 @@ public class GeocodingUtilities {
 		return res;
 	}
 
+	/**
+	 * @return streets which names match main word in radius of {@link #DISTANCE_STREET_NAME_PROXIMITY_BY_NAME}
+	 * around connection point of road
+	 */
+	protected List<Street> searchStreetsByName(BinaryMapIndexReader reader, GeocodingResult road, String mainWord,
+			ResultMatcher<GeocodingResult> result) throws IOException {
+		return searchStreetsByName(reader, road, mainWord, DISTANCE_STREET_NAME_PROXIMITY_BY_NAME, result);
+	}
+
+	protected List<Street> searchStreetsByName(BinaryMapIndexReader reader, GeocodingResult road, String mainWord,
+			int radius, final ResultMatcher<GeocodingResult> result) throws IOException {
+		final List<Street> streets = new ArrayList<Street>();
+		SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(
+				new ResultMatcher<MapObject>() {
+					@Override
+					public boolean publish(MapObject object) {
+						if (object instanceof Street) {
+							streets.add((Street) object);
+							return true;
+						}
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return result != null && result.isCancelled();
+					}
+				}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
+		req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), radius);
+		reader.searchAddressDataByName(req);
+		return streets;
+	}
+
+	/**
+	 * Justifies results of {@link #reverseGeocodingSearch} by address data of files with the same routing regions
+	 * (results from other files are kept as they are) and sorts them by distance.
+	 */
+	public List<GeocodingResult> sortGeocodingResults(List<BinaryMapIndexReader> list, List<GeocodingResult> res,
+			ResultMatcher<GeocodingResult> result) throws IOException {
+		List<GeocodingResult> complete = new ArrayList<GeocodingResult>();
+		double minBuildingDistance = 0;
+		for (GeocodingResult r : res) {
+			if (result != null && result.isCancelled()) {
+				break;
+			}
+			BinaryMapIndexReader reader = findReader(list, r);
+			if (reader != null) {
+				List<GeocodingResult> justified = justifyReverseGeocodingSearch(r, reader, minBuildingDistance, result);
+				if (!justified.isEmpty()) {
+					double md = justified.get(0).getDistance();
+					if (minBuildingDistance == 0) {
+						minBuildingDistance = md;
+					} else {
+						minBuildingDistance = Math.min(md, minBuildingDistance);
+					}
+					complete.addAll(justified);
+				}
+			} else {
+				complete.add(r);
+			}
+		}
+		filterDuplicateRegionResults(complete);
+		Collections.sort(complete, DISTANCE_COMPARATOR);
+		return complete;
+	}
+
+	protected BinaryMapIndexReader findReader(List<BinaryMapIndexReader> list, GeocodingResult r) {
+		for (BinaryMapIndexReader reader : list) {
+			for (RouteRegion rb : reader.getRoutingIndexes()) {
+				if (r.regionFP == rb.getFilePointer() && r.regionLen == rb.getLength()) {
+					return reader;
+				}
+			}
+		}
+		return null;
+	}
+
 	public void filterDuplicateRegionResults(final List<GeocodingResult> res) {
 		Collections.sort(res, DISTANCE_COMPARATOR);
 		// filter duplicate city results (when building is in both regions on boundary)
@@ -362,11 +426,17 @@ public class GeocodingUtilities {
 		return 0;
 	}
 
+	protected void preloadBuildings(BinaryMapIndexReader reader, Street street) throws IOException {
+		reader.preloadBuildings(street, null);
+		if (log.isDebugEnabled()) {
+			log.debug("Preload buildings " + street.getName() + " " + street.getCity().getName() + " " + street.getId());
+		}
+	}
+
 	private List<GeocodingResult> loadStreetBuildings(final GeocodingResult road, BinaryMapIndexReader reader,
 			GeocodingResult street) throws IOException {
 		final List<GeocodingResult> streetBuildings = new ArrayList<GeocodingResult>();
-		reader.preloadBuildings(street.street, null);
-		log.info("Preload buildings " + street.street.getName() + " " + street.city.getName() + " " + street.street.getId());
+		preloadBuildings(reader, street.street);
 		for (Building b : street.street.getBuildings()) {
 			if (b.getLatLon2() != null) {
 				double slat = b.getLocation().getLatitude();
@@ -0,0 +1,68 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Read only memory mapping of the whole obf file. One mapping is shared by all readers of the same file
+ * (see {@link BinaryMapIndexReader#BinaryMapIndexReader(RandomAccessFile, BinaryMapIndexReader)}),
+ * each of them decodes directly from the mapping with own {@link CodedInputStream} cursor.
+ * Mapping is released by GC when all readers are closed.
+ */
+public class MappedObfFile {
+
+	// one mapping can't exceed 2 GB, so big files are mapped by chunks (files over 2 GB are not supported)
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+	private final ByteBuffer[] chunks;
+	private final int chunkSize;
+	private final long length;
+
+	private MappedObfFile(ByteBuffer[] chunks, int chunkSize, long length) {
+		this.chunks = chunks;
+		this.chunkSize = chunkSize;
+		this.length = length;
+	}
+
+	public static MappedObfFile map(RandomAccessFile raf) throws IOException {
+		return map(raf, DEFAULT_CHUNK_SIZE);
+	}
+
+	public static MappedObfFile map(RandomAccessFile raf, int chunkSize) throws IOException {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size should be positive: " + chunkSize);
+		}
+		FileChannel channel = raf.getChannel();
+		long length = channel.size();
+		if (length > Integer.MAX_VALUE) {
+			// positions in obf file and in coded input stream are int
+			throw new IOException("File is too big to be memory mapped: " + length + " bytes");
+		}
+		int cnt = (int) ((length + chunkSize - 1) / chunkSize);
+		ByteBuffer[] chunks = new ByteBuffer[cnt];
+		for (int i = 0; i < cnt; i++) {
+			long start = (long) i * chunkSize;
+			MappedByteBuffer mbb = channel.map(MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+			chunks[i] = mbb;
+		}
+		return new MappedObfFile(chunks, chunkSize, length);
+	}
+
+	public CodedInputStream newCodedInputStream() {
+		return CodedInputStream.newInstance(chunks, chunkSize);
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public int getChunksCount() {
+		return chunks.length;
+	}
+}
@@ -0,0 +1,121 @@
+package net.osmand.binary;
+
+import net.osmand.CollatorStringMatcher;
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.util.Algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Objects of one file which matched the last search by name (poi or address name index).
+ * If the next query only extends the last one (more letters typed) with the same area and types,
+ * new results are subset of cached objects, so they are filtered in memory instead of reading
+ * name index and data from the file again.
+ */
+public class NameIndexSearchCache<T> {
+
+	public static final int MAX_CACHED_OBJECTS = 10000;
+
+	private String query;
+	private StringMatcherMode matcherMode;
+	private boolean normalizedKeys;
+	private List<Integer> typeFilter;
+	private int x;
+	private int y;
+	private int left;
+	private int right;
+	private int top;
+	private int bottom;
+
+	private List<T> objects = new ArrayList<T>();
+	private boolean overflow;
+	private boolean complete;
+
+	private int fileReads;
+	private int refinements;
+
+	boolean canRefine(SearchRequest<T> req, String query, StringMatcherMode mode, List<Integer> typeFilter) {
+		if (!complete || this.query == null) {
+			return false;
+		}
+		if (req.x != x || req.y != y || req.left != left || req.right != right || req.top != top
+				|| req.bottom != bottom || req.normalizedNameKeys != normalizedKeys
+				|| !Algorithms.objectEquals(typeFilter, this.typeFilter)) {
+			return false;
+		}
+		if (!isNarrowing(matcherMode, mode) || !query.startsWith(this.query)) {
+			return false;
+		}
+		return !normalizedKeys || CollatorStringMatcher.normalizeKey(query).startsWith(
+				CollatorStringMatcher.normalizeKey(this.query));
+	}
+
+	// every name matching longer query in new mode also matches shorter query in previous mode
+	private static boolean isNarrowing(StringMatcherMode prev, StringMatcherMode mode) {
+		if (prev == StringMatcherMode.CHECK_EQUALS || prev == StringMatcherMode.CHECK_EQUALS_FROM_SPACE) {
+			return false;
+		}
+		return prev == mode || (prev == StringMatcherMode.CHECK_STARTS_FROM_SPACE
+				&& mode == StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
+	}
+
+	void startRead(SearchRequest<T> req, String query, StringMatcherMode mode, List<Integer> typeFilter) {
+		this.query = query;
+		this.matcherMode = mode;
+		this.typeFilter = typeFilter;
+		this.normalizedKeys = req.normalizedNameKeys;
+		this.x = req.x;
+		this.y = req.y;
+		this.left = req.left;
+		this.right = req.right;
+		this.top = req.top;
+		this.bottom = req.bottom;
+		objects = new ArrayList<T>();
+		overflow = false;
+		complete = false;
+		fileReads++;
+	}
+
+	void add(T object) {
+		if (objects.size() < MAX_CACHED_OBJECTS) {
+			objects.add(object);
+		} else {
+			overflow = true;
+		}
+	}
+
+	void finishRead(SearchRequest<T> req) {
+		complete = !overflow && !req.isCancelled() && !req.limitExceeded();
+	}
+
+	void refined(String query, StringMatcherMode mode, List<T> objects) {
+		this.query = query;
+		this.matcherMode = mode;
+		this.objects = objects;
+		refinements++;
+	}
+
+	String getQuery() {
+		return query;
+	}
+
+	List<T> getObjects() {
+		return objects;
+	}
+
+	public void clear() {
+		query = null;
+		objects = new ArrayList<T>();
+		complete = false;
+	}
+
+	public int getFileReads() {
+		return fileReads;
+	}
+
+	public int getRefinements() {
+		return refinements;
+	}
+}
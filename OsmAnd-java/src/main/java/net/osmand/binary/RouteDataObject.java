@@ -36,6 +36,11 @@ public class RouteDataObject {
 	// mixed array [0, height, cumulative_distance height, cumulative_distance, height, ...] - length is length(points)*2
 	public float[] heightDistanceArray = null;
 	public float heightByCurrentLocation = Float.NaN;
+	// interned ids of types and point types (see RouteRegion.getTypesId) with arrays they were calculated for
+	private int typesId = -1;
+	private int[] typesIdOf;
+	private int[] pointTypesIds;
+	private int[][] pointTypesIdsOf;
 	private static final Log LOG = PlatformUtil.getLog(RouteDataObject.class);
 
 	public RouteDataObject(RouteRegion region) {
@@ -179,7 +184,8 @@ public class RouteDataObject {
 			return heightDistanceArray;
 		}
 
-		heightDistanceArray = new float[2 * getPointsLength()];
+		// array is published when it is completely calculated (road could be shared between threads)
+		float[] heightDistanceArray = new float[2 * getPointsLength()];
 		double plon = 0;
 		double plat = 0;
 		float prevHeight = startHeight;
@@ -242,6 +248,7 @@ public class RouteDataObject {
 				prevDistance = MapUtils.getDistance(currentLocation, plat, plon);
 			}
 		}
+		this.heightDistanceArray = heightDistanceArray;
 		return heightDistanceArray;
 	}
 
@@ -504,6 +511,46 @@ public class RouteDataObject {
 		return pointNameTypes[ind];
 	}
 
+	/**
+	 * @return id of types set in region, equal sets of types have the same id
+	 */
+	public int getTypesId() {
+		// ids are the same for the same types, so concurrent calculation is not a problem
+		int id = typesId;
+		if (typesIdOf != types || id < 0) {
+			id = region.getTypesId(types);
+			typesId = id;
+			typesIdOf = types;
+		}
+		return id;
+	}
+
+	/**
+	 * @return id of point types set in region or -1 if point doesn't have types
+	 */
+	public int getPointTypesId(int ind) {
+		int[] pTypes = getPointTypes(ind);
+		if (pTypes == null) {
+			return -1;
+		}
+		int[] ids = pointTypesIds;
+		int[][] idsOf = pointTypesIdsOf;
+		if (ids == null || idsOf == null || ids.length != pointTypes.length || idsOf.length != ids.length) {
+			ids = new int[pointTypes.length];
+			idsOf = new int[pointTypes.length][];
+			pointTypesIds = ids;
+			pointTypesIdsOf = idsOf;
+		}
+		// id is stored + 1, so 0 means not calculated
+		int id = ids[ind] - 1;
+		if (idsOf[ind] != pTypes || id < 0) {
+			id = region.getTypesId(pTypes);
+			ids[ind] = id + 1;
+			idsOf[ind] = pTypes;
+		}
+		return id;
+	}
+
 	public int[] getPointTypes(int ind) {
 		if (pointTypes == null || ind >= pointTypes.length) {
 			return null;
@@ -593,6 +640,9 @@ public class RouteDataObject {
 				}
 			}
 		}
+		// types could be modified in place
+		typesIdOf = null;
+		pointTypesIdsOf = null;
 	}
 
 	public float getMaximumSpeed(boolean direction) {
@@ -0,0 +1,562 @@
+package net.osmand.binary;
+
+import net.osmand.CollatorStringMatcher;
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.util.Algorithms;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Index of poi and address names of one obf file, it is built once by {@link #build(BinaryMapIndexReader)}
+ * and stored in sidecar file next to obf file ({@link #getSidecarFile(File)}).
+ * <p>
+ * Names are split by words and folded with {@link CollatorStringMatcher#normalizeKey(String)}. Sorted words
+ * are front coded in blocks of {@link #BLOCK_SIZE} words, each word is followed by its pointers to obf file
+ * (poi data boxes with box tile or address name index blocks). File is memory mapped, word prefix is found with binary
+ * search over first words of blocks, so name index tables of obf are not walked with collator comparisons.
+ * Index is used by search requests with normalized name keys, found obf data is checked by name matcher as usual.
+ */
+public class SidecarNameIndex {
+
+	private static final Log log = PlatformUtil.getLog(SidecarNameIndex.class);
+
+	static final int MAGIC = 0x4f4e4931; // "ONI1"
+	static final int VERSION = 2;
+	static final int BLOCK_SIZE = 16;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	public static final int POI_SECTION = 0;
+	public static final int ADDRESS_SECTION = 1;
+	// poi: shift to data box, box x31, box y31; address: shift to name index block
+	private static final int[] POINTER_SIZE = { 3, 1 };
+
+	private final String sourceName;
+	private final long sourceLength;
+	private final long sourceLastModified;
+	private final List<Section> sections;
+
+	SidecarNameIndex(String sourceName, long sourceLength, long sourceLastModified, List<Section> sections) {
+		this.sourceName = sourceName;
+		this.sourceLength = sourceLength;
+		this.sourceLastModified = sourceLastModified;
+		this.sections = sections;
+	}
+
+	public static File getSidecarFile(File obf) {
+		String name = obf.getName();
+		int ext = name.lastIndexOf('.');
+		return new File(obf.getParentFile(), (ext > 0 ? name.substring(0, ext) : name) + ".names.osmand");
+	}
+
+	/**
+	 * @return true if index was built for the same (not modified) file
+	 */
+	public boolean isValidFor(File obf) {
+		return sourceName.equals(obf.getName()) && sourceLength == obf.length()
+				&& sourceLastModified == obf.lastModified();
+	}
+
+	/**
+	 * @return index from sidecar file of obf or null if it doesn't exist or it is built for another version of obf
+	 */
+	public static SidecarNameIndex loadFor(File obf) {
+		File f = getSidecarFile(obf);
+		if (!f.exists()) {
+			return null;
+		}
+		try {
+			SidecarNameIndex index = readFromFile(f);
+			if (index.isValidFor(obf)) {
+				return index;
+			}
+			log.info("Sidecar name index " + f.getName() + " is outdated");
+		} catch (IOException e) {
+			log.error("Failed to read sidecar name index " + f.getName(), e);
+		}
+		return null;
+	}
+
+	public static SidecarNameIndex build(BinaryMapIndexReader reader) throws IOException {
+		long time = System.currentTimeMillis();
+		List<SectionBuilder> builders = new ArrayList<SectionBuilder>();
+		for (int i = 0; i < reader.poiIndexes.size(); i++) {
+			SectionBuilder sb = new SectionBuilder(POI_SECTION, i);
+			reader.collectPoiNames(reader.poiIndexes.get(i), sb);
+			builders.add(sb);
+		}
+		for (int i = 0; i < reader.addressIndexes.size(); i++) {
+			SectionBuilder sb = new SectionBuilder(ADDRESS_SECTION, i);
+			reader.collectAddressNames(reader.addressIndexes.get(i), sb);
+			builders.add(sb);
+		}
+		List<Section> sections = new ArrayList<Section>();
+		for (SectionBuilder sb : builders) {
+			sections.add(sb.build());
+		}
+		File f = reader.getFile();
+		SidecarNameIndex index = new SidecarNameIndex(f.getName(), f.length(), f.lastModified(), sections);
+		log.info("Sidecar name index for " + f.getName() + " is built in " + (System.currentTimeMillis() - time)
+				+ " ms: " + index);
+		return index;
+	}
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, sourceName);
+			out.writeLong(sourceLength);
+			out.writeLong(sourceLastModified);
+			out.writeInt(sections.size());
+			for (Section s : sections) {
+				out.writeInt(s.type);
+				out.writeInt(s.region);
+				out.writeInt(s.keysCount);
+				out.writeInt(s.blocks.length);
+				for (int b : s.blocks) {
+					out.writeInt(b);
+				}
+				out.writeInt(s.data.limit());
+				ByteBuffer data = s.data.duplicate();
+				data.position(0);
+				byte[] buf = new byte[data.limit()];
+				data.get(buf);
+				out.write(buf);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static SidecarNameIndex readFromFile(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// mapping stays valid after channel is closed
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buf.getInt() != MAGIC) {
+				throw new IOException("Not a sidecar name index file " + file.getName());
+			}
+			int version = buf.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported sidecar name index version " + version + " in " + file.getName());
+			}
+			String sourceName = readString(buf);
+			long sourceLength = buf.getLong();
+			long sourceLastModified = buf.getLong();
+			int count = buf.getInt();
+			List<Section> sections = new ArrayList<Section>(count);
+			for (int i = 0; i < count; i++) {
+				int type = buf.getInt();
+				int region = buf.getInt();
+				int keysCount = buf.getInt();
+				int[] blocks = new int[buf.getInt()];
+				for (int b = 0; b < blocks.length; b++) {
+					blocks[b] = buf.getInt();
+				}
+				int dataLength = buf.getInt();
+				ByteBuffer data = buf.slice();
+				data.limit(dataLength);
+				buf.position(buf.position() + dataLength);
+				sections.add(new Section(type, region, keysCount, blocks, data));
+			}
+			return new SidecarNameIndex(sourceName, sourceLength, sourceLastModified, sections);
+		} finally {
+			raf.close();
+		}
+	}
+
+	// length prefixed UTF-8 (writeUTF writes modified UTF-8 which is not read back as UTF-8)
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	Section getSection(int type, int region) {
+		for (Section s : sections) {
+			if (s.type == type && s.region == region) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	public int getKeysCount() {
+		int cnt = 0;
+		for (Section s : sections) {
+			cnt += s.keysCount;
+		}
+		return cnt;
+	}
+
+	/**
+	 * Fills offsets of poi data boxes (to distance from request center) which contain names with all words of query
+	 * in the same way as poi name index of obf does.
+	 */
+	void searchPoi(int region, String query, SearchRequest<Amenity> req, TIntLongHashMap offsets) {
+		Section s = getSection(POI_SECTION, region);
+		List<String> words = splitQuery(query);
+		if (s == null || words.isEmpty()) {
+			return;
+		}
+		TIntLongHashMap res = null;
+		for (String w : words) {
+			TIntLongHashMap found = new TIntLongHashMap();
+			TIntArrayList pointers = s.findPointers(w);
+			for (int i = 0; i < pointers.size(); i += 3) {
+				int shift = pointers.get(i);
+				int x31 = pointers.get(i + 1);
+				int y31 = pointers.get(i + 2);
+				if ((res == null || res.containsKey(shift)) && req.contains(x31, y31, x31, y31)) {
+					found.put(shift, Math.abs(req.x - x31) + Math.abs(req.y - y31));
+				}
+			}
+			res = found;
+		}
+		offsets.putAll(res);
+	}
+
+	/**
+	 * Fills offsets of address name index blocks which contain names with all words of query
+	 */
+	void searchAddress(int region, String query, TIntArrayList offsets) {
+		Section s = getSection(ADDRESS_SECTION, region);
+		List<String> words = splitQuery(query);
+		if (s == null || words.isEmpty()) {
+			return;
+		}
+		TIntHashSet res = null;
+		for (String w : words) {
+			TIntHashSet found = new TIntHashSet(s.findPointers(w));
+			if (res != null) {
+				found.retainAll(res);
+			}
+			res = found;
+		}
+		offsets.addAll(res);
+	}
+
+	private static List<String> splitQuery(String query) {
+		List<String> words = Algorithms.splitByWordsLowercase(query);
+		for (int i = 0; i < words.size(); i++) {
+			words.set(i, CollatorStringMatcher.normalizeKey(words.get(i)));
+		}
+		return words;
+	}
+
+	/**
+	 * @return indexed words starting with given word (folded as names)
+	 */
+	public List<String> findWords(String prefix) {
+		TreeSet<String> res = new TreeSet<String>();
+		String key = CollatorStringMatcher.normalizeKey(prefix.toLowerCase());
+		for (Section s : sections) {
+			Cursor c = s.seek(key);
+			while (c.next()) {
+				if (c.key.startsWith(key)) {
+					res.add(c.key);
+				} else if (c.key.compareTo(key) > 0) {
+					break;
+				}
+			}
+		}
+		return new ArrayList<String>(res);
+	}
+
+	/**
+	 * @param prefix if true words are matched if some of their prefixes match the word
+	 * @return indexed words within given Levenshtein distance from the word (folded as names)
+	 */
+	public List<String> findFuzzyWords(String word, int maxErrors, boolean prefix) {
+		TreeSet<String> res = new TreeSet<String>();
+		String key = CollatorStringMatcher.normalizeKey(word.toLowerCase());
+		int m = key.length();
+		for (Section s : sections) {
+			// row d is distance between first d chars of indexed word and prefixes of key
+			List<int[]> rows = new ArrayList<int[]>();
+			int[] first = new int[m + 1];
+			for (int j = 0; j <= m; j++) {
+				first[j] = j;
+			}
+			rows.add(first);
+			Cursor c = s.seek("");
+			while (c.next()) {
+				String w = c.key;
+				int shared = Math.min(c.shared, rows.size() - 1);
+				int best = rows.get(shared)[m];
+				boolean pruned = false;
+				for (int d = 1; d <= shared; d++) {
+					pruned |= min(rows.get(d)) > maxErrors;
+					best = Math.min(best, rows.get(d)[m]);
+				}
+				while (rows.size() > shared + 1) {
+					rows.remove(rows.size() - 1);
+				}
+				for (int d = shared + 1; d <= w.length() && !pruned; d++) {
+					int[] prev = rows.get(d - 1);
+					int[] row = new int[m + 1];
+					row[0] = d;
+					for (int j = 1; j <= m; j++) {
+						int cost = w.charAt(d - 1) == key.charAt(j - 1) ? 0 : 1;
+						row[j] = Math.min(Math.min(row[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+					}
+					rows.add(row);
+					best = Math.min(best, row[m]);
+					pruned = min(row) > maxErrors;
+				}
+				if (prefix ? best <= maxErrors : !pruned && rows.get(w.length())[m] <= maxErrors) {
+					res.add(w);
+				}
+			}
+		}
+		return new ArrayList<String>(res);
+	}
+
+	private static int min(int[] row) {
+		int min = row[0];
+		for (int v : row) {
+			min = Math.min(min, v);
+		}
+		return min;
+	}
+
+	@Override
+	public String toString() {
+		return "Sidecar name index " + sourceName + ": " + sections.size() + " sections, " + getKeysCount() + " words";
+	}
+
+	/**
+	 * Builds sidecar files next to given obf files: SidecarNameIndex file1.obf [file2.obf ...]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: <obf files>...");
+			return;
+		}
+		for (String arg : args) {
+			File f = new File(arg);
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(f, "r"), f);
+			try {
+				SidecarNameIndex index = build(reader);
+				index.writeToFile(getSidecarFile(f));
+				System.out.println(index);
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	static class Section {
+		final int type;
+		final int region;
+		final int keysCount;
+		// offsets of blocks in data, first word of block is not front coded
+		final int[] blocks;
+		final ByteBuffer data;
+
+		Section(int type, int region, int keysCount, int[] blocks, ByteBuffer data) {
+			this.type = type;
+			this.region = region;
+			this.keysCount = keysCount;
+			this.blocks = blocks;
+			this.data = data;
+		}
+
+		TIntArrayList findPointers(String prefix) {
+			TIntArrayList res = new TIntArrayList();
+			Cursor c = seek(prefix);
+			while (c.next()) {
+				if (c.key.startsWith(prefix)) {
+					c.readPointers(res);
+				} else if (c.key.compareTo(prefix) > 0) {
+					break;
+				}
+			}
+			return res;
+		}
+
+		// cursor at the start of the last block which first word is less than prefix
+		Cursor seek(String prefix) {
+			int lo = 0;
+			int hi = blocks.length - 1;
+			int block = 0;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				Cursor c = new Cursor(this, blocks[mid]);
+				c.next();
+				if (c.key.compareTo(prefix) < 0) {
+					block = mid;
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return new Cursor(this, blocks.length == 0 ? data.limit() : blocks[block]);
+		}
+	}
+
+	static class Cursor {
+		final Section section;
+		final ByteBuffer data;
+		int pos;
+		String key = "";
+		int shared;
+		int pointersCount;
+		int pointersPos;
+
+		Cursor(Section section, int pos) {
+			this.section = section;
+			this.data = section.data;
+			this.pos = pos;
+		}
+
+		boolean next() {
+			if (pointersCount > 0) {
+				skipPointers();
+			}
+			if (pos >= data.limit()) {
+				return false;
+			}
+			shared = readVarint();
+			int len = readVarint();
+			byte[] suffix = new byte[len];
+			for (int i = 0; i < len; i++) {
+				suffix[i] = data.get(pos++);
+			}
+			key = key.substring(0, shared) + new String(suffix, UTF_8);
+			pointersCount = readVarint() * POINTER_SIZE[section.type];
+			pointersPos = pos;
+			return true;
+		}
+
+		void readPointers(TIntArrayList res) {
+			pos = pointersPos;
+			for (int i = 0; i < pointersCount; i++) {
+				res.add(readVarint());
+			}
+			pointersCount = 0;
+		}
+
+		private void skipPointers() {
+			pos = pointersPos;
+			for (int i = 0; i < pointersCount; i++) {
+				readVarint();
+			}
+			pointersCount = 0;
+		}
+
+		private int readVarint() {
+			int b = data.get(pos++);
+			int res = b & 0x7f;
+			for (int shift = 7; b < 0; shift += 7) {
+				b = data.get(pos++);
+				res |= (b & 0x7f) << shift;
+			}
+			return res;
+		}
+	}
+
+	static class SectionBuilder {
+		final int type;
+		final int region;
+		final TreeMap<String, TIntArrayList> words = new TreeMap<String, TIntArrayList>();
+
+		SectionBuilder(int type, int region) {
+			this.type = type;
+			this.region = region;
+		}
+
+		void addName(String name, int... pointer) {
+			if (Algorithms.isEmpty(name)) {
+				return;
+			}
+			for (String w : Algorithms.splitByWordsLowercase(CollatorStringMatcher.normalizeKey(name))) {
+				TIntArrayList list = words.get(w);
+				if (list == null) {
+					list = new TIntArrayList(pointer.length);
+					words.put(w, list);
+				}
+				boolean same = list.size() >= pointer.length;
+				for (int i = 0; i < pointer.length && same; i++) {
+					same = list.get(list.size() - pointer.length + i) == pointer[i];
+				}
+				if (!same) {
+					list.add(pointer);
+				}
+			}
+		}
+
+		Section build() throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			TIntArrayList blocks = new TIntArrayList();
+			String prev = "";
+			int cnt = 0;
+			for (Entry<String, TIntArrayList> e : words.entrySet()) {
+				String key = e.getKey();
+				int shared = 0;
+				if (cnt % BLOCK_SIZE == 0) {
+					blocks.add(out.size());
+				} else {
+					int max = Math.min(prev.length(), key.length());
+					while (shared < max && prev.charAt(shared) == key.charAt(shared)) {
+						shared++;
+					}
+					// don't split surrogate pair
+					if (shared > 0 && Character.isHighSurrogate(key.charAt(shared - 1))) {
+						shared--;
+					}
+				}
+				byte[] suffix = key.substring(shared).getBytes(UTF_8);
+				writeVarint(out, shared);
+				writeVarint(out, suffix.length);
+				out.write(suffix);
+				TIntArrayList pointers = e.getValue();
+				writeVarint(out, pointers.size() / POINTER_SIZE[type]);
+				for (int i = 0; i < pointers.size(); i++) {
+					writeVarint(out, pointers.get(i));
+				}
+				prev = key;
+				cnt++;
+			}
+			return new Section(type, region, cnt, blocks.toArray(), ByteBuffer.wrap(out.toByteArray()));
+		}
+
+		private static void writeVarint(ByteArrayOutputStream out, int value) {
+			while ((value & ~0x7f) != 0) {
+				out.write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+	}
+}
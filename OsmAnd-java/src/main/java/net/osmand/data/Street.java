@@ -52,6 +52,14 @@ public class Street extends MapObject {
 		return buildings;
 	}
 
+	/**
+	 * Buildings and intersected streets are added by every read of street, so they should be cleared before it is read again
+	 */
+	public void clearBuildingsAndIntersectedStreets() {
+		buildings.clear();
+		intersectedStreets = null;
+	}
+
 	public City getCity() {
 		return city;
 	}
@@ -69,6 +69,7 @@ public class OsmandRegions {
 
 
 	QuadTree<String> quadTree;
+	RegionsSpatialIndex spatialIndex;
 	MapIndexFields mapIndexFields;
 	RegionTranslation translator;
 
@@ -118,10 +119,14 @@ public class OsmandRegions {
 		reader = new BinaryMapIndexReader(new RandomAccessFile(fileName, "r"), new File(fileName));
 //		final Collator clt = OsmAndCollator.primaryCollator();
 		final Map<String, String> parentRelations = new LinkedHashMap<String, String>();
+		final List<BinaryMapDataObject> allObjects = new ArrayList<BinaryMapDataObject>();
 		final ResultMatcher<BinaryMapDataObject> resultMatcher = new ResultMatcher<BinaryMapDataObject>() {
 
 			@Override
 			public boolean publish(BinaryMapDataObject object) {
+				if (object.getPointsLength() > 0) {
+					allObjects.add(object);
+				}
 				initTypes(object);
 				int[] types = object.getTypes();
 				for (int i = 0; i < types.length; i++) {
@@ -147,6 +152,7 @@ public class OsmandRegions {
 			}
 		};
 		iterateOverAllObjects(resultMatcher);
+		spatialIndex = new RegionsSpatialIndex(allObjects);
 		// post process download names
 		for (Map.Entry<String, String> e : parentRelations.entrySet()) {
 			String fullName = e.getKey();
@@ -214,6 +220,13 @@ public class OsmandRegions {
 	}
 
 	public boolean contain(BinaryMapDataObject bo, int tx, int ty) {
+		RegionsSpatialIndex index = spatialIndex;
+		if (index != null) {
+			Boolean contains = index.contains(bo, tx, ty);
+			if (contains != null) {
+				return contains;
+			}
+		}
 		int t = 0;
 		for (int i = 1; i < bo.getPointsLength(); i++) {
 			int fx = MapAlgorithms.ray_intersect_x(bo.getPoint31XTile(i - 1),
@@ -345,7 +358,16 @@ public class OsmandRegions {
 	}
 
 	
-	private synchronized List<BinaryMapDataObject> queryBboxNoInit(int lx, int rx, int ty, int by, final boolean checkCenter) throws IOException {
+	private List<BinaryMapDataObject> queryBboxNoInit(int lx, int rx, int ty, int by, boolean checkCenter) throws IOException {
+		RegionsSpatialIndex index = spatialIndex;
+		if (checkCenter && index != null) {
+			// objects containing center are found in bbox
+			return index.query(lx / 2 + rx / 2, ty / 2 + by / 2);
+		}
+		return searchBbox(lx, rx, ty, by, checkCenter);
+	}
+
+	private synchronized List<BinaryMapDataObject> searchBbox(int lx, int rx, int ty, int by, final boolean checkCenter) throws IOException {
 		final List<BinaryMapDataObject> result = new ArrayList<BinaryMapDataObject>();
 		final int mx = lx / 2 + rx / 2;
 		final int my = ty / 2 + by / 2;
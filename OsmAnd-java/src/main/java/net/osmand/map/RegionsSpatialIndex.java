@@ -0,0 +1,180 @@
+package net.osmand.map;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.util.MapAlgorithms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * In-memory index of region polygons for point queries (see {@link OsmandRegions#prepareFile(String)}).
+ * Polygons are put into a uniform grid of 31 tile coordinates by their bounding boxes, edges of each polygon are
+ * bucketed into horizontal bands, so point test checks only edges of one band. Result of point test is the same
+ * as of {@link OsmandRegions#contain(BinaryMapDataObject, int, int)}: the same ray intersection is counted
+ * over all edges which could intersect the ray.
+ * Index is immutable after construction and could be queried from many threads.
+ */
+public class RegionsSpatialIndex {
+
+	// 256 x 256 cells
+	private static final int CELL_SHIFT = 23;
+	private static final int GRID_SIZE = 1 << (31 - CELL_SHIFT);
+	private static final int EDGES_IN_BAND = 8;
+	private static final int MAX_BANDS = 4096;
+	private static final int[] EMPTY = new int[0];
+
+	private final Polygon[] polygons;
+	private final int[][] cells = new int[GRID_SIZE * GRID_SIZE][];
+	private final Map<BinaryMapDataObject, Polygon> polygonsByObject;
+
+	/**
+	 * Objects with less than 2 points don't contain any point and are not indexed.
+	 */
+	public RegionsSpatialIndex(Collection<BinaryMapDataObject> objects) {
+		List<Polygon> list = new ArrayList<Polygon>();
+		for (BinaryMapDataObject o : objects) {
+			if (o.getPointsLength() > 1) {
+				list.add(new Polygon(o));
+			}
+		}
+		polygons = list.toArray(new Polygon[list.size()]);
+		polygonsByObject = new IdentityHashMap<BinaryMapDataObject, Polygon>(polygons.length);
+		TIntArrayList[] lists = new TIntArrayList[cells.length];
+		for (int id = 0; id < polygons.length; id++) {
+			Polygon p = polygons[id];
+			polygonsByObject.put(p.object, p);
+			for (int cy = cell(p.minY); cy <= cell(p.maxRayY); cy++) {
+				for (int cx = cell(p.minX); cx <= cell(p.maxRayX); cx++) {
+					int c = cy * GRID_SIZE + cx;
+					if (lists[c] == null) {
+						lists[c] = new TIntArrayList();
+					}
+					lists[c].add(id);
+				}
+			}
+		}
+		for (int c = 0; c < cells.length; c++) {
+			cells[c] = lists[c] == null ? EMPTY : lists[c].toArray();
+		}
+	}
+
+	private static int cell(int coordinate) {
+		return Math.max(0, Math.min(GRID_SIZE - 1, coordinate >> CELL_SHIFT));
+	}
+
+	public int size() {
+		return polygons.length;
+	}
+
+	/**
+	 * @return objects containing point in order they were passed to index
+	 */
+	public List<BinaryMapDataObject> query(int tx, int ty) {
+		List<BinaryMapDataObject> result = new ArrayList<BinaryMapDataObject>();
+		if (tx < 0 || ty < 0) {
+			return result;
+		}
+		for (int id : cells[cell(ty) * GRID_SIZE + cell(tx)]) {
+			Polygon p = polygons[id];
+			if (p.contains(tx, ty)) {
+				result.add(p.object);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return true or false if object is indexed and null otherwise
+	 */
+	public Boolean contains(BinaryMapDataObject object, int tx, int ty) {
+		Polygon p = polygonsByObject.get(object);
+		if (p == null) {
+			return object.getPointsLength() > 1 ? null : Boolean.FALSE;
+		}
+		return p.contains(tx, ty);
+	}
+
+	private static class Polygon {
+		final BinaryMapDataObject object;
+		final int[] x;
+		final int[] y;
+		final int minX;
+		final int minY;
+		final int maxY;
+		// ray to the right could cross edges up to maxY + 1 (ray_intersect_x moves ray off vertices)
+		final int maxRayY;
+		// not closed polygon could be crossed by ray from any point to the right
+		final int maxRayX;
+		final long bandHeight;
+		final int[][] bands;
+
+		Polygon(BinaryMapDataObject object) {
+			this.object = object;
+			int n = object.getPointsLength();
+			x = new int[n];
+			y = new int[n];
+			int minx = Integer.MAX_VALUE;
+			int maxx = Integer.MIN_VALUE;
+			int miny = Integer.MAX_VALUE;
+			int maxy = Integer.MIN_VALUE;
+			for (int i = 0; i < n; i++) {
+				x[i] = object.getPoint31XTile(i);
+				y[i] = object.getPoint31YTile(i);
+				minx = Math.min(minx, x[i]);
+				maxx = Math.max(maxx, x[i]);
+				miny = Math.min(miny, y[i]);
+				maxy = Math.max(maxy, y[i]);
+			}
+			minX = minx;
+			minY = miny;
+			maxY = maxy;
+			maxRayY = maxy == Integer.MAX_VALUE ? maxy : maxy + 1;
+			boolean closed = x[0] == x[n - 1] && y[0] == y[n - 1];
+			maxRayX = closed ? maxx : Integer.MAX_VALUE;
+
+			int bandsCount = Math.max(1, Math.min(MAX_BANDS, (n - 1) / EDGES_IN_BAND));
+			bandHeight = ((long) maxRayY - minY) / bandsCount + 1;
+			TIntArrayList[] lists = new TIntArrayList[bandsCount];
+			for (int i = 1; i < n; i++) {
+				int lo = Math.min(y[i - 1], y[i]);
+				int hi = Math.max(y[i - 1], y[i]);
+				long hiRay = (long) hi + 1;
+				int from = band(lo);
+				int to = (int) Math.min(bandsCount - 1, (hiRay - minY) / bandHeight);
+				for (int b = from; b <= to; b++) {
+					if (lists[b] == null) {
+						lists[b] = new TIntArrayList();
+					}
+					lists[b].add(i);
+				}
+			}
+			bands = new int[bandsCount][];
+			for (int b = 0; b < bandsCount; b++) {
+				bands[b] = lists[b] == null ? EMPTY : lists[b].toArray();
+			}
+		}
+
+		private int band(int ty) {
+			return (int) (((long) ty - minY) / bandHeight);
+		}
+
+		boolean contains(int tx, int ty) {
+			if (tx < minX || tx > maxRayX || ty < minY || ty > maxRayY) {
+				return false;
+			}
+			int t = 0;
+			for (int i : bands[band(ty)]) {
+				int fx = MapAlgorithms.ray_intersect_x(x[i - 1], y[i - 1], x[i], y[i], ty);
+				if (Integer.MIN_VALUE != fx && tx >= fx) {
+					t++;
+				}
+			}
+			return t % 2 == 1;
+		}
+	}
+}
@@ -317,16 +317,26 @@ public class MapPoiTypes {
 			}
 		}
 		if (create) {
-			PoiCategory lastCategory = new PoiCategory(this, name, categories.size());
-			if (!lastCategory.getKeyName().equals(OTHER_MAP_CATEGORY)) {
-				lastCategory.setTopVisible(true);
-			}
-			addCategory(lastCategory);
-			return lastCategory;
+			return createPoiCategory(name);
 		}
 		return otherCategory;
 	}
 
+	// categories could be created by offline files read in parallel
+	private synchronized PoiCategory createPoiCategory(String name) {
+		for (PoiCategory p : categories) {
+			if (p.getKeyName().equalsIgnoreCase(name)) {
+				return p;
+			}
+		}
+		PoiCategory lastCategory = new PoiCategory(this, name, categories.size());
+		if (!lastCategory.getKeyName().equals(OTHER_MAP_CATEGORY)) {
+			lastCategory.setTopVisible(true);
+		}
+		addCategory(lastCategory);
+		return lastCategory;
+	}
+
 	private void addCategory(PoiCategory category) {
 		List<PoiCategory> copy = new ArrayList<>(categories);
 		copy.add(category);
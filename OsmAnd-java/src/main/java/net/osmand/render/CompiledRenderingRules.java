@@ -0,0 +1,417 @@
+package net.osmand.render;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Rendering rules of {@link RenderingRulesStorage} flattened to arrays: every rule is a node with ranges of
+ * input checks, output assignments and children, attribute rules referenced by output values are resolved
+ * to nodes at compile time. {@link #search(RenderingRuleSearchRequest, int, boolean)} gives the same result as
+ * {@link RenderingRuleSearchRequest#search(int, boolean)} but walks int arrays without allocations.
+ * <p>
+ * Program is a snapshot of storage, so it should be compiled after style is loaded and it is not
+ * changed after modifications of storage.
+ */
+public class CompiledRenderingRules {
+
+	private static final int SHIFT_TAG_VAL = 16;
+
+	// input operations
+	private static final int IN_INT = 0;
+	private static final int IN_FLOAT = 1;
+	private static final int IN_ACCEPT_INT = 2;
+	private static final int IN_ACCEPT_FLOAT = 3;
+	private static final int IN_DISABLE = 4;
+	private static final int IN_MINZOOM = 5;
+	private static final int IN_MAXZOOM = 6;
+	// output operations
+	private static final int OUT_INT = 0;
+	private static final int OUT_FLOAT = 1;
+	private static final int OUT_ATTR = 2;
+	// how property value is checked to be specified
+	private static final int SPEC_INT = 0;
+	private static final int SPEC_FLOAT = 1;
+	private static final int SPEC_COLOR = 2;
+
+	private final RenderingRulesStorage storage;
+	private final TIntObjectHashMap<Integer>[] roots;
+	private final Map<String, Integer> attributes;
+	private final int tagId;
+	private final int valueId;
+	private final int disableId;
+	private final int attrColorId;
+	private final int attrIntId;
+	private final int attrBoolId;
+
+	private final boolean[] group;
+	private final int[] inStart;
+	private final int[] outStart;
+	private final int[] elseStart;
+	private final int[] ifStart;
+
+	private final int[] inOp;
+	private final int[] inProp;
+	private final int[] inInt;
+	private final float[] inFloat;
+	private final RenderingRuleProperty[] inProperty;
+
+	private final int[] outOp;
+	private final int[] outProp;
+	private final int[] outSpec;
+	private final int[] outInt;
+	private final float[] outFloat;
+	private final int[] outAttr;
+
+	private final int[] elseChildren;
+	private final int[] ifChildren;
+
+	private CompiledRenderingRules(RenderingRulesStorage storage, Compiler c) {
+		this.storage = storage;
+		RenderingRuleStorageProperties props = storage.PROPS;
+		tagId = props.R_TAG.getId();
+		valueId = props.R_VALUE.getId();
+		disableId = props.R_DISABLE.getId();
+		attrColorId = props.R_ATTR_COLOR_VALUE.getId();
+		attrIntId = props.R_ATTR_INT_VALUE.getId();
+		attrBoolId = props.R_ATTR_BOOL_VALUE.getId();
+		roots = c.roots;
+		attributes = c.attributes;
+		int nodes = c.rules.size();
+		group = new boolean[nodes];
+		for (int i = 0; i < nodes; i++) {
+			group[i] = c.rules.get(i).isGroup();
+		}
+		inStart = c.inStart.toArray();
+		outStart = c.outStart.toArray();
+		elseStart = c.elseStart.toArray();
+		ifStart = c.ifStart.toArray();
+		inOp = c.inOp.toArray();
+		inProp = c.inProp.toArray();
+		inInt = c.inInt.toArray();
+		inFloat = toFloats(c.inFloat);
+		inProperty = c.inProperty.toArray(new RenderingRuleProperty[0]);
+		outOp = c.outOp.toArray();
+		outProp = c.outProp.toArray();
+		outSpec = c.outSpec.toArray();
+		outInt = c.outInt.toArray();
+		outFloat = toFloats(c.outFloat);
+		outAttr = c.outAttr.toArray();
+		elseChildren = c.elseChildren.toArray();
+		ifChildren = c.ifChildren.toArray();
+	}
+
+	private static float[] toFloats(TIntArrayList bits) {
+		float[] res = new float[bits.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = Float.intBitsToFloat(bits.get(i));
+		}
+		return res;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static CompiledRenderingRules compile(RenderingRulesStorage storage) {
+		Compiler c = new Compiler(storage);
+		c.roots = new TIntObjectHashMap[storage.tagValueGlobalRules.length];
+		for (int state = 0; state < storage.tagValueGlobalRules.length; state++) {
+			if (storage.tagValueGlobalRules[state] == null) {
+				continue;
+			}
+			TIntObjectHashMap<Integer> map = new TIntObjectHashMap<Integer>();
+			int[] keys = storage.tagValueGlobalRules[state].keys();
+			for (int key : keys) {
+				map.put(key, c.compile(storage.tagValueGlobalRules[state].get(key)));
+			}
+			c.roots[state] = map;
+		}
+		c.attributes = new HashMap<String, Integer>();
+		for (String attr : storage.getRenderingAttributeNames()) {
+			c.attributes.put(attr, c.compile(storage.getRenderingAttributeRule(attr)));
+		}
+		c.finish();
+		return new CompiledRenderingRules(storage, c);
+	}
+
+	public RenderingRulesStorage getStorage() {
+		return storage;
+	}
+
+	public int getNodesCount() {
+		return group.length;
+	}
+
+	public boolean search(RenderingRuleSearchRequest req, int state, boolean loadOutput) {
+		req.searchResult = false;
+		int tagKey = req.values[tagId];
+		int valueKey = req.values[valueId];
+		if (searchInternal(req, state, tagKey, valueKey, loadOutput)
+				|| searchInternal(req, state, tagKey, 0, loadOutput)
+				|| searchInternal(req, state, 0, 0, loadOutput)) {
+			req.searchResult = true;
+			return true;
+		}
+		return false;
+	}
+
+	public boolean searchRenderingAttribute(RenderingRuleSearchRequest req, String attribute) {
+		req.searchResult = false;
+		Integer node = attributes.get(attribute);
+		if (node == null) {
+			return false;
+		}
+		req.searchResult = visit(req, node, true);
+		return req.searchResult;
+	}
+
+	private boolean searchInternal(RenderingRuleSearchRequest req, int state, int tagKey, int valueKey,
+			boolean loadOutput) {
+		int[] values = req.values;
+		values[tagId] = tagKey;
+		values[valueId] = valueKey;
+		values[disableId] = 0;
+		TIntObjectHashMap<Integer> map = roots[state];
+		Integer node = map == null ? null : map.get((tagKey << SHIFT_TAG_VAL) | valueKey);
+		if (node == null) {
+			return false;
+		}
+		boolean match = visit(req, node, loadOutput);
+		return match && values[disableId] == 0;
+	}
+
+	private boolean visit(RenderingRuleSearchRequest req, int node, boolean loadOutput) {
+		if (!checkInput(req, node)) {
+			return false;
+		}
+		boolean isGroup = group[node];
+		if (!loadOutput && !isGroup) {
+			return true;
+		}
+		if (!isGroup) {
+			loadOutput(req, node, true);
+		}
+		boolean match = false;
+		for (int i = elseStart[node]; i < elseStart[node + 1]; i++) {
+			if (visit(req, elseChildren[i], loadOutput)) {
+				match = true;
+				break;
+			}
+		}
+		boolean fit = match || !isGroup;
+		if (fit && loadOutput) {
+			if (isGroup) {
+				loadOutput(req, node, false);
+			}
+			for (int i = ifStart[node]; i < ifStart[node + 1]; i++) {
+				visit(req, ifChildren[i], true);
+			}
+		}
+		return fit;
+	}
+
+	private boolean checkInput(RenderingRuleSearchRequest req, int node) {
+		int[] values = req.values;
+		for (int i = inStart[node]; i < inStart[node + 1]; i++) {
+			int p = inProp[i];
+			switch (inOp[i]) {
+			case IN_INT:
+				if (values[p] != inInt[i]) {
+					return false;
+				}
+				break;
+			case IN_FLOAT:
+				if (req.fvalues[p] != inFloat[i]) {
+					return false;
+				}
+				break;
+			case IN_MINZOOM:
+				if (inInt[i] > values[p]) {
+					return false;
+				}
+				break;
+			case IN_MAXZOOM:
+				if (inInt[i] < values[p]) {
+					return false;
+				}
+				break;
+			case IN_ACCEPT_INT:
+				if (!inProperty[i].accept(inInt[i], values[p], req)) {
+					return false;
+				}
+				break;
+			case IN_ACCEPT_FLOAT:
+				if (!inProperty[i].accept(inFloat[i], req.fvalues[p], req)) {
+					return false;
+				}
+				break;
+			default:
+				// quick disable even without load output
+				values[p] = inInt[i];
+				break;
+			}
+		}
+		return true;
+	}
+
+	private void loadOutput(RenderingRuleSearchRequest req, int node, boolean override) {
+		int[] values = req.values;
+		float[] fvalues = req.fvalues;
+		for (int i = outStart[node]; i < outStart[node + 1]; i++) {
+			int p = outProp[i];
+			if (!override && isSpecified(values, fvalues, outSpec[i], p)) {
+				continue;
+			}
+			switch (outOp[i]) {
+			case OUT_ATTR:
+				visit(req, outAttr[i], true);
+				if (values[attrColorId] != 0) {
+					values[p] = values[attrColorId];
+				} else if (fvalues[attrIntId] != 0 || values[attrIntId] != -1) {
+					values[p] = values[attrIntId];
+					fvalues[p] = fvalues[attrIntId];
+				} else if (values[attrBoolId] != -1) {
+					values[p] = values[attrBoolId];
+				}
+				break;
+			case OUT_FLOAT:
+				fvalues[p] = outFloat[i];
+				values[p] = outInt[i];
+				break;
+			default:
+				values[p] = outInt[i];
+				break;
+			}
+		}
+	}
+
+	private static boolean isSpecified(int[] values, float[] fvalues, int spec, int p) {
+		switch (spec) {
+		case SPEC_FLOAT:
+			return fvalues[p] != 0 || values[p] != -1;
+		case SPEC_COLOR:
+			return values[p] != 0;
+		default:
+			return values[p] != -1;
+		}
+	}
+
+	private static class Compiler {
+		final RenderingRulesStorage storage;
+		final IdentityHashMap<RenderingRule, Integer> nodes = new IdentityHashMap<RenderingRule, Integer>();
+		final List<RenderingRule> rules = new ArrayList<RenderingRule>();
+		TIntObjectHashMap<Integer>[] roots;
+		Map<String, Integer> attributes;
+
+		final TIntArrayList inStart = new TIntArrayList();
+		final TIntArrayList outStart = new TIntArrayList();
+		final TIntArrayList elseStart = new TIntArrayList();
+		final TIntArrayList ifStart = new TIntArrayList();
+		final TIntArrayList inOp = new TIntArrayList();
+		final TIntArrayList inProp = new TIntArrayList();
+		final TIntArrayList inInt = new TIntArrayList();
+		// floats are kept as raw int bits
+		final TIntArrayList inFloat = new TIntArrayList();
+		final List<RenderingRuleProperty> inProperty = new ArrayList<RenderingRuleProperty>();
+		final TIntArrayList outOp = new TIntArrayList();
+		final TIntArrayList outProp = new TIntArrayList();
+		final TIntArrayList outSpec = new TIntArrayList();
+		final TIntArrayList outInt = new TIntArrayList();
+		final TIntArrayList outFloat = new TIntArrayList();
+		final TIntArrayList outAttr = new TIntArrayList();
+		final TIntArrayList elseChildren = new TIntArrayList();
+		final TIntArrayList ifChildren = new TIntArrayList();
+
+		Compiler(RenderingRulesStorage storage) {
+			this.storage = storage;
+		}
+
+		int compile(RenderingRule rule) {
+			Integer ind = nodes.get(rule);
+			if (ind != null) {
+				return ind;
+			}
+			// nodes are numbered in order of registration, their ranges are filled in the same order by finish()
+			int node = rules.size();
+			nodes.put(rule, node);
+			rules.add(rule);
+			for (RenderingRule rr : rule.getIfElseChildren()) {
+				compile(rr);
+			}
+			for (RenderingRule rr : rule.getIfChildren()) {
+				compile(rr);
+			}
+			RenderingRuleProperty[] properties = rule.getProperties();
+			for (int i = 0; i < properties.length; i++) {
+				RenderingRule attr = properties[i].isOutputProperty() ? rule.getAttrProp(i) : null;
+				if (attr != null) {
+					compile(attr);
+				}
+			}
+			return node;
+		}
+
+		void finish() {
+			for (RenderingRule rule : rules) {
+				inStart.add(inOp.size());
+				outStart.add(outOp.size());
+				elseStart.add(elseChildren.size());
+				ifStart.add(ifChildren.size());
+				RenderingRuleProperty[] properties = rule.getProperties();
+				for (int i = 0; i < properties.length; i++) {
+					RenderingRuleProperty rp = properties[i];
+					if (rp.isInputProperty()) {
+						boolean plain = rp.getClass() == RenderingRuleProperty.class;
+						if (rp == storage.PROPS.R_MINZOOM) {
+							addInput(IN_MINZOOM, rp, rule, i);
+						} else if (rp == storage.PROPS.R_MAXZOOM) {
+							addInput(IN_MAXZOOM, rp, rule, i);
+						} else if (rp.isFloat()) {
+							addInput(plain ? IN_FLOAT : IN_ACCEPT_FLOAT, rp, rule, i);
+						} else {
+							addInput(plain && rp.isIntParse() ? IN_INT : IN_ACCEPT_INT, rp, rule, i);
+						}
+					} else {
+						if (rp == storage.PROPS.R_DISABLE) {
+							addInput(IN_DISABLE, rp, rule, i);
+						}
+						RenderingRule attr = rule.getAttrProp(i);
+						outOp.add(attr != null ? OUT_ATTR : (rp.isFloat() ? OUT_FLOAT : OUT_INT));
+						outProp.add(rp.getId());
+						outSpec.add(rp.isFloat() ? SPEC_FLOAT : (rp.isColor() ? SPEC_COLOR : SPEC_INT));
+						outInt.add(rule.getIntProp(i));
+						outFloat.add(Float.floatToRawIntBits(rule.getFloatProp(i)));
+						outAttr.add(attr != null ? nodes.get(attr) : -1);
+					}
+				}
+				for (RenderingRule rr : rule.getIfElseChildren()) {
+					elseChildren.add(nodes.get(rr));
+				}
+				for (RenderingRule rr : rule.getIfChildren()) {
+					ifChildren.add(nodes.get(rr));
+				}
+			}
+			inStart.add(inOp.size());
+			outStart.add(outOp.size());
+			elseStart.add(elseChildren.size());
+			ifStart.add(ifChildren.size());
+		}
+
+		private void addInput(int op, RenderingRuleProperty rp, RenderingRule rule, int i) {
+			inOp.add(op);
+			inProp.add(rp.getId());
+			inInt.add(rule.getIntProp(i));
+			inFloat.add(Float.floatToRawIntBits(rule.getFloatProp(i)));
+			inProperty.add(rp);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Compiled rendering rules " + storage.getName() + ": " + group.length + " nodes, " + inOp.length
+				+ " input checks, " + outOp.length + " outputs";
+	}
+}
@@ -0,0 +1,189 @@
+package net.osmand.render;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapDataObject;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+
+/**
+ * Results of rendering rules search of one {@link RenderingRulesStorage} (see {@link RenderingRulesStorage#getSearchCache()}).
+ * Result depends only on input vector of request (all values / fvalues including tag, value, zoom, layer,
+ * custom rendering properties and additional filter) and additional types of map object, so
+ * same input signature gets copy of stored output vector which is identical to the one computed by rules.
+ * Changed custom properties give other signature, storage clears cache when its rules are changed.
+ */
+public class RenderingRuleSearchCache {
+
+	public static final int DEFAULT_MAX_SIZE = 512;
+
+	private final RenderingRulesStorage storage;
+	private final int maxSize;
+	private final Map<Key, Result> results;
+	private final Key probe = new Key();
+
+	private int hits;
+	private int misses;
+
+	public RenderingRuleSearchCache(RenderingRulesStorage storage) {
+		this(storage, DEFAULT_MAX_SIZE);
+	}
+
+	public RenderingRuleSearchCache(RenderingRulesStorage storage, final int maxSize) {
+		this.storage = storage;
+		this.maxSize = maxSize;
+		this.results = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public RenderingRulesStorage getStorage() {
+		return storage;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public boolean search(RenderingRuleSearchRequest req, int state, boolean loadOutput) {
+		if (restore(req, state, null, loadOutput)) {
+			return req.searchResult;
+		}
+		Key key = new Key(req, state, null, loadOutput);
+		boolean result = req.searchRules(state, loadOutput);
+		store(key, req);
+		return result;
+	}
+
+	public boolean searchRenderingAttribute(RenderingRuleSearchRequest req, String attribute) {
+		if (restore(req, 0, attribute, true)) {
+			return req.searchResult;
+		}
+		Key key = new Key(req, 0, attribute, true);
+		boolean result = req.searchRenderingAttributeRules(attribute);
+		store(key, req);
+		return result;
+	}
+
+	private synchronized boolean restore(RenderingRuleSearchRequest req, int state, String attribute,
+			boolean loadOutput) {
+		probe.set(req.values, req.fvalues, req.object, state, attribute, loadOutput);
+		Result res = results.get(probe);
+		probe.set(null, null, null, 0, null, false);
+		if (res == null) {
+			misses++;
+			return false;
+		}
+		hits++;
+		System.arraycopy(res.values, 0, req.values, 0, res.values.length);
+		System.arraycopy(res.fvalues, 0, req.fvalues, 0, res.fvalues.length);
+		req.searchResult = res.found;
+		return true;
+	}
+
+	private synchronized void store(Key key, RenderingRuleSearchRequest req) {
+		results.put(key, new Result(req));
+	}
+
+	public synchronized void clear() {
+		results.clear();
+	}
+
+	public synchronized int size() {
+		return results.size();
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Rendering search cache " + storage.getName() + ": " + results.size() + " results, " + hits
+				+ " hits, " + misses + " misses";
+	}
+
+	private static class Result {
+		final int[] values;
+		final float[] fvalues;
+		final boolean found;
+
+		Result(RenderingRuleSearchRequest req) {
+			values = req.values.clone();
+			fvalues = req.fvalues.clone();
+			found = req.searchResult;
+		}
+	}
+
+	private static class Key {
+		int[] values;
+		float[] fvalues;
+		MapIndex mapIndex;
+		int[] additionalTypes;
+		int state;
+		String attribute;
+		boolean loadOutput;
+		int hash;
+
+		Key() {
+		}
+
+		Key(RenderingRuleSearchRequest req, int state, String attribute, boolean loadOutput) {
+			set(req.values.clone(), req.fvalues.clone(), req.object, state, attribute, loadOutput);
+			if (additionalTypes != null) {
+				additionalTypes = additionalTypes.clone();
+			}
+		}
+
+		void set(int[] values, float[] fvalues, BinaryMapDataObject object, int state, String attribute,
+				boolean loadOutput) {
+			this.values = values;
+			this.fvalues = fvalues;
+			// additional rules check tags of object itself
+			this.mapIndex = object == null ? null : object.getMapIndex();
+			this.additionalTypes = object == null ? null : object.getAdditionalTypes();
+			this.state = state;
+			this.attribute = attribute;
+			this.loadOutput = loadOutput;
+			if (values != null) {
+				int h = Arrays.hashCode(values);
+				h = 31 * h + Arrays.hashCode(fvalues);
+				h = 31 * h + Arrays.hashCode(additionalTypes);
+				h = 31 * h + state;
+				h = 31 * h + (attribute == null ? 0 : attribute.hashCode());
+				hash = 31 * h + (loadOutput ? 1 : 0);
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && state == other.state && loadOutput == other.loadOutput
+					&& mapIndex == other.mapIndex
+					&& (attribute == null ? other.attribute == null : attribute.equals(other.attribute))
+					&& Arrays.equals(values, other.values) && Arrays.equals(fvalues, other.fvalues)
+					&& Arrays.equals(additionalTypes, other.additionalTypes);
+		}
+	}
+}
@@ -16,6 +16,9 @@ public class RenderingRuleSearchRequest {
 	float[] savedFvalues;
 	
 	boolean searchResult = false;
+
+	private CompiledRenderingRules compiledRules;
+	private RenderingRuleSearchCache searchCache;
 	
 	
 	public final RenderingRuleStorageProperties ALL;
@@ -43,6 +46,8 @@ public class RenderingRuleSearchRequest {
 		this.object = renderingRuleSearchRequest.object;
 		this.searchResult = renderingRuleSearchRequest.searchResult;
 		this.ALL = renderingRuleSearchRequest.ALL;
+		this.compiledRules = renderingRuleSearchRequest.compiledRules;
+		this.searchCache = renderingRuleSearchRequest.searchCache;
 		System.arraycopy(renderingRuleSearchRequest.values, 0, values, 0, renderingRuleSearchRequest.values.length);
 		System.arraycopy(renderingRuleSearchRequest.fvalues, 0, fvalues, 0, renderingRuleSearchRequest.fvalues.length);
 		saveState();
@@ -116,7 +121,49 @@ public class RenderingRuleSearchRequest {
 		return searchResult;
 	}
 	
+	public CompiledRenderingRules getCompiledRules() {
+		return compiledRules;
+	}
+
+	/**
+	 * Evaluate rules with compiled program instead of walking rule tree.
+	 * Program should be compiled after style is fully loaded, null switches back to rule tree.
+	 */
+	public void setCompiledRules(CompiledRenderingRules compiledRules) {
+		if (compiledRules != null && compiledRules.getStorage() != storage) {
+			throw new IllegalArgumentException("Rules are compiled for another storage " 
+					+ compiledRules.getStorage().getName());
+		}
+		this.compiledRules = compiledRules;
+	}
+	
+	public RenderingRuleSearchCache getSearchCache() {
+		return searchCache;
+	}
+
+	/**
+	 * Reuse results of searches with the same input (see {@link RenderingRulesStorage#getSearchCache()}),
+	 * null disables cache.
+	 */
+	public void setSearchCache(RenderingRuleSearchCache searchCache) {
+		if (searchCache != null && searchCache.getStorage() != storage) {
+			throw new IllegalArgumentException("Cache belongs to another storage " 
+					+ searchCache.getStorage().getName());
+		}
+		this.searchCache = searchCache;
+	}
+	
 	public boolean searchRenderingAttribute(String attribute) {
+		if (searchCache != null) {
+			return searchCache.searchRenderingAttribute(this, attribute);
+		}
+		return searchRenderingAttributeRules(attribute);
+	}
+
+	boolean searchRenderingAttributeRules(String attribute) {
+		if (compiledRules != null) {
+			return compiledRules.searchRenderingAttribute(this, attribute);
+		}
 		searchResult = false;
 		RenderingRule rule = storage.getRenderingAttributeRule(attribute);
 		if(rule == null){
@@ -132,6 +179,16 @@ public class RenderingRuleSearchRequest {
 	}
 	
 	public boolean search(int state, boolean loadOutput) {
+		if (searchCache != null) {
+			return searchCache.search(this, state, loadOutput);
+		}
+		return searchRules(state, loadOutput);
+	}
+
+	boolean searchRules(int state, boolean loadOutput) {
+		if (compiledRules != null) {
+			return compiledRules.search(this, state, loadOutput);
+		}
 		searchResult = false;
 		int tagKey = values[storage.PROPS.R_TAG.getId()];
 		int valueKey = values[storage.PROPS.R_VALUE.getId()];
@@ -60,6 +60,8 @@ public class RenderingRulesStorage {
 
 	protected int internalVersion = 1;
 
+	private RenderingRuleSearchCache searchCache;
+
 	public interface RenderingRulesStorageResolver {
 		RenderingRulesStorage resolve(String name, RenderingRulesStorageResolver ref) throws XmlPullParserException, IOException;
 	}
@@ -97,6 +99,22 @@ public class RenderingRulesStorage {
 		return internalVersion;
 	}
 
+	/**
+	 * Shared cache of search results of this style, it is cleared when rules are registered or merged.
+	 */
+	public synchronized RenderingRuleSearchCache getSearchCache() {
+		if (searchCache == null) {
+			searchCache = new RenderingRuleSearchCache(this);
+		}
+		return searchCache;
+	}
+
+	private synchronized void clearSearchCache() {
+		if (searchCache != null) {
+			searchCache.clear();
+		}
+	}
+
 	public int getDictionaryValue(String val) {
 		if (dictionaryMap.containsKey(val)) {
 			return dictionaryMap.get(val);
@@ -167,6 +185,7 @@ public class RenderingRulesStorage {
 				}
 			}
 		}
+		clearSearchCache();
 	}
 
 	public static String colorToString(int color) {
@@ -195,6 +214,7 @@ public class RenderingRulesStorage {
 			insert = rr;
 		}
 		tagValueGlobalRules[state].put(key, insert);
+		clearSearchCache();
 	}
 
 	private RenderingRule createTagValueRootWrapperRule(int tagValueKey, RenderingRule previous) {
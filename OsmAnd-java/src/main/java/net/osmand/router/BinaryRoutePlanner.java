@@ -4,12 +4,21 @@ import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.osm.MapRenderingTypes;
@@ -30,6 +39,8 @@ public class BinaryRoutePlanner {
 	protected static final Log log = PlatformUtil.getLog(BinaryRoutePlanner.class);
 
 	private static final int ROUTE_POINTS = 11;
+	// steps calculated by direction search thread ahead of replay in parallel mode
+	private static final int MAX_STEPS_AHEAD = 1000;
 	private static final boolean ASSERT_CHECKS = true;
 	private static final boolean TRACE_ROUTING = false;
 	private static final int TEST_ID = 50725;
@@ -65,6 +76,67 @@ public class BinaryRoutePlanner {
 		}
 	}
 
+	// final segments are kept apart from segments to visit, so order of visited segments of one direction doesn't
+	// depend on final segments found by it (parallel search visits segments in the same order)
+	static class RouteSegmentsQueue extends AbstractQueue<RouteSegment> {
+		final Queue<RouteSegment> segments;
+		final PriorityQueue<RouteSegment> finalSegments;
+		private final RoutingContext ctx;
+
+		RouteSegmentsQueue(RoutingContext ctx, Queue<RouteSegment> segments) {
+			this.ctx = ctx;
+			this.segments = segments;
+			this.finalSegments = new PriorityQueue<RouteSegment>(10, new SegmentsComparator(ctx));
+		}
+
+		private Queue<RouteSegment> head() {
+			RouteSegment finalSegment = finalSegments.peek();
+			RouteSegment segment = segments.peek();
+			if (finalSegment != null && (segment == null || ctx.roadPriorityComparator(finalSegment.distanceFromStart,
+					finalSegment.distanceToEnd, segment.distanceFromStart, segment.distanceToEnd) < 0)) {
+				return finalSegments;
+			}
+			return segments;
+		}
+
+		@Override
+		public boolean offer(RouteSegment segment) {
+			if (segment instanceof FinalRouteSegment) {
+				return finalSegments.offer(segment);
+			}
+			return segments.offer(segment);
+		}
+
+		@Override
+		public RouteSegment poll() {
+			return head().poll();
+		}
+
+		@Override
+		public RouteSegment peek() {
+			return head().peek();
+		}
+
+		@Override
+		public int size() {
+			return segments.size() + finalSegments.size();
+		}
+
+		@Override
+		public Iterator<RouteSegment> iterator() {
+			List<RouteSegment> all = new ArrayList<RouteSegment>(segments);
+			all.addAll(finalSegments);
+			return Collections.unmodifiableList(all).iterator();
+		}
+	}
+
+	static Queue<RouteSegment> createSegmentsQueue(RoutingContext ctx) {
+		if (ctx.config.useIndexedHeap) {
+			return new RouteSegmentHeap(ctx, 50);
+		}
+		return new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+	}
+
 	/**
 	 * Calculate route between start.segmentEnd and end.segmentStart (using A* algorithm)
 	 * return list of segments
@@ -76,8 +148,8 @@ public class BinaryRoutePlanner {
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		RouteSegmentsQueue graphDirectSegments = new RouteSegmentsQueue(ctx, createSegmentsQueue(ctx));
+		RouteSegmentsQueue graphReverseSegments = new RouteSegmentsQueue(ctx, createSegmentsQueue(ctx));
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
 		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
@@ -85,11 +157,15 @@ public class BinaryRoutePlanner {
 
 		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
 				visitedDirectSegments, visitedOppositeSegments);
+		if (ctx.config.parallelBidirectionalSearch && ctx.planRouteIn2Directions() && !graphDirectSegments.isEmpty()
+				&& !graphReverseSegments.isEmpty()) {
+			return searchRouteInParallel(ctx, start, end, graphDirectSegments, graphReverseSegments);
+		}
 
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		Queue<RouteSegment> graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
@@ -172,19 +248,463 @@ public class BinaryRoutePlanner {
 				throw new InterruptedException("Route calculation interrupted");
 			}
 		}
+		updateVisitedStatistics(ctx, graphDirectSegments.size(), graphReverseSegments.size(),
+				visitedDirectSegments.size(), visitedOppositeSegments.size());
+		return finalSegment;
+	}
+
+	private void updateVisitedStatistics(final RoutingContext ctx, int directQueueSize, int reverseQueueSize,
+			int visitedDirectSegments, int visitedOppositeSegments) {
 		if (ctx.calculationProgress != null) {
-			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments.size();
-			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
-			ctx.calculationProgress.directQueueSize += graphDirectSegments.size(); // Math.max(ctx.directQueueSize,
-																					// graphDirectSegments.size());
-			ctx.calculationProgress.oppositeQueueSize += graphReverseSegments.size();
-			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments.size();
+			ctx.calculationProgress.visitedDirectSegments += visitedDirectSegments;
+			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments;
+			ctx.calculationProgress.directQueueSize += directQueueSize; // Math.max(ctx.directQueueSize,
+																		// graphDirectSegments.size());
+			ctx.calculationProgress.oppositeQueueSize += reverseQueueSize;
+			ctx.calculationProgress.visitedOppositeSegments += visitedOppositeSegments;
 		}
+	}
+
+	/**
+	 * Direct and reverse searches run in 2 threads: each thread visits segments of its direction in the same order as
+	 * sequential search (order of one direction doesn't depend on the opposite one, final segments are kept in
+	 * separate queue) and records changes of segments made on every step. Calling thread replays recorded steps in
+	 * the order of sequential search: it chooses direction with the same comparator, checks visited segments of
+	 * opposite direction as they were at that step and collects final segments, so search is stopped on the same
+	 * final segment and found route is the same as sequential one. Search threads are at most
+	 * {@link #MAX_STEPS_AHEAD} steps ahead of replay. Loaded tiles are read by both threads under read lock (tiles
+	 * are loaded under write lock), each direction evaluates road costs with own router copy.
+	 */
+	private FinalRouteSegment searchRouteInParallel(final RoutingContext ctx, RouteSegmentPoint start,
+			RouteSegmentPoint end, RouteSegmentsQueue graphDirectSegments, RouteSegmentsQueue graphReverseSegments)
+			throws InterruptedException, IOException {
+		GeneralRouter router = ctx.config.router;
+		// rules table is shared by router copies, register all types before to not modify it during search
+		for (RouteRegion reg : ctx.reverseMap.keySet()) {
+			router.registerRegionRules(reg);
+		}
+		ctx.directSearchRouter = router.copyForParallelUse();
+		ctx.reverseSearchRouter = router.copyForParallelUse();
+		ctx.tilesLock = new ReentrantReadWriteLock();
+		DirectionSearch directSearch = new DirectionSearch(ctx, false, graphDirectSegments.segments, start);
+		DirectionSearch reverseSearch = new DirectionSearch(ctx, true, graphReverseSegments.segments, end);
+		Thread directThread = new Thread(directSearch, "Direct route search");
+		Thread reverseThread = new Thread(reverseSearch, "Reverse route search");
+		directThread.setDaemon(true);
+		reverseThread.setDaemon(true);
+		FinalRouteSegment finalSegment;
+		try {
+			directThread.start();
+			reverseThread.start();
+			finalSegment = replaySearch(ctx, directSearch, reverseSearch);
+		} finally {
+			directSearch.stop();
+			reverseSearch.stop();
+			directThread.join();
+			reverseThread.join();
+			ctx.directSearchRouter = null;
+			ctx.reverseSearchRouter = null;
+			ctx.tilesLock = null;
+		}
+		if (finalSegment != null) {
+			// search threads changed segments after final segment was found
+			DirectionSearch search = finalSegment.reverseWaySearch ? reverseSearch : directSearch;
+			DirectionSearch opposite = finalSegment.reverseWaySearch ? directSearch : reverseSearch;
+			finalSegment.parentRoute = search.copyRoute(finalSegment.parentRoute);
+			finalSegment.opposite = opposite.copyRoute(finalSegment.opposite);
+		}
+		updateVisitedStatistics(ctx, directSearch.size(), reverseSearch.size(), directSearch.visitedSegments.size(),
+				reverseSearch.visitedSegments.size());
 		return finalSegment;
 	}
 
+	// the same loop as in searchRouteInternal, steps are taken from direction search threads
+	private FinalRouteSegment replaySearch(final RoutingContext ctx, DirectionSearch directSearch,
+			DirectionSearch reverseSearch) throws InterruptedException, IOException {
+		boolean forwardSearch = true;
+		while (true) {
+			DirectionSearch search = forwardSearch ? directSearch : reverseSearch;
+			DirectionSearch opposite = forwardSearch ? reverseSearch : directSearch;
+			ctx.memoryOverhead = (directSearch.visitedSegments.size() + reverseSearch.visitedSegments.size())
+					* STANDARD_ROAD_VISITED_OVERHEAD
+					+ (directSearch.size() + reverseSearch.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			search.peekHead();
+			if (search.headFinalSegment != null) {
+				if (TRACE_ROUTING) {
+					println("Final segment found");
+				}
+				return search.finalSegments.poll();
+			}
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is not enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			if (ctx.calculationProgress != null) {
+				ctx.calculationProgress.visitedSegments++;
+			}
+			search.replayStep(opposite);
+			if (search.size() == 0 && !search.reiterate()) {
+				// can't proceed - so no route
+				return null;
+			}
+			directSearch.peekHead();
+			reverseSearch.peekHead();
+			forwardSearch = roadPriorityComparator(directSearch.headDistanceFromStart, directSearch.headDistanceToEnd,
+					reverseSearch.headDistanceFromStart, reverseSearch.headDistanceToEnd, 0.5) <= 0;
+			// check if interrupted
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+		}
+	}
+
+	private static void rethrow(Throwable exception) throws InterruptedException, IOException {
+		if (exception instanceof InterruptedException) {
+			throw (InterruptedException) exception;
+		} else if (exception instanceof IOException) {
+			throw (IOException) exception;
+		} else if (exception instanceof RuntimeException) {
+			throw (RuntimeException) exception;
+		} else if (exception instanceof Error) {
+			throw (Error) exception;
+		} else {
+			throw new IllegalStateException(exception);
+		}
+	}
+
+	// distance and parent of segment after change made by direction search thread
+	private static class SegmentState {
+		final RouteSegment segment;
+		final float distanceFromStart;
+		final RouteSegment parentRoute;
+		final boolean visited;
+		final long pointId;
+
+		SegmentState(RouteSegment segment, boolean visited, long pointId) {
+			this.segment = segment;
+			this.distanceFromStart = segment.distanceFromStart;
+			this.parentRoute = segment.parentRoute;
+			this.visited = visited;
+			this.pointId = pointId;
+		}
+	}
+
+	// see checkIfOppositeSegmentWasVisited, opposite direction is checked during replay
+	private static class OppositeCheck {
+		final RouteSegment segment;
+		final long oppositePointId;
+		final float distanceFromStart;
+		final RouteSegment parentDiffId;
+		final RouteSegment parentRoute;
+
+		OppositeCheck(RouteSegment segment, long oppositePointId, RouteSegment parentDiffId) {
+			this.segment = segment;
+			this.oppositePointId = oppositePointId;
+			this.distanceFromStart = segment.distanceFromStart;
+			this.parentDiffId = parentDiffId;
+			this.parentRoute = segment.getParentRoute();
+		}
+	}
+
+	// one step of direction search thread: segment polled from queue and processed (or point reiterated)
+	private static class SearchStep {
+		final boolean polled;
+		final float distanceFromStart;
+		final float distanceToEnd;
+		final List<SegmentState> segments = new ArrayList<SegmentState>();
+		final List<OppositeCheck> oppositeChecks = new ArrayList<OppositeCheck>();
+		int queueSize;
+		int alertFasterRoadToVisitedSegments;
+		int alertSlowerSegmentedWasVisitedEarlier;
+		Throwable exception;
+
+		SearchStep(RouteSegment segment) {
+			this.polled = segment != null;
+			this.distanceFromStart = polled ? segment.distanceFromStart : 0;
+			this.distanceToEnd = polled ? segment.distanceToEnd : 0;
+		}
+	}
+
+	// visited segments of direction search thread, changes of segments are recorded to the current step
+	private static class RecordingSegmentsMap extends TLongObjectHashMap<RouteSegment> {
+		private static final long serialVersionUID = 6349536183428362207L;
+
+		SearchStep step;
+
+		void segmentChanged(RouteSegment segment) {
+			step.segments.add(new SegmentState(segment, false, 0));
+		}
+
+		@Override
+		public RouteSegment put(long key, RouteSegment value) {
+			step.segments.add(new SegmentState(value, true, key));
+			return super.put(key, value);
+		}
+	}
+
+	private static void segmentChanged(TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment) {
+		if (visitedSegments instanceof RecordingSegmentsMap) {
+			((RecordingSegmentsMap) visitedSegments).segmentChanged(segment);
+		}
+	}
+
+	private class DirectionSearch implements Runnable {
+		private final RoutingContext ctx;
+		private final boolean reverseWaySearch;
+		private final RouteSegmentPoint point;
+		// used by search thread
+		private final Queue<RouteSegment> graphSegments;
+		private final RecordingSegmentsMap searchVisitedSegments = new RecordingSegmentsMap();
+		// steps passed from search thread to replay, guarded by this
+		private final LinkedList<SearchStep> steps = new LinkedList<SearchStep>();
+		private boolean reiterate;
+		private boolean stopped;
+		// used by replay
+		private final Map<RouteSegment, SegmentState> states = new IdentityHashMap<RouteSegment, SegmentState>();
+		private final TLongObjectHashMap<RouteSegment> visitedSegments = new TLongObjectHashMap<RouteSegment>();
+		private final PriorityQueue<FinalRouteSegment> finalSegments;
+		private int queueSize;
+		private FinalRouteSegment headFinalSegment;
+		private float headDistanceFromStart;
+		private float headDistanceToEnd;
+
+		DirectionSearch(RoutingContext ctx, boolean reverseWaySearch, Queue<RouteSegment> graphSegments,
+				RouteSegmentPoint point) {
+			this.ctx = ctx;
+			this.reverseWaySearch = reverseWaySearch;
+			this.graphSegments = graphSegments;
+			this.point = point;
+			this.finalSegments = new PriorityQueue<FinalRouteSegment>(10, new SegmentsComparator(ctx));
+			this.queueSize = graphSegments.size();
+			for (RouteSegment segment : graphSegments) {
+				while (segment != null && segment != RouteSegment.NULL && !states.containsKey(segment)) {
+					states.put(segment, new SegmentState(segment, false, 0));
+					segment = segment.parentRoute;
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				search();
+			} catch (Throwable e) {
+				SearchStep step = searchVisitedSegments.step != null ? searchVisitedSegments.step : new SearchStep(null);
+				step.exception = e;
+				synchronized (this) {
+					steps.add(step);
+					notifyAll();
+				}
+			}
+		}
+
+		private void search() throws InterruptedException {
+			while (true) {
+				SearchStep step;
+				if (graphSegments.isEmpty()) {
+					// the same as checkIfGraphIsEmpty of sequential search, replay decides if point is reiterated
+					if (!waitReiteration()) {
+						return;
+					}
+					step = searchVisitedSegments.step = new SearchStep(null);
+					checkIfGraphIsEmpty(ctx, true, reverseWaySearch, graphSegments, point, searchVisitedSegments,
+							reverseWaySearch ? "Route is not found to selected target point." :
+								"Route is not found from selected start point.");
+				} else {
+					RouteSegment segment = graphSegments.poll();
+					if (TRACE_ROUTING) {
+						printRoad(">", segment, reverseWaySearch);
+					}
+					step = searchVisitedSegments.step = new SearchStep(segment);
+					processRouteSegment(ctx, reverseWaySearch, graphSegments, searchVisitedSegments, segment, null,
+							false);
+					updateCalculationProgress(ctx, graphSegments, reverseWaySearch);
+				}
+				step.queueSize = graphSegments.size();
+				searchVisitedSegments.step = null;
+				if (!publish(step)) {
+					return;
+				}
+				if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+					throw new InterruptedException("Route calculation interrupted");
+				}
+			}
+		}
+
+		private synchronized boolean publish(SearchStep step) throws InterruptedException {
+			while (!stopped && steps.size() >= MAX_STEPS_AHEAD) {
+				wait();
+			}
+			steps.add(step);
+			notifyAll();
+			return !stopped;
+		}
+
+		private synchronized boolean waitReiteration() throws InterruptedException {
+			while (!stopped && !reiterate) {
+				wait();
+			}
+			reiterate = false;
+			return !stopped;
+		}
+
+		synchronized void stop() {
+			stopped = true;
+			notifyAll();
+		}
+
+		private synchronized SearchStep peekStep() throws InterruptedException {
+			while (steps.isEmpty()) {
+				wait();
+			}
+			return steps.getFirst();
+		}
+
+		private synchronized SearchStep takeStep() throws InterruptedException {
+			while (steps.isEmpty()) {
+				wait();
+			}
+			SearchStep step = steps.removeFirst();
+			notifyAll();
+			return step;
+		}
+
+		int size() {
+			return queueSize + finalSegments.size();
+		}
+
+		// head of queue as in RouteSegmentsQueue: final segment or segment polled on the next step
+		void peekHead() throws InterruptedException, IOException {
+			FinalRouteSegment finalSegment = finalSegments.peek();
+			SearchStep step = null;
+			if (queueSize > 0) {
+				step = peekStep();
+				if (!step.polled) {
+					rethrow(step.exception);
+				}
+			}
+			if (step == null || (finalSegment != null && ctx.roadPriorityComparator(finalSegment.distanceFromStart,
+					finalSegment.distanceToEnd, step.distanceFromStart, step.distanceToEnd) < 0)) {
+				headFinalSegment = finalSegment;
+				headDistanceFromStart = finalSegment.distanceFromStart;
+				headDistanceToEnd = finalSegment.distanceToEnd;
+			} else {
+				headFinalSegment = null;
+				headDistanceFromStart = step.distanceFromStart;
+				headDistanceToEnd = step.distanceToEnd;
+			}
+		}
+
+		void replayStep(DirectionSearch opposite) throws InterruptedException, IOException {
+			SearchStep step = takeStep();
+			apply(step);
+			for (OppositeCheck check : step.oppositeChecks) {
+				opposite.checkOppositeSegment(this, check);
+			}
+			ctx.alertFasterRoadToVisitedSegments += step.alertFasterRoadToVisitedSegments;
+			ctx.alertSlowerSegmentedWasVisitedEarlier += step.alertSlowerSegmentedWasVisitedEarlier;
+		}
+
+		boolean reiterate() throws InterruptedException, IOException {
+			if (point.others == null) {
+				return false;
+			}
+			synchronized (this) {
+				reiterate = true;
+				notifyAll();
+			}
+			apply(takeStep());
+			return queueSize > 0;
+		}
+
+		private void apply(SearchStep step) throws InterruptedException, IOException {
+			if (step.exception != null) {
+				rethrow(step.exception);
+			}
+			for (SegmentState state : step.segments) {
+				states.put(state.segment, state);
+				if (state.visited) {
+					visitedSegments.put(state.pointId, state.segment);
+				}
+			}
+			queueSize = step.queueSize;
+		}
+
+		// segment of search direction meets this (opposite) direction
+		void checkOppositeSegment(DirectionSearch search, OppositeCheck check) {
+			RouteSegment opposite = visitedSegments.get(check.oppositePointId);
+			if (opposite == null) {
+				return;
+			}
+			RouteSegment oppParent = getParentDiffId(opposite);
+			RouteSegment to = search.reverseWaySearch ? check.parentDiffId : oppParent;
+			RouteSegment from = !search.reverseWaySearch ? check.parentDiffId : oppParent;
+			if (checkViaRestrictions(from, to)) {
+				RouteSegment currentSegment = check.segment;
+				FinalRouteSegment frs = new FinalRouteSegment(currentSegment.getRoad(),
+						currentSegment.getSegmentStart(), currentSegment.getSegmentEnd());
+				frs.setParentRoute(check.parentRoute);
+				frs.reverseWaySearch = search.reverseWaySearch;
+				frs.distanceFromStart = getState(opposite).distanceFromStart + check.distanceFromStart;
+				frs.distanceToEnd = 0;
+				frs.opposite = opposite;
+				search.finalSegments.add(frs);
+			}
+		}
+
+		private SegmentState getState(RouteSegment segment) {
+			SegmentState state = states.get(segment);
+			if (state == null) {
+				throw new IllegalStateException("Segment was not recorded " + segment);
+			}
+			return state;
+		}
+
+		private RouteSegment getParentRoute(RouteSegment segment) {
+			RouteSegment parentRoute = getState(segment).parentRoute;
+			return parentRoute == RouteSegment.NULL ? null : parentRoute;
+		}
+
+		private RouteSegment getParentDiffId(RouteSegment s) {
+			while (getParentRoute(s) != null && getParentRoute(s).getRoad().getId() == s.getRoad().getId()) {
+				s = getParentRoute(s);
+			}
+			return getParentRoute(s);
+		}
+
+		// copy of route as it was at the replayed step
+		RouteSegment copyRoute(RouteSegment segment) {
+			Map<RouteSegment, RouteSegment> copies = new IdentityHashMap<RouteSegment, RouteSegment>();
+			RouteSegment first = null;
+			RouteSegment last = null;
+			while (segment != null && segment != RouteSegment.NULL) {
+				RouteSegment copy = copies.get(segment);
+				boolean copied = copy != null;
+				if (!copied) {
+					copy = new RouteSegment(segment.road, segment.segStart, segment.segEnd);
+					copy.distanceFromStart = getState(segment).distanceFromStart;
+					copies.put(segment, copy);
+				}
+				if (last == null) {
+					first = copy;
+				} else {
+					last.parentRoute = copy;
+				}
+				if (copied) {
+					// cycle of parents is copied as it is
+					return first;
+				}
+				last = copy;
+				segment = getState(segment).parentRoute;
+			}
+			if (last != null) {
+				last.parentRoute = segment;
+			}
+			return first;
+		}
+	}
+
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			boolean reverseWaySearch, Queue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -200,6 +720,7 @@ public class BinaryRoutePlanner {
 						pos.setParentRoute(null);
 						pos.distanceFromStart = 0;
 						pos.distanceToEnd = estimatedDistance;
+						segmentChanged(visited, pos);
 						graphSegments.add(pos);
 					}
 					RouteSegment neg = next.initRouteSegment(false);
@@ -208,6 +729,7 @@ public class BinaryRoutePlanner {
 						neg.setParentRoute(null);
 						neg.distanceFromStart = 0;
 						neg.distanceToEnd = estimatedDistance;
+						segmentChanged(visited, neg);
 						graphSegments.add(neg);
 					}
 					if (!graphSegments.isEmpty()) {
@@ -254,7 +776,7 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
+			RouteSegment recalculationEnd, Queue<RouteSegment> graphDirectSegments, Queue<RouteSegment> graphReverseSegments, 
 			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true, false);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false, false);
@@ -320,22 +842,31 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, Queue<RouteSegment> graphDirectSegments,
+			Queue<RouteSegment> graphReverseSegments) {
+		updateCalculationProgress(ctx, graphDirectSegments, false);
+		updateCalculationProgress(ctx, graphReverseSegments, true);
+	}
+
+	private void updateCalculationProgress(final RoutingContext ctx, Queue<RouteSegment> graphSegments,
+			boolean reverseWaySearch) {
 		if (ctx.calculationProgress != null) {
-			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
-			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
-			if (graphDirectSegments.size() > 0 && ctx.getPlanRoadDirection() >= 0) {
-				RouteSegment peek = graphDirectSegments.peek();
-				ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
-						ctx.calculationProgress.distanceFromBegin);
-				ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
-			}
-			if (graphReverseSegments.size() > 0 && ctx.getPlanRoadDirection() <= 0) {
-				RouteSegment peek = graphReverseSegments.peek();
-				ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
+			if (!reverseWaySearch) {
+				ctx.calculationProgress.directSegmentQueueSize = graphSegments.size();
+				if (graphSegments.size() > 0 && ctx.getPlanRoadDirection() >= 0) {
+					RouteSegment peek = graphSegments.peek();
+					ctx.calculationProgress.distanceFromBegin = Math.max(peek.distanceFromStart,
+							ctx.calculationProgress.distanceFromBegin);
+					ctx.calculationProgress.directDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
+			} else {
+				ctx.calculationProgress.reverseSegmentQueueSize = graphSegments.size();
+				if (graphSegments.size() > 0 && ctx.getPlanRoadDirection() <= 0) {
+					RouteSegment peek = graphSegments.peek();
+					ctx.calculationProgress.distanceFromEnd = Math.max(peek.distanceFromStart + peek.distanceToEnd,
 							ctx.calculationProgress.distanceFromEnd);
-				ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+					ctx.calculationProgress.reverseDistance = peek.distanceFromStart + peek.distanceToEnd;
+				}
 			}
 		}
 	}
@@ -380,6 +911,12 @@ public class BinaryRoutePlanner {
 		System.out.println(logMsg);
 	}
 
+	// in parallel mode each direction evaluates with own router
+	private static VehicleRouter getRouter(RoutingContext ctx, boolean reverseWaySearch) {
+		VehicleRouter router = reverseWaySearch ? ctx.reverseSearchRouter : ctx.directSearchRouter;
+		return router != null ? router : ctx.getRouter();
+	}
+
 	private double calculateRouteSegmentTime(RoutingContext ctx, boolean reverseWaySearch, RouteSegment segment) {
 		final RouteDataObject road = segment.road;
 		// store <segment> in order to not have unique <segment, direction> in visitedSegments
@@ -392,22 +929,23 @@ public class BinaryRoutePlanner {
 
 		// calculate point and try to load neighbor ways if they are not loaded
 		double distOnRoadToPass = squareRootDist(x, y, prevX, prevY);
-		float priority = ctx.getRouter().defineSpeedPriority(road);
-		float speed = (ctx.getRouter().defineRoutingSpeed(road) * priority);
+		VehicleRouter router = getRouter(ctx, reverseWaySearch);
+		float priority = router.defineSpeedPriority(road);
+		float speed = (router.defineRoutingSpeed(road) * priority);
 		if (speed == 0) {
-			speed = (ctx.getRouter().getDefaultSpeed() * priority);
+			speed = (router.getDefaultSpeed() * priority);
 		}
 		// speed can not exceed max default speed according to A*
-		if (speed > ctx.getRouter().getMaxSpeed()) {
-			speed = ctx.getRouter().getMaxSpeed();
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
 		}
 		
 		// calculate possible obstacle plus time
-		double obstacle = ctx.getRouter().defineRoutingObstacle(road, segmentInd, prevSegmentInd > segmentInd);
+		double obstacle = router.defineRoutingObstacle(road, segmentInd, prevSegmentInd > segmentInd);
 		if (obstacle < 0) {
 			return -1;
 		}
-		double heightObstacle = ctx.getRouter().defineHeightObstacle(road, segmentInd, prevSegmentInd);
+		double heightObstacle = router.defineHeightObstacle(road, segmentInd, prevSegmentInd);
 		if (heightObstacle < 0) {
 			return -1;
 		}
@@ -418,7 +956,7 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
+			Queue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
             RouteSegment startSegment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) {
 		if (ASSERT_CHECKS && !checkMovementAllowed(ctx, reverseWaySearch, startSegment)) {
 			throw new IllegalStateException();
@@ -445,44 +983,12 @@ public class BinaryRoutePlanner {
 			}
 			// calculate new start segment time as we're going to assign to put to visited segments
 			float distFromStartPlusSegmentTime = currentSegment.distanceFromStart + segmentAndObstaclesTime;
-			// 2. check if segment was already visited in opposite direction
-			// We check before we calculate segmentTime (to not calculate it twice with opposite and calculate turns
-			// onto each segment).
-			boolean alreadyVisited = checkIfOppositeSegmentWasVisited(reverseWaySearch, graphSegments, currentSegment,
-					oppositeSegments);
- 			if (alreadyVisited) {
- 				// we don't stop here in order to allow improve found *potential* final segment - test case on short route
-				// directionAllowed = false;
-				// break;
-			}
- 			
-			// 3. upload segment itself to visited segments
-			long nextPntId = calculateRoutePointId(currentSegment);
-			RouteSegment existingSegment = visitedSegments.put(nextPntId, currentSegment);
-			if (existingSegment != null) {
-				if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
-					// insert back original segment (test case with large area way)
-					visitedSegments.put(nextPntId, existingSegment);
-					directionAllowed = false;
-					
-					if (TRACE_ROUTING) {
-						println("  >> Already visited");
-					}
-					break;
-				} else {
-					if (ctx.config.heuristicCoefficient <= 1) {
-						if (RoutingContext.PRINT_ROUTING_ALERTS) {
-							System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
-								+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
-						} else {
-							ctx.alertSlowerSegmentedWasVisitedEarlier++;
-						}
-					}
-				}
+			// 2-3. check opposite direction and upload segment itself to visited segments
+			if (!visitSegment(ctx, reverseWaySearch, graphSegments, visitedSegments, currentSegment,
+					oppositeSegments, distFromStartPlusSegmentTime)) {
+				directionAllowed = false;
+				break;
 			}
-						
-			// reassign @distanceFromStart to make it correct for visited segment
-			currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
 			
 			// 4. load road connections at the end of segment    
 			nextCurrentSegment = processIntersections(ctx, graphSegments, visitedSegments, currentSegment, reverseWaySearch, doNotAddIntersections);
@@ -494,7 +1000,7 @@ public class BinaryRoutePlanner {
 	
 	private boolean checkMovementAllowed(final RoutingContext ctx, boolean reverseWaySearch, RouteSegment segment) {
 		boolean directionAllowed;
-		int oneway = ctx.getRouter().isOneWay(segment.getRoad());
+		int oneway = getRouter(ctx, reverseWaySearch).isOneWay(segment.getRoad());
 		// use positive direction as agreed
 		if (!reverseWaySearch) {
 			if (segment.isPositive()) {
@@ -544,8 +1050,63 @@ public class BinaryRoutePlanner {
 		return s.getParentRoute();
 	}
 
+	// false if segment was already visited faster
+	private boolean visitSegment(RoutingContext ctx, boolean reverseWaySearch, Queue<RouteSegment> graphSegments,
+			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment currentSegment,
+			TLongObjectHashMap<RouteSegment> oppositeSegments, float distFromStartPlusSegmentTime) {
+		// 2. check if segment was already visited in opposite direction
+		// We check before we calculate segmentTime (to not calculate it twice with opposite and calculate turns
+		// onto each segment).
+		boolean alreadyVisited;
+		if (visitedSegments instanceof RecordingSegmentsMap) {
+			// parallel mode: opposite direction is checked by replay
+			long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(),
+					currentSegment.getSegmentEnd(), currentSegment.getSegmentStart());
+			((RecordingSegmentsMap) visitedSegments).step.oppositeChecks.add(
+					new OppositeCheck(currentSegment, currPoint, getParentDiffId(currentSegment)));
+			alreadyVisited = false;
+		} else {
+			alreadyVisited = checkIfOppositeSegmentWasVisited(reverseWaySearch, graphSegments, currentSegment,
+					oppositeSegments);
+		}
+		if (alreadyVisited) {
+			// we don't stop here in order to allow improve found *potential* final segment - test case on short route
+			// directionAllowed = false;
+			// break;
+		}
+
+		// 3. upload segment itself to visited segments
+		long nextPntId = calculateRoutePointId(currentSegment);
+		RouteSegment existingSegment = visitedSegments.get(nextPntId);
+		if (existingSegment != null) {
+			if (distFromStartPlusSegmentTime > existingSegment.distanceFromStart) {
+				// keep original segment (test case with large area way)
+				if (TRACE_ROUTING) {
+					println("  >> Already visited");
+				}
+				return false;
+			} else {
+				if (ctx.config.heuristicCoefficient <= 1) {
+					if (RoutingContext.PRINT_ROUTING_ALERTS) {
+						System.err.println("! ALERT slower segment was visited earlier " + distFromStartPlusSegmentTime + " > "
+							+ existingSegment.distanceFromStart + ": " + currentSegment + " - " + existingSegment);
+					} else if (visitedSegments instanceof RecordingSegmentsMap) {
+						((RecordingSegmentsMap) visitedSegments).step.alertSlowerSegmentedWasVisitedEarlier++;
+					} else {
+						ctx.alertSlowerSegmentedWasVisitedEarlier++;
+					}
+				}
+			}
+		}
+
+		// reassign @distanceFromStart to make it correct for visited segment
+		currentSegment.distanceFromStart = distFromStartPlusSegmentTime;
+		visitedSegments.put(nextPntId, currentSegment);
+		return true;
+	}
+
 	private boolean checkIfOppositeSegmentWasVisited(boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment currentSegment, TLongObjectHashMap<RouteSegment> oppositeSegments) {
+			Queue<RouteSegment> graphSegments, RouteSegment currentSegment, TLongObjectHashMap<RouteSegment> oppositeSegments) {
 		// check inverse direction for opposite
 		long currPoint = calculateRoutePointInternalId(currentSegment.getRoad(), 
 				currentSegment.getSegmentEnd(), currentSegment.getSegmentStart());
@@ -600,8 +1161,8 @@ public class BinaryRoutePlanner {
 				(parent == null || parent.getRoad().getRestrictionLength() == 0)) {
 			return false;
 		}
-		ctx.segmentsToVisitPrescripted.clear();
-		ctx.segmentsToVisitNotForbidden.clear();
+		getSegmentsToVisitPrescripted(ctx, reverseWay).clear();
+		getSegmentsToVisitNotForbidden(ctx, reverseWay).clear();
 		processRestriction(ctx, inputNext, reverseWay, 0, road);
 		if (parent != null) {
 			processRestriction(ctx, inputNext, reverseWay, road.id, parent.getRoad());
@@ -609,9 +1170,19 @@ public class BinaryRoutePlanner {
 		return true;
 	}
 
+	private static List<RouteSegment> getSegmentsToVisitPrescripted(RoutingContext ctx, boolean reverseWay) {
+		return reverseWay ? ctx.reverseSegmentsToVisitPrescripted : ctx.segmentsToVisitPrescripted;
+	}
+
+	private static List<RouteSegment> getSegmentsToVisitNotForbidden(RoutingContext ctx, boolean reverseWay) {
+		return reverseWay ? ctx.reverseSegmentsToVisitNotForbidden : ctx.segmentsToVisitNotForbidden;
+	}
+
 
 	protected void processRestriction(RoutingContext ctx, RouteSegment inputNext, boolean reverseWay, long viaId,
 			RouteDataObject road) {
+		List<RouteSegment> segmentsToVisitPrescripted = getSegmentsToVisitPrescripted(ctx, reverseWay);
+		List<RouteSegment> segmentsToVisitNotForbidden = getSegmentsToVisitNotForbidden(ctx, reverseWay);
 		boolean via = viaId != 0;
 		RouteSegment next = inputNext;
 		boolean exclusiveRestriction = false;
@@ -674,11 +1245,11 @@ public class BinaryRoutePlanner {
 					|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON || type == MapRenderingTypes.RESTRICTION_NO_U_TURN) {
 				// next = next.next; continue;
 				if (via) {
-					ctx.segmentsToVisitPrescripted.remove(next);
+					segmentsToVisitPrescripted.remove(next);
 				}
 			} else if (type == -1) {
 				// case no restriction
-				ctx.segmentsToVisitNotForbidden.add(next);
+				segmentsToVisitNotForbidden.add(next);
 			} else {
 				if (!via) {
 					// case exclusive restriction (only_right, only_straight, ...)
@@ -687,21 +1258,21 @@ public class BinaryRoutePlanner {
 					// 2. in case we are going forward we have one "in" and many "out"
 					if (!reverseWay) {
 						exclusiveRestriction = true;
-						ctx.segmentsToVisitNotForbidden.clear();
-						ctx.segmentsToVisitPrescripted.add(next);
+						segmentsToVisitNotForbidden.clear();
+						segmentsToVisitPrescripted.add(next);
 					} else {
-						ctx.segmentsToVisitNotForbidden.add(next);
+						segmentsToVisitNotForbidden.add(next);
 					}
 				}
 			}
 			next = next.next;
 		}
 		if (!via) {
-			ctx.segmentsToVisitPrescripted.addAll(ctx.segmentsToVisitNotForbidden);
+			segmentsToVisitPrescripted.addAll(segmentsToVisitNotForbidden);
 		}
 	}
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
+	private RouteSegment processIntersections(RoutingContext ctx, Queue<RouteSegment> graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments,  RouteSegment currentSegment,
 			boolean reverseWaySearch, boolean doNotAddIntersections) {
 		RouteSegment nextCurrentSegment = null;
@@ -731,6 +1302,7 @@ public class BinaryRoutePlanner {
 						nextCurrentSegment.setParentRoute(currentSegment);
 						nextCurrentSegment.distanceFromStart = currentSegment.distanceFromStart;
 						nextCurrentSegment.distanceToEnd = distanceToEnd;
+						segmentChanged(visitedSegments, nextCurrentSegment);
 						final int nx = nextCurrentSegment.getRoad().getPoint31XTile(nextCurrentSegment.getSegmentEnd());
 						final int ny = nextCurrentSegment.getRoad().getPoint31YTile(nextCurrentSegment.getSegmentEnd());
 						if (nx == x && ny == y) {
@@ -753,7 +1325,7 @@ public class BinaryRoutePlanner {
 		Iterator<RouteSegment> nextIterator = null;
 		boolean thereAreRestrictions = proccessRestrictions(ctx, currentSegment, connectedNextSegment, reverseWaySearch);
 		if (thereAreRestrictions) {
-			nextIterator = ctx.segmentsToVisitPrescripted.iterator();
+			nextIterator = getSegmentsToVisitPrescripted(ctx, reverseWaySearch).iterator();
 			if (TRACE_ROUTING) {
 				println("  >> There are restrictions");
 			}
@@ -797,19 +1369,20 @@ public class BinaryRoutePlanner {
 					nextCurrentSegment.setParentRoute(currentSegment);
 					nextCurrentSegment.distanceFromStart = currentSegment.distanceFromStart;
 					nextCurrentSegment.distanceToEnd = distanceToEnd;
+					segmentChanged(visitedSegments, nextCurrentSegment);
 				}
 			}
 		}
 		return nextCurrentSegment;
 	}
 
-	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, PriorityQueue<RouteSegment> graphSegments,
+	private boolean processOneRoadIntersection(RoutingContext ctx, boolean reverseWaySearch, Queue<RouteSegment> graphSegments,
 			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment, RouteSegment next) {
 		if (next != null) {
 			if (!checkMovementAllowed(ctx, reverseWaySearch, next)) {
 				return false;
 			}
-			float obstaclesTime = (float) ctx.getRouter().calculateTurnTime(next, 
+			float obstaclesTime = (float) getRouter(ctx, reverseWaySearch).calculateTurnTime(next, 
 					next.isPositive() ? next.getRoad().getPointsLength() - 1 : 0,    
 					segment, segment.getSegmentEnd());
 			if (obstaclesTime < 0) {
@@ -847,6 +1420,8 @@ public class BinaryRoutePlanner {
 							if (RoutingContext.PRINT_ROUTING_ALERTS) {
 								System.err.println("! ALERT new faster path to a visited segment: "
 										+ (distFromStart + routeSegmentTime) + " < " + visIt.distanceFromStart + ": " + next + " - " + visIt);
+							} else if (visitedSegments instanceof RecordingSegmentsMap) {
+								((RecordingSegmentsMap) visitedSegments).step.alertFasterRoadToVisitedSegments++;
 							} else {
 								ctx.alertFasterRoadToVisitedSegments++;
 							}
@@ -870,6 +1445,7 @@ public class BinaryRoutePlanner {
 				}
 				// put additional information to recover whole route after
 				next.setParentRoute(segment);
+				segmentChanged(visitedSegments, next);
 				if (graphSegments != null) {
 					graphSegments.add(next);
 				}
@@ -966,6 +1542,9 @@ public class BinaryRoutePlanner {
 		// NON-VISITED: Approximated (h(x)) time from @segStart of @this route segment to End [Start for reverse A*] 
 		// VISITED: Approximated (h(x)) time from @segEnd of @this route segment to End [Start for reverse A*]
 		float distanceToEnd = 0;
+		
+		// # Position in RouteSegmentHeap (-1 if segment is not there) to update priority instead of adding duplicate
+		int heapIndex = -1;
 
 		public RouteSegment(RouteDataObject road, int segmentStart, int segmentEnd) {
 			this.road = road;
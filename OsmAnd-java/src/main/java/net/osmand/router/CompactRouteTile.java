@@ -0,0 +1,196 @@
+package net.osmand.router;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact point index of loaded routing tile (see {@link RoutingConfiguration#useCompactTiles}).
+ * <p>
+ * Regular tile creates {@link RouteSegment} for every point of every road and keeps them in hash map
+ * (that is ~3.5 times more than roads themselves). Here all points of the tile are packed into
+ * primitive arrays (sorted point key, road index, point index - 14 bytes per point) and segments
+ * are created only for points which are really requested by routing.
+ * Segments for the same point are linked by {@link RouteSegment#nextLoaded} in the same order as
+ * {@link RoutingContext.RoutingSubregionTile#add(RouteDataObject)} does, roads of tile are returned in the same
+ * order as regular tile returns them.
+ */
+public class CompactRouteTile {
+
+	// estimated size of materialized RouteSegment with its hash map entry
+	static final int SEGMENT_SIZE = 80;
+	static final int POINT_SIZE = 8 + 4 + 2;
+
+	private RouteDataObject[] roads = new RouteDataObject[16];
+	private int roadsCount;
+
+	private long[] keys = new long[64];
+	private int[] pointRoads = new int[64];
+	private short[] pointIndexes = new short[64];
+	private int pointsCount;
+	private boolean sorted = true;
+
+	public void add(RouteDataObject ro) {
+		if (roadsCount == roads.length) {
+			roads = Arrays.copyOf(roads, roadsCount + (roadsCount >> 1));
+		}
+		int roadInd = roadsCount++;
+		roads[roadInd] = ro;
+		int len = ro.getPointsLength();
+		if (pointsCount + len > keys.length) {
+			int ncapacity = Math.max(pointsCount + len, pointsCount + (pointsCount >> 1));
+			keys = Arrays.copyOf(keys, ncapacity);
+			pointRoads = Arrays.copyOf(pointRoads, ncapacity);
+			pointIndexes = Arrays.copyOf(pointIndexes, ncapacity);
+		}
+		for (int i = 0; i < len; i++) {
+			keys[pointsCount] = RoutingContext.calcPointKey(ro, i);
+			pointRoads[pointsCount] = roadInd;
+			pointIndexes[pointsCount] = (short) i;
+			pointsCount++;
+		}
+		sorted = false;
+	}
+
+	public int getRoadsCount() {
+		return roadsCount;
+	}
+
+	public RouteDataObject getRoad(int ind) {
+		return roads[ind];
+	}
+
+	public int getPointsCount() {
+		return pointsCount;
+	}
+
+	/**
+	 * Adds roads of tile in the same order as regular tile does: by points in iteration order of hash map filled
+	 * with point keys (in order of adding), roads of one point in order of adding.
+	 */
+	public void loadAllObjects(List<RouteDataObject> toFillIn, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
+		// the same hash as map of regular tile (keys are added in the same order), so it's iterated in the same order
+		TLongHashSet points = new TLongHashSet();
+		for (int i = 0; i < roadsCount; i++) {
+			RouteDataObject ro = roads[i];
+			for (int k = 0; k < ro.getPointsLength(); k++) {
+				points.add(RoutingContext.calcPointKey(ro, k));
+			}
+		}
+		TLongIterator it = points.iterator();
+		while (it.hasNext()) {
+			long key = it.next();
+			for (int i = searchKey(key); i < pointsCount && keys[i] == key; i++) {
+				RouteDataObject ro = roads[pointRoads[i]];
+				if (!excludeDuplications.contains(ro.id)) {
+					excludeDuplications.put(ro.id, ro);
+					toFillIn.add(ro);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return new chain of segments (linked by nextLoaded) passing through point or null
+	 */
+	public RouteSegment createSegments(long key) {
+		RouteSegment first = null;
+		RouteSegment last = null;
+		for (int i = searchKey(key); i < pointsCount && keys[i] == key; i++) {
+			RouteSegment segment = new RouteSegment(roads[pointRoads[i]], pointIndexes[i]);
+			if (first == null) {
+				first = segment;
+			} else {
+				last.nextLoaded = segment;
+			}
+			last = segment;
+		}
+		return first;
+	}
+
+	// first index of point with key (or index to insert key) in sorted points
+	private int searchKey(long key) {
+		if (!sorted) {
+			sort(0, pointsCount - 1);
+			sorted = true;
+		}
+		int lo = 0;
+		int hi = pointsCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < key) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	// order by key, then by insertion order (road, point) to keep chains as in original tile
+	private int compare(int i, int j) {
+		if (keys[i] != keys[j]) {
+			return keys[i] < keys[j] ? -1 : 1;
+		}
+		if (pointRoads[i] != pointRoads[j]) {
+			return pointRoads[i] < pointRoads[j] ? -1 : 1;
+		}
+		return pointIndexes[i] < pointIndexes[j] ? -1 : (pointIndexes[i] == pointIndexes[j] ? 0 : 1);
+	}
+
+	private void swap(int i, int j) {
+		long k = keys[i];
+		keys[i] = keys[j];
+		keys[j] = k;
+		int r = pointRoads[i];
+		pointRoads[i] = pointRoads[j];
+		pointRoads[j] = r;
+		short p = pointIndexes[i];
+		pointIndexes[i] = pointIndexes[j];
+		pointIndexes[j] = p;
+	}
+
+	private void sort(int lo, int hi) {
+		while (lo < hi) {
+			if (hi - lo < 16) {
+				for (int i = lo + 1; i <= hi; i++) {
+					for (int j = i; j > lo && compare(j - 1, j) > 0; j--) {
+						swap(j - 1, j);
+					}
+				}
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			// median of three as pivot placed to hi
+			if (compare(mid, lo) < 0) {
+				swap(mid, lo);
+			}
+			if (compare(hi, lo) < 0) {
+				swap(hi, lo);
+			}
+			if (compare(mid, hi) < 0) {
+				swap(mid, hi);
+			}
+			int store = lo;
+			for (int i = lo; i < hi; i++) {
+				if (compare(i, hi) < 0) {
+					swap(i, store++);
+				}
+			}
+			swap(store, hi);
+			// recurse into smaller part
+			if (store - lo < hi - store) {
+				sort(lo, store - 1);
+				lo = store + 1;
+			} else {
+				sort(store + 1, hi);
+				hi = store - 1;
+			}
+		}
+	}
+}
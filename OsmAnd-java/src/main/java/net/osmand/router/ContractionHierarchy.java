@@ -0,0 +1,670 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import org.apache.commons.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Contraction hierarchy of road graph for fixed routing profile, it is built offline by
+ * {@link ContractionHierarchyBuilder} and stored in sidecar file next to obf files.
+ * <p>
+ * Graph nodes are road junctions (points shared by several roads and road ends), edges are pieces of roads
+ * between junctions and shortcuts over contracted nodes. Query is bidirectional Dijkstra
+ * which goes only to nodes of higher rank, found shortcuts are expanded back into road pieces and
+ * converted to {@link RouteSegmentResult}s with roads loaded by {@link RoutingContext}.
+ * Turn costs and turn restrictions are not part of the graph.
+ */
+public class ContractionHierarchy {
+
+	private static final Log log = PlatformUtil.getLog(ContractionHierarchy.class);
+
+	static final int MAGIC = 0x4f434831; // "OCH1"
+	static final int VERSION = 1;
+
+	final String profile;
+	final List<SourceFile> sources;
+	// sorted keys of junctions, node id is index in this array
+	final long[] nodeKeys;
+	final int[] nodeRank;
+
+	final int edgesCount;
+	final int[] edgeFrom;
+	final int[] edgeTo;
+	final float[] edgeWeight;
+	// shortcut is composed of 2 edges (from -> via, via -> to), for road pieces child edges are -1
+	final int[] edgeChild1;
+	final int[] edgeChild2;
+	final long[] edgeRoad;
+	final short[] edgeStart;
+	final short[] edgeEnd;
+
+	// edges to nodes of higher rank: outgoing for forward search, incoming for backward search
+	final int[] forwardUpStart;
+	final int[] forwardUpEdges;
+	final int[] backwardUpStart;
+	final int[] backwardUpEdges;
+
+	ContractionHierarchy(String profile, List<SourceFile> sources, long[] nodeKeys, int[] nodeRank, int edgesCount,
+			int[] edgeFrom, int[] edgeTo, float[] edgeWeight, int[] edgeChild1, int[] edgeChild2,
+			long[] edgeRoad, short[] edgeStart, short[] edgeEnd) {
+		this.profile = profile;
+		this.sources = sources;
+		this.nodeKeys = nodeKeys;
+		this.nodeRank = nodeRank;
+		this.edgesCount = edgesCount;
+		this.edgeFrom = edgeFrom;
+		this.edgeTo = edgeTo;
+		this.edgeWeight = edgeWeight;
+		this.edgeChild1 = edgeChild1;
+		this.edgeChild2 = edgeChild2;
+		this.edgeRoad = edgeRoad;
+		this.edgeStart = edgeStart;
+		this.edgeEnd = edgeEnd;
+		int nodes = nodeKeys.length;
+		forwardUpStart = new int[nodes + 1];
+		backwardUpStart = new int[nodes + 1];
+		for (int e = 0; e < edgesCount; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				forwardUpStart[edgeFrom[e] + 1]++;
+			} else {
+				backwardUpStart[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < nodes; i++) {
+			forwardUpStart[i + 1] += forwardUpStart[i];
+			backwardUpStart[i + 1] += backwardUpStart[i];
+		}
+		forwardUpEdges = new int[forwardUpStart[nodes]];
+		backwardUpEdges = new int[backwardUpStart[nodes]];
+		int[] fpos = Arrays.copyOf(forwardUpStart, nodes);
+		int[] bpos = Arrays.copyOf(backwardUpStart, nodes);
+		for (int e = 0; e < edgesCount; e++) {
+			if (nodeRank[edgeTo[e]] > nodeRank[edgeFrom[e]]) {
+				forwardUpEdges[fpos[edgeFrom[e]]++] = e;
+			} else {
+				backwardUpEdges[bpos[edgeTo[e]]++] = e;
+			}
+		}
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public int getNodesCount() {
+		return nodeKeys.length;
+	}
+
+	public int getEdgesCount() {
+		return edgesCount;
+	}
+
+	public int getShortcutsCount() {
+		int cnt = 0;
+		for (int e = 0; e < edgesCount; e++) {
+			if (edgeChild1[e] >= 0) {
+				cnt++;
+			}
+		}
+		return cnt;
+	}
+
+	int getNode(int x31, int y31) {
+		int ind = Arrays.binarySearch(nodeKeys, RoutingContext.calcPointKey(x31, y31));
+		return ind >= 0 ? ind : -1;
+	}
+
+	/**
+	 * @return true if hierarchy was built for the same profile from the same (not modified) files
+	 */
+	public boolean isValidFor(String profile, List<File> files) {
+		if (!this.profile.equals(profile) || files.size() != sources.size()) {
+			return false;
+		}
+		for (File f : files) {
+			boolean found = false;
+			for (SourceFile s : sources) {
+				if (s.name.equals(f.getName())) {
+					found = s.length == f.length() && s.lastModified == f.lastModified();
+					break;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(profile);
+			out.writeInt(sources.size());
+			for (SourceFile s : sources) {
+				out.writeUTF(s.name);
+				out.writeLong(s.length);
+				out.writeLong(s.lastModified);
+			}
+			out.writeInt(nodeKeys.length);
+			for (int i = 0; i < nodeKeys.length; i++) {
+				out.writeLong(nodeKeys[i]);
+				out.writeInt(nodeRank[i]);
+			}
+			out.writeInt(edgesCount);
+			for (int e = 0; e < edgesCount; e++) {
+				out.writeInt(edgeFrom[e]);
+				out.writeInt(edgeTo[e]);
+				out.writeFloat(edgeWeight[e]);
+				out.writeInt(edgeChild1[e]);
+				if (edgeChild1[e] >= 0) {
+					out.writeInt(edgeChild2[e]);
+				} else {
+					out.writeLong(edgeRoad[e]);
+					out.writeShort(edgeStart[e]);
+					out.writeShort(edgeEnd[e]);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ContractionHierarchy readFromFile(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a contraction hierarchy file " + file.getName());
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported contraction hierarchy version " + version + " in " + file.getName());
+			}
+			String profile = in.readUTF();
+			int sourcesCount = in.readInt();
+			List<SourceFile> sources = new ArrayList<SourceFile>(sourcesCount);
+			for (int i = 0; i < sourcesCount; i++) {
+				sources.add(new SourceFile(in.readUTF(), in.readLong(), in.readLong()));
+			}
+			int nodes = in.readInt();
+			long[] nodeKeys = new long[nodes];
+			int[] nodeRank = new int[nodes];
+			for (int i = 0; i < nodes; i++) {
+				nodeKeys[i] = in.readLong();
+				nodeRank[i] = in.readInt();
+			}
+			int edges = in.readInt();
+			int[] edgeFrom = new int[edges];
+			int[] edgeTo = new int[edges];
+			float[] edgeWeight = new float[edges];
+			int[] edgeChild1 = new int[edges];
+			int[] edgeChild2 = new int[edges];
+			long[] edgeRoad = new long[edges];
+			short[] edgeStart = new short[edges];
+			short[] edgeEnd = new short[edges];
+			for (int e = 0; e < edges; e++) {
+				edgeFrom[e] = in.readInt();
+				edgeTo[e] = in.readInt();
+				edgeWeight[e] = in.readFloat();
+				edgeChild1[e] = in.readInt();
+				if (edgeChild1[e] >= 0) {
+					edgeChild2[e] = in.readInt();
+				} else {
+					edgeChild2[e] = -1;
+					edgeRoad[e] = in.readLong();
+					edgeStart[e] = in.readShort();
+					edgeEnd[e] = in.readShort();
+				}
+			}
+			return new ContractionHierarchy(profile, sources, nodeKeys, nodeRank, edges, edgeFrom, edgeTo,
+					edgeWeight, edgeChild1, edgeChild2, edgeRoad, edgeStart, edgeEnd);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Calculates route between 2 points, context should be created for the same profile and files as hierarchy.
+	 * @return prepared route or null if points are not connected
+	 */
+	public List<RouteSegmentResult> searchRoute(RoutingContext ctx, LatLon start, LatLon end) throws IOException {
+		long timeToCalculate = System.nanoTime();
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		RouteSegmentPoint startPoint = frontEnd.findRouteSegment(start.getLatitude(), start.getLongitude(), ctx, null);
+		RouteSegmentPoint endPoint = frontEnd.findRouteSegment(end.getLatitude(), end.getLongitude(), ctx, null);
+		if (startPoint == null || endPoint == null) {
+			log.info("Start or end point is too far from road");
+			return null;
+		}
+		List<RouteSegmentResult> res = searchRoute(ctx, startPoint, endPoint);
+		if (res == null) {
+			return null;
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.timeToCalculate += (System.nanoTime() - timeToCalculate);
+		}
+		return new RouteResultPreparation().prepareResult(ctx, res, false);
+	}
+
+	List<RouteSegmentResult> searchRoute(RoutingContext ctx, RouteSegmentPoint startPoint, RouteSegmentPoint endPoint)
+			throws IOException {
+		VehicleRouter router = ctx.getRouter();
+		List<RoadPiece> startPieces = attachToGraph(router, startPoint, true);
+		List<RoadPiece> endPieces = attachToGraph(router, endPoint, false);
+		RoadPiece direct = findDirectPiece(router, startPoint, endPoint);
+
+		Query q = new Query();
+		q.init(startPieces, q.forward, q.forwardQueue);
+		q.init(endPieces, q.backward, q.backwardQueue);
+		q.best = direct != null ? direct.cost : Float.POSITIVE_INFINITY;
+		q.run();
+		if (q.meetNode == -1) {
+			if (direct == null) {
+				log.info("Route is not found in contraction hierarchy");
+				return null;
+			}
+			List<RouteSegmentResult> res = new ArrayList<RouteSegmentResult>();
+			res.add(new RouteSegmentResult(direct.road, direct.start, direct.end));
+			return res;
+		}
+		TIntArrayList path = unpack(q.getPath());
+		RoadPiece first = q.getFirstPiece();
+		RoadPiece last = q.getLastPiece();
+		List<RouteSegmentResult> res = new ArrayList<RouteSegmentResult>();
+		appendPiece(res, first.road, first.start, first.end);
+		for (int i = 0; i < path.size(); i++) {
+			int e = path.get(i);
+			RouteDataObject road = loadRoad(ctx, res, edgeFrom[e], edgeRoad[e]);
+			if (road == null) {
+				log.error("Road " + (edgeRoad[e] >> 6) + " of contraction hierarchy is not found in maps");
+				return null;
+			}
+			appendPiece(res, road, edgeStart[e], edgeEnd[e]);
+		}
+		appendPiece(res, last.road, last.start, last.end);
+		return res;
+	}
+
+	/**
+	 * @return shortest distance between nodes (for tests) or -1 if nodes are not connected
+	 */
+	float calculateDistance(int start, int end) {
+		Query q = new Query();
+		q.add(q.forward, q.forwardQueue, start, 0, null);
+		q.add(q.backward, q.backwardQueue, end, 0, null);
+		q.run();
+		return q.meetNode == -1 ? -1 : q.best;
+	}
+
+	TIntArrayList findPath(int start, int end) {
+		Query q = new Query();
+		q.add(q.forward, q.forwardQueue, start, 0, null);
+		q.add(q.backward, q.backwardQueue, end, 0, null);
+		q.run();
+		return q.meetNode == -1 ? null : unpack(q.getPath());
+	}
+
+	// replaces shortcuts with original road edges
+	TIntArrayList unpack(TIntArrayList path) {
+		TIntArrayList res = new TIntArrayList(path.size() * 4);
+		TIntArrayList stack = new TIntArrayList();
+		for (int i = 0; i < path.size(); i++) {
+			stack.add(path.get(i));
+			while (!stack.isEmpty()) {
+				int e = stack.removeAt(stack.size() - 1);
+				if (edgeChild1[e] >= 0) {
+					stack.add(edgeChild2[e]);
+					stack.add(edgeChild1[e]);
+				} else {
+					res.add(e);
+				}
+			}
+		}
+		return res;
+	}
+
+	// pieces of road from the point to the nearest junctions (start) or from the nearest junctions to the point (end)
+	private List<RoadPiece> attachToGraph(VehicleRouter router, RouteSegmentPoint pnt, boolean start) {
+		List<RoadPiece> pieces = new ArrayList<RoadPiece>(2);
+		RouteDataObject road = pnt.getRoad();
+		// projection is between segStart - 1 and segStart (see RoutePlannerFrontEnd.findRouteSegment)
+		int hi = pnt.getSegmentStart();
+		int lo = hi - 1;
+		int oneWay = router.isOneWay(road);
+		int len = road.getPointsLength();
+		int next = -1;
+		for (int i = hi; i < len && next == -1; i++) {
+			next = getNode(road.getPoint31XTile(i), road.getPoint31YTile(i)) >= 0 ? i : -1;
+		}
+		int prev = -1;
+		for (int i = lo; i >= 0 && prev == -1; i--) {
+			prev = getNode(road.getPoint31XTile(i), road.getPoint31YTile(i)) >= 0 ? i : -1;
+		}
+		if (start) {
+			if (oneWay >= 0 && next != -1) {
+				addPiece(pieces, router, road, lo, next, next);
+			}
+			if (oneWay <= 0 && prev != -1) {
+				addPiece(pieces, router, road, hi, prev, prev);
+			}
+		} else {
+			if (oneWay >= 0 && prev != -1) {
+				addPiece(pieces, router, road, prev, hi, prev);
+			}
+			if (oneWay <= 0 && next != -1) {
+				addPiece(pieces, router, road, next, lo, next);
+			}
+		}
+		return pieces;
+	}
+
+	private void addPiece(List<RoadPiece> pieces, VehicleRouter router, RouteDataObject road, int from, int to, int nodeInd) {
+		float cost = RoutingContext.calculateSegmentTime(router, road, from, to);
+		if (cost >= 0) {
+			int node = getNode(road.getPoint31XTile(nodeInd), road.getPoint31YTile(nodeInd));
+			pieces.add(new RoadPiece(road, from, to, node, cost));
+		}
+	}
+
+	// both points are on the same road and route could go along it without junctions
+	private RoadPiece findDirectPiece(VehicleRouter router, RouteSegmentPoint s, RouteSegmentPoint e) {
+		if (s.getRoad().getId() != e.getRoad().getId()) {
+			return null;
+		}
+		RouteDataObject road = s.getRoad();
+		int oneWay = router.isOneWay(road);
+		int shi = s.getSegmentStart();
+		int slo = shi - 1;
+		int ehi = e.getSegmentStart();
+		int elo = ehi - 1;
+		int from;
+		int to;
+		if (oneWay >= 0 && slo <= elo) {
+			from = slo;
+			to = ehi;
+		} else if (oneWay <= 0 && shi >= ehi) {
+			from = shi;
+			to = elo;
+		} else {
+			return null;
+		}
+		float cost = RoutingContext.calculateSegmentTime(router, road, from, to);
+		return cost < 0 ? null : new RoadPiece(road, from, to, -1, cost);
+	}
+
+	private RouteDataObject loadRoad(RoutingContext ctx, List<RouteSegmentResult> res, int node, long roadId) {
+		if (!res.isEmpty() && res.get(res.size() - 1).getObject().getId() == roadId) {
+			return res.get(res.size() - 1).getObject();
+		}
+		long key = nodeKeys[node];
+		int x31 = RoutingContext.getPointKeyX31(key);
+		int y31 = RoutingContext.getPointKeyY31(key);
+		RouteSegment s = ctx.loadRouteSegment(x31, y31, 0);
+		while (s != null) {
+			if (s.getRoad().getId() == roadId) {
+				return s.getRoad();
+			}
+			s = s.getNext();
+		}
+		return null;
+	}
+
+	private static void appendPiece(List<RouteSegmentResult> res, RouteDataObject road, int start, int end) {
+		if (start == end) {
+			return;
+		}
+		if (!res.isEmpty()) {
+			RouteSegmentResult last = res.get(res.size() - 1);
+			boolean lastPlus = last.getStartPointIndex() < last.getEndPointIndex();
+			if (last.getObject().getId() == road.getId() && last.getEndPointIndex() == start
+					&& lastPlus == (start < end)) {
+				last.setEndPointIndex(end);
+				return;
+			}
+		}
+		res.add(new RouteSegmentResult(road, start, end));
+	}
+
+	public static File getSidecarFile(File dir, String profile) {
+		return new File(dir, profile + ".ch.osmand");
+	}
+
+	@Override
+	public String toString() {
+		return "Contraction hierarchy " + profile + ": " + nodeKeys.length + " nodes, " + edgesCount + " edges ("
+				+ getShortcutsCount() + " shortcuts)";
+	}
+
+	static class SourceFile {
+		final String name;
+		final long length;
+		final long lastModified;
+
+		SourceFile(String name, long length, long lastModified) {
+			this.name = name;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		SourceFile(File f) {
+			this(f.getName(), f.length(), f.lastModified());
+		}
+	}
+
+	private static class RoadPiece {
+		final RouteDataObject road;
+		final int start;
+		final int end;
+		final int node;
+		final float cost;
+
+		RoadPiece(RouteDataObject road, int start, int end, int node, float cost) {
+			this.road = road;
+			this.start = start;
+			this.end = end;
+			this.node = node;
+			this.cost = cost;
+		}
+	}
+
+	// bidirectional search by edges going up in hierarchy
+	private class Query {
+		final TIntObjectHashMap<SearchLabel> forward = new TIntObjectHashMap<SearchLabel>();
+		final TIntObjectHashMap<SearchLabel> backward = new TIntObjectHashMap<SearchLabel>();
+		final NodeQueue forwardQueue = new NodeQueue();
+		final NodeQueue backwardQueue = new NodeQueue();
+		float best = Float.POSITIVE_INFINITY;
+		int meetNode = -1;
+
+		void init(List<RoadPiece> pieces, TIntObjectHashMap<SearchLabel> labels, NodeQueue queue) {
+			for (RoadPiece p : pieces) {
+				add(labels, queue, p.node, p.cost, p);
+			}
+		}
+
+		void add(TIntObjectHashMap<SearchLabel> labels, NodeQueue queue, int node, float dist, RoadPiece piece) {
+			SearchLabel l = labels.get(node);
+			if (l == null || l.dist > dist) {
+				l = new SearchLabel();
+				l.dist = dist;
+				l.piece = piece;
+				labels.put(node, l);
+				queue.add(node, dist);
+			}
+		}
+
+		void run() {
+			while (true) {
+				float ftop = forwardQueue.isEmpty() ? Float.POSITIVE_INFINITY : forwardQueue.peekPriority();
+				float btop = backwardQueue.isEmpty() ? Float.POSITIVE_INFINITY : backwardQueue.peekPriority();
+				if (Math.min(ftop, btop) >= best) {
+					break;
+				}
+				boolean forwardStep = ftop <= btop;
+				NodeQueue queue = forwardStep ? forwardQueue : backwardQueue;
+				TIntObjectHashMap<SearchLabel> labels = forwardStep ? forward : backward;
+				TIntObjectHashMap<SearchLabel> opposite = forwardStep ? backward : forward;
+				float dist = queue.peekPriority();
+				int node = queue.poll();
+				SearchLabel label = labels.get(node);
+				if (label.settled || dist > label.dist) {
+					continue;
+				}
+				label.settled = true;
+				SearchLabel oppositeLabel = opposite.get(node);
+				if (oppositeLabel != null && label.dist + oppositeLabel.dist < best) {
+					best = label.dist + oppositeLabel.dist;
+					meetNode = node;
+				}
+				int[] upStart = forwardStep ? forwardUpStart : backwardUpStart;
+				int[] upEdges = forwardStep ? forwardUpEdges : backwardUpEdges;
+				for (int i = upStart[node]; i < upStart[node + 1]; i++) {
+					int e = upEdges[i];
+					int next = forwardStep ? edgeTo[e] : edgeFrom[e];
+					float nd = label.dist + edgeWeight[e];
+					SearchLabel nl = labels.get(next);
+					if (nl == null) {
+						nl = new SearchLabel();
+						labels.put(next, nl);
+					} else if (nl.settled || nl.dist <= nd) {
+						continue;
+					}
+					nl.dist = nd;
+					nl.edge = e;
+					nl.piece = null;
+					queue.add(next, nd);
+				}
+			}
+		}
+
+		// edges from start to meet node and from meet node to end
+		TIntArrayList getPath() {
+			TIntArrayList path = new TIntArrayList();
+			SearchLabel l = forward.get(meetNode);
+			while (l.edge >= 0) {
+				path.add(l.edge);
+				l = forward.get(edgeFrom[l.edge]);
+			}
+			path.reverse();
+			l = backward.get(meetNode);
+			while (l.edge >= 0) {
+				path.add(l.edge);
+				l = backward.get(edgeTo[l.edge]);
+			}
+			return path;
+		}
+
+		RoadPiece getFirstPiece() {
+			SearchLabel l = forward.get(meetNode);
+			while (l.edge >= 0) {
+				l = forward.get(edgeFrom[l.edge]);
+			}
+			return l.piece;
+		}
+
+		RoadPiece getLastPiece() {
+			SearchLabel l = backward.get(meetNode);
+			while (l.edge >= 0) {
+				l = backward.get(edgeTo[l.edge]);
+			}
+			return l.piece;
+		}
+	}
+
+	private static class SearchLabel {
+		float dist;
+		// edge to reach node or -1 for the first node (reached by piece)
+		int edge = -1;
+		RoadPiece piece;
+		boolean settled;
+	}
+
+	/**
+	 * Binary heap of nodes with float priorities, node could be added several times (stale entries are skipped by caller).
+	 */
+	static class NodeQueue {
+		private int[] nodes = new int[64];
+		private float[] priorities = new float[64];
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		float peekPriority() {
+			return priorities[0];
+		}
+
+		void add(int node, float priority) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				priorities = Arrays.copyOf(priorities, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (priorities[parent] <= priority) {
+					break;
+				}
+				nodes[i] = nodes[parent];
+				priorities[i] = priorities[parent];
+				i = parent;
+			}
+			nodes[i] = node;
+			priorities[i] = priority;
+		}
+
+		int poll() {
+			int res = nodes[0];
+			size--;
+			int node = nodes[size];
+			float p = priorities[size];
+			int i = 0;
+			int half = size >>> 1;
+			while (i < half) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+					child++;
+				}
+				if (p <= priorities[child]) {
+					break;
+				}
+				nodes[i] = nodes[child];
+				priorities[i] = priorities[child];
+				i = child;
+			}
+			nodes[i] = node;
+			priorities[i] = p;
+			return res;
+		}
+	}
+}
@@ -0,0 +1,405 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.ContractionHierarchy.NodeQueue;
+import net.osmand.router.ContractionHierarchy.SourceFile;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+import org.apache.commons.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Offline preprocessing of route regions into {@link ContractionHierarchy} for one routing profile.
+ * <p>
+ * Nodes are contracted in order of edge difference (shortcuts added - edges removed + contracted neighbours)
+ * which is lazily recalculated when node is taken from queue. Shortcut is not added when limited local
+ * search (witness search) finds path which is not longer.
+ */
+public class ContractionHierarchyBuilder {
+
+	private static final Log log = PlatformUtil.getLog(ContractionHierarchyBuilder.class);
+
+	// limit of settled nodes for witness search, bigger limit gives less shortcuts but slower preprocessing
+	public int witnessSearchLimit = 500;
+
+	private final VehicleRouter router;
+	private final String profile;
+	private final List<SourceFile> sources = new ArrayList<SourceFile>();
+	private final List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+	private final TLongHashSet roadIds = new TLongHashSet();
+
+	private long[] nodeKeys;
+	private int edgesCount;
+	private int[] edgeFrom = new int[1024];
+	private int[] edgeTo = new int[1024];
+	private float[] edgeWeight = new float[1024];
+	private int[] edgeChild1 = new int[1024];
+	private int[] edgeChild2 = new int[1024];
+	private long[] edgeRoad = new long[1024];
+	private short[] edgeStart = new short[1024];
+	private short[] edgeEnd = new short[1024];
+
+	// contraction state
+	private TIntArrayList[] outEdges;
+	private TIntArrayList[] inEdges;
+	private boolean[] contracted;
+	private int[] contractedNeighbours;
+	private float[] witnessDist;
+	private final TIntArrayList witnessTouched = new TIntArrayList();
+	private final NodeQueue witnessQueue = new NodeQueue();
+
+	public ContractionHierarchyBuilder(VehicleRouter router, String profile) {
+		this.router = router;
+		this.profile = profile;
+	}
+
+	public void addRegion(BinaryMapIndexReader reader) throws IOException {
+		sources.add(new SourceFile(reader.getFile()));
+		SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(0,
+				Integer.MAX_VALUE, 0, Integer.MAX_VALUE, null);
+		for (RouteRegion region : reader.getRoutingIndexes()) {
+			List<RouteSubregion> subregions = reader.searchRouteIndexTree(request, region.getSubregions());
+			for (RouteSubregion sub : subregions) {
+				for (RouteDataObject ro : reader.loadRouteIndexData(sub)) {
+					if (ro != null && ro.getPointsLength() > 1 && router.acceptLine(ro) && roadIds.add(ro.getId())) {
+						roads.add(ro);
+					}
+				}
+			}
+		}
+		log.info("Loaded " + roads.size() + " roads after " + reader.getFile().getName());
+	}
+
+	public ContractionHierarchy build() {
+		createNodes();
+		createRoadEdges();
+		return buildHierarchy();
+	}
+
+	void initNodes(long[] sortedKeys) {
+		nodeKeys = sortedKeys;
+	}
+
+	ContractionHierarchy buildHierarchy() {
+		long time = System.currentTimeMillis();
+		int originalEdges = edgesCount;
+		int[] rank = contract();
+		log.info(String.format("Contraction hierarchy %s is built in %d ms: %d nodes, %d edges, %d shortcuts", profile,
+				System.currentTimeMillis() - time, nodeKeys.length, originalEdges, edgesCount - originalEdges));
+		return new ContractionHierarchy(profile, sources, nodeKeys, rank, edgesCount,
+				Arrays.copyOf(edgeFrom, edgesCount), Arrays.copyOf(edgeTo, edgesCount),
+				Arrays.copyOf(edgeWeight, edgesCount), Arrays.copyOf(edgeChild1, edgesCount),
+				Arrays.copyOf(edgeChild2, edgesCount), Arrays.copyOf(edgeRoad, edgesCount),
+				Arrays.copyOf(edgeStart, edgesCount), Arrays.copyOf(edgeEnd, edgesCount));
+	}
+
+	// junctions are road ends and points which occur more than once
+	private void createNodes() {
+		int points = 0;
+		for (RouteDataObject ro : roads) {
+			points += ro.getPointsLength();
+		}
+		long[] all = new long[points];
+		int p = 0;
+		for (RouteDataObject ro : roads) {
+			for (int i = 0; i < ro.getPointsLength(); i++) {
+				all[p++] = RoutingContext.calcPointKey(ro, i);
+			}
+		}
+		Arrays.sort(all);
+		TLongHashSet junctions = new TLongHashSet();
+		for (int i = 1; i < all.length; i++) {
+			if (all[i] == all[i - 1]) {
+				junctions.add(all[i]);
+			}
+		}
+		for (RouteDataObject ro : roads) {
+			int last = ro.getPointsLength() - 1;
+			junctions.add(RoutingContext.calcPointKey(ro, 0));
+			junctions.add(RoutingContext.calcPointKey(ro, last));
+		}
+		nodeKeys = junctions.toArray();
+		Arrays.sort(nodeKeys);
+	}
+
+	private int getNode(RouteDataObject ro, int ind) {
+		int n = Arrays.binarySearch(nodeKeys, RoutingContext.calcPointKey(ro, ind));
+		return n >= 0 ? n : -1;
+	}
+
+	private void createRoadEdges() {
+		for (RouteDataObject ro : roads) {
+			int oneWay = router.isOneWay(ro);
+			int start = 0;
+			int startNode = getNode(ro, 0);
+			for (int i = 1; i < ro.getPointsLength(); i++) {
+				int node = getNode(ro, i);
+				if (node == -1) {
+					continue;
+				}
+				if (node != startNode) {
+					if (oneWay >= 0) {
+						addRoadEdge(ro, startNode, node, start, i);
+					}
+					if (oneWay <= 0) {
+						addRoadEdge(ro, node, startNode, i, start);
+					}
+				}
+				start = i;
+				startNode = node;
+			}
+		}
+	}
+
+	private void addRoadEdge(RouteDataObject ro, int from, int to, int start, int end) {
+		float cost = RoutingContext.calculateSegmentTime(router, ro, start, end);
+		if (cost >= 0) {
+			int e = addEdge(from, to, cost, -1, -1);
+			edgeRoad[e] = ro.getId();
+			edgeStart[e] = (short) start;
+			edgeEnd[e] = (short) end;
+		}
+	}
+
+	int addEdge(int from, int to, float weight, int child1, int child2) {
+		if (edgesCount == edgeFrom.length) {
+			int ncapacity = edgesCount * 2;
+			edgeFrom = Arrays.copyOf(edgeFrom, ncapacity);
+			edgeTo = Arrays.copyOf(edgeTo, ncapacity);
+			edgeWeight = Arrays.copyOf(edgeWeight, ncapacity);
+			edgeChild1 = Arrays.copyOf(edgeChild1, ncapacity);
+			edgeChild2 = Arrays.copyOf(edgeChild2, ncapacity);
+			edgeRoad = Arrays.copyOf(edgeRoad, ncapacity);
+			edgeStart = Arrays.copyOf(edgeStart, ncapacity);
+			edgeEnd = Arrays.copyOf(edgeEnd, ncapacity);
+		}
+		int e = edgesCount++;
+		edgeFrom[e] = from;
+		edgeTo[e] = to;
+		edgeWeight[e] = weight;
+		edgeChild1[e] = child1;
+		edgeChild2[e] = child2;
+		if (outEdges != null) {
+			outEdges[from].add(e);
+			inEdges[to].add(e);
+		}
+		return e;
+	}
+
+	private int[] contract() {
+		int nodes = nodeKeys.length;
+		outEdges = new TIntArrayList[nodes];
+		inEdges = new TIntArrayList[nodes];
+		for (int i = 0; i < nodes; i++) {
+			outEdges[i] = new TIntArrayList(4);
+			inEdges[i] = new TIntArrayList(4);
+		}
+		for (int e = 0; e < edgesCount; e++) {
+			outEdges[edgeFrom[e]].add(e);
+			inEdges[edgeTo[e]].add(e);
+		}
+		contracted = new boolean[nodes];
+		contractedNeighbours = new int[nodes];
+		witnessDist = new float[nodes];
+		Arrays.fill(witnessDist, Float.POSITIVE_INFINITY);
+		int[] rank = new int[nodes];
+		NodeQueue queue = new NodeQueue();
+		for (int v = 0; v < nodes; v++) {
+			queue.add(v, calculatePriority(v));
+		}
+		int order = 0;
+		long logTime = System.currentTimeMillis();
+		while (!queue.isEmpty()) {
+			int v = queue.poll();
+			if (contracted[v]) {
+				continue;
+			}
+			float priority = calculatePriority(v);
+			if (!queue.isEmpty() && priority > queue.peekPriority()) {
+				queue.add(v, priority);
+				continue;
+			}
+			processShortcuts(v, true);
+			contracted[v] = true;
+			rank[v] = order++;
+			updateNeighbours(outEdges[v], true);
+			updateNeighbours(inEdges[v], false);
+			if (System.currentTimeMillis() - logTime > 10000) {
+				logTime = System.currentTimeMillis();
+				log.info("Contracted " + order + " of " + nodes + " nodes, shortcuts " + edgesCount);
+			}
+		}
+		outEdges = null;
+		inEdges = null;
+		contracted = null;
+		contractedNeighbours = null;
+		witnessDist = null;
+		return rank;
+	}
+
+	private void updateNeighbours(TIntArrayList edges, boolean out) {
+		for (int i = 0; i < edges.size(); i++) {
+			int e = edges.get(i);
+			int n = out ? edgeTo[e] : edgeFrom[e];
+			if (!contracted[n]) {
+				contractedNeighbours[n]++;
+			}
+		}
+	}
+
+	private float calculatePriority(int v) {
+		int shortcuts = processShortcuts(v, false);
+		int removed = 0;
+		for (int i = 0; i < outEdges[v].size(); i++) {
+			if (!contracted[edgeTo[outEdges[v].get(i)]]) {
+				removed++;
+			}
+		}
+		for (int i = 0; i < inEdges[v].size(); i++) {
+			if (!contracted[edgeFrom[inEdges[v].get(i)]]) {
+				removed++;
+			}
+		}
+		return shortcuts - removed + contractedNeighbours[v];
+	}
+
+	// counts (and adds) shortcuts needed to keep shortest paths through v after its contraction
+	private int processShortcuts(int v, boolean add) {
+		int shortcuts = 0;
+		TIntArrayList in = inEdges[v];
+		TIntArrayList out = outEdges[v];
+		for (int i = 0; i < in.size(); i++) {
+			int ein = in.get(i);
+			int u = edgeFrom[ein];
+			if (contracted[u] || u == v) {
+				continue;
+			}
+			float maxCost = -1;
+			for (int j = 0; j < out.size(); j++) {
+				int eout = out.get(j);
+				int w = edgeTo[eout];
+				if (!contracted[w] && w != u && w != v) {
+					maxCost = Math.max(maxCost, edgeWeight[ein] + edgeWeight[eout]);
+				}
+			}
+			if (maxCost < 0) {
+				continue;
+			}
+			witnessSearch(u, v, maxCost);
+			for (int j = 0; j < out.size(); j++) {
+				int eout = out.get(j);
+				int w = edgeTo[eout];
+				if (contracted[w] || w == u || w == v) {
+					continue;
+				}
+				float via = edgeWeight[ein] + edgeWeight[eout];
+				if (witnessDist[w] > via) {
+					shortcuts++;
+					if (add) {
+						addShortcut(u, w, via, ein, eout);
+					}
+				}
+			}
+			clearWitnessSearch();
+		}
+		return shortcuts;
+	}
+
+	private void addShortcut(int u, int w, float weight, int ein, int eout) {
+		TIntArrayList out = outEdges[u];
+		for (int i = 0; i < out.size(); i++) {
+			int e = out.get(i);
+			if (edgeTo[e] == w && edgeWeight[e] <= weight) {
+				return;
+			}
+		}
+		addEdge(u, w, weight, ein, eout);
+	}
+
+	private void witnessSearch(int source, int excluded, float maxCost) {
+		witnessQueue.clear();
+		witnessDist[source] = 0;
+		witnessTouched.add(source);
+		witnessQueue.add(source, 0);
+		int settled = 0;
+		while (!witnessQueue.isEmpty() && settled < witnessSearchLimit) {
+			float d = witnessQueue.peekPriority();
+			int n = witnessQueue.poll();
+			if (d > witnessDist[n]) {
+				continue;
+			}
+			if (d > maxCost) {
+				break;
+			}
+			settled++;
+			TIntArrayList out = outEdges[n];
+			for (int i = 0; i < out.size(); i++) {
+				int e = out.get(i);
+				int t = edgeTo[e];
+				if (contracted[t] || t == excluded) {
+					continue;
+				}
+				float nd = d + edgeWeight[e];
+				if (nd < witnessDist[t]) {
+					if (witnessDist[t] == Float.POSITIVE_INFINITY) {
+						witnessTouched.add(t);
+					}
+					witnessDist[t] = nd;
+					witnessQueue.add(t, nd);
+				}
+			}
+		}
+	}
+
+	private void clearWitnessSearch() {
+		for (int i = 0; i < witnessTouched.size(); i++) {
+			witnessDist[witnessTouched.get(i)] = Float.POSITIVE_INFINITY;
+		}
+		witnessTouched.resetQuick();
+	}
+
+	/**
+	 * Builds sidecar file: ContractionHierarchyBuilder profile output.ch.osmand file1.obf [file2.obf ...]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: <profile> <output file> <obf files>...");
+			return;
+		}
+		String profile = args[0];
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		Map<String, String> params = new HashMap<String, String>();
+		GeneralRouter router = RoutingConfiguration.getDefault().build(profile, memoryLimits, params).router;
+		ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder(router, profile);
+		for (int i = 2; i < args.length; i++) {
+			File f = new File(args[i]);
+			RandomAccessFile raf = new RandomAccessFile(f, "r");
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, f);
+			try {
+				builder.addRegion(reader);
+			} finally {
+				reader.close();
+			}
+		}
+		ContractionHierarchy ch = builder.build();
+		ch.writeToFile(new File(args[1]));
+		System.out.println(ch);
+	}
+}
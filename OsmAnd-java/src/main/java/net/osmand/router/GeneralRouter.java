@@ -80,7 +80,10 @@ public class GeneralRouter implements VehicleRouter {
 	
 	private GeneralRouterProfile profile;
 	
-	Map<RouteRegion, Map<IntHolder, Float>>[] evalCache;	
+	// evaluated attribute values by region and slot (attribute, direction) indexed by types id, NaN if not evaluated
+	private Map<RouteRegion, float[][]> compiledValues;
+	private RouteRegion lastCompiledRegion;
+	private float[][] lastCompiledTable;
 	
 	public enum RouteDataObjectAttribute {
 		ROAD_SPEED("speed"),
@@ -182,13 +185,10 @@ public class GeneralRouter implements VehicleRouter {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	private void initCaches() {
-		int l = RouteDataObjectAttribute.values().length;
-		evalCache = new Map[l];
-		for (int i = 0; i < l; i++) {
-			evalCache[i] = new HashMap<>();
-		}
+		compiledValues = new HashMap<RouteRegion, float[][]>();
+		lastCompiledRegion = null;
+		lastCompiledTable = null;
 	}
 
 	public String getFilename() {
@@ -269,11 +269,7 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public boolean acceptLine(RouteDataObject way) {
-		Float res = getCache(RouteDataObjectAttribute.ACCESS, way);
-		if (res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ACCESS).evaluateInt(way, 0);
-			putCache(RouteDataObjectAttribute.ACCESS, way, res);
-		}
+		float res = evaluateCompiled(RouteDataObjectAttribute.ACCESS, way, 0);
 		if (impassableRoads != null && impassableRoads.contains(way.id)) {
 			return false;
 		}
@@ -293,17 +289,20 @@ public class GeneralRouter implements VehicleRouter {
 	
 	public int registerTagValueAttribute(String tag, String value) {
 		String key = tag +"$"+value;
-		if(universalRules.containsKey(key)) {
-			return universalRules.get(key);
-		}
-		int id = universalRules.size();
-		universalRulesById.add(key);
-		universalRules.put(key, id);
-		if(!tagRuleMask.containsKey(tag)) {
-			tagRuleMask.put(tag, new BitSet());
+		// rules table is shared between routers built from the same router
+		synchronized (universalRules) {
+			if(universalRules.containsKey(key)) {
+				return universalRules.get(key);
+			}
+			int id = universalRules.size();
+			universalRulesById.add(key);
+			universalRules.put(key, id);
+			if(!tagRuleMask.containsKey(tag)) {
+				tagRuleMask.put(tag, new BitSet());
+			}
+			tagRuleMask.get(tag).set(id);
+			return id;
 		}
-		tagRuleMask.get(tag).set(id);
-		return id;
 	}
 	
 	
@@ -330,18 +329,21 @@ public class GeneralRouter implements VehicleRouter {
 	}
 	
 	private Object parseValueFromTag(int id, String type) {
-		while (ruleToValue.size() <= id) {
-			ruleToValue.add(null);
-		}
-		Object res = ruleToValue.get(id);
-		if (res == null) {
-			String v = universalRulesById.get(id);
-			String value = v.substring(v.indexOf('$') + 1);
-			res = parseValue(value, type);
+		Object res;
+		synchronized (universalRules) {
+			while (ruleToValue.size() <= id) {
+				ruleToValue.add(null);
+			}
+			res = ruleToValue.get(id);
 			if (res == null) {
-				res = "";
+				String v = universalRulesById.get(id);
+				String value = v.substring(v.indexOf('$') + 1);
+				res = parseValue(value, type);
+				if (res == null) {
+					res = "";
+				}
+				ruleToValue.set(id, res);
 			}
-			ruleToValue.set(id, res);
 		}
 		if ("".equals(res)) {
 			return null;
@@ -354,6 +356,58 @@ public class GeneralRouter implements VehicleRouter {
 		return new GeneralRouter(this, params);
 	}
 
+	/**
+	 * Router with the same rules and parameters which could be used in parallel with this one
+	 * (evaluation caches are not shared)
+	 */
+	public GeneralRouter copyForParallelUse() {
+		return new GeneralRouter(this);
+	}
+
+	private GeneralRouter(GeneralRouter copy) {
+		this.profile = copy.profile;
+		this.profileName = copy.profileName;
+		this.filename = copy.filename;
+		this.attributes = new LinkedHashMap<String, String>(copy.attributes);
+		// do not copy, keep linked
+		universalRules = copy.universalRules;
+		universalRulesById = copy.universalRulesById;
+		tagRuleMask = copy.tagRuleMask;
+		ruleToValue = copy.ruleToValue;
+		parameters = copy.parameters;
+
+		objectAttributes = new RouteAttributeContext[RouteDataObjectAttribute.values().length];
+		for (int i = 0; i < objectAttributes.length; i++) {
+			objectAttributes[i] = new RouteAttributeContext(copy.objectAttributes[i]);
+		}
+		allowPrivate = copy.allowPrivate;
+		shortestRoute = copy.shortestRoute;
+		heightObstacles = copy.heightObstacles;
+		restrictionsAware = copy.restrictionsAware;
+		sharpTurn = copy.sharpTurn;
+		roundaboutTurn = copy.roundaboutTurn;
+		slightTurn = copy.slightTurn;
+		minSpeed = copy.minSpeed;
+		defaultSpeed = copy.defaultSpeed;
+		maxSpeed = copy.maxSpeed;
+		maxVehicleSpeed = copy.maxVehicleSpeed;
+		impassableRoads = copy.impassableRoads;
+		initCaches();
+	}
+
+	/**
+	 * Registers all encoding rules of region, so evaluation doesn't modify shared rules table
+	 * while the region is used by several routers in parallel
+	 */
+	public void registerRegionRules(RouteRegion region) {
+		for (int i = 0; i < region.routeEncodingRules.size(); i++) {
+			RouteTypeRule r = region.quickGetEncodingRule(i);
+			if (r != null) {
+				registerTagValueAttribute(r.getTag(), r.getValue());
+			}
+		}
+	}
+
 	@Override
 	public boolean restrictionsAware() {
 		return restrictionsAware;
@@ -361,34 +415,14 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineObstacle(RouteDataObject road, int point, boolean dir) {
-		int[] pointTypes = road.getPointTypes(point);
-		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, dir);
-			if(obst == null) {
-				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
-				obst = getObjContext(RouteDataObjectAttribute.OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
-				putCache(RouteDataObjectAttribute.OBSTACLES, road.region, pointTypes, obst, dir);
-			}
-			return obst;
-		}
-		return 0;
+		return evaluatePointCompiled(RouteDataObjectAttribute.OBSTACLES, road, point, dir);
 	}
 	
 	TIntArrayList filteredRules = new TIntArrayList();
 	
 	@Override
 	public float defineRoutingObstacle(RouteDataObject road, int point, boolean dir) {
-		int[] pointTypes = road.getPointTypes(point);
-		if(pointTypes != null) {
-			Float obst = getCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, dir);
-			if(obst == null) {
-				int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
-				obst = getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES).evaluateFloat(road.region, filteredPointTypes, 0);
-				putCache(RouteDataObjectAttribute.ROUTING_OBSTACLES, road.region, pointTypes, obst, dir);
-			}
-			return obst;
-		}
-		return 0;
+		return evaluatePointCompiled(RouteDataObjectAttribute.ROUTING_OBSTACLES, road, point, dir);
 	}
 	
 	private int[] filterDirectionTags(RouteDataObject road, int[] pointTypes, boolean dir) {
@@ -455,15 +489,9 @@ public class GeneralRouter implements VehicleRouter {
 		return sum;
 	}
 	
-	
 	@Override
 	public int isOneWay(RouteDataObject road) {
-		Float res = getCache(RouteDataObjectAttribute.ONEWAY, road);
-		if(res == null) {
-			res = (float) getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
-			putCache(RouteDataObjectAttribute.ONEWAY, road, res);
-		}
-		return res.intValue();
+		return (int) evaluateCompiled(RouteDataObjectAttribute.ONEWAY, road, 0);
 	}
 	
 	@Override
@@ -473,122 +501,100 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float getPenaltyTransition(RouteDataObject road) {
-		Float vl = getCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road);
-		if (vl == null) {
-			vl = (float) getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
-			putCache(RouteDataObjectAttribute.PENALTY_TRANSITION, road, vl);
-		}
-		return vl;
+		return evaluateCompiled(RouteDataObjectAttribute.PENALTY_TRANSITION, road, 0);
 	}
 
 	@Override
 	public float defineRoutingSpeed(RouteDataObject road) {
-		Float definedSpd = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (definedSpd == null) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
-			definedSpd = Math.max(Math.min(spd, maxSpeed), minSpeed);
-			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, definedSpd);
-		}
-		return definedSpd;
+		float spd = evaluateCompiled(RouteDataObjectAttribute.ROAD_SPEED, road, defaultSpeed);
+		return Math.max(Math.min(spd, maxSpeed), minSpeed);
 	}
 	
 	@Override
 	public float defineVehicleSpeed(RouteDataObject road) {
-		// don't use cache cause max/min is different for routing speed
-		if (maxVehicleSpeed != maxSpeed) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
-			return Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
-		}
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_SPEED, road);
-		if (sp == null) {
-			float spd = getObjContext(RouteDataObjectAttribute.ROAD_SPEED).evaluateFloat(road, defaultSpeed);
-			sp = Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
-			putCache(RouteDataObjectAttribute.ROAD_SPEED, road, sp);
-		}
-		return sp;
+		// cache keeps not limited speed, cause max/min is different for routing speed
+		float spd = evaluateCompiled(RouteDataObjectAttribute.ROAD_SPEED, road, defaultSpeed);
+		return Math.max(Math.min(spd, maxVehicleSpeed), minSpeed);
 	}
 	
 	@Override
 	public float defineSpeedPriority(RouteDataObject road) {
-		Float sp = getCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road);
-		if(sp == null) {
-			sp = getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(road, 1f);
-			putCache(RouteDataObjectAttribute.ROAD_PRIORITIES, road, sp, false);
-		}
-		return sp;
+		return evaluateCompiled(RouteDataObjectAttribute.ROAD_PRIORITIES, road, 1f);
 	}
 
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val) {
-		putCache(attr, road.region, road.types, val, false);
-	}
-	
-	private void putCache(RouteDataObjectAttribute attr, RouteDataObject road, Float val, boolean extra) {
-		putCache(attr, road.region, road.types, val, extra);
-	}
-	
-	private void putCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, Float val, boolean extra) {
-//		TIMER -= System.nanoTime();
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				rM = new HashMap<IntHolder, Float>();
-				ch.put(reg, rM);
-			}
-			rM.put(new IntHolder(types, extra), val);
+	// ONEWAY, ACCESS, PENALTY_TRANSITION are integer attributes
+	private float evaluateRoad(RouteDataObjectAttribute attr, RouteDataObject road, float defValue) {
+		RouteAttributeContext ctx = getObjContext(attr);
+		if (attr == RouteDataObjectAttribute.ROAD_SPEED || attr == RouteDataObjectAttribute.ROAD_PRIORITIES) {
+			return ctx.evaluateFloat(road, defValue);
 		}
-//		TIMER += System.nanoTime();
+		return ctx.evaluateInt(road, (int) defValue);
 	}
-	
-	class IntHolder {
-		private final int[] array;
-		private final boolean extra;
 
-		IntHolder(int[] ts, boolean extra) {
-			array = ts;
-			this.extra = extra;
+	/**
+	 * Value of attribute for road types. Rules are evaluated once for every set of types (interned by region),
+	 * then value is taken from array by types id of road.
+	 */
+	private float evaluateCompiled(RouteDataObjectAttribute attr, RouteDataObject road, float defValue) {
+		if (!USE_CACHE || road.region == null) {
+			return evaluateRoad(attr, road, defValue);
+		}
+		int id = road.getTypesId();
+		float[] values = getCompiledValues(road.region, attr.ordinal() * 2, id);
+		float vl = values[id];
+		if (Float.isNaN(vl)) {
+			vl = evaluateRoad(attr, road, defValue);
+			values[id] = vl;
 		}
+		return vl;
+	}
 
-		@Override
-		public int hashCode() {
-			return Arrays.hashCode(array) + (extra ? 1 : 0);
+	// obstacles are evaluated for point types with direction
+	private float evaluatePointCompiled(RouteDataObjectAttribute attr, RouteDataObject road, int point, boolean dir) {
+		int[] pointTypes = road.getPointTypes(point);
+		if (pointTypes == null) {
+			return 0;
 		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (array == other) {
-				return true;
-			}
-			if (!(other instanceof IntHolder)) {
-				return false;
-			}
-			if (((IntHolder) other).extra != this.extra) {
-				return false;
-			}
-			// noinspection unchecked
-			return Arrays.equals(array, ((IntHolder) other).array);
+		if (!USE_CACHE || road.region == null) {
+			return getObjContext(attr).evaluateFloat(road.region, filterDirectionTags(road, pointTypes, dir), 0);
+		}
+		int id = road.getPointTypesId(point);
+		float[] values = getCompiledValues(road.region, attr.ordinal() * 2 + (dir ? 1 : 0), id);
+		float vl = values[id];
+		if (Float.isNaN(vl)) {
+			int[] filteredPointTypes = filterDirectionTags(road, pointTypes, dir);
+			vl = getObjContext(attr).evaluateFloat(road.region, filteredPointTypes, 0);
+			values[id] = vl;
 		}
+		return vl;
 	}
 
-	private Float getCache(RouteDataObjectAttribute attr, RouteDataObject road) {
-		return getCache(attr, road.region, road.types, false);
-	}
-	
-	private Float getCache(RouteDataObjectAttribute attr, RouteRegion reg, int[] types, boolean extra) {
-		Map<RouteRegion, Map<IntHolder, Float>> ch = evalCache[attr.ordinal()];
-//		TIMER -= System.nanoTime();
-		if (USE_CACHE) {
-			Map<IntHolder, Float> rM = ch.get(reg);
-			if (rM == null) {
-				return null;
+	private float[] getCompiledValues(RouteRegion reg, int slot, int typesId) {
+		float[][] table;
+		if (reg == lastCompiledRegion) {
+			table = lastCompiledTable;
+		} else {
+			table = compiledValues.get(reg);
+			if (table == null) {
+				table = new float[RouteDataObjectAttribute.values().length * 2][];
+				compiledValues.put(reg, table);
 			}
-			Float vl = rM.get(new IntHolder(types, extra));
-			if(vl != null) {
-//				TIMER += System.nanoTime();
-				return vl;
+			lastCompiledRegion = reg;
+			lastCompiledTable = table;
+		}
+		float[] values = table[slot];
+		if (values == null || typesId >= values.length) {
+			int ncapacity = Math.max(typesId + 1, Math.max(reg.getTypesIdsCount(), values == null ? 0 : values.length * 2));
+			float[] nvalues = new float[ncapacity];
+			int copied = values == null ? 0 : values.length;
+			if (copied > 0) {
+				System.arraycopy(values, 0, nvalues, 0, copied);
 			}
+			Arrays.fill(nvalues, copied, ncapacity, Float.NaN);
+			table[slot] = nvalues;
+			values = nvalues;
 		}
-		return null;
+		return values;
 	}
 
 	@Override
@@ -746,6 +752,14 @@ public class GeneralRouter implements VehicleRouter {
 		
 		public RouteAttributeContext(){
 		}
+		private RouteAttributeContext(RouteAttributeContext original) {
+			if (original.paramContext != null) {
+				paramContext = new ParameterContext();
+				paramContext.vars = original.paramContext.vars;
+			}
+			rules.addAll(original.rules);
+		}
+
 		public RouteAttributeContext(RouteAttributeContext original, Map<String, String> params){
 			if (params != null) {
 				paramContext = new ParameterContext();
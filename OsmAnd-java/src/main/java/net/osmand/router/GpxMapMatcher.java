@@ -0,0 +1,486 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Map matching of gpx track with hidden Markov model (as in Newson, Krumm "Hidden Markov Map Matching Through Noise
+ * and Sparseness"). States of track point are its projections to nearby roads (found with
+ * {@link RoutePlannerFrontEnd#findRouteSegment}), emission probability depends on distance between point and projection,
+ * transition probability on difference between road distance and great circle distance of consecutive points.
+ * Most probable sequence of projections is found with Viterbi algorithm, road distances between projections are
+ * calculated with short Dijkstra searches over road points bounded by track distance, so no A* route calculations
+ * are needed.
+ * <p>
+ * When no projection of point could be reached from projections of previous point, matched part of track ends and
+ * the new one starts from the point. Result of every part is set to its first point ({@link GpxPoint#routeToTarget}
+ * and {@link GpxPoint#targetInd}) as by {@link RoutePlannerFrontEnd#searchGpxRoute}, so not matched parts become
+ * straight lines of the same {@link GpxRouteApproximation}.
+ * <p>
+ * Default parameters suit usual gps noise (5-10 m), for noisier tracks {@link #gpsSigma} should be increased
+ * with {@link #minPointDistance} (~ 2 * gpsSigma) and {@link GpxRouteApproximation#MINIMUM_POINT_APPROXIMATION}.
+ */
+public class GpxMapMatcher {
+
+	private static final Log log = PlatformUtil.getLog(GpxMapMatcher.class);
+
+	// standard deviation of gps position (meters), defines emission probability
+	public double gpsSigma = 10;
+	// typical difference between road distance and great circle distance of consecutive points (meters)
+	public double transitionBeta = 15;
+	// points closer than this distance to previous matched point are skipped (noise makes track distance longer)
+	public double minPointDistance = 25;
+	// maximum number of road projections of one point
+	public int maxCandidates = 8;
+	// points which projections can't be reached from previous point are skipped as outliers,
+	// matched part of track ends when more consecutive points are not reached
+	public int maxSkippedPoints = 2;
+	// road distance between projections is searched up to track distance multiplied by this factor
+	public double maxRouteFactor = 2;
+
+	private final RoutePlannerFrontEnd frontEnd;
+	private final GpxRouteApproximation gctx;
+	private final RoutingContext ctx;
+	private final VehicleRouter router;
+
+	public GpxMapMatcher(RoutePlannerFrontEnd frontEnd, GpxRouteApproximation gctx) {
+		this.frontEnd = frontEnd;
+		this.gctx = gctx;
+		this.ctx = gctx.ctx;
+		this.router = ctx.getRouter();
+	}
+
+	/**
+	 * Sets {@link GpxPoint#routeToTarget} and {@link GpxPoint#targetInd} of first points of matched parts of track.
+	 */
+	public void match(List<GpxPoint> gpxPoints) throws IOException {
+		RouteCalculationProgress progress = ctx.calculationProgress;
+		List<Candidate> step = null;
+		GpxPoint last = null;
+		int skipped = 0;
+		if (progress != null && gpxPoints.size() > 0) {
+			progress.totalIterations = (int) (gpxPoints.get(gpxPoints.size() - 1).cumDist / gctx.MAXIMUM_STEP_APPROXIMATION + 1);
+		}
+		for (int i = 0; i < gpxPoints.size(); i++) {
+			if (progress != null && progress.isCancelled) {
+				return;
+			}
+			GpxPoint p = gpxPoints.get(i);
+			if (last != null && i < gpxPoints.size() - 1 && MapUtils.getDistance(p.loc, last.loc) < minPointDistance) {
+				continue;
+			}
+			last = p;
+			if (progress != null) {
+				progress.iteration = (int) (p.cumDist / gctx.MAXIMUM_STEP_APPROXIMATION);
+			}
+			List<Candidate> candidates = findCandidates(p);
+			if (candidates.isEmpty()) {
+				continue;
+			}
+			if (step != null) {
+				if (p.cumDist - step.get(0).point.cumDist <= gctx.MAXIMUM_STEP_APPROXIMATION) {
+					List<Candidate> reached = calculateTransitions(step, candidates);
+					if (!reached.isEmpty()) {
+						step = reached;
+						skipped = 0;
+						continue;
+					}
+					if (skipped < maxSkippedPoints) {
+						// outlier
+						skipped++;
+						continue;
+					}
+				}
+				finishPart(step);
+			}
+			skipped = 0;
+			for (Candidate c : candidates) {
+				c.score = c.emission;
+			}
+			step = candidates;
+		}
+		if (step != null) {
+			finishPart(step);
+		}
+	}
+
+	private List<Candidate> findCandidates(GpxPoint p) throws IOException {
+		gctx.routePointsSearched++;
+		List<RouteSegmentPoint> list = new ArrayList<RouteSegmentPoint>();
+		frontEnd.findRouteSegment(p.loc.getLatitude(), p.loc.getLongitude(), ctx, list);
+		int px = MapUtils.get31TileNumberX(p.loc.getLongitude());
+		int py = MapUtils.get31TileNumberY(p.loc.getLatitude());
+		// mercator is conformal, so nearby distances in tile coordinates are proportional to meters
+		double metersPer31 = MapUtils.measuredDist31(px, py, px + (1 << 16), py) / (1 << 16);
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		for (RouteSegmentPoint pnt : list) {
+			double dx = pnt.preciseX - px;
+			double dy = pnt.preciseY - py;
+			double d = Math.sqrt(dx * dx + dy * dy) * metersPer31;
+			if (d <= gctx.MINIMUM_POINT_APPROXIMATION) {
+				candidates.add(new Candidate(p, pnt, -0.5 * (d / gpsSigma) * (d / gpsSigma)));
+				if (candidates.size() >= maxCandidates) {
+					break;
+				}
+			}
+		}
+		return candidates;
+	}
+
+	// Viterbi step: best previous projection for every projection, returns reached projections
+	private List<Candidate> calculateTransitions(List<Candidate> from, List<Candidate> to) {
+		GpxPoint prev = from.get(0).point;
+		GpxPoint next = to.get(0).point;
+		double trackDist = next.cumDist - prev.cumDist;
+		double directDist = MapUtils.getDistance(prev.loc, next.loc);
+		float maxDist = (float) (trackDist * maxRouteFactor + 2 * gctx.MINIMUM_POINT_APPROXIMATION);
+		TLongObjectHashMap<List<TargetLink>> targetLinks = new TLongObjectHashMap<List<TargetLink>>();
+		for (int j = 0; j < to.size(); j++) {
+			RouteSegmentPoint pnt = to.get(j).pnt;
+			// projection is reached from previous point going forward or from next point going backward
+			addTargetLink(targetLinks, j, pnt, pnt.getSegmentStart() - 1);
+			addTargetLink(targetLinks, j, pnt, pnt.getSegmentStart());
+		}
+		Transition[] transitions = new Transition[to.size()];
+		for (Candidate s : from) {
+			for (int j = 0; j < transitions.length; j++) {
+				transitions[j] = null;
+			}
+			searchTransitions(s, to, targetLinks, maxDist, transitions);
+			gctx.routeCalculations++;
+			for (int j = 0; j < transitions.length; j++) {
+				if (transitions[j] != null) {
+					Candidate c = to.get(j);
+					double score = s.score + c.emission - Math.abs(transitions[j].distance - directDist) / transitionBeta;
+					if (c.prev == null || score > c.score) {
+						c.score = score;
+						c.prev = s;
+						c.transition = transitions[j];
+					}
+				}
+			}
+		}
+		gctx.routeDistCalculations += (int) trackDist;
+		List<Candidate> reached = new ArrayList<Candidate>(to.size());
+		for (Candidate c : to) {
+			if (c.prev != null) {
+				reached.add(c);
+			}
+		}
+		return reached;
+	}
+
+	private boolean canMove(RouteDataObject road, int from, int to) {
+		int oneWay = router.isOneWay(road);
+		if (from < to ? oneWay < 0 : oneWay > 0) {
+			return false;
+		}
+		return RoutingContext.calculateSegmentTime(router, road, from, to) >= 0;
+	}
+
+	private static int otherSegmentPoint(RouteSegmentPoint pnt, int ind) {
+		return ind == pnt.getSegmentStart() ? ind - 1 : pnt.getSegmentStart();
+	}
+
+	private static double distToProjection(RouteSegmentPoint pnt, int ind) {
+		RouteDataObject road = pnt.getRoad();
+		return MapUtils.squareRootDist31(road.getPoint31XTile(ind), road.getPoint31YTile(ind), pnt.preciseX, pnt.preciseY);
+	}
+
+	private void addTargetLink(TLongObjectHashMap<List<TargetLink>> targetLinks, int target, RouteSegmentPoint pnt, int ind) {
+		RouteDataObject road = pnt.getRoad();
+		if (canMove(road, ind, otherSegmentPoint(pnt, ind))) {
+			long key = RoutingContext.calcPointKey(road, ind);
+			List<TargetLink> links = targetLinks.get(key);
+			if (links == null) {
+				links = new ArrayList<TargetLink>(1);
+				targetLinks.put(key, links);
+			}
+			links.add(new TargetLink(target, ind, (float) distToProjection(pnt, ind)));
+		}
+	}
+
+	// shortest road distances from source projection to projections of next point (up to maxDist)
+	private void searchTransitions(Candidate source, List<Candidate> targets,
+			TLongObjectHashMap<List<TargetLink>> targetLinks, float maxDist, Transition[] transitions) {
+		RouteSegmentPoint pnt = source.pnt;
+		RouteDataObject road = pnt.getRoad();
+		boolean[] finalTargets = new boolean[transitions.length];
+		int targetsLeft = transitions.length;
+		float minCandidate = Float.POSITIVE_INFINITY;
+		for (int j = 0; j < targets.size(); j++) {
+			RouteSegmentPoint t = targets.get(j).pnt;
+			if (t.getRoad().getId() == road.getId() && t.getSegmentStart() == pnt.getSegmentStart()) {
+				int lo = pnt.getSegmentStart() - 1;
+				double sd = distToProjection(pnt, lo);
+				double td = distToProjection(t, lo);
+				if (td >= sd ? canMove(road, lo, lo + 1) : canMove(road, lo + 1, lo)) {
+					transitions[j] = new Transition(null, -1, (float) Math.abs(td - sd));
+					minCandidate = Math.min(minCandidate, transitions[j].distance);
+				}
+			}
+		}
+		TLongObjectHashMap<PathLabel> labels = new TLongObjectHashMap<PathLabel>();
+		PriorityQueue<PathLabel> queue = new PriorityQueue<PathLabel>(64, new Comparator<PathLabel>() {
+			@Override
+			public int compare(PathLabel o1, PathLabel o2) {
+				return Float.compare(o1.distance, o2.distance);
+			}
+		});
+		addSource(labels, queue, pnt, pnt.getSegmentStart());
+		addSource(labels, queue, pnt, pnt.getSegmentStart() - 1);
+		long memoryLimit = ctx.config.memoryLimitation - ctx.memoryOverhead;
+		while (!queue.isEmpty() && targetsLeft > 0) {
+			PathLabel l = queue.poll();
+			if (l.settled) {
+				continue;
+			}
+			if (l.distance > maxDist) {
+				break;
+			}
+			l.settled = true;
+			if (l.distance >= minCandidate) {
+				minCandidate = Float.POSITIVE_INFINITY;
+				for (int j = 0; j < transitions.length; j++) {
+					if (!finalTargets[j] && transitions[j] != null) {
+						if (transitions[j].distance <= l.distance) {
+							finalTargets[j] = true;
+							targetsLeft--;
+						} else {
+							minCandidate = Math.min(minCandidate, transitions[j].distance);
+						}
+					}
+				}
+			}
+			List<TargetLink> links = targetLinks.get(l.key);
+			if (links != null) {
+				for (TargetLink link : links) {
+					float d = l.distance + link.distance;
+					Transition t = transitions[link.target];
+					if (!finalTargets[link.target] && (t == null || d < t.distance)) {
+						transitions[link.target] = new Transition(l, link.ind, d);
+						minCandidate = Math.min(minCandidate, d);
+					}
+				}
+			}
+			int x31 = RoutingContext.getPointKeyX31(l.key);
+			int y31 = RoutingContext.getPointKeyY31(l.key);
+			RouteSegment s = ctx.loadRouteSegment(x31, y31, memoryLimit);
+			while (s != null) {
+				RouteDataObject r = s.getRoad();
+				int ind = s.getSegmentStart();
+				if (ind + 1 < r.getPointsLength()) {
+					relax(labels, queue, l, r, ind, ind + 1);
+				}
+				if (ind > 0) {
+					relax(labels, queue, l, r, ind, ind - 1);
+				}
+				s = s.getNext();
+			}
+		}
+		for (int j = 0; j < transitions.length; j++) {
+			if (transitions[j] != null && transitions[j].distance > maxDist) {
+				transitions[j] = null;
+			}
+		}
+	}
+
+	private void addSource(TLongObjectHashMap<PathLabel> labels, PriorityQueue<PathLabel> queue,
+			RouteSegmentPoint pnt, int ind) {
+		RouteDataObject road = pnt.getRoad();
+		int other = otherSegmentPoint(pnt, ind);
+		if (canMove(road, other, ind)) {
+			long key = RoutingContext.calcPointKey(road, ind);
+			PathLabel l = new PathLabel(key, (float) distToProjection(pnt, ind), null, road, other, ind);
+			PathLabel existing = labels.get(key);
+			if (existing == null || existing.distance > l.distance) {
+				labels.put(key, l);
+				queue.add(l);
+			}
+		}
+	}
+
+	private void relax(TLongObjectHashMap<PathLabel> labels, PriorityQueue<PathLabel> queue, PathLabel from,
+			RouteDataObject road, int ind, int next) {
+		long key = RoutingContext.calcPointKey(road, next);
+		PathLabel l = labels.get(key);
+		if (l != null && l.settled) {
+			return;
+		}
+		float d = from.distance + (float) MapUtils.squareRootDist31(road.getPoint31XTile(ind),
+				road.getPoint31YTile(ind), road.getPoint31XTile(next), road.getPoint31YTile(next));
+		if ((l == null || d < l.distance) && canMove(road, ind, next)) {
+			// previous label stays in queue, but it's not in map anymore and it will be skipped as settled
+			if (l != null) {
+				l.settled = true;
+			}
+			l = new PathLabel(key, d, from, road, ind, next);
+			labels.put(key, l);
+			queue.add(l);
+		}
+	}
+
+	// most probable sequence of projections ending with one of projections of the step
+	private void finishPart(List<Candidate> step) throws IOException {
+		Candidate best = null;
+		for (Candidate c : step) {
+			if (best == null || c.score > best.score) {
+				best = c;
+			}
+		}
+		List<Candidate> part = new ArrayList<Candidate>();
+		for (Candidate c = best; c != null; c = c.prev) {
+			part.add(c);
+		}
+		if (part.size() < 2) {
+			return;
+		}
+		Collections.reverse(part);
+		Candidate first = part.get(0);
+		GpxPoint start = first.point;
+		GpxPoint target = best.point;
+		start.pnt = first.pnt;
+		start.routeToTarget = buildRoute(part);
+		start.targetInd = target.ind;
+		if (ctx.getVisitor() != null) {
+			ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start, target);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Matched " + part.size() + " points from " + start.ind + " to " + target.ind);
+		}
+	}
+
+	private List<RouteSegmentResult> buildRoute(List<Candidate> part) throws IOException {
+		List<RouteSegmentResult> res = new ArrayList<RouteSegmentResult>();
+		Candidate c = part.get(0);
+		// road point where route came to segment of c, -1 if route starts on the segment
+		int arrival = -1;
+		for (int k = 1; k < part.size(); k++) {
+			Candidate next = part.get(k);
+			Transition t = next.transition;
+			if (t.end != null) {
+				List<PathLabel> path = new ArrayList<PathLabel>();
+				for (PathLabel l = t.end; l != null; l = l.prev) {
+					path.add(l);
+				}
+				Collections.reverse(path);
+				RouteDataObject road = c.pnt.getRoad();
+				int departure = path.get(0).next;
+				if (arrival == -1) {
+					addSegment(res, road, otherSegmentPoint(c.pnt, departure), departure);
+				} else if (arrival != departure) {
+					addSegment(res, road, arrival, departure);
+				}
+				for (int i = 1; i < path.size(); i++) {
+					PathLabel l = path.get(i);
+					addSegment(res, l.road, l.ind, l.next);
+				}
+				arrival = t.enterInd;
+			}
+			c = next;
+		}
+		RouteDataObject road = c.pnt.getRoad();
+		if (arrival == -1) {
+			// all points are matched to one segment
+			int lo = c.pnt.getSegmentStart() - 1;
+			boolean forward = distToProjection(c.pnt, lo) >= distToProjection(part.get(0).pnt, lo);
+			addSegment(res, road, forward ? lo : lo + 1, forward ? lo + 1 : lo);
+		} else {
+			addSegment(res, road, arrival, otherSegmentPoint(c.pnt, arrival));
+		}
+		frontEnd.makeSegmentPointPrecise(res.get(0), part.get(0).point.loc, true);
+		frontEnd.makeSegmentPointPrecise(res.get(res.size() - 1), c.point.loc, false);
+		return new RouteResultPreparation().prepareResult(ctx, res, false);
+	}
+
+	private static void addSegment(List<RouteSegmentResult> res, RouteDataObject road, int from, int to) {
+		if (!res.isEmpty()) {
+			RouteSegmentResult last = res.get(res.size() - 1);
+			if (last.getObject().getId() == road.getId() && last.getEndPointIndex() == from
+					&& last.isForwardDirection() == (from < to)) {
+				last.setEndPointIndex(to);
+				return;
+			}
+		}
+		res.add(new RouteSegmentResult(road, from, to));
+	}
+
+	private static class Candidate {
+		final GpxPoint point;
+		final RouteSegmentPoint pnt;
+		// log of emission probability
+		final double emission;
+		// log of probability of the best sequence ending with this projection
+		double score;
+		Candidate prev;
+		Transition transition;
+
+		Candidate(GpxPoint point, RouteSegmentPoint pnt, double emission) {
+			this.point = point;
+			this.pnt = pnt;
+			this.emission = emission;
+		}
+	}
+
+	private static class Transition {
+		// last road point of path, null if target is on the same segment
+		final PathLabel end;
+		// road point of target segment where path comes to target
+		final int enterInd;
+		final float distance;
+
+		Transition(PathLabel end, int enterInd, float distance) {
+			this.end = end;
+			this.enterInd = enterInd;
+			this.distance = distance;
+		}
+	}
+
+	private static class PathLabel {
+		final long key;
+		final float distance;
+		final PathLabel prev;
+		// road point is reached by segment ind -> next of road
+		final RouteDataObject road;
+		final int ind;
+		final int next;
+		boolean settled;
+
+		PathLabel(long key, float distance, PathLabel prev, RouteDataObject road, int ind, int next) {
+			this.key = key;
+			this.distance = distance;
+			this.prev = prev;
+			this.road = road;
+			this.ind = ind;
+			this.next = next;
+		}
+	}
+
+	private static class TargetLink {
+		final int target;
+		final int ind;
+		final float distance;
+
+		TargetLink(int target, int ind, float distance) {
+			this.target = target;
+			this.ind = ind;
+			this.distance = distance;
+		}
+	}
+}
@@ -0,0 +1,416 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutingConfiguration.DirectionPoint;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Gpx approximation of long tracks in parallel. Track is split into chunks of {@link #chunkDistance} which are
+ * extended by {@link #overlapDistance} to both sides, every chunk is approximated with
+ * {@link RoutePlannerFrontEnd#searchGpxRoute} in its own task with own {@link RoutingContext} (own readers of the same
+ * files and router copy, decoded tiles are shared with {@link RouteTileCache}).
+ * <p>
+ * Results of neighbour chunks are stitched in overlap: route of previous chunk is cut at its road point which is
+ * also passed by the route of next chunk and is the closest one to the chunk boundary point, route of next chunk
+ * continues from the same point. Stitching doesn't depend on order of task completion, so result is the same for
+ * any number of threads. When routes don't have common point in overlap (e.g. chunk boundary is at not matched
+ * part of track) they are cut at points closest to the boundary and connected with straight line which is counted
+ * as {@link GpxRouteApproximation#routeGapDistance}.
+ */
+public class ParallelGpxApproximator {
+
+	private static final Log log = PlatformUtil.getLog(ParallelGpxApproximator.class);
+	private static final long CANCEL_CHECK_MS = 100;
+
+	// track distance of one chunk without overlaps (meters)
+	public double chunkDistance = 30000;
+	// chunk is extended to both sides by this track distance, stitching point is searched in this distance from boundary
+	public double overlapDistance = 3000;
+
+	private final RoutePlannerFrontEnd frontEnd;
+	private final ExecutorService executor;
+
+	public ParallelGpxApproximator(RoutePlannerFrontEnd frontEnd, ExecutorService executor) {
+		this.frontEnd = frontEnd;
+		this.executor = executor;
+	}
+
+	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints,
+			ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
+		TIntArrayList bounds = splitTrack(gpxPoints);
+		if (bounds.size() <= 2) {
+			return frontEnd.searchGpxRoute(gctx, gpxPoints, resultMatcher);
+		}
+		long timeToCalculate = System.nanoTime();
+		if (gctx.ctx.calculationProgress == null) {
+			gctx.ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		RouteCalculationProgress progress = gctx.ctx.calculationProgress;
+		int chunksCount = bounds.size() - 1;
+		progress.totalIterations = chunksCount;
+		progress.iteration = 0;
+		prepareSharedData(gctx.ctx);
+
+		List<Chunk> chunks = new ArrayList<Chunk>(chunksCount);
+		List<Future<GpxRouteApproximation>> futures = new ArrayList<Future<GpxRouteApproximation>>(chunksCount);
+		try {
+			for (int i = 0; i < chunksCount; i++) {
+				Chunk chunk = new Chunk(gctx, gpxPoints, bounds.get(i), bounds.get(i + 1));
+				chunks.add(chunk);
+				futures.add(executor.submit(chunk));
+			}
+			for (int i = 0; i < chunksCount; i++) {
+				chunks.get(i).result = waitForChunk(futures.get(i), progress, chunks);
+				progress.iteration = i + 1;
+			}
+		} finally {
+			for (Future<GpxRouteApproximation> f : futures) {
+				f.cancel(true);
+			}
+		}
+		if (!progress.isCancelled) {
+			combineChunks(gctx, gpxPoints, chunks);
+		}
+		progress.timeToCalculate = System.nanoTime() - timeToCalculate;
+		if (!gctx.result.isEmpty() && !progress.isCancelled) {
+			log.info(String.format("Approximated in %d chunks: %s", chunksCount, gctx));
+		}
+		if (resultMatcher != null) {
+			resultMatcher.publish(progress.isCancelled ? null : gctx);
+		}
+		return gctx;
+	}
+
+	/**
+	 * @return indexes of first points of chunk cores and size of track as the last bound
+	 */
+	private TIntArrayList splitTrack(List<GpxPoint> gpxPoints) {
+		TIntArrayList bounds = new TIntArrayList();
+		bounds.add(0);
+		if (gpxPoints.isEmpty()) {
+			bounds.add(0);
+			return bounds;
+		}
+		double total = gpxPoints.get(gpxPoints.size() - 1).cumDist;
+		double next = chunkDistance;
+		for (int i = 1; i < gpxPoints.size(); i++) {
+			double d = gpxPoints.get(i).cumDist;
+			// don't make last chunk shorter than a half
+			if (d >= next && total - d >= chunkDistance / 2) {
+				bounds.add(i);
+				next = d + chunkDistance;
+			}
+		}
+		bounds.add(gpxPoints.size());
+		return bounds;
+	}
+
+	// region rules and structures are shared by all readers of file, initialize them before threads start:
+	// direction point types are created by loading of tiles and result preparation of every chunk
+	// while other chunks read encoding rules of the same region without lock
+	void prepareSharedData(RoutingContext ctx) throws IOException {
+		for (BinaryMapIndexReader reader : ctx.map.keySet()) {
+			for (RouteRegion reg : reader.getRoutingIndexes()) {
+				reader.initRouteRegion(reg);
+				reg.findOrCreateRouteType(DirectionPoint.TAG, DirectionPoint.DELETE_TYPE);
+				reg.findOrCreateRouteType(DirectionPoint.TAG, DirectionPoint.CREATE_TYPE);
+				ctx.config.router.registerRegionRules(reg);
+			}
+		}
+	}
+
+	private GpxRouteApproximation waitForChunk(Future<GpxRouteApproximation> future, RouteCalculationProgress progress,
+			List<Chunk> chunks) throws IOException, InterruptedException {
+		while (true) {
+			if (progress.isCancelled) {
+				for (Chunk c : chunks) {
+					c.progress.isCancelled = true;
+				}
+			}
+			try {
+				return future.get(CANCEL_CHECK_MS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// check cancellation again
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof InterruptedException) {
+					throw (InterruptedException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
+	private void combineChunks(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, List<Chunk> chunks) {
+		List<List<RouteSegmentResult>> routes = new ArrayList<List<RouteSegmentResult>>(chunks.size());
+		for (Chunk c : chunks) {
+			routes.add(new ArrayList<RouteSegmentResult>(c.result.result));
+			gctx.routeCalculations += c.result.routeCalculations;
+			gctx.routePointsSearched += c.result.routePointsSearched;
+			gctx.routeDistCalculations += c.result.routeDistCalculations;
+			gctx.routeGapDistance += c.result.routeGapDistance;
+			// points which routes are in the core of chunk (first one could start in overlap)
+			List<GpxPoint> finalPoints = c.result.finalPoints;
+			for (int j = 0; j < finalPoints.size(); j++) {
+				GpxPoint p = finalPoints.get(j);
+				int ind = p.ind + c.from;
+				int nextInd = j + 1 < finalPoints.size() ? finalPoints.get(j + 1).ind + c.from : gpxPoints.size();
+				if (ind < c.coreEnd && nextInd > c.coreStart) {
+					p.ind = ind;
+					p.cumDist = gpxPoints.get(ind).cumDist;
+					gctx.finalPoints.add(p);
+				}
+			}
+		}
+		RouteSegmentResult[] connections = new RouteSegmentResult[chunks.size()];
+		for (int i = 0; i + 1 < chunks.size(); i++) {
+			LatLon boundary = gpxPoints.get(chunks.get(i + 1).coreStart).loc;
+			connections[i] = stitch(gctx, routes.get(i), routes.get(i + 1),
+					MapUtils.get31TileNumberX(boundary.getLongitude()), MapUtils.get31TileNumberY(boundary.getLatitude()));
+		}
+		gctx.routeDistanceUnmatched = 0;
+		for (int i = 0; i < chunks.size(); i++) {
+			for (RouteSegmentResult s : routes.get(i)) {
+				if (s.getObject().getId() == -1) {
+					gctx.routeDistanceUnmatched += (int) length(s, s.getStartPointIndex(), s.getEndPointIndex());
+				}
+			}
+			gctx.result.addAll(routes.get(i));
+			if (connections[i] != null) {
+				gctx.routeGapDistance += (int) connections[i].getDistance();
+				gctx.result.add(connections[i]);
+			}
+		}
+		frontEnd.cleanupResultAndAddTurns(gctx);
+	}
+
+	/**
+	 * Cuts end of previous route and start of next route at common point.
+	 * @return straight line connecting routes if they don't have common point in overlap
+	 */
+	private RouteSegmentResult stitch(GpxRouteApproximation gctx, List<RouteSegmentResult> prev,
+			List<RouteSegmentResult> next, int bx, int by) {
+		if (prev.isEmpty() || next.isEmpty()) {
+			return null;
+		}
+		// first occurrences of next route points in overlap
+		TLongObjectHashMap<int[]> nextPoints = new TLongObjectHashMap<int[]>();
+		for (int k = 0; k < next.size(); k++) {
+			RouteSegmentResult s = next.get(k);
+			int d = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); ; i += d) {
+				int x = s.getObject().getPoint31XTile(i);
+				int y = s.getObject().getPoint31YTile(i);
+				long key = (((long) x) << 31) + y;
+				if (MapUtils.squareRootDist31(x, y, bx, by) <= overlapDistance && !nextPoints.containsKey(key)) {
+					nextPoints.put(key, new int[] { k, i });
+				}
+				if (i == s.getEndPointIndex()) {
+					break;
+				}
+			}
+		}
+		int[] prevCut = null;
+		int[] nextCut = null;
+		double minDist = Double.POSITIVE_INFINITY;
+		for (int k = 0; k < prev.size(); k++) {
+			RouteSegmentResult s = prev.get(k);
+			int d = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); ; i += d) {
+				int x = s.getObject().getPoint31XTile(i);
+				int y = s.getObject().getPoint31YTile(i);
+				double dist = MapUtils.squareRootDist31(x, y, bx, by);
+				if (dist < minDist) {
+					int[] n = nextPoints.get((((long) x) << 31) + y);
+					if (n != null) {
+						minDist = dist;
+						prevCut = new int[] { k, i };
+						nextCut = n;
+					}
+				}
+				if (i == s.getEndPointIndex()) {
+					break;
+				}
+			}
+		}
+		RouteSegmentResult connection = null;
+		if (prevCut == null) {
+			prevCut = findClosestPoint(prev, bx, by);
+			nextCut = findClosestPoint(next, bx, by);
+			LatLon end = prev.get(prevCut[0]).getPoint(prevCut[1]);
+			LatLon start = next.get(nextCut[0]).getPoint(nextCut[1]);
+			if (MapUtils.getDistance(end, start) > 1) {
+				connection = RoutePlannerFrontEnd.generateStraightLineSegment(gctx.ctx.getRouter().getDefaultSpeed(),
+						Arrays.asList(end, start));
+			}
+		}
+		while (prev.size() > prevCut[0] + 1) {
+			prev.remove(prev.size() - 1);
+		}
+		if (!cutSegment(prev.get(prevCut[0]), prevCut[1], true)) {
+			prev.remove(prevCut[0]);
+		}
+		next.subList(0, nextCut[0]).clear();
+		if (!cutSegment(next.get(0), nextCut[1], false)) {
+			next.remove(0);
+		}
+		return connection;
+	}
+
+	private static int[] findClosestPoint(List<RouteSegmentResult> route, int bx, int by) {
+		int[] res = null;
+		double minDist = Double.POSITIVE_INFINITY;
+		for (int k = 0; k < route.size(); k++) {
+			RouteSegmentResult s = route.get(k);
+			int d = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); ; i += d) {
+				double dist = MapUtils.squareRootDist31(s.getObject().getPoint31XTile(i),
+						s.getObject().getPoint31YTile(i), bx, by);
+				if (dist < minDist) {
+					minDist = dist;
+					res = new int[] { k, i };
+				}
+				if (i == s.getEndPointIndex()) {
+					break;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Keeps part of segment before (keepStart) or after point, distance and time are reduced proportionally.
+	 * @return false if nothing is left
+	 */
+	private static boolean cutSegment(RouteSegmentResult s, int pointInd, boolean keepStart) {
+		int st = s.getStartPointIndex();
+		int end = s.getEndPointIndex();
+		if (pointInd == (keepStart ? st : end)) {
+			return false;
+		}
+		if (pointInd == (keepStart ? end : st)) {
+			return true;
+		}
+		double full = length(s, st, end);
+		if (keepStart) {
+			s.setEndPointIndex(pointInd);
+		} else {
+			s.setStartPointIndex(pointInd);
+		}
+		float ratio = full > 0 ? (float) (length(s, s.getStartPointIndex(), s.getEndPointIndex()) / full) : 0;
+		s.setDistance(s.getDistance() * ratio);
+		s.setSegmentTime(s.getSegmentTime() * ratio);
+		s.setRoutingTime(s.getRoutingTime() * ratio);
+		return true;
+	}
+
+	private static double length(RouteSegmentResult s, int from, int to) {
+		double dist = 0;
+		for (int i = Math.min(from, to); i < Math.max(from, to); i++) {
+			dist += MapUtils.squareRootDist31(s.getObject().getPoint31XTile(i), s.getObject().getPoint31YTile(i),
+					s.getObject().getPoint31XTile(i + 1), s.getObject().getPoint31YTile(i + 1));
+		}
+		return dist;
+	}
+
+	private class Chunk implements Callable<GpxRouteApproximation> {
+		final GpxRouteApproximation template;
+		final int coreStart;
+		final int coreEnd;
+		final int from;
+		final List<GpxPoint> points;
+		final RouteCalculationProgress progress = new RouteCalculationProgress();
+		GpxRouteApproximation result;
+
+		Chunk(GpxRouteApproximation template, List<GpxPoint> gpxPoints, int coreStart, int coreEnd) {
+			this.template = template;
+			this.coreStart = coreStart;
+			this.coreEnd = coreEnd;
+			double startDist = gpxPoints.get(coreStart).cumDist - overlapDistance;
+			double endDist = gpxPoints.get(coreEnd - 1).cumDist + overlapDistance;
+			int f = coreStart;
+			while (f > 0 && gpxPoints.get(f - 1).cumDist >= startDist) {
+				f--;
+			}
+			int t = coreEnd;
+			while (t < gpxPoints.size() && gpxPoints.get(t).cumDist <= endDist) {
+				t++;
+			}
+			// next chunk boundary point is always included
+			t = Math.min(gpxPoints.size(), Math.max(t, coreEnd + 1));
+			this.from = f;
+			double base = gpxPoints.get(f).cumDist;
+			points = new ArrayList<GpxPoint>(t - f);
+			for (int i = f; i < t; i++) {
+				GpxPoint p = new GpxPoint(gpxPoints.get(i));
+				p.ind = i - f;
+				p.cumDist -= base;
+				points.add(p);
+			}
+		}
+
+		@Override
+		public GpxRouteApproximation call() throws Exception {
+			RoutingContext tctx = template.ctx;
+			List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+			try {
+				for (BinaryMapIndexReader reader : tctx.map.keySet()) {
+					readers.add(new BinaryMapIndexReader(new RandomAccessFile(reader.getFile(), "r"), reader));
+				}
+				RoutingConfiguration config = tctx.config.copyForParallelUse();
+				if (config.tileCache == null) {
+					config.tileCache = RouteTileCache.getGlobal();
+				}
+				RoutingContext ctx = frontEnd.buildRoutingContext(config, null,
+						readers.toArray(new BinaryMapIndexReader[readers.size()]), tctx.calculationMode);
+				ctx.leftSideNavigation = tctx.leftSideNavigation;
+				ctx.calculationProgress = progress;
+				GpxRouteApproximation gctx = new GpxRouteApproximation(ctx);
+				gctx.MINIMUM_POINT_APPROXIMATION = template.MINIMUM_POINT_APPROXIMATION;
+				gctx.MAXIMUM_STEP_APPROXIMATION = template.MAXIMUM_STEP_APPROXIMATION;
+				gctx.MINIMUM_STEP_APPROXIMATION = template.MINIMUM_STEP_APPROXIMATION;
+				gctx.SMOOTHEN_POINTS_NO_ROUTE = template.SMOOTHEN_POINTS_NO_ROUTE;
+				gctx.routeDistance = (int) points.get(points.size() - 1).cumDist;
+
+				RoutePlannerFrontEnd chunkFrontEnd = new RoutePlannerFrontEnd();
+				chunkFrontEnd.setUseNativeApproximation(false);
+				chunkFrontEnd.setUseFastRecalculation(frontEnd.useSmartRouteRecalculation);
+				chunkFrontEnd.setUseMapMatchingApproximation(frontEnd.useMapMatchingApproximation);
+				return chunkFrontEnd.searchGpxRoute(gctx, points, null);
+			} finally {
+				for (BinaryMapIndexReader reader : readers) {
+					reader.close();
+				}
+			}
+		}
+	}
+}
@@ -40,6 +40,7 @@ public class RouteCalculationProgress {
 	public int loadedPrevUnloadedTiles = 0;
 	public int unloadedTiles = 0;
 	public int loadedTiles = 0;
+	public int loadedTilesFromCache = 0;
 	
 	public boolean isCancelled;
 	public boolean requestPrivateAccessRouting;
@@ -67,6 +68,7 @@ public class RouteCalculationProgress {
 		p.visitedOppositeSegments = cp.visitedOppositeSegments;
 		
 		p.loadedTiles = cp.loadedTiles;
+		p.loadedTilesFromCache = cp.loadedTilesFromCache;
 		p.distinctLoadedTiles = cp.distinctLoadedTiles;
 		p.maxLoadedTiles = cp.maxLoadedTiles;
 		p.loadedPrevUnloadedTiles = cp.loadedPrevUnloadedTiles;
@@ -82,6 +84,7 @@ public class RouteCalculationProgress {
 		}
 		map.put("tiles", tiles);
 		tiles.put("loadedTiles", this.loadedTiles - firstPhase.loadedTiles);
+		tiles.put("loadedTilesFromCache", this.loadedTilesFromCache - firstPhase.loadedTilesFromCache);
 		tiles.put("loadedTilesDistinct", this.distinctLoadedTiles - firstPhase.distinctLoadedTiles);
 		tiles.put("loadedTilesPrevUnloaded", this.loadedPrevUnloadedTiles - firstPhase.loadedPrevUnloadedTiles);
 		tiles.put("loadedTilesMax", Math.max(this.maxLoadedTiles, this.distinctLoadedTiles));
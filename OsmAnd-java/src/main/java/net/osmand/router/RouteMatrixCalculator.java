@@ -0,0 +1,335 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Many-to-many travel time / distance matrix. For every source one Dijkstra expansion over road points
+ * runs until all targets are reached, so matrix N x M costs N searches instead of N x M.
+ * All searches share one {@link RoutingContext}, so tiles are loaded once (in limits of memory).
+ * <p>
+ * Segment time is calculated as in {@link BinaryRoutePlanner} (speed, priority, obstacles), but turn time
+ * and turn restrictions are not taken into account, so values are lower bounds of routed times.
+ */
+public class RouteMatrixCalculator {
+
+	private static final Log log = PlatformUtil.getLog(RouteMatrixCalculator.class);
+
+	public static final float UNREACHABLE = -1;
+
+	private final RoutingContext ctx;
+	// search from source stops after this time (seconds), all not reached targets are unreachable
+	public float maxTime = Float.POSITIVE_INFINITY;
+
+	public RouteMatrixCalculator(RoutingContext ctx) {
+		this.ctx = ctx;
+	}
+
+	public static class RouteMatrix {
+		// seconds, UNREACHABLE if target can't be reached
+		public final float[][] times;
+		// meters along fastest route, UNREACHABLE if target can't be reached
+		public final float[][] distances;
+
+		public RouteMatrix(int sources, int targets) {
+			times = new float[sources][targets];
+			distances = new float[sources][targets];
+			for (int i = 0; i < sources; i++) {
+				Arrays.fill(times[i], UNREACHABLE);
+				Arrays.fill(distances[i], UNREACHABLE);
+			}
+		}
+
+		/**
+		 * @return copy of table where unreachable values are replaced with cost bigger than any route
+		 * (for TspAnt and TspHeldKarp)
+		 */
+		public static float[][] getTspCosts(float[][] table) {
+			float max = 0;
+			for (float[] row : table) {
+				for (float v : row) {
+					max = Math.max(max, v);
+				}
+			}
+			float unreachable = (max + 1) * table.length;
+			float[][] res = new float[table.length][];
+			for (int i = 0; i < table.length; i++) {
+				res[i] = new float[table[i].length];
+				for (int j = 0; j < table[i].length; j++) {
+					res[i][j] = table[i][j] == UNREACHABLE ? unreachable : table[i][j];
+				}
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * @return matrix or null if calculation was cancelled
+	 */
+	public RouteMatrix calculate(List<LatLon> sources, List<LatLon> targets) throws IOException {
+		long timeToCalculate = System.nanoTime();
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		List<RouteSegmentPoint> sourcePoints = findRouteSegments(frontEnd, sources);
+		List<RouteSegmentPoint> targetPoints = sources == targets ? sourcePoints : findRouteSegments(frontEnd, targets);
+		TLongObjectHashMap<List<TargetLink>> targetLinks = new TLongObjectHashMap<List<TargetLink>>();
+		for (int j = 0; j < targetPoints.size(); j++) {
+			RouteSegmentPoint p = targetPoints.get(j);
+			if (p != null) {
+				int oneWay = ctx.getRouter().isOneWay(p.getRoad());
+				// target is reached from previous point going forward or from next point going backward
+				if (oneWay >= 0) {
+					addTargetLink(targetLinks, j, p, p.getSegmentStart() - 1);
+				}
+				if (oneWay <= 0) {
+					addTargetLink(targetLinks, j, p, p.getSegmentStart());
+				}
+			}
+		}
+		RouteMatrix matrix = new RouteMatrix(sources.size(), targets.size());
+		for (int i = 0; i < sourcePoints.size(); i++) {
+			RouteSegmentPoint p = sourcePoints.get(i);
+			if (p != null) {
+				if (!searchFromSource(p, targetPoints, targetLinks, matrix.times[i], matrix.distances[i])) {
+					return null;
+				}
+			}
+		}
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.timeToCalculate += (System.nanoTime() - timeToCalculate);
+		}
+		return matrix;
+	}
+
+	private List<RouteSegmentPoint> findRouteSegments(RoutePlannerFrontEnd frontEnd, List<LatLon> points) throws IOException {
+		List<RouteSegmentPoint> res = new ArrayList<RouteSegmentPoint>(points.size());
+		for (LatLon l : points) {
+			RouteSegmentPoint p = frontEnd.findRouteSegment(l.getLatitude(), l.getLongitude(), ctx, null);
+			if (p == null) {
+				log.info("Point " + l + " is too far from road");
+			}
+			res.add(p);
+		}
+		return res;
+	}
+
+	private void addTargetLink(TLongObjectHashMap<List<TargetLink>> targetLinks, int target, RouteSegmentPoint p, int ind) {
+		RouteDataObject road = p.getRoad();
+		float[] cost = partialCost(road, ind, p);
+		if (cost != null) {
+			long key = RoutingContext.calcPointKey(road, ind);
+			List<TargetLink> links = targetLinks.get(key);
+			if (links == null) {
+				links = new ArrayList<TargetLink>(1);
+				targetLinks.put(key, links);
+			}
+			links.add(new TargetLink(target, cost[0], cost[1]));
+		}
+	}
+
+	// time and distance between point of road and projection (segment between segStart - 1 and segStart)
+	private float[] partialCost(RouteDataObject road, int ind, RouteSegmentPoint p) {
+		int other = ind == p.getSegmentStart() ? ind - 1 : ind + 1;
+		float time = RoutingContext.calculateSegmentTime(ctx.getRouter(), road, ind, other);
+		if (time < 0) {
+			return null;
+		}
+		double segment = MapUtils.squareRootDist31(road.getPoint31XTile(ind), road.getPoint31YTile(ind),
+				road.getPoint31XTile(other), road.getPoint31YTile(other));
+		double part = MapUtils.squareRootDist31(road.getPoint31XTile(ind), road.getPoint31YTile(ind),
+				p.preciseX, p.preciseY);
+		float ratio = segment == 0 ? 0 : (float) Math.min(1, part / segment);
+		return new float[] { time * ratio, (float) part };
+	}
+
+	private boolean searchFromSource(RouteSegmentPoint source, List<RouteSegmentPoint> targetPoints,
+			TLongObjectHashMap<List<TargetLink>> targetLinks, float[] times, float[] distances) {
+		VehicleRouter router = ctx.getRouter();
+		// target is final when its time is not bigger than time of settled point
+		boolean[] finalTargets = new boolean[times.length];
+		int targetsLeft = 0;
+		float minCandidate = Float.POSITIVE_INFINITY;
+		for (int j = 0; j < targetPoints.size(); j++) {
+			RouteSegmentPoint t = targetPoints.get(j);
+			if (t != null) {
+				targetsLeft++;
+				if (t.getRoad().getId() == source.getRoad().getId() && t.getSegmentStart() == source.getSegmentStart()) {
+					checkSameSegment(source, t, j, times, distances);
+					if (times[j] != UNREACHABLE) {
+						minCandidate = Math.min(minCandidate, times[j]);
+					}
+				}
+			}
+		}
+		TLongObjectHashMap<PointLabel> labels = new TLongObjectHashMap<PointLabel>();
+		PriorityQueue<PointLabel> queue = new PriorityQueue<PointLabel>(256, new Comparator<PointLabel>() {
+			@Override
+			public int compare(PointLabel o1, PointLabel o2) {
+				return Float.compare(o1.time, o2.time);
+			}
+		});
+		RouteDataObject road = source.getRoad();
+		int oneWay = router.isOneWay(road);
+		if (oneWay >= 0) {
+			addSource(labels, queue, source, source.getSegmentStart());
+		}
+		if (oneWay <= 0) {
+			addSource(labels, queue, source, source.getSegmentStart() - 1);
+		}
+		long memoryLimit = ctx.config.memoryLimitation - ctx.memoryOverhead;
+		while (!queue.isEmpty() && targetsLeft > 0) {
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				return false;
+			}
+			PointLabel l = queue.poll();
+			if (l.settled) {
+				continue;
+			}
+			if (l.time > maxTime) {
+				break;
+			}
+			l.settled = true;
+			if (l.time >= minCandidate) {
+				minCandidate = Float.POSITIVE_INFINITY;
+				for (int j = 0; j < times.length; j++) {
+					if (!finalTargets[j] && times[j] != UNREACHABLE) {
+						if (times[j] <= l.time) {
+							finalTargets[j] = true;
+							targetsLeft--;
+						} else {
+							minCandidate = Math.min(minCandidate, times[j]);
+						}
+					}
+				}
+			}
+			List<TargetLink> links = targetLinks.get(l.key);
+			if (links != null) {
+				for (TargetLink link : links) {
+					float t = l.time + link.time;
+					if (!finalTargets[link.target] && (times[link.target] == UNREACHABLE || t < times[link.target])) {
+						times[link.target] = t;
+						distances[link.target] = l.distance + link.distance;
+						minCandidate = Math.min(minCandidate, t);
+					}
+				}
+			}
+			int x31 = RoutingContext.getPointKeyX31(l.key);
+			int y31 = RoutingContext.getPointKeyY31(l.key);
+			RouteSegment s = ctx.loadRouteSegment(x31, y31, memoryLimit);
+			while (s != null) {
+				RouteDataObject r = s.getRoad();
+				int ind = s.getSegmentStart();
+				int ow = router.isOneWay(r);
+				if (ow >= 0 && ind + 1 < r.getPointsLength()) {
+					relax(labels, queue, l, r, ind, ind + 1);
+				}
+				if (ow <= 0 && ind > 0) {
+					relax(labels, queue, l, r, ind, ind - 1);
+				}
+				s = s.getNext();
+			}
+		}
+		for (int j = 0; j < times.length; j++) {
+			if (times[j] > maxTime) {
+				times[j] = UNREACHABLE;
+				distances[j] = UNREACHABLE;
+			}
+		}
+		return true;
+	}
+
+	private void checkSameSegment(RouteSegmentPoint source, RouteSegmentPoint target, int j, float[] times, float[] distances) {
+		RouteDataObject road = source.getRoad();
+		int lo = source.getSegmentStart() - 1;
+		double sd = MapUtils.squareRootDist31(road.getPoint31XTile(lo), road.getPoint31YTile(lo), source.preciseX, source.preciseY);
+		double td = MapUtils.squareRootDist31(road.getPoint31XTile(lo), road.getPoint31YTile(lo), target.preciseX, target.preciseY);
+		int oneWay = ctx.getRouter().isOneWay(road);
+		if ((td >= sd && oneWay >= 0) || (td <= sd && oneWay <= 0)) {
+			float[] cost = partialCost(road, lo, target);
+			float[] scost = partialCost(road, lo, source);
+			if (cost != null && scost != null) {
+				times[j] = Math.abs(cost[0] - scost[0]);
+				distances[j] = (float) Math.abs(td - sd);
+			}
+		}
+	}
+
+	private void addSource(TLongObjectHashMap<PointLabel> labels, PriorityQueue<PointLabel> queue,
+			RouteSegmentPoint source, int ind) {
+		RouteDataObject road = source.getRoad();
+		float[] cost = partialCost(road, ind, source);
+		if (cost != null) {
+			long key = RoutingContext.calcPointKey(road, ind);
+			PointLabel l = labels.get(key);
+			if (l == null || l.time > cost[0]) {
+				l = new PointLabel(key, cost[0], cost[1]);
+				labels.put(key, l);
+				queue.add(l);
+			}
+		}
+	}
+
+	private void relax(TLongObjectHashMap<PointLabel> labels, PriorityQueue<PointLabel> queue, PointLabel from,
+			RouteDataObject road, int ind, int next) {
+		long key = RoutingContext.calcPointKey(road, next);
+		PointLabel l = labels.get(key);
+		if (l != null && l.settled) {
+			return;
+		}
+		float time = RoutingContext.calculateSegmentTime(ctx.getRouter(), road, ind, next);
+		if (time < 0) {
+			return;
+		}
+		float t = from.time + time;
+		if (l == null || t < l.time) {
+			float d = from.distance + (float) MapUtils.squareRootDist31(road.getPoint31XTile(ind),
+					road.getPoint31YTile(ind), road.getPoint31XTile(next), road.getPoint31YTile(next));
+			// previous label stays in queue, but it's not in map anymore and it will be skipped as settled
+			if (l != null) {
+				l.settled = true;
+			}
+			l = new PointLabel(key, t, d);
+			labels.put(key, l);
+			queue.add(l);
+		}
+	}
+
+	private static class PointLabel {
+		final long key;
+		final float time;
+		final float distance;
+		boolean settled;
+
+		PointLabel(long key, float time, float distance) {
+			this.key = key;
+			this.time = time;
+			this.distance = distance;
+		}
+	}
+
+	private static class TargetLink {
+		final int target;
+		final float time;
+		final float distance;
+
+		TargetLink(int target, float time, float distance) {
+			this.target = target;
+			this.time = time;
+			this.distance = distance;
+		}
+	}
+}
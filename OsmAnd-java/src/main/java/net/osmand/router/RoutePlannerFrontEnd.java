@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.logging.Log;
 
@@ -23,6 +24,7 @@ import net.osmand.data.LatLon;
 import net.osmand.data.QuadPoint;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RouteMatrixCalculator.RouteMatrix;
 import net.osmand.util.MapUtils;
 
 public class RoutePlannerFrontEnd {
@@ -32,6 +34,8 @@ public class RoutePlannerFrontEnd {
 	protected static final double GPS_POSSIBLE_ERROR = 7;
 	public boolean useSmartRouteRecalculation = true;
 	public boolean useNativeApproximation = true;
+	// match gpx with hidden Markov model (GpxMapMatcher) instead of routing between track points
+	public boolean useMapMatchingApproximation = false;
 
 	
 	public RoutePlannerFrontEnd() {
@@ -225,6 +229,14 @@ public class RoutePlannerFrontEnd {
 		return searchRoute(ctx, start, end, intermediates, null);
 	}
 
+	/**
+	 * Travel times and distances between all sources and targets calculated with one routing context.
+	 * @return matrix or null if calculation was cancelled
+	 */
+	public RouteMatrix searchRouteMatrix(final RoutingContext ctx, List<LatLon> sources, List<LatLon> targets) throws IOException {
+		return new RouteMatrixCalculator(ctx).calculate(sources, targets);
+	}
+
 	public void setUseFastRecalculation(boolean use) {
 		useSmartRouteRecalculation = use;
 	}
@@ -233,6 +245,10 @@ public class RoutePlannerFrontEnd {
 		this.useNativeApproximation = useNativeApproximation;
 	}
 
+	public void setUseMapMatchingApproximation(boolean useMapMatchingApproximation) {
+		this.useMapMatchingApproximation = useMapMatchingApproximation;
+	}
+
 	public GpxRouteApproximation searchGpxRoute(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
 		long timeToCalculate = System.nanoTime();
 		NativeLibrary nativeLib = gctx.ctx.nativeLib;
@@ -243,74 +259,10 @@ public class RoutePlannerFrontEnd {
 			if (gctx.ctx.calculationProgress == null) {
 				gctx.ctx.calculationProgress = new RouteCalculationProgress();
 			}
-			GpxPoint start = null;
-			GpxPoint prev = null;
-			if (gpxPoints.size() > 0) {
-				gctx.ctx.calculationProgress.totalIterations = (int) (gpxPoints.get(gpxPoints.size() - 1).cumDist / gctx.MAXIMUM_STEP_APPROXIMATION + 1);
-				start = gpxPoints.get(0);
-			}
-			while (start != null && !gctx.ctx.calculationProgress.isCancelled) {
-				double routeDist = gctx.MAXIMUM_STEP_APPROXIMATION;
-				GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-				boolean routeFound = false;
-				if (next != null && initRoutingPoint(start, gctx, gctx.MINIMUM_POINT_APPROXIMATION)) {
-					gctx.ctx.calculationProgress.totalEstimatedDistance = 0;
-					gctx.ctx.calculationProgress.iteration = (int) (next.cumDist / gctx.MAXIMUM_STEP_APPROXIMATION);
-					while (routeDist >= gctx.MINIMUM_STEP_APPROXIMATION && !routeFound) {
-						routeFound = initRoutingPoint(next, gctx, gctx.MINIMUM_POINT_APPROXIMATION);
-						if (routeFound) {
-							routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
-							if (routeFound) {
-								routeFound = isRouteCloseToGpxPoints(gctx, gpxPoints, start, next);
-							}
-							if (routeFound) {
-								// route is found - cut the end of the route and move to next iteration
-								// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
-								// boolean stepBack = true;
-								boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
-								if (!stepBack) {
-									// not supported case (workaround increase MAXIMUM_STEP_APPROXIMATION)
-									log.info("Consider to increase MAXIMUM_STEP_APPROXIMATION to: " + routeDist * 2);
-									start.routeToTarget = null;
-									routeFound = false;
-								} else {
-									if (gctx.ctx.getVisitor() != null) {
-										gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
-												next);
-									}
-								}
-							}
-						}
-						if (!routeFound) {
-							// route is not found move next point closer to start point (distance / 2)
-							routeDist = routeDist / 2;
-							if (routeDist < gctx.MINIMUM_STEP_APPROXIMATION
-									&& routeDist > gctx.MINIMUM_STEP_APPROXIMATION / 2 + 1) {
-								routeDist = gctx.MINIMUM_STEP_APPROXIMATION;
-							}
-							next = findNextGpxPointWithin(gpxPoints, start, routeDist);
-							if (next != null) {
-								routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
-							}
-						}
-					}
-				}
-				// route is not found skip segment and keep it as straight line on display
-				if (!routeFound) {
-					// route is not found, move start point by
-					next = findNextGpxPointWithin(gpxPoints, start, gctx.MINIMUM_STEP_APPROXIMATION);
-					if (prev != null) {
-						prev.routeToTarget.addAll(prev.stepBackRoute);
-						makeSegmentPointPrecise(prev.routeToTarget.get(prev.routeToTarget.size() - 1), start.loc, false);
-						if (next != null) {
-							log.warn("NOT found route from: " + start.pnt.getRoad() + " at " + start.pnt.getSegmentStart());
-						}
-					}
-					prev = null;
-				} else {
-					prev = start;
-				}
-				start = next;
+			if (useMapMatchingApproximation) {
+				new GpxMapMatcher(this, gctx).match(gpxPoints);
+			} else {
+				searchGpxRouteByRouting(gctx, gpxPoints);
 			}
 			if (gctx.ctx.calculationProgress != null) {
 				gctx.ctx.calculationProgress.timeToCalculate = System.nanoTime() - timeToCalculate;
@@ -328,6 +280,86 @@ public class RoutePlannerFrontEnd {
 		return gctx;
 	}
 
+	/**
+	 * Approximates long track in overlapping chunks with tasks of executor (see {@link ParallelGpxApproximator})
+	 */
+	public GpxRouteApproximation searchGpxRouteParallel(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints, ExecutorService executor,
+			ResultMatcher<GpxRouteApproximation> resultMatcher) throws IOException, InterruptedException {
+		return new ParallelGpxApproximator(this, executor).searchGpxRoute(gctx, gpxPoints, resultMatcher);
+	}
+
+	private void searchGpxRouteByRouting(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints) throws IOException, InterruptedException {
+		GpxPoint start = null;
+		GpxPoint prev = null;
+		if (gpxPoints.size() > 0) {
+			gctx.ctx.calculationProgress.totalIterations = (int) (gpxPoints.get(gpxPoints.size() - 1).cumDist / gctx.MAXIMUM_STEP_APPROXIMATION + 1);
+			start = gpxPoints.get(0);
+		}
+		while (start != null && !gctx.ctx.calculationProgress.isCancelled) {
+			double routeDist = gctx.MAXIMUM_STEP_APPROXIMATION;
+			GpxPoint next = findNextGpxPointWithin(gpxPoints, start, routeDist);
+			boolean routeFound = false;
+			if (next != null && initRoutingPoint(start, gctx, gctx.MINIMUM_POINT_APPROXIMATION)) {
+				gctx.ctx.calculationProgress.totalEstimatedDistance = 0;
+				gctx.ctx.calculationProgress.iteration = (int) (next.cumDist / gctx.MAXIMUM_STEP_APPROXIMATION);
+				while (routeDist >= gctx.MINIMUM_STEP_APPROXIMATION && !routeFound) {
+					routeFound = initRoutingPoint(next, gctx, gctx.MINIMUM_POINT_APPROXIMATION);
+					if (routeFound) {
+						routeFound = findGpxRouteSegment(gctx, gpxPoints, start, next, prev != null);
+						if (routeFound) {
+							routeFound = isRouteCloseToGpxPoints(gctx, gpxPoints, start, next);
+						}
+						if (routeFound) {
+							// route is found - cut the end of the route and move to next iteration
+							// start.stepBackRoute = new ArrayList<RouteSegmentResult>();
+							// boolean stepBack = true;
+							boolean stepBack = stepBackAndFindPrevPointInRoute(gctx, gpxPoints, start, next);
+							if (!stepBack) {
+								// not supported case (workaround increase MAXIMUM_STEP_APPROXIMATION)
+								log.info("Consider to increase MAXIMUM_STEP_APPROXIMATION to: " + routeDist * 2);
+								start.routeToTarget = null;
+								routeFound = false;
+							} else {
+								if (gctx.ctx.getVisitor() != null) {
+									gctx.ctx.getVisitor().visitApproximatedSegments(start.routeToTarget, start,
+											next);
+								}
+							}
+						}
+					}
+					if (!routeFound) {
+						// route is not found move next point closer to start point (distance / 2)
+						routeDist = routeDist / 2;
+						if (routeDist < gctx.MINIMUM_STEP_APPROXIMATION
+								&& routeDist > gctx.MINIMUM_STEP_APPROXIMATION / 2 + 1) {
+							routeDist = gctx.MINIMUM_STEP_APPROXIMATION;
+						}
+						next = findNextGpxPointWithin(gpxPoints, start, routeDist);
+						if (next != null) {
+							routeDist = Math.min(next.cumDist - start.cumDist, routeDist);
+						}
+					}
+				}
+			}
+			// route is not found skip segment and keep it as straight line on display
+			if (!routeFound) {
+				// route is not found, move start point by
+				next = findNextGpxPointWithin(gpxPoints, start, gctx.MINIMUM_STEP_APPROXIMATION);
+				if (prev != null) {
+					prev.routeToTarget.addAll(prev.stepBackRoute);
+					makeSegmentPointPrecise(prev.routeToTarget.get(prev.routeToTarget.size() - 1), start.loc, false);
+					if (next != null) {
+						log.warn("NOT found route from: " + start.pnt.getRoad() + " at " + start.pnt.getSegmentStart());
+					}
+				}
+				prev = null;
+			} else {
+				prev = start;
+			}
+			start = next;
+		}
+	}
+
 	private boolean isRouteCloseToGpxPoints(GpxRouteApproximation gctx, List<GpxPoint> gpxPoints,
 	                                        GpxPoint start, GpxPoint next) {
 		boolean routeIsClose = true;
@@ -490,7 +522,7 @@ public class RoutePlannerFrontEnd {
 		return gpxPoints;
 	}
  
-	private void cleanupResultAndAddTurns(GpxRouteApproximation gctx) {
+	void cleanupResultAndAddTurns(GpxRouteApproximation gctx) {
 		// cleanup double joints
 		int LOOK_AHEAD = 4;
 		for(int i = 0; i < gctx.result.size() && !gctx.ctx.calculationProgress.isCancelled; i++) {
@@ -808,7 +840,7 @@ public class RoutePlannerFrontEnd {
 		return currentsDist;
 	}
 
-	private void makeSegmentPointPrecise(RouteSegmentResult routeSegmentResult, LatLon point, boolean st) {
+	void makeSegmentPointPrecise(RouteSegmentResult routeSegmentResult, LatLon point, boolean st) {
 		int px = MapUtils.get31TileNumberX(point.getLongitude());
 		int py = MapUtils.get31TileNumberY(point.getLatitude());
 		int pind = st ? routeSegmentResult.getStartPointIndex() : routeSegmentResult.getEndPointIndex();
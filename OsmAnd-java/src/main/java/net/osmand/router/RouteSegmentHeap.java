@@ -0,0 +1,184 @@
+package net.osmand.router;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed binary min-heap of route segments for A* frontier (alternative to PriorityQueue with SegmentsComparator).
+ * Priority f(x) = distanceFromStart + heuristicCoefficient * distanceToEnd is calculated once when segment is offered
+ * and stored in primitive array. Segment keeps own position in heap, so offering segment which is already
+ * in the queue updates its priority (decrease-key) instead of adding duplicate. Planner changes distance of queued
+ * segment before it offers segment again, heap order is kept by stored priorities.
+ * Segment can't be in 2 heaps at the same time.
+ */
+public class RouteSegmentHeap extends AbstractQueue<RouteSegment> {
+
+	private final RoutingContext ctx;
+	private RouteSegment[] segments;
+	private double[] priorities;
+	private int size;
+
+	public RouteSegmentHeap(RoutingContext ctx, int initialCapacity) {
+		this.ctx = ctx;
+		initialCapacity = Math.max(initialCapacity, 2);
+		segments = new RouteSegment[initialCapacity];
+		priorities = new double[initialCapacity];
+	}
+
+	// the same value as compared by RoutingContext.roadPriorityComparator
+	private double priority(RouteSegment s) {
+		return s.distanceFromStart + ctx.config.heuristicCoefficient * s.distanceToEnd;
+	}
+
+	@Override
+	public boolean offer(RouteSegment s) {
+		double p = priority(s);
+		int i = s.heapIndex;
+		if (i >= 0 && i < size && segments[i] == s) {
+			double old = priorities[i];
+			priorities[i] = p;
+			if (p < old) {
+				siftUp(i);
+			} else if (p > old) {
+				siftDown(i);
+			}
+			return true;
+		}
+		if (size == segments.length) {
+			int ncapacity = size + (size >> 1);
+			segments = Arrays.copyOf(segments, ncapacity);
+			priorities = Arrays.copyOf(priorities, ncapacity);
+		}
+		segments[size] = s;
+		priorities[size] = p;
+		s.heapIndex = size;
+		siftUp(size++);
+		return true;
+	}
+
+	@Override
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		RouteSegment res = segments[0];
+		res.heapIndex = -1;
+		size--;
+		if (size > 0) {
+			segments[0] = segments[size];
+			priorities[0] = priorities[size];
+			segments[0].heapIndex = 0;
+			segments[size] = null;
+			siftDown(0);
+		} else {
+			segments[0] = null;
+		}
+		return res;
+	}
+
+	@Override
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[0];
+	}
+
+	public double peekPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return priorities[0];
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (o instanceof RouteSegment) {
+			int i = ((RouteSegment) o).heapIndex;
+			return i >= 0 && i < size && segments[i] == o;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			segments[i].heapIndex = -1;
+			segments[i] = null;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int i) {
+		RouteSegment s = segments[i];
+		double p = priorities[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (priorities[parent] <= p) {
+				break;
+			}
+			segments[i] = segments[parent];
+			priorities[i] = priorities[parent];
+			segments[i].heapIndex = i;
+			i = parent;
+		}
+		segments[i] = s;
+		priorities[i] = p;
+		s.heapIndex = i;
+	}
+
+	private void siftDown(int i) {
+		RouteSegment s = segments[i];
+		double p = priorities[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && priorities[right] < priorities[child]) {
+				child = right;
+			}
+			if (p <= priorities[child]) {
+				break;
+			}
+			segments[i] = segments[child];
+			priorities[i] = priorities[child];
+			segments[i].heapIndex = i;
+			i = child;
+		}
+		segments[i] = s;
+		priorities[i] = p;
+		s.heapIndex = i;
+	}
+
+	// iterates in heap order (not sorted), remove is not supported
+	@Override
+	public Iterator<RouteSegment> iterator() {
+		return new Iterator<RouteSegment>() {
+			int ind = 0;
+
+			@Override
+			public boolean hasNext() {
+				return ind < size;
+			}
+
+			@Override
+			public RouteSegment next() {
+				if (ind >= size) {
+					throw new NoSuchElementException();
+				}
+				return segments[ind++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -269,8 +269,19 @@ public class RouteStatisticsHelper {
 		                              RenderingRuleSearchRequest defaultRenderingRuleSearchRequest) {
 			this.currentRenderer = currentRenderer;
 			this.defaultRenderer = defaultRenderer;
-			this.currentRenderingRuleSearchRequest = currentRenderingRuleSearchRequest;
-			this.defaultRenderingRuleSearchRequest = defaultRenderingRuleSearchRequest;
+			this.currentRenderingRuleSearchRequest = withSearchCache(currentRenderingRuleSearchRequest, currentRenderer);
+			this.defaultRenderingRuleSearchRequest = withSearchCache(defaultRenderingRuleSearchRequest, defaultRenderer);
+		}
+
+		// segments of route repeat same tags, so attribute searches are shared through style cache
+		private static RenderingRuleSearchRequest withSearchCache(RenderingRuleSearchRequest req,
+				RenderingRulesStorage storage) {
+			if (req == null || storage == null || req.ALL != storage.PROPS) {
+				return req;
+			}
+			RenderingRuleSearchRequest cached = new RenderingRuleSearchRequest(req);
+			cached.setSearchCache(storage.getSearchCache());
+			return cached;
 		}
 
 
@@ -0,0 +1,199 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Process wide cache of decoded route subregion tiles shared between {@link RoutingContext}s
+ * (see {@link RoutingConfiguration#tileCache}).
+ * Tiles are keyed by (file, subregion file pointer) and evicted in LRU order when estimated size exceeds the limit.
+ * Cached objects are never given out: routing mutates objects (conditional tags, direction points),
+ * so every context receives own copies which is still much cheaper than reading and decoding the file.
+ */
+public class RouteTileCache {
+
+	public static final int DEFAULT_CACHE_SIZE_MB = 128;
+	private static RouteTileCache global;
+
+	private final long maxSize;
+	private long size;
+	private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<TileKey, CachedTile>(256, 0.75f, true);
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public RouteTileCache(long maxSizeBytes) {
+		this.maxSize = maxSizeBytes;
+	}
+
+	public static synchronized RouteTileCache getGlobal() {
+		if (global == null) {
+			global = new RouteTileCache(DEFAULT_CACHE_SIZE_MB * (1L << 20));
+		}
+		return global;
+	}
+
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion,
+			RouteCalculationProgress progress) throws IOException {
+		TileKey key = new TileKey(reader.getFile(), subregion.filePointer);
+		CachedTile tile;
+		synchronized (this) {
+			tile = tiles.get(key);
+			if (tile != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+		if (tile != null) {
+			if (progress != null) {
+				progress.loadedTilesFromCache++;
+			}
+		} else {
+			// several threads could decode the same tile simultaneously, last one stays in cache
+			List<RouteDataObject> res = reader.loadRouteIndexData(subregion);
+			tile = new CachedTile(res);
+			put(key, tile);
+		}
+		return tile.copy(subregion.routeReg);
+	}
+
+	private synchronized void put(TileKey key, CachedTile tile) {
+		CachedTile old = tiles.put(key, tile);
+		if (old != null) {
+			size -= old.size;
+		}
+		size += tile.size;
+		Iterator<Entry<TileKey, CachedTile>> it = tiles.entrySet().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Entry<TileKey, CachedTile> e = it.next();
+			if (e.getValue() == tile) {
+				continue;
+			}
+			size -= e.getValue().size;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized void clear() {
+		tiles.clear();
+		size = 0;
+	}
+
+	public synchronized int getCachedTiles() {
+		return tiles.size();
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		long all = hits + misses;
+		return "Route tile cache " + tiles.size() + " tiles, " + (size >> 20) + " MB of " + (maxSize >> 20)
+				+ " MB, hits " + hits + " (" + (all == 0 ? 0 : hits * 100 / all) + "%), evictions " + evictions;
+	}
+
+	private static class TileKey {
+		private final File file;
+		private final int filePointer;
+
+		TileKey(File file, int filePointer) {
+			this.file = file;
+			this.filePointer = filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return file.hashCode() * 31 + filePointer;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TileKey)) {
+				return false;
+			}
+			TileKey other = (TileKey) obj;
+			return filePointer == other.filePointer && file.equals(other.file);
+		}
+	}
+
+	private static class CachedTile {
+		private final RouteDataObject[] objects;
+		private final long size;
+
+		CachedTile(List<RouteDataObject> objects) {
+			this.objects = objects.toArray(new RouteDataObject[0]);
+			long sz = 0;
+			for (RouteDataObject o : this.objects) {
+				if (o != null) {
+					sz += RoutingContext.getEstimatedSize(o);
+				}
+			}
+			this.size = sz;
+		}
+
+		List<RouteDataObject> copy(RouteRegion region) {
+			List<RouteDataObject> res = new ArrayList<RouteDataObject>(objects.length);
+			for (RouteDataObject o : objects) {
+				res.add(o == null ? null : copy(o, region));
+			}
+			return res;
+		}
+
+		private static RouteDataObject copy(RouteDataObject o, RouteRegion region) {
+			RouteDataObject c = new RouteDataObject(region);
+			c.id = o.id;
+			// coordinates and names are replaced (not modified) by routing so they could be shared
+			c.pointsX = o.pointsX;
+			c.pointsY = o.pointsY;
+			c.names = o.names;
+			c.nameIds = o.nameIds;
+			c.restrictions = o.restrictions;
+			c.restrictionsVia = o.restrictionsVia;
+			c.pointNames = o.pointNames;
+			c.pointNameTypes = o.pointNameTypes;
+			// types are modified in place by processConditionalTags and setPointTypes
+			c.types = o.types == null ? null : o.types.clone();
+			if (o.pointTypes != null) {
+				c.pointTypes = new int[o.pointTypes.length][];
+				for (int i = 0; i < o.pointTypes.length; i++) {
+					c.pointTypes[i] = o.pointTypes[i] == null ? null : o.pointTypes[i].clone();
+				}
+			}
+			return c;
+		}
+	}
+}
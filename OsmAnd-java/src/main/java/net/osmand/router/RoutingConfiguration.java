@@ -42,10 +42,18 @@ public class RoutingConfiguration {
 	public int ZOOM_TO_LOAD_TILES = 16;
 	public long memoryLimitation;
 	public long nativeMemoryLimitation;
+	// keep loaded tiles as packed points (CompactRouteTile), segments are created on request
+	public boolean useCompactTiles = false;
+	// shared cache of decoded tiles between routing contexts (null - disabled), see RouteTileCache.getGlobal()
+	public RouteTileCache tileCache;
 
 	// 1.2 Build A* graph in backward/forward direction (can affect results)
 	// 0 - 2 ways, 1 - direct way, -1 - reverse way
 	public int planRoadDirection = 0;
+	// A* frontier: RouteSegmentHeap (decrease-key of queued segment) instead of PriorityQueue (duplicates of segment)
+	public boolean useIndexedHeap = false;
+	// 2 directions (planRoadDirection = 0) are calculated in 2 threads (same route as in 1 thread), visitor is called from both of them
+	public boolean parallelBidirectionalSearch = false;
 
 	// 1.3 Router specific coefficients and restrictions
 	// use GeneralRouter and not interface to simplify native access !
@@ -71,6 +79,33 @@ public class RoutingConfiguration {
 		return directionPoints;
 	}
 
+	/**
+	 * Configuration with the same parameters and router copy (see {@link GeneralRouter#copyForParallelUse()}),
+	 * so it could be used by another routing context in parallel with this one
+	 */
+	public RoutingConfiguration copyForParallelUse() {
+		RoutingConfiguration c = new RoutingConfiguration();
+		c.attributes.putAll(attributes);
+		c.heuristicCoefficient = heuristicCoefficient;
+		c.ZOOM_TO_LOAD_TILES = ZOOM_TO_LOAD_TILES;
+		c.memoryLimitation = memoryLimitation;
+		c.nativeMemoryLimitation = nativeMemoryLimitation;
+		c.useCompactTiles = useCompactTiles;
+		c.tileCache = tileCache;
+		c.planRoadDirection = planRoadDirection;
+		c.useIndexedHeap = useIndexedHeap;
+		c.parallelBidirectionalSearch = parallelBidirectionalSearch;
+		c.router = router.copyForParallelUse();
+		c.routerName = routerName;
+		c.initialDirection = initialDirection;
+		c.recalculateDistance = recalculateDistance;
+		c.routeCalculationTime = routeCalculationTime;
+		// read only after build
+		c.directionPoints = directionPoints;
+		c.directionPointsRadius = directionPointsRadius;
+		return c;
+	}
+
 	public static class DirectionPoint extends Node {
 		private static final long serialVersionUID = -7496599771204656505L;
 		public double distance = Double.MAX_VALUE;
@@ -186,6 +221,9 @@ public class RoutingConfiguration {
 				i.nativeMemoryLimitation = memoryLimits.nativeMemoryLimitMb * (1l << 20);
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.useIndexedHeap = Boolean.parseBoolean(getAttribute(i.router, "useIndexedHeap"));
+			i.useCompactTiles = Boolean.parseBoolean(getAttribute(i.router, "useCompactTiles"));
+			i.parallelBidirectionalSearch = Boolean.parseBoolean(getAttribute(i.router, "parallelBidirectionalSearch"));
 			if (directionPointsBuilder != null) {
 				QuadRect rect = new QuadRect(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
 				List<net.osmand.osm.edit.Node> lst = directionPointsBuilder.queryInBox(rect, new ArrayList<Node>());
@@ -10,6 +10,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
 
@@ -87,6 +88,14 @@ public class RoutingContext {
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	// reverse search has own lists as it could be run in parallel (RoutingConfiguration.parallelBidirectionalSearch)
+	ArrayList<RouteSegment> reverseSegmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	ArrayList<RouteSegment> reverseSegmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
+	// own routers of direct and reverse search in parallel mode (config.router is used to load tiles)
+	VehicleRouter directSearchRouter;
+	VehicleRouter reverseSearchRouter;
+	// set in parallel mode: loaded tiles are read under read lock, tiles are loaded and unloaded under write lock
+	ReentrantReadWriteLock tilesLock;
 	
 	
 	// 5. debug information (package accessor)
@@ -250,7 +259,60 @@ public class RoutingContext {
 	}
 	
 	public RouteSegment loadRouteSegment(int x31, int y31, long memoryLimit, boolean reverseWaySearch) {
-		long tileId = getRoutingTile(x31, y31, memoryLimit);
+		if (tilesLock == null) {
+			return loadRouteSegment(getRoutingTile(x31, y31, memoryLimit), x31, y31, reverseWaySearch);
+		}
+		// direct and reverse search run in parallel, they block each other only to load tiles
+		long tileId;
+		tilesLock.readLock().lock();
+		try {
+			tileId = getLoadedRoutingTile(x31, y31, memoryLimit);
+			if (tileId != -1) {
+				return loadRouteSegment(tileId, x31, y31, reverseWaySearch);
+			}
+		} finally {
+			tilesLock.readLock().unlock();
+		}
+		tilesLock.writeLock().lock();
+		try {
+			tileId = getRoutingTile(x31, y31, memoryLimit);
+			// downgrade, so tile can't be unloaded before segments are read
+			tilesLock.readLock().lock();
+		} finally {
+			tilesLock.writeLock().unlock();
+		}
+		try {
+			return loadRouteSegment(tileId, x31, y31, reverseWaySearch);
+		} finally {
+			tilesLock.readLock().unlock();
+		}
+	}
+
+	// -1 if tile should be loaded or memory should be freed (see getRoutingTile)
+	private long getLoadedRoutingTile(int x31, int y31, long memoryLimit) {
+		if (memoryLimit == 0) {
+			memoryLimit = config.memoryLimitation;
+		}
+		if (getCurrentEstimatedSize() > 0.9 * memoryLimit) {
+			return -1;
+		}
+		int zmShift = 31 - config.ZOOM_TO_LOAD_TILES;
+		long tileId = (((long) (x31 >> zmShift)) << config.ZOOM_TO_LOAD_TILES) + (y31 >> zmShift);
+		List<RoutingSubregionTile> subregions = indexedSubregions.get(tileId);
+		if (subregions == null && !indexedSubregions.containsKey(tileId)) {
+			return -1;
+		}
+		if (subregions != null) {
+			for (RoutingSubregionTile ts : subregions) {
+				if (!ts.isLoaded()) {
+					return -1;
+				}
+			}
+		}
+		return tileId;
+	}
+
+	private RouteSegment loadRouteSegment(long tileId, int x31, int y31, boolean reverseWaySearch) {
 		TLongObjectHashMap<RouteDataObject> excludeDuplications = new TLongObjectHashMap<RouteDataObject>();
 		RouteSegment original = null;
 		List<RoutingSubregionTile> subregions = indexedSubregions.get(tileId);
@@ -289,8 +351,13 @@ public class RoutingContext {
 
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
-				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				ts.setLoadedNonNative(config.useCompactTiles && toLoad == null);
+				List<RouteDataObject> res;
+				if (config.tileCache != null) {
+					res = config.tileCache.loadRouteIndexData(reader, ts.subregion, calculationProgress);
+				} else {
+					res = reader.loadRouteIndexData(ts.subregion);
+				}
 				
 				if (toLoad != null) {
 					toLoad.addAll(res);
@@ -719,6 +786,56 @@ public class RoutingContext {
 		return (o.getId() << 10) + ind;
 	}
 
+	/**
+	 * Key of road point used by route tiles and by searches over loaded segments.
+	 */
+	static long calcPointKey(int x31, int y31) {
+		return (((long) x31) << 31) + (long) y31;
+	}
+
+	static long calcPointKey(RouteDataObject road, int ind) {
+		return calcPointKey(road.getPoint31XTile(ind), road.getPoint31YTile(ind));
+	}
+
+	static int getPointKeyX31(long key) {
+		return (int) (key >> 31);
+	}
+
+	static int getPointKeyY31(long key) {
+		return (int) (key - (((long) getPointKeyX31(key)) << 31));
+	}
+
+	/**
+	 * Time to pass road from point start to point end (in any direction) as {@link BinaryRoutePlanner} calculates it
+	 * without turns, or -1 if road can't be passed.
+	 */
+	static float calculateSegmentTime(VehicleRouter router, RouteDataObject road, int start, int end) {
+		float priority = router.defineSpeedPriority(road);
+		float speed = router.defineRoutingSpeed(road) * priority;
+		if (speed == 0) {
+			speed = router.getDefaultSpeed() * priority;
+		}
+		if (speed > router.getMaxSpeed()) {
+			speed = router.getMaxSpeed();
+		}
+		int d = start < end ? 1 : -1;
+		double cost = 0;
+		for (int prev = start, i = start + d; prev != end; prev = i, i += d) {
+			double obstacle = router.defineRoutingObstacle(road, i, prev > i);
+			if (obstacle < 0) {
+				return -1;
+			}
+			double heightObstacle = router.defineHeightObstacle(road, (short) i, (short) prev);
+			if (heightObstacle < 0) {
+				return -1;
+			}
+			double dist = MapUtils.squareRootDist31(road.getPoint31XTile(prev), road.getPoint31YTile(prev),
+					road.getPoint31XTile(i), road.getPoint31YTile(i));
+			cost += obstacle + heightObstacle + dist / speed;
+		}
+		return (float) cost;
+	}
+
 
 	public static class RoutingSubregionTile {
 		public final RouteSubregion subregion;
@@ -729,6 +846,8 @@ public class RoutingContext {
 		private NativeRouteSearchResult searchResult = null;
 		private int isLoaded = 0;
 		private TLongObjectMap<RouteSegment> routes = null;
+		// compact mode: routes contains only segments created on request, roads are kept by compact tile
+		private CompactRouteTile compactTile = null;
 		private TLongHashSet excludedIds = null;
 
 		public RoutingSubregionTile(RouteSubregion subregion) {
@@ -740,7 +859,9 @@ public class RoutingContext {
 		}
 		
 		public void loadAllObjects(final List<RouteDataObject> toFillIn, RoutingContext ctx, TLongObjectHashMap<RouteDataObject> excludeDuplications) {
-			if(routes != null) {
+			if (compactTile != null) {
+				compactTile.loadAllObjects(toFillIn, excludeDuplications);
+			} else if(routes != null) {
 				Iterator<RouteSegment> it = routes.valueCollection().iterator();
 				while(it.hasNext()){
 					RouteSegment rs = it.next();
@@ -766,13 +887,28 @@ public class RoutingContext {
 			}
 		}
 		
-		private RouteSegment loadRouteSegment(int x31, int y31, RoutingContext ctx,
+		// synchronized: in parallel mode segments of tile are created and linked by both searches
+		private synchronized RouteSegment loadRouteSegment(int x31, int y31, RoutingContext ctx,
 				TLongObjectHashMap<RouteDataObject> excludeDuplications, RouteSegment original, List<RoutingSubregionTile> subregions, int subregionIndex, 
 				boolean reverseWaySearch) {
 			access++;
 			if (routes != null) {
-				long l = (((long) x31) << 31) + (long) y31;
+				long l = calcPointKey(x31, y31);
 				RouteSegment segment = routes.get(l);
+				if (segment == null && compactTile != null) {
+					segment = compactTile.createSegments(l);
+					if (segment != null) {
+						routes.put(l, segment);
+						int sz = 0;
+						for (RouteSegment s = segment; s != null; s = s.nextLoaded) {
+							sz += CompactRouteTile.SEGMENT_SIZE;
+						}
+						tileStatistics.size += sz;
+						synchronized (ctx.global) {
+							ctx.global.size += sz;
+						}
+					}
+				}
 				while (segment != null) {
 					RouteDataObject ro = segment.road;
 					RouteDataObject toCmp = excludeDuplications.get(calcRouteId(ro, segment.getSegmentStart()));
@@ -834,21 +970,32 @@ public class RoutingContext {
 			}
 			searchResult = null;
 			routes = null;
+			compactTile = null;
 			excludedIds = null;
 		}
 		
 		public void setLoadedNonNative(){
+			setLoadedNonNative(false);
+		}
+
+		public void setLoadedNonNative(boolean compact) {
 			isLoaded = Math.abs(isLoaded) + 1;
 			routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
+			compactTile = compact ? new CompactRouteTile() : null;
 			tileStatistics = new TileStatistics();
 		}
 		
 		public void add(RouteDataObject ro) {
+			if (compactTile != null) {
+				tileStatistics.addCompactObject(ro);
+				compactTile.add(ro);
+				return;
+			}
 			tileStatistics.addObject(ro);
 			for (int i = 0; i < ro.pointsX.length; i++) {
 				int x31 = ro.getPoint31XTile(i);
 				int y31 = ro.getPoint31YTile(i);
-				long l = (((long) x31) << 31) + (long) y31;
+				long l = calcPointKey(x31, y31);
 				RouteSegment segment = new RouteSegment(ro, i);
 				if (!routes.containsKey(l)) {
 					routes.put(l, segment);
@@ -868,6 +1015,7 @@ public class RoutingContext {
 			if (r.objects != null) {
 				searchResult = null;
 				routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
+				compactTile = null;
 				for (RouteDataObject ro : r.objects) {
 					if (ro != null && ctx.config.router.acceptLine(ro)) {
 						add(ro);
@@ -881,6 +1029,11 @@ public class RoutingContext {
 	}
 	
 	static int getEstimatedSize(RouteDataObject o) {
+		// Standard overhead?
+		return (int) (getEstimatedObjectSize(o) * 3.5);
+	}
+
+	static int getEstimatedObjectSize(RouteDataObject o) {
 		// calculate size
 		int sz = 0;
 		sz += 8 + 4; // overhead
@@ -909,8 +1062,7 @@ public class RoutingContext {
 				}
 			}
 		}
-		// Standard overhead?
-		return  (int) (sz * 3.5);
+		return sz;
 	}
 	
 	protected static class TileStatistics {
@@ -931,6 +1083,12 @@ public class RoutingContext {
 			size += getEstimatedSize(o);
 		}
 
+		public void addCompactObject(RouteDataObject o) {
+			allRoutes++;
+			coordinates += o.getPointsLength() * 2;
+			size += getEstimatedObjectSize(o) + o.getPointsLength() * CompactRouteTile.POINT_SIZE;
+		}
+
 		
 	}
 	
@@ -0,0 +1,390 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.data.LatLon;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Round based public transport routing (RAPTOR, Delling, Pajor, Werneck "Round-Based Public Transit Routing")
+ * over {@link TransportTimetable}. Round k finds earliest arrival to every stop with k vehicles: all routes passing
+ * stops improved in previous round are scanned once from the first improved stop (earliest trip which could be
+ * boarded is kept while scanning), then walking transfers from stops improved by the routes are relaxed.
+ * Number of rounds is limited by {@link TransportRoutingConfiguration#maxNumberOfChanges}.
+ * <p>
+ * Vehicle arrivals are kept apart from labels used for boarding: arrival which doesn't improve boarding label of stop
+ * (e.g. stop was reached earlier by walking) still could be the last vehicle to destination or start a walking transfer.
+ * Destination is reached from stops in {@link TransportRoutingConfiguration#walkRadius} directly or through one
+ * more stop in {@link TransportRoutingConfiguration#walkChangeRadius}.
+ * <p>
+ * Result of round is kept only when it arrives to destination earlier than results with less vehicles, so
+ * {@link #buildRoute} returns Pareto set of (arrival time, number of changes) and the last one is the earliest
+ * arrival. Times are counted as in {@link TransportRoutePlanner}: walking with {@link TransportRoutingConfiguration#walkSpeed},
+ * {@link TransportRoutingConfiguration#getChangeTime()} after every vehicle and boarding time for routes without
+ * schedule, search starts at {@link TransportRoutingConfiguration#scheduleTimeOfDay} when schedule is used.
+ * <p>
+ * Planner keeps its state between queries and is not thread safe, timetable could be shared by planners.
+ */
+public class TransportRaptorPlanner {
+
+	private static final Log log = PlatformUtil.getLog(TransportRaptorPlanner.class);
+	private static final int INF = Integer.MAX_VALUE;
+
+	private final TransportTimetable tt;
+	private final TransportRoutingConfiguration cfg;
+
+	public RouteCalculationProgress calculationProgress;
+
+	// stats of the last query
+	public int rounds;
+	public int scannedRoutes;
+	public int improvedStops;
+	public long calcTimeNanos;
+
+	// labels of round (earliest time when vehicle could be boarded at stop) and how they were reached:
+	// by route (vehicle label of the same round) or by walking from stop with vehicle label of the same round
+	private int[][] ready;
+	private int[][] labelWalkFrom;
+	// vehicle labels of round (arrival with change time) and route from board position (round of boarding label)
+	private int[][] rideReady;
+	private int[][] labelRoute;
+	private int[][] labelBoardPos;
+	private int[][] labelAlightPos;
+	private int[][] labelTrip;
+	private int[][] labelBoardRound;
+	// the best arrival to destination in round and the last vehicle
+	private int[] targetArrival;
+	private int[] targetStop;
+	private int[] targetRoute;
+	private int[] targetBoardPos;
+	private int[] targetAlightPos;
+	private int[] targetTrip;
+	private int[] targetBoardRound;
+	private int[] best;
+	private int[] bestRide;
+	private int[] prevReady;
+	private int[] prevRound;
+	private int[] routeFrom;
+	private int[] startWalk;
+	private int[] endWalk;
+	// walking to destination from stop (directly or through one more stop)
+	private int[] endTime;
+	private int[] endDist;
+	private boolean[] marked;
+	private boolean[] rideMarked;
+	private final TIntArrayList markedStops = new TIntArrayList();
+	private final TIntArrayList rideStops = new TIntArrayList();
+	private final TIntArrayList queuedRoutes = new TIntArrayList();
+
+	public TransportRaptorPlanner(TransportTimetable tt) {
+		this.tt = tt;
+		this.cfg = tt.cfg;
+	}
+
+	/**
+	 * @return results with increasing number of changes and decreasing route time, empty if destination
+	 * can't be reached
+	 */
+	public List<TransportRouteResult> buildRoute(LatLon start, LatLon end) {
+		long nano = System.nanoTime();
+		int stopsCount = tt.getStopsCount();
+		int maxRounds = cfg.maxNumberOfChanges + 1;
+		init(stopsCount, maxRounds);
+		int departure = cfg.useSchedule ? cfg.scheduleTimeOfDay * 10 : 0;
+		int limit = departure + cfg.maxRouteTime;
+
+		TIntArrayList near = new TIntArrayList();
+		TIntArrayList dists = new TIntArrayList();
+		tt.findStops(end, cfg.walkRadius, near, dists);
+		for (int i = 0; i < near.size(); i++) {
+			endWalk[near.get(i)] = dists.get(i);
+		}
+		initEndWalk(near);
+		near.clear();
+		dists.clear();
+		tt.findStops(start, cfg.walkRadius, near, dists);
+		for (int i = 0; i < near.size(); i++) {
+			int s = near.get(i);
+			startWalk[s] = dists.get(i);
+			ready[0][s] = departure + (int) (dists.get(i) / cfg.walkSpeed);
+			best[s] = ready[0][s];
+			mark(s);
+		}
+
+		Arrays.fill(targetArrival, INF);
+		int bestTarget = limit;
+		int k = 1;
+		for (; k <= maxRounds && !markedStops.isEmpty(); k++) {
+			if (calculationProgress != null && calculationProgress.isCancelled) {
+				return null;
+			}
+			collectRoutes(k);
+			scanRoutes(k, bestTarget);
+			relaxTransfers(k, bestTarget);
+			if (targetArrival[k] < bestTarget) {
+				bestTarget = targetArrival[k];
+			} else {
+				targetArrival[k] = INF;
+			}
+		}
+		rounds = k - 1;
+		List<TransportRouteResult> res = new ArrayList<TransportRouteResult>();
+		for (int i = 1; i <= maxRounds; i++) {
+			if (targetArrival[i] != INF) {
+				res.add(prepareResult(i, departure));
+			}
+		}
+		calcTimeNanos = System.nanoTime() - nano;
+		if (log.isDebugEnabled()) {
+			log.debug(String.format("RAPTOR: %d results in %.2f ms, %d rounds, %d routes scanned, %d stops improved",
+					res.size(), calcTimeNanos / 1e6, rounds, scannedRoutes, improvedStops));
+		}
+		return res;
+	}
+
+	/**
+	 * @return result with the earliest arrival or null if destination can't be reached
+	 */
+	public TransportRouteResult earliestArrival(LatLon start, LatLon end) {
+		List<TransportRouteResult> res = buildRoute(start, end);
+		return res == null || res.isEmpty() ? null : res.get(res.size() - 1);
+	}
+
+	private void scanRoutes(int k, int bestTarget) {
+		rideStops.clear();
+		for (int q = 0; q < queuedRoutes.size(); q++) {
+			int r = queuedRoutes.get(q);
+			scannedRoutes++;
+			int rs = tt.routeStopsStart[r];
+			int len = tt.routeStopsStart[r + 1] - rs;
+			int trip = INF;
+			int boardPos = -1;
+			for (int i = routeFrom[r]; i < len; i++) {
+				int s = tt.routeStops[rs + i];
+				if (trip != INF) {
+					int arrival = trip + tt.routeTimes[rs + i];
+					int boardRound = prevRound[tt.routeStops[rs + boardPos]];
+					// every arrival is checked, not only ones which improve labels of stop
+					if (endTime[s] != INF && arrival + endTime[s] < targetArrival[k]) {
+						targetArrival[k] = arrival + endTime[s];
+						targetStop[k] = s;
+						targetRoute[k] = r;
+						targetBoardPos[k] = boardPos;
+						targetAlightPos[k] = i;
+						targetTrip[k] = trip;
+						targetBoardRound[k] = boardRound;
+					}
+					int t = arrival + cfg.getChangeTime();
+					if (arrival < bestTarget && t < bestRide[s]) {
+						bestRide[s] = t;
+						rideReady[k][s] = t;
+						labelRoute[k][s] = r;
+						labelBoardPos[k][s] = boardPos;
+						labelAlightPos[k][s] = i;
+						labelTrip[k][s] = trip;
+						labelBoardRound[k][s] = boardRound;
+						if (!rideMarked[s]) {
+							rideMarked[s] = true;
+							rideStops.add(s);
+						}
+						if (t < best[s]) {
+							ready[k][s] = t;
+							best[s] = t;
+							labelWalkFrom[k][s] = -1;
+							improvedStops++;
+							mark(s);
+						}
+					}
+				}
+				if (prevReady[s] != INF) {
+					int t = tt.earliestTrip(r, i, prevReady[s]);
+					if (t < trip) {
+						trip = t;
+						boardPos = i;
+					}
+				}
+			}
+		}
+	}
+
+	// stops near destination and stops in walkChangeRadius from them
+	private void initEndWalk(TIntArrayList near) {
+		for (int i = 0; i < near.size(); i++) {
+			int s = near.get(i);
+			endTime[s] = (int) (endWalk[s] / cfg.walkSpeed);
+			endDist[s] = endWalk[s];
+		}
+		for (int i = 0; i < near.size(); i++) {
+			int to = near.get(i);
+			// transfers are symmetric
+			for (int j = tt.transfersStart[to]; j < tt.transfersStart[to + 1]; j++) {
+				int s = tt.transferStops[j];
+				int t = tt.transferTimes[j] + (int) (endWalk[to] / cfg.walkSpeed);
+				if (t < endTime[s]) {
+					endTime[s] = t;
+					endDist[s] = (int) MapUtils.getDistance(tt.getStop(s).getLocation(), tt.getStop(to).getLocation())
+							+ endWalk[to];
+				}
+			}
+		}
+	}
+
+	private void init(int stopsCount, int maxRounds) {
+		if (ready == null || ready.length != maxRounds + 1 || ready[0].length != stopsCount) {
+			ready = new int[maxRounds + 1][stopsCount];
+			labelRoute = new int[maxRounds + 1][stopsCount];
+			labelBoardPos = new int[maxRounds + 1][stopsCount];
+			labelAlightPos = new int[maxRounds + 1][stopsCount];
+			labelTrip = new int[maxRounds + 1][stopsCount];
+			labelBoardRound = new int[maxRounds + 1][stopsCount];
+			labelWalkFrom = new int[maxRounds + 1][stopsCount];
+			rideReady = new int[maxRounds + 1][stopsCount];
+			targetArrival = new int[maxRounds + 1];
+			targetStop = new int[maxRounds + 1];
+			targetRoute = new int[maxRounds + 1];
+			targetBoardPos = new int[maxRounds + 1];
+			targetAlightPos = new int[maxRounds + 1];
+			targetTrip = new int[maxRounds + 1];
+			targetBoardRound = new int[maxRounds + 1];
+			best = new int[stopsCount];
+			bestRide = new int[stopsCount];
+			prevReady = new int[stopsCount];
+			prevRound = new int[stopsCount];
+			startWalk = new int[stopsCount];
+			endWalk = new int[stopsCount];
+			endTime = new int[stopsCount];
+			endDist = new int[stopsCount];
+			marked = new boolean[stopsCount];
+			rideMarked = new boolean[stopsCount];
+			routeFrom = new int[tt.getRoutesCount()];
+		}
+		for (int[] r : ready) {
+			Arrays.fill(r, INF);
+		}
+		for (int[] r : rideReady) {
+			Arrays.fill(r, INF);
+		}
+		Arrays.fill(best, INF);
+		Arrays.fill(bestRide, INF);
+		Arrays.fill(prevReady, INF);
+		Arrays.fill(prevRound, -1);
+		Arrays.fill(startWalk, -1);
+		Arrays.fill(endWalk, -1);
+		Arrays.fill(endTime, INF);
+		Arrays.fill(endDist, -1);
+		Arrays.fill(marked, false);
+		Arrays.fill(rideMarked, false);
+		Arrays.fill(routeFrom, INF);
+		markedStops.clear();
+		rounds = 0;
+		scannedRoutes = 0;
+		improvedStops = 0;
+	}
+
+	private void mark(int stop) {
+		if (!marked[stop]) {
+			marked[stop] = true;
+			markedStops.add(stop);
+		}
+	}
+
+	// routes passing stops marked in previous round with the first marked position
+	private void collectRoutes(int k) {
+		queuedRoutes.clear();
+		for (int m = 0; m < markedStops.size(); m++) {
+			int s = markedStops.get(m);
+			marked[s] = false;
+			prevReady[s] = ready[k - 1][s];
+			prevRound[s] = k - 1;
+			for (int i = tt.stopRoutesStart[s]; i < tt.stopRoutesStart[s + 1]; i++) {
+				int r = tt.stopRoutes[i];
+				int pos = tt.stopRoutePositions[i];
+				if (routeFrom[r] == INF) {
+					queuedRoutes.add(r);
+				}
+				routeFrom[r] = Math.min(routeFrom[r], pos);
+			}
+		}
+		markedStops.clear();
+		// scan order doesn't depend on order of stops
+		queuedRoutes.sort();
+	}
+
+	private void relaxTransfers(int k, int bestTarget) {
+		for (int q = 0; q < queuedRoutes.size(); q++) {
+			routeFrom[queuedRoutes.get(q)] = INF;
+		}
+		// stops with vehicle labels of round, walking labels don't start transfers
+		for (int m = 0; m < rideStops.size(); m++) {
+			int s = rideStops.get(m);
+			rideMarked[s] = false;
+			int t0 = rideReady[k][s];
+			for (int i = tt.transfersStart[s]; i < tt.transfersStart[s + 1]; i++) {
+				int to = tt.transferStops[i];
+				int t = t0 + tt.transferTimes[i];
+				if (t < best[to] && t < bestTarget) {
+					ready[k][to] = t;
+					best[to] = t;
+					labelWalkFrom[k][to] = s;
+					improvedStops++;
+					mark(to);
+				}
+			}
+		}
+	}
+
+	private TransportRouteResult prepareResult(int round, int departure) {
+		TransportRouteResult route = new TransportRouteResult(cfg);
+		route.setRouteTime(targetArrival[round] - departure);
+		route.setFinishWalkDist(endDist[targetStop[round]]);
+		List<TransportRouteResultSegment> segments = new ArrayList<TransportRouteResultSegment>();
+		TransportRouteResultSegment sg = createSegment(targetRoute[round], targetBoardPos[round],
+				targetAlightPos[round], targetTrip[round]);
+		int k = targetBoardRound[round];
+		int s = tt.routeStops[tt.routeStopsStart[targetRoute[round]] + targetBoardPos[round]];
+		while (true) {
+			segments.add(0, sg);
+			if (k == 0) {
+				sg.walkDist = startWalk[s];
+			} else if (labelWalkFrom[k][s] >= 0) {
+				int from = labelWalkFrom[k][s];
+				sg.walkDist = MapUtils.getDistance(tt.getStop(from).getLocation(), tt.getStop(s).getLocation());
+				s = from;
+			}
+			sg.walkTime = sg.walkDist / cfg.walkSpeed;
+			if (k == 0) {
+				break;
+			}
+			int r = labelRoute[k][s];
+			sg = createSegment(r, labelBoardPos[k][s], labelAlightPos[k][s], labelTrip[k][s]);
+			int boardRound = labelBoardRound[k][s];
+			s = tt.routeStops[tt.routeStopsStart[r] + labelBoardPos[k][s]];
+			k = boardRound;
+		}
+		for (TransportRouteResultSegment segment : segments) {
+			route.addSegment(segment);
+		}
+		return route;
+	}
+
+	private TransportRouteResultSegment createSegment(int r, int boardPos, int alightPos, int trip) {
+		int rs = tt.routeStopsStart[r];
+		TransportRouteResultSegment sg = new TransportRouteResultSegment();
+		sg.route = tt.routes[r];
+		sg.start = boardPos;
+		sg.end = alightPos;
+		// schedule times are 10 seconds based
+		sg.depTime = tt.isScheduled(r) ? (trip + tt.routeTimes[rs + boardPos]) / 10 : -1;
+		sg.travelTime = tt.routeTimes[rs + alightPos] - tt.routeTimes[rs + boardPos];
+		sg.travelDistApproximate = sg.getTravelDist();
+		return sg;
+	}
+}
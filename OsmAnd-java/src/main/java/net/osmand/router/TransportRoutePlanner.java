@@ -76,6 +76,7 @@ public class TransportRoutePlanner {
 			}
 			ctx.visitedRoutesCount++;
 			ctx.visitedSegments.put(segment.getId(), segment);
+			ctx.prefetchTransportStops(segment);
 			
 			if (segment.getDepth() > ctx.cfg.maxNumberOfChanges + 1) {
 				continue;
@@ -213,10 +214,11 @@ public class TransportRoutePlanner {
 	private List<TransportRouteResult> prepareResults(TransportRoutingContext ctx, List<TransportRouteSegment> results) {
 		Collections.sort(results, new SegmentsComparator(ctx));
 		List<TransportRouteResult> lst = new ArrayList<TransportRouteResult>();
-		System.out.println(String.format(Locale.US, "Calculated %.1f seconds, found %d results, visited %d routes / %d stops, loaded %d tiles (%d ms read, %d ms total), loaded ways %d (%d wrong)",
+		System.out.println(String.format(Locale.US, "Calculated %.1f seconds, found %d results, visited %d routes / %d stops, loaded %d tiles (%d ms read, %d ms total, %d cached, %d prefetched, %d read), loaded ways %d (%d wrong)",
 				(System.currentTimeMillis() - ctx.startCalcTime) / 1000.0, results.size(), 
 				ctx.visitedRoutesCount, ctx.visitedStops, 
 				ctx.quadTree.size(), ctx.readTime / (1000 * 1000), ctx.loadTime / (1000 * 1000),
+				ctx.tileCacheHits, ctx.tilePrefetchHits, ctx.tileCacheMisses,
 				ctx.loadedWays, ctx.wrongLoadedWays));
 		for(TransportRouteSegment res : results) {
 			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
@@ -10,7 +10,6 @@ import net.osmand.util.MapUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -30,10 +29,9 @@ public class TransportRoutingContext {
 	public Map<TransportStop, List<TransportRoute>> missingStopsCache = new HashMap<TransportStop, List<TransportRoute>>();
 
 	public TLongObjectHashMap<List<TransportRouteSegment>> quadTree;
-	// Here we don't limit files by bbox, so it could be an issue while searching for multiple unused files
-	// Incomplete routes usually don't need more files than around Max-BBOX of start/end,
-	// so here an improvement could be introduced
-	final TransportStopsRouteReader transportStopsReader;
+	// Files could be limited by bbox of start / end (see TransportStopsLoader), 
+	// loaded stops are cached by loader and could be shared by many contexts
+	final TransportStopsLoader stopsLoader;
 	public int finishTimeSeconds;
 
 	// stats
@@ -44,17 +42,27 @@ public class TransportRoutingContext {
 	public int loadedWays;
 	public long loadTime;
 	public long readTime;
+	public int tileCacheHits;
+	public int tilePrefetchHits;
+	public int tileCacheMisses;
 
 	private final int walkRadiusIn31;
 	private final int walkChangeRadiusIn31;
 
 	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, BinaryMapIndexReader... readers) {
+		this(cfg, library, new TransportStopsLoader(cfg, null, null, readers));
+	}
+
+	public TransportRoutingContext(TransportRoutingConfiguration cfg, NativeLibrary library, TransportStopsLoader stopsLoader) {
 		this.cfg = cfg;
 		walkRadiusIn31 = (int) (cfg.walkRadius / MapUtils.getTileDistanceWidth(31));
 		walkChangeRadiusIn31 = (int) (cfg.walkChangeRadius / MapUtils.getTileDistanceWidth(31));
 		quadTree = new TLongObjectHashMap<List<TransportRouteSegment>>();
 		this.library = library;
-		transportStopsReader = new TransportStopsRouteReader(Arrays.asList(readers));
+		this.stopsLoader = stopsLoader;
+		if (stopsLoader.getZoom() != cfg.ZOOM_TO_LOAD_TILES) {
+			throw new IllegalArgumentException("Stops loader uses different zoom " + stopsLoader.getZoom());
+		}
 	}
 
 	public List<TransportRouteSegment> getTransportStops(LatLon loc) throws IOException {
@@ -98,13 +106,34 @@ public class TransportRoutingContext {
 	}
 
 
+	/**
+	 * Prefetches tiles of stops after segment start (they will be needed if segment is reached by planner)
+	 */
+	public void prefetchTransportStops(TransportRouteSegment segment) {
+		if (!stopsLoader.isPrefetchEnabled()) {
+			return;
+		}
+		int pz = 31 - cfg.ZOOM_TO_LOAD_TILES;
+		for (int ind = segment.segStart + 1; ind < segment.getLength(); ind++) {
+			TransportStop st = segment.getStop(ind);
+			int lx = (st.x31 - walkChangeRadiusIn31) >> pz;
+			int rx = (st.x31 + walkChangeRadiusIn31) >> pz;
+			int ty = (st.y31 - walkChangeRadiusIn31) >> pz;
+			int by = (st.y31 + walkChangeRadiusIn31) >> pz;
+			for (int x = lx; x <= rx; x++) {
+				for (int y = ty; y <= by; y++) {
+					if (!quadTree.containsKey((((long) x) << (cfg.ZOOM_TO_LOAD_TILES + 1)) + y)) {
+						stopsLoader.prefetchTile(x, y);
+					}
+				}
+			}
+		}
+	}
+
 	private List<TransportRouteSegment> loadTile(int x, int y) throws IOException {
 		long nanoTime = System.nanoTime();
 		List<TransportRouteSegment> lst = new ArrayList<TransportRouteSegment>();
-		int pz = (31 - cfg.ZOOM_TO_LOAD_TILES);
-		BinaryMapIndexReader.SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
-				y << pz, (y + 1) << pz, -1, null);
-		Collection<TransportStop> stops = transportStopsReader.readMergedTransportStops(sr);
+		Collection<TransportStop> stops = stopsLoader.getTile(x, y, this);
 		loadTransportSegments(stops, lst);
 		readTime += System.nanoTime() - nanoTime;
 		return lst;
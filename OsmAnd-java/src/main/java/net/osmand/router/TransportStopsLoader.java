@@ -0,0 +1,217 @@
+package net.osmand.router;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
+import net.osmand.data.LatLon;
+import net.osmand.data.QuadRect;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Loads merged transport stops (with combined routes) by tiles of {@link TransportRoutingConfiguration#ZOOM_TO_LOAD_TILES}
+ * for {@link TransportRoutingContext}. Loaded tiles are cached and shared by all contexts created with the loader,
+ * so routes calculated one after another in the same area don't read files again. With executor tiles which planner
+ * is about to reach are read in background while it works with already loaded ones.
+ * <p>
+ * Only files which transport index intersects search area are used (also to combine incomplete routes), so area
+ * should cover all routes which could be used, i.e. bbox of start and end with margin (see {@link #getSearchArea}).
+ * Files are read only under lock of loader, so they shouldn't be read by others while loader is in use.
+ */
+public class TransportStopsLoader {
+
+	private static final Log log = PlatformUtil.getLog(TransportStopsLoader.class);
+
+	private final int zoom;
+	private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private final TransportStopsRouteReader stopsReader;
+	private final ExecutorService executor;
+	private final TLongObjectHashMap<TileTask> tiles = new TLongObjectHashMap<TileTask>();
+
+	// stats
+	private int tileHits;
+	private int prefetchHits;
+	private int tileMisses;
+	private int prefetchedTiles;
+	private volatile long readTime;
+
+	/**
+	 * @param searchArea area in 31 tile coordinates or null to use all files
+	 * @param executor executor to prefetch tiles or null to load them only on demand
+	 */
+	public TransportStopsLoader(TransportRoutingConfiguration cfg, QuadRect searchArea, ExecutorService executor,
+			BinaryMapIndexReader... files) {
+		this.zoom = cfg.ZOOM_TO_LOAD_TILES;
+		this.executor = executor;
+		for (BinaryMapIndexReader r : files) {
+			if (intersects(r, searchArea)) {
+				readers.add(r);
+			}
+		}
+		if (searchArea != null) {
+			log.info(String.format("Transport stops are loaded from %d of %d files", readers.size(), files.length));
+		}
+		stopsReader = new TransportStopsRouteReader(readers);
+	}
+
+	/**
+	 * @return bbox of start and end in 31 tile coordinates extended by margin in meters
+	 */
+	public static QuadRect getSearchArea(LatLon start, LatLon end, double margin) {
+		int sx = MapUtils.get31TileNumberX(start.getLongitude());
+		int sy = MapUtils.get31TileNumberY(start.getLatitude());
+		int ex = MapUtils.get31TileNumberX(end.getLongitude());
+		int ey = MapUtils.get31TileNumberY(end.getLatitude());
+		// tile distance width is measured at 30 degrees
+		double lat = Math.min(85, Math.max(Math.abs(start.getLatitude()), Math.abs(end.getLatitude())));
+		double d = margin / MapUtils.getTileDistanceWidth(31) * Math.cos(Math.toRadians(30))
+				/ Math.cos(Math.toRadians(lat));
+		return new QuadRect(Math.max(0, Math.min(sx, ex) - d), Math.max(0, Math.min(sy, ey) - d),
+				Math.min(Integer.MAX_VALUE, Math.max(sx, ex) + d), Math.min(Integer.MAX_VALUE, Math.max(sy, ey) + d));
+	}
+
+	private static boolean intersects(BinaryMapIndexReader r, QuadRect area) {
+		int shift = 31 - BinaryMapIndexReader.TRANSPORT_STOP_ZOOM;
+		for (TransportIndex ti : r.getTransportIndexes()) {
+			if (area == null || (ti.getLeft() <= ((int) area.right >> shift) && ti.getRight() >= ((int) area.left >> shift)
+					&& ti.getTop() <= ((int) area.bottom >> shift) && ti.getBottom() >= ((int) area.top >> shift))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getZoom() {
+		return zoom;
+	}
+
+	public List<BinaryMapIndexReader> getReaders() {
+		return readers;
+	}
+
+	/**
+	 * Returns stops of tile loading them in current thread when tile wasn't requested before
+	 * (prefetch which hasn't started yet is also taken over). Hit / miss stats are added to context.
+	 */
+	public Collection<TransportStop> getTile(int x, int y, TransportRoutingContext ctx) throws IOException {
+		TileTask task;
+		synchronized (tiles) {
+			long tileId = getTileId(x, y);
+			task = tiles.get(tileId);
+			if (task == null) {
+				task = new TileTask(x, y);
+				tiles.put(tileId, task);
+				tileMisses++;
+				ctx.tileCacheMisses++;
+			} else if (task.prefetched) {
+				task.prefetched = false;
+				prefetchHits++;
+				ctx.tilePrefetchHits++;
+			} else {
+				tileHits++;
+				ctx.tileCacheHits++;
+			}
+		}
+		// no op if task is already running or done
+		task.run();
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			synchronized (tiles) {
+				// next request will try again
+				tiles.remove(getTileId(x, y));
+			}
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Schedules loading of tile on executor if it wasn't requested before.
+	 */
+	public void prefetchTile(int x, int y) {
+		if (executor == null) {
+			return;
+		}
+		TileTask task;
+		synchronized (tiles) {
+			long tileId = getTileId(x, y);
+			if (tiles.containsKey(tileId)) {
+				return;
+			}
+			task = new TileTask(x, y);
+			task.prefetched = true;
+			tiles.put(tileId, task);
+			prefetchedTiles++;
+		}
+		executor.execute(task);
+	}
+
+	public boolean isPrefetchEnabled() {
+		return executor != null;
+	}
+
+	private long getTileId(int x, int y) {
+		return (((long) x) << (zoom + 1)) + y;
+	}
+
+	public void clearCache() {
+		synchronized (tiles) {
+			tiles.clear();
+		}
+	}
+
+	public String getStats() {
+		synchronized (tiles) {
+			return String.format("tiles %d (hits %d, prefetch hits %d, misses %d, prefetched %d), read %d ms",
+					tiles.size(), tileHits, prefetchHits, tileMisses, prefetchedTiles, readTime / (1000 * 1000));
+		}
+	}
+
+	private Collection<TransportStop> readTile(int x, int y) throws IOException {
+		int pz = 31 - zoom;
+		SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(x << pz, (x + 1) << pz,
+				y << pz, (y + 1) << pz, -1, null);
+		// files and combined routes cache are not thread safe
+		synchronized (stopsReader) {
+			long nanoTime = System.nanoTime();
+			Collection<TransportStop> stops = stopsReader.readMergedTransportStops(sr);
+			// collection is a view of map local to request
+			List<TransportStop> res = new ArrayList<TransportStop>(stops);
+			readTime += System.nanoTime() - nanoTime;
+			return res;
+		}
+	}
+
+	private class TileTask extends FutureTask<Collection<TransportStop>> {
+		// guarded by tiles, reset with the first request of tile
+		boolean prefetched;
+
+		TileTask(final int x, final int y) {
+			super(new Callable<Collection<TransportStop>>() {
+				@Override
+				public Collection<TransportStop> call() throws Exception {
+					return readTile(x, y);
+				}
+			});
+		}
+	}
+}
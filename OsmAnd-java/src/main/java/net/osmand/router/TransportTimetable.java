@@ -0,0 +1,311 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.util.MapUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * Compact array layout of transport routes, stops and trips for {@link TransportRaptorPlanner}.
+ * Stops and routes are numbered from 0, all per stop and per route lists are slices of flat int arrays
+ * (list of element i is from start[i] to start[i + 1]). Times are in seconds.
+ * <p>
+ * Travel times between stops of route are the same for all trips: average intervals of {@link TransportSchedule}
+ * when {@link TransportRoutingConfiguration#useSchedule} is set and stop time with distance at speed of route type
+ * otherwise (as in {@link TransportRoutePlanner}). Routes with schedule have trips which depart from the first stop
+ * at times of {@link TransportSchedule#tripIntervals}, routes without schedule could be boarded at any time with
+ * {@link TransportRoutingConfiguration#getBoardingTime()}. When schedule is used, routes without it are skipped.
+ * <p>
+ * Timetable is immutable after build and could be used by many planners simultaneously.
+ */
+public class TransportTimetable {
+
+	final TransportRoutingConfiguration cfg;
+
+	final TransportStop[] stops;
+	final int[] stopX;
+	final int[] stopY;
+
+	final TransportRoute[] routes;
+	// stops of route (index in forward stops is position in the slice)
+	final int[] routeStopsStart;
+	final int[] routeStops;
+	// travel time from the first stop of route, same layout as routeStops
+	final int[] routeTimes;
+	// sorted departure times from the first stop, empty for routes without schedule
+	final int[] tripsStart;
+	final int[] trips;
+
+	// routes passing stop and position of stop in the route
+	final int[] stopRoutesStart;
+	final int[] stopRoutes;
+	final int[] stopRoutePositions;
+
+	// stops in walkChangeRadius and walking time to them
+	final int[] transfersStart;
+	final int[] transferStops;
+	final int[] transferTimes;
+
+	private TransportTimetable(TransportRoutingConfiguration cfg, Collection<TransportRoute> routeList) {
+		this.cfg = cfg;
+		TLongObjectHashMap<Integer> stopIndexes = new TLongObjectHashMap<Integer>();
+		List<TransportStop> stopList = new ArrayList<TransportStop>();
+		List<TransportRoute> usedRoutes = new ArrayList<TransportRoute>();
+		TIntArrayList rStart = new TIntArrayList();
+		TIntArrayList rStops = new TIntArrayList();
+		TIntArrayList rTimes = new TIntArrayList();
+		TIntArrayList tStart = new TIntArrayList();
+		TIntArrayList tTrips = new TIntArrayList();
+		for (TransportRoute route : routeList) {
+			List<TransportStop> forwardStops = route.getForwardStops();
+			TransportSchedule schedule = route.getSchedule();
+			boolean scheduled = cfg.useSchedule && schedule != null && !schedule.tripIntervals.isEmpty();
+			float speed = cfg.router == null ? cfg.defaultTravelSpeed : cfg.getSpeedByRouteType(route.getType());
+			if (forwardStops.size() < 2 || speed <= 0 || (cfg.useSchedule && !scheduled)) {
+				continue;
+			}
+			usedRoutes.add(route);
+			rStart.add(rStops.size());
+			tStart.add(tTrips.size());
+			int time = 0;
+			for (int i = 0; i < forwardStops.size(); i++) {
+				TransportStop stop = forwardStops.get(i);
+				if (i > 0) {
+					if (scheduled && schedule.avgStopIntervals.size() >= i) {
+						time += schedule.avgStopIntervals.get(i - 1) * 10;
+					} else {
+						double dist = MapUtils.getDistance(forwardStops.get(i - 1).getLocation(), stop.getLocation());
+						time += (int) (cfg.stopTime + dist / speed);
+					}
+				}
+				long key = stop.getId() != null ? stop.getId() : Long.MIN_VALUE + stopList.size();
+				Integer ind = stopIndexes.get(key);
+				if (ind == null) {
+					ind = stopList.size();
+					stopIndexes.put(key, ind);
+					stopList.add(stop);
+				}
+				rStops.add(ind);
+				rTimes.add(time);
+			}
+			if (scheduled) {
+				int t = 0;
+				for (int i = 0; i < schedule.tripIntervals.size(); i++) {
+					t += schedule.tripIntervals.get(i) * 10;
+					tTrips.add(t);
+				}
+			}
+		}
+		rStart.add(rStops.size());
+		tStart.add(tTrips.size());
+
+		stops = stopList.toArray(new TransportStop[stopList.size()]);
+		routes = usedRoutes.toArray(new TransportRoute[usedRoutes.size()]);
+		routeStopsStart = rStart.toArray();
+		routeStops = rStops.toArray();
+		routeTimes = rTimes.toArray();
+		tripsStart = tStart.toArray();
+		trips = tTrips.toArray();
+		for (int r = 0; r < routes.length; r++) {
+			Arrays.sort(trips, tripsStart[r], tripsStart[r + 1]);
+		}
+		stopX = new int[stops.length];
+		stopY = new int[stops.length];
+		for (int i = 0; i < stops.length; i++) {
+			LatLon l = stops[i].getLocation();
+			stopX[i] = MapUtils.get31TileNumberX(l.getLongitude());
+			stopY[i] = MapUtils.get31TileNumberY(l.getLatitude());
+		}
+
+		int[] counts = new int[stops.length + 1];
+		for (int s : routeStops) {
+			counts[s + 1]++;
+		}
+		for (int i = 0; i < stops.length; i++) {
+			counts[i + 1] += counts[i];
+		}
+		stopRoutesStart = counts.clone();
+		stopRoutes = new int[routeStops.length];
+		stopRoutePositions = new int[routeStops.length];
+		for (int r = 0; r < routes.length; r++) {
+			for (int i = routeStopsStart[r]; i < routeStopsStart[r + 1]; i++) {
+				int p = counts[routeStops[i]]++;
+				stopRoutes[p] = r;
+				stopRoutePositions[p] = i - routeStopsStart[r];
+			}
+		}
+
+		TIntArrayList trStart = new TIntArrayList(stops.length + 1);
+		TIntArrayList trStops = new TIntArrayList();
+		TIntArrayList trTimes = new TIntArrayList();
+		TIntArrayList near = new TIntArrayList();
+		double maxLat = 0;
+		for (TransportStop stop : stops) {
+			maxLat = Math.max(maxLat, Math.abs(stop.getLocation().getLatitude()));
+		}
+		StopsGrid grid = new StopsGrid(radius31(maxLat, cfg.walkChangeRadius));
+		for (int i = 0; i < stops.length; i++) {
+			trStart.add(trStops.size());
+			near.clear();
+			grid.findStops(stopX[i], stopY[i], near);
+			for (int k = 0; k < near.size(); k++) {
+				int j = near.get(k);
+				if (j == i) {
+					continue;
+				}
+				double dist = MapUtils.getDistance(stops[i].getLocation(), stops[j].getLocation());
+				if (dist <= cfg.walkChangeRadius) {
+					trStops.add(j);
+					trTimes.add((int) (dist / cfg.walkSpeed));
+				}
+			}
+		}
+		trStart.add(trStops.size());
+		transfersStart = trStart.toArray();
+		transferStops = trStops.toArray();
+		transferTimes = trTimes.toArray();
+	}
+
+	public static TransportTimetable build(TransportRoutingConfiguration cfg, Collection<TransportRoute> routes) {
+		return new TransportTimetable(cfg, routes);
+	}
+
+	/**
+	 * Builds timetable of all routes passing stops in area (31 tile coordinates), routes are merged
+	 * from all files as for {@link TransportRoutingContext}.
+	 */
+	public static TransportTimetable load(TransportRoutingConfiguration cfg, int left31, int top31, int right31,
+			int bottom31, BinaryMapIndexReader... readers) throws IOException {
+		TransportStopsRouteReader reader = new TransportStopsRouteReader(Arrays.asList(readers));
+		SearchRequest<TransportStop> sr = BinaryMapIndexReader.buildSearchTransportRequest(left31, right31, top31,
+				bottom31, -1, null);
+		Map<Long, TransportRoute> routes = new LinkedHashMap<Long, TransportRoute>();
+		for (TransportStop s : reader.readMergedTransportStops(sr)) {
+			if (s.isDeleted() || s.getRoutes() == null) {
+				continue;
+			}
+			for (TransportRoute route : s.getRoutes()) {
+				if (!routes.containsKey(route.getId())) {
+					routes.put(route.getId(), route);
+				}
+			}
+		}
+		return build(cfg, routes.values());
+	}
+
+	public int getStopsCount() {
+		return stops.length;
+	}
+
+	public int getRoutesCount() {
+		return routes.length;
+	}
+
+	public int getTripsCount() {
+		return trips.length;
+	}
+
+	public TransportStop getStop(int stop) {
+		return stops[stop];
+	}
+
+	/**
+	 * @return stops within radius and distances to them
+	 */
+	void findStops(LatLon loc, double radius, TIntArrayList res, TIntArrayList dists) {
+		int x = MapUtils.get31TileNumberX(loc.getLongitude());
+		int y = MapUtils.get31TileNumberY(loc.getLatitude());
+		int d = radius31(loc.getLatitude(), radius);
+		for (int i = 0; i < stops.length; i++) {
+			if (Math.abs(stopX[i] - x) <= d && Math.abs(stopY[i] - y) <= d) {
+				double dist = MapUtils.getDistance(loc, stops[i].getLocation());
+				if (dist <= radius) {
+					res.add(i);
+					dists.add((int) dist);
+				}
+			}
+		}
+	}
+
+	// 31 tile distance of radius at latitude (tile distance width is measured at 30 degrees)
+	private static int radius31(double lat, double radius) {
+		double scale = Math.cos(Math.toRadians(30)) / Math.max(0.01, Math.cos(Math.toRadians(Math.min(89, lat))));
+		return (int) (radius / MapUtils.getTileDistanceWidth(31) * scale) + 1;
+	}
+
+	/**
+	 * @return departure from the first stop of the earliest trip of route which could be boarded at stop position
+	 * at time or Integer.MAX_VALUE
+	 */
+	int earliestTrip(int route, int position, int time) {
+		int boardTime = time - routeTimes[routeStopsStart[route] + position];
+		int from = tripsStart[route];
+		int to = tripsStart[route + 1];
+		if (from == to) {
+			return boardTime + cfg.getBoardingTime();
+		}
+		int ind = Arrays.binarySearch(trips, from, to, boardTime);
+		if (ind < 0) {
+			ind = -ind - 1;
+		} else {
+			// first of equal departures
+			while (ind > from && trips[ind - 1] == boardTime) {
+				ind--;
+			}
+		}
+		return ind < to ? trips[ind] : Integer.MAX_VALUE;
+	}
+
+	boolean isScheduled(int route) {
+		return tripsStart[route] < tripsStart[route + 1];
+	}
+
+	private class StopsGrid {
+		private final int cellShift;
+		private final TLongObjectHashMap<TIntArrayList> cells = new TLongObjectHashMap<TIntArrayList>();
+
+		StopsGrid(int size31) {
+			cellShift = 32 - Integer.numberOfLeadingZeros(size31);
+			for (int i = 0; i < stops.length; i++) {
+				long key = key(stopX[i] >> cellShift, stopY[i] >> cellShift);
+				TIntArrayList l = cells.get(key);
+				if (l == null) {
+					l = new TIntArrayList();
+					cells.put(key, l);
+				}
+				l.add(i);
+			}
+		}
+
+		private long key(int cx, int cy) {
+			return (((long) cx) << 32) + cy;
+		}
+
+		void findStops(int x, int y, TIntArrayList res) {
+			int cx = x >> cellShift;
+			int cy = y >> cellShift;
+			for (int i = cx - 1; i <= cx + 1; i++) {
+				for (int j = cy - 1; j <= cy + 1; j++) {
+					TIntArrayList l = cells.get(key(i, j));
+					if (l != null) {
+						res.addAll(l);
+					}
+				}
+			}
+		}
+	}
+}
@@ -43,6 +43,10 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -54,10 +58,20 @@ public class SearchUICore {
 	private static final int TIMEOUT_BEFORE_SEARCH = 50;
 	private static final int TIMEOUT_BEFORE_FILTER = 20;
 	private static final Log LOG = PlatformUtil.getLog(SearchUICore.class);
+	// pool is not shut down with search core, so its threads shouldn't keep application running
+	private static final ForkJoinWorkerThreadFactory REGIONS_THREAD_FACTORY = new ForkJoinWorkerThreadFactory() {
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
 	private SearchPhrase phrase;
 	private SearchResultCollection  currentSearchResult;
 
 	private ThreadPoolExecutor singleThreadedExecutor;
+	private ForkJoinPool regionsExecutor;
 	private LinkedBlockingQueue<Runnable> taskQueue;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
@@ -326,6 +340,7 @@ public class SearchUICore {
 			preparePhrase(sphrase);
 			AtomicInteger ai = new AtomicInteger();
 			SearchResultMatcher rm = new SearchResultMatcher(matcher, sphrase, ai.get(), ai, totalLimit);
+			rm.setRegionsExecutor(getRegionsExecutor(sphrase.getSettings()));
 			api.search(sphrase, rm);
 
 			SearchResultCollection collection = new SearchResultCollection(
@@ -461,6 +476,7 @@ public class SearchUICore {
 						onSearchStart.run();
 					}
 					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit);
+					rm.setRegionsExecutor(getRegionsExecutor(phrase.getSettings()));
 					if (debugMode) {
 						LOG.info("Starting search <" + phrase.toString() + ">");
 					}
@@ -609,6 +625,20 @@ public class SearchUICore {
 		return null;
 	}
 
+	private synchronized ExecutorService getRegionsExecutor(SearchSettings settings) {
+		int threads = settings == null ? 1 : settings.getSearchThreads();
+		if (threads <= 1) {
+			return null;
+		}
+		if (regionsExecutor == null || regionsExecutor.getParallelism() != threads) {
+			if (regionsExecutor != null) {
+				regionsExecutor.shutdown();
+			}
+			regionsExecutor = new ForkJoinPool(threads, REGIONS_THREAD_FACTORY, null, false);
+		}
+		return regionsExecutor;
+	}
+
 	void searchInternal(final SearchPhrase phrase, SearchResultMatcher matcher) {
 		preparePhrase(phrase);
 		ArrayList<SearchCoreAPI> lst = new ArrayList<>(apis);
@@ -672,6 +702,7 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private List<MapObject> exportedObjects;
 		private List<City> exportedCities;
+		private ExecutorService regionsExecutor;
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
@@ -696,6 +727,15 @@ public class SearchUICore {
 			return requestResults;
 		}
 
+		// executor to scan offline files in parallel, null for sequential search
+		public ExecutorService getRegionsExecutor() {
+			return regionsExecutor;
+		}
+
+		public void setRegionsExecutor(ExecutorService regionsExecutor) {
+			this.regionsExecutor = regionsExecutor;
+		}
+
 		public int getCount() {
 			return requestResults.size();
 		}
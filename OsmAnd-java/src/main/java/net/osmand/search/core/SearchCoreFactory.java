@@ -12,6 +12,7 @@ import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.binary.BinaryMapIndexReader.SearchPoiTypeFilter;
 import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
 import net.osmand.binary.CommonWords;
+import net.osmand.binary.NameIndexSearchCache;
 import net.osmand.data.Amenity;
 import net.osmand.data.Building;
 import net.osmand.data.City;
@@ -54,6 +55,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 
 public class SearchCoreFactory {
@@ -222,12 +228,135 @@ public class SearchCoreFactory {
 
 		}
 
+		protected <T> void searchRegions(SearchPhrase phrase, SearchResultMatcher resultMatcher,
+										 Iterator<BinaryMapIndexReader> files, RegionSearch<T> search) throws IOException {
+			ExecutorService executor = resultMatcher.getRegionsExecutor();
+			if (executor == null || phrase.getSettings().isExportObjects()) {
+				while (files.hasNext()) {
+					BinaryMapIndexReader r = files.next();
+					search.searchRegion(r, search.getRegionMatcher(r));
+					search.regionFinished(r);
+					resultMatcher.apiSearchRegionFinished(this, r, phrase);
+				}
+				return;
+			}
+			List<BinaryMapIndexReader> readers = new ArrayList<>();
+			List<Future<List<T>>> tasks = new ArrayList<>();
+			while (files.hasNext()) {
+				BinaryMapIndexReader r = files.next();
+				readers.add(r);
+				tasks.add(executor.submit(new RegionSearchTask<T>(r, search, resultMatcher)));
+			}
+			List<List<T>> regionObjects = new ArrayList<>(tasks.size());
+			try {
+				// wait all regions, so sub searches of published objects don't read files used by other threads
+				for (Future<List<T>> task : tasks) {
+					regionObjects.add(task.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			} finally {
+				for (Future<List<T>> task : tasks) {
+					task.cancel(false);
+				}
+			}
+			for (int i = 0; i < readers.size() && !resultMatcher.isCancelled(); i++) {
+				BinaryMapIndexReader r = readers.get(i);
+				ResultMatcher<T> matcher = search.getRegionMatcher(r);
+				for (T object : regionObjects.get(i)) {
+					if (matcher.isCancelled()) {
+						break;
+					}
+					matcher.publish(object);
+				}
+				search.regionFinished(r);
+				resultMatcher.apiSearchRegionFinished(this, r, phrase);
+			}
+		}
+
 		@Override
 		public String toString() {
 			return getClass().getSimpleName();
 		}
 	}
 
+	/**
+	 * Scan of offline files by one API. Objects are read by {@link #searchRegion} (in parallel for different files
+	 * if search matcher has regions executor) and published to {@link #getRegionMatcher} in order of files,
+	 * so results are the same as for sequential search.
+	 */
+	protected static abstract class RegionSearch<T> {
+
+		// called in search thread before objects of region are published
+		protected abstract ResultMatcher<T> getRegionMatcher(BinaryMapIndexReader r);
+
+		// reads objects of region, each reader is used only by one thread at time
+		protected abstract void searchRegion(BinaryMapIndexReader r, ResultMatcher<T> matcher) throws IOException;
+
+		// called in search thread after objects of region are published
+		protected void regionFinished(BinaryMapIndexReader r) throws IOException {
+		}
+
+		// API stops publishing after more than limit counted objects, -1 if API has no limit
+		protected int getLimit() {
+			return -1;
+		}
+
+		// called in reading thread, whether object is counted by limit when it is published
+		protected boolean isCountedByLimit(T object) {
+			return true;
+		}
+	}
+
+	private static class RegionSearchTask<T> implements Callable<List<T>> {
+		private final BinaryMapIndexReader reader;
+		private final RegionSearch<T> search;
+		private final SearchResultMatcher resultMatcher;
+
+		RegionSearchTask(BinaryMapIndexReader reader, RegionSearch<T> search, SearchResultMatcher resultMatcher) {
+			this.reader = reader;
+			this.search = search;
+			this.resultMatcher = resultMatcher;
+		}
+
+		@Override
+		public List<T> call() throws Exception {
+			final List<T> objects = new ArrayList<>();
+			if (resultMatcher.isCancelled()) {
+				return objects;
+			}
+			final int limit = search.getLimit();
+			search.searchRegion(reader, new ResultMatcher<T>() {
+				// objects of region after limit are not published even if previous regions have no results
+				int counted = 0;
+
+				@Override
+				public boolean publish(T object) {
+					if (isCancelled()) {
+						return false;
+					}
+					objects.add(object);
+					if (limit != -1 && search.isCountedByLimit(object)) {
+						counted++;
+					}
+					return false;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return (limit != -1 && counted > limit) || resultMatcher.isCancelled();
+				}
+			});
+			return objects;
+		}
+	}
+
 	public static class SearchRegionByNameAPI extends SearchBaseAPI {
 
 		public SearchRegionByNameAPI() {
@@ -281,6 +410,9 @@ public class SearchCoreFactory {
 		private List<City> resArray = new ArrayList<>();
 		private SearchStreetByCityAPI cityApi;
 		private SearchBuildingAndIntersectionsByStreetAPI streetsApi;
+		// objects found by previous query are refined while user is typing
+		private Map<BinaryMapIndexReader, NameIndexSearchCache<MapObject>> nameIndexCaches =
+				new WeakHashMap<BinaryMapIndexReader, NameIndexSearchCache<MapObject>>();
 
 		public SearchAddressByNameAPI(SearchBuildingAndIntersectionsByStreetAPI streetsApi,
 									  SearchStreetByCityAPI cityApi) {
@@ -310,6 +442,15 @@ public class SearchCoreFactory {
 			return getSearchPriority(phrase) != -1 && super.isSearchMoreAvailable(phrase);
 		}
 
+		private synchronized NameIndexSearchCache<MapObject> getNameIndexCache(BinaryMapIndexReader r) {
+			NameIndexSearchCache<MapObject> cache = nameIndexCaches.get(r);
+			if (cache == null) {
+				cache = new NameIndexSearchCache<MapObject>();
+				nameIndexCaches.put(r, cache);
+			}
+			return cache;
+		}
+
 		@Override
 		public int getMinimalSearchRadius(SearchPhrase phrase) {
 			return phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
@@ -378,7 +519,7 @@ public class SearchCoreFactory {
 					res.objectType = ObjectType.CITY;
 					if (phrase.isEmptyQueryAllowed() && phrase.isEmpty()) {
 						resultMatcher.publish(res);
-					} else if (nm.matches(res.localeName) || nm.matches(res.otherNames)) {
+					} else if (nm.matches(res)) {
 						subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
 					}
 					if (limit++ > LIMIT * phrase.getRadiusLevel()) {
@@ -388,12 +529,43 @@ public class SearchCoreFactory {
 			}
 		}
 
+		private boolean isAddressObjectAccepted(SearchPhrase phrase, MapObject object, boolean locSpecified,
+												QuadRect cityBbox, QuadRect postcodeBbox, QuadRect villagesBbox) {
+			int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
+			int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
+			if (object instanceof Street) {
+				// remove limitation by location
+				if (  //(locSpecified && !streetBbox.contains(x, y, x, y)) || 
+					!phrase.isSearchTypeAllowed(ObjectType.STREET)) {
+					return false;
+				}
+				return !object.getName().startsWith("<");
+			} else if (object instanceof City) {
+				CityType type = ((City) object).getType();
+				if (type == CityType.CITY || type == CityType.TOWN) {
+					if (phrase.isNoSelectedType()) {
+						// ignore city/town
+						return false;
+					}
+					return (!locSpecified || cityBbox.contains(x, y, x, y))
+							&& phrase.isSearchTypeAllowed(ObjectType.CITY);
+				} else if (((City) object).isPostcode()) {
+					return (!locSpecified || postcodeBbox.contains(x, y, x, y))
+							&& phrase.isSearchTypeAllowed(ObjectType.POSTCODE);
+				} else {
+					return (!locSpecified || villagesBbox.contains(x, y, x, y))
+							&& phrase.isSearchTypeAllowed(ObjectType.VILLAGE);
+				}
+			}
+			return false;
+		}
+
 		private void searchByName(final SearchPhrase phrase, final SearchResultMatcher resultMatcher)
 				throws IOException {
 			if (phrase.getRadiusLevel() > 1 || phrase.getUnknownWordToSearch().length() > 3 ||
 					phrase.hasMoreThanOneUnknownSearchWord()|| phrase.isSearchTypeAllowed(ObjectType.POSTCODE, true)) {
 				final boolean locSpecified = phrase.getLastTokenLocation() != null;
-				LatLon loc = phrase.getLastTokenLocation();
+				final LatLon loc = phrase.getLastTokenLocation();
 				final List<SearchResult> immediateResults = new ArrayList<>();
 				final QuadRect streetBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS);
 				final QuadRect postcodeBbox = phrase.getRadiusBBoxToSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5);
@@ -403,13 +575,16 @@ public class SearchCoreFactory {
 						SEARCH_ADDRESS_BY_NAME_PRIORITY : SEARCH_ADDRESS_BY_NAME_PRIORITY_RADIUS2;
 				final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 
-				ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
+				final ResultMatcher<MapObject> rm = new ResultMatcher<MapObject>() {
 					int limit = 0;
 					@Override
 					public boolean publish(MapObject object) {
 						if (isCancelled()) {
 							return false;
 						}
+						if (!isAddressObjectAccepted(phrase, object, locSpecified, cityBbox, postcodeBbox, villagesBbox)) {
+							return false;
+						}
 						SearchResult sr = new SearchResult(phrase);
 						sr.object = object;
 						sr.file = currentFile[0];
@@ -420,19 +595,8 @@ public class SearchCoreFactory {
 						sr.location = object.getLocation();
 						sr.priorityDistance = 1;
 						sr.priority = priority;
-						int y = MapUtils.get31TileNumberY(object.getLocation().getLatitude());
-						int x = MapUtils.get31TileNumberX(object.getLocation().getLongitude());
 						List<City> closestCities = null;
 						if (object instanceof Street) {
-							// remove limitation by location
-							if (  //(locSpecified && !streetBbox.contains(x, y, x, y)) || 
-								!phrase.isSearchTypeAllowed(ObjectType.STREET)) {
-								return false;
-							}
-							if (object.getName().startsWith("<")) {
-								return false;
-							}
-
 							if (!phrase.getUnknownWordToSearchBuildingNameMatcher().matches(stripBraces(sr.localeName))) {
 								sr.priorityDistance = 5;
 							}
@@ -442,28 +606,12 @@ public class SearchCoreFactory {
 						} else if (object instanceof City) {
 							CityType type = ((City)object).getType();
 							if (type == CityType.CITY || type == CityType.TOWN) {
-								if (phrase.isNoSelectedType()) {
-									// ignore city/town
-									return false;
-								}
-								if ((locSpecified && !cityBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.CITY)) {
-									return false;
-								}
 								sr.objectType = ObjectType.CITY;
 								sr.priorityDistance = 0.1;
 							} else if (((City)object).isPostcode()) {
-								if ((locSpecified && !postcodeBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.POSTCODE)) {
-									return false;
-								}
 								sr.objectType = ObjectType.POSTCODE;
 								sr.priorityDistance = 0;
 							} else {
-								if ((locSpecified && !villagesBbox.contains(x, y, x, y))
-										|| !phrase.isSearchTypeAllowed(ObjectType.VILLAGE)) {
-									return false;
-								}
 								City c = null;
 								if (closestCities == null) {
 									closestCities = townCitiesQR.queryInBox(villagesBbox, new ArrayList<City>());
@@ -486,8 +634,6 @@ public class SearchCoreFactory {
 								}
 								sr.objectType = ObjectType.VILLAGE;
 							}
-						} else {
-							return false;
 						}
 						limit ++;
 						immediateResults.add(sr);
@@ -519,28 +665,54 @@ public class SearchCoreFactory {
 
 				Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(DEFAULT_ADDRESS_BBOX_RADIUS * 5,
 						SearchPhraseDataType.ADDRESS);
-				String wordToSearch = phrase.getUnknownWordToSearch();
-				while (offlineIterator.hasNext() && wordToSearch.length() > 0) {
-					BinaryMapIndexReader r = offlineIterator.next();
-					currentFile[0] = r;
-					immediateResults.clear();
-					SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(rm, rawDataCollector, wordToSearch.toLowerCase(),
-							phrase.isMainUnknownSearchWordComplete() ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE
-									: StringMatcherMode.CHECK_STARTS_FROM_SPACE);
-					if (locSpecified) {
-						req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
-								phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
+				final String wordToSearch = phrase.getUnknownWordToSearch();
+				if (wordToSearch.length() == 0) {
+					return;
+				}
+				final ResultMatcher<MapObject> frawDataCollector = rawDataCollector;
+				searchRegions(phrase, resultMatcher, offlineIterator, new RegionSearch<MapObject>() {
+					@Override
+					protected ResultMatcher<MapObject> getRegionMatcher(BinaryMapIndexReader r) {
+						currentFile[0] = r;
+						immediateResults.clear();
+						return rm;
 					}
-					r.searchAddressDataByName(req);
-					for (SearchResult res : immediateResults) {
-						if (res.objectType == ObjectType.STREET) {
-							subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
-						} else {
-							subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+
+					@Override
+					protected void searchRegion(BinaryMapIndexReader r, ResultMatcher<MapObject> matcher) throws IOException {
+						SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(matcher, frawDataCollector,
+								wordToSearch.toLowerCase(), phrase.isMainUnknownSearchWordComplete()
+										? StringMatcherMode.CHECK_EQUALS_FROM_SPACE : StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+						if (locSpecified) {
+							req.setBBoxRadius(loc.getLatitude(), loc.getLongitude(),
+									phrase.getRadiusSearch(DEFAULT_ADDRESS_BBOX_RADIUS * 5));
 						}
+						req.setNormalizedNameKeys(phrase.isNormalizedNameKeys());
+						req.setNameIndexCache(getNameIndexCache(r));
+						r.searchAddressDataByName(req);
 					}
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+
+					@Override
+					protected int getLimit() {
+						return LIMIT * phrase.getRadiusLevel();
+					}
+
+					@Override
+					protected boolean isCountedByLimit(MapObject object) {
+						return isAddressObjectAccepted(phrase, object, locSpecified, cityBbox, postcodeBbox, villagesBbox);
+					}
+
+					@Override
+					protected void regionFinished(BinaryMapIndexReader r) throws IOException {
+						for (SearchResult res : immediateResults) {
+							if (res.objectType == ObjectType.STREET) {
+								subSearchApiOrPublish(phrase, resultMatcher, res, streetsApi);
+							} else {
+								subSearchApiOrPublish(phrase, resultMatcher, res, cityApi);
+							}
+						}
+					}
+				});
 			}
 		}
 	}
@@ -550,11 +722,23 @@ public class SearchCoreFactory {
 		private static final int BBOX_RADIUS = 500 * 1000;
 		private static final int BBOX_RADIUS_INSIDE = 10000 * 1000; // to support city search for basemap
 		private static final int FIRST_WORD_MIN_LENGTH = 3;
+		// amenities found by previous query are refined while user is typing
+		private Map<BinaryMapIndexReader, NameIndexSearchCache<Amenity>> nameIndexCaches =
+				new WeakHashMap<BinaryMapIndexReader, NameIndexSearchCache<Amenity>>();
 
 		public SearchAmenityByNameAPI() {
 			super(ObjectType.POI);
 		}
 
+		private synchronized NameIndexSearchCache<Amenity> getNameIndexCache(BinaryMapIndexReader r) {
+			NameIndexSearchCache<Amenity> cache = nameIndexCaches.get(r);
+			if (cache == null) {
+				cache = new NameIndexSearchCache<Amenity>();
+				nameIndexCaches.put(r, cache);
+			}
+			return cache;
+		}
+
 		@Override
 		public boolean search(final SearchPhrase phrase, final SearchResultMatcher resultMatcher) throws IOException {
 			if (!phrase.isUnknownSearchWordPresent()) {
@@ -570,9 +754,9 @@ public class SearchCoreFactory {
 			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
 					SearchPhraseDataType.POI);
-			String searchWord = phrase.getUnknownWordToSearch();
+			final String searchWord = phrase.getUnknownWordToSearch();
 			final NameStringMatcher nm = phrase.getMainUnknownNameStringMatcher();
-			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
 			final Set<String> ids = new HashSet<String>();
 
 			ResultMatcher<Amenity> rawDataCollector = null;
@@ -590,9 +774,7 @@ public class SearchCoreFactory {
 					}
 				};
 			}
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
-					(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
-					(int) bbox.bottom, new ResultMatcher<Amenity>() {
+			final ResultMatcher<Amenity> matcher = new ResultMatcher<Amenity>() {
 						int limit = 0;
 
 						@Override
@@ -608,7 +790,7 @@ public class SearchCoreFactory {
 							sr.otherNames = object.getOtherNames(true);
 							sr.localeName = object.getName(phrase.getSettings().getLang(),
 									phrase.getSettings().isTransliterate());
-							if (!nm.matches(sr.localeName) && !nm.matches(sr.otherNames)
+							if (!nm.matches(sr)
 									&& !nm.matches(object.getAdditionalInfoValues(false))) {
 								return false;
 							}
@@ -636,15 +818,30 @@ public class SearchCoreFactory {
 						public boolean isCancelled() {
 							return resultMatcher.isCancelled() && (limit < LIMIT);
 						}
-					}, rawDataCollector);
+					};
+			final ResultMatcher<Amenity> frawDataCollector = rawDataCollector;
+			searchRegions(phrase, resultMatcher, offlineIterator, new RegionSearch<Amenity>() {
+				@Override
+				protected ResultMatcher<Amenity> getRegionMatcher(BinaryMapIndexReader r) {
+					currentFile[0] = r;
+					return matcher;
+				}
 
-			while (offlineIterator.hasNext()) {
-				BinaryMapIndexReader r = offlineIterator.next();
-				currentFile[0] = r;
-				r.searchPoiByName(req);
+				@Override
+				protected void searchRegion(BinaryMapIndexReader r, ResultMatcher<Amenity> regionMatcher) throws IOException {
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.centerX(),
+							(int) bbox.centerY(), searchWord, (int) bbox.left, (int) bbox.right, (int) bbox.top,
+							(int) bbox.bottom, regionMatcher, frawDataCollector);
+					req.setNormalizedNameKeys(phrase.isNormalizedNameKeys());
+					req.setNameIndexCache(getNameIndexCache(r));
+					r.searchPoiByName(req);
+				}
 
-				resultMatcher.apiSearchRegionFinished(this, r, phrase);
-			}
+				@Override
+				protected int getLimit() {
+					return LIMIT;
+				}
+			});
 			return true;
 		}
 
@@ -1022,7 +1219,7 @@ public class SearchCoreFactory {
 			SearchPoiTypeFilter poiTypeFilter = null;
 			String nameFilter = null;
 			int countExtraWords = 0;
-			Set<String> poiAdditionals = new LinkedHashSet<>();
+			final Set<String> poiAdditionals = new LinkedHashSet<>();
 			if (phrase.isLastWord(ObjectType.POI_TYPE)) {
 				Object obj = phrase.getLastSelectedWord().getResult().object;
 				if (obj instanceof AbstractPoiType) {
@@ -1078,20 +1275,30 @@ public class SearchCoreFactory {
 						radius = BBOX_RADIUS_NEAREST;
 					}
 				}
-				QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
+				final QuadRect bbox = phrase.getRadiusBBoxToSearch(radius);
 				List<BinaryMapIndexReader> offlineIndexes = phrase.getOfflineIndexes();
-				Set<String> searchedPois = new TreeSet<>();
-				for (BinaryMapIndexReader r : offlineIndexes) {
-					ResultMatcher<Amenity> rm = getResultMatcher(phrase, poiTypeFilter, resultMatcher, nameFilter, r,
-							searchedPois, poiAdditionals, countExtraWords);
-					if (poiTypeFilter instanceof CustomSearchPoiFilter) {
-						rm = ((CustomSearchPoiFilter) poiTypeFilter).wrapResultMatcher(rm);
+				final Set<String> searchedPois = new TreeSet<>();
+				final SearchPoiTypeFilter fpoiTypeFilter = poiTypeFilter;
+				final String fnameFilter = nameFilter;
+				final int fcountExtraWords = countExtraWords;
+				searchRegions(phrase, resultMatcher, offlineIndexes.iterator(), new RegionSearch<Amenity>() {
+					@Override
+					protected ResultMatcher<Amenity> getRegionMatcher(BinaryMapIndexReader r) {
+						ResultMatcher<Amenity> rm = getResultMatcher(phrase, fpoiTypeFilter, resultMatcher, fnameFilter, r,
+								searchedPois, poiAdditionals, fcountExtraWords);
+						if (fpoiTypeFilter instanceof CustomSearchPoiFilter) {
+							rm = ((CustomSearchPoiFilter) fpoiTypeFilter).wrapResultMatcher(rm);
+						}
+						return rm;
 					}
-					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
-							(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, poiTypeFilter, rm);
-					r.searchPoi(req);
-					resultMatcher.apiSearchRegionFinished(this, r, phrase);
-				}
+
+					@Override
+					protected void searchRegion(BinaryMapIndexReader r, ResultMatcher<Amenity> matcher) throws IOException {
+						SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest((int) bbox.left,
+								(int) bbox.right, (int) bbox.top, (int) bbox.bottom, -1, fpoiTypeFilter, matcher);
+						r.searchPoi(req);
+					}
+				});
 			}
 			return true;
 		}
@@ -1103,7 +1310,8 @@ public class SearchCoreFactory {
 														final Collection<String> poiAdditionals, final int countExtraWords) {
 
 
-			final NameStringMatcher ns = nameFilter == null ? null : new NameStringMatcher(nameFilter, StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+			final NameStringMatcher ns = nameFilter == null ? null : new NameStringMatcher(nameFilter, StringMatcherMode.CHECK_STARTS_FROM_SPACE,
+					phrase.isNormalizedNameKeys());
 			return new ResultMatcher<Amenity>() {
 
 				@Override
@@ -1142,7 +1350,7 @@ public class SearchCoreFactory {
 						}
 					}
 					if (ns != null) {
-						if (ns.matches(res.localeName) || ns.matches(res.otherNames)) {
+						if (ns.matches(res)) {
 							phrase.countUnknownWordsMatchMainResult(res, countExtraWords);
 						} else {
 							String ref = object.getTagContent(Amenity.REF, null);
@@ -1266,7 +1474,7 @@ public class SearchCoreFactory {
 						// streets related to city
 						pub = false;
 					} else if (phrase.isUnknownSearchWordPresent()
-							&& !(nm.matches(res.localeName) || nm.matches(res.otherNames))) {
+							&& !nm.matches(res)) {
 						continue;
 					}
 					res.localeRelatedObjectName = c.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
@@ -1355,6 +1563,8 @@ public class SearchCoreFactory {
 								}
 							});
 
+					// street could be already read by previous search (it is shared by name index cache)
+					s.clearBuildingsAndIntersectedStreets();
 					file.preloadBuildings(s, sr);
 					Collections.sort(s.getBuildings(), new Comparator<Building>() {
 
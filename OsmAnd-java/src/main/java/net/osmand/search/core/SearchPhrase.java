@@ -582,7 +582,11 @@ public class SearchPhrase {
 		return new NameStringMatcher(word,
 				(complete ?
 					StringMatcherMode.CHECK_EQUALS_FROM_SPACE :
-					StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+					StringMatcherMode.CHECK_STARTS_FROM_SPACE), isNormalizedNameKeys());
+	}
+
+	public boolean isNormalizedNameKeys() {
+		return settings != null && settings.isNormalizedNameKeys();
 	}
 
 	public boolean hasObjectType(ObjectType p) {
@@ -762,7 +766,31 @@ public class SearchPhrase {
 		private CollatorStringMatcher sm;
 
 		public NameStringMatcher(String namePart, StringMatcherMode mode) {
-			sm = new CollatorStringMatcher(namePart, mode);
+			this(namePart, mode, false);
+		}
+
+		public NameStringMatcher(String namePart, StringMatcherMode mode, boolean normalizedKeys) {
+			sm = new CollatorStringMatcher(namePart, mode, normalizedKeys);
+		}
+
+		// matches locale or other names of result, folded names are cached in result
+		public boolean matches(SearchResult sr) {
+			if (!sm.isNormalizedKeys()) {
+				return (sr.localeName != null && sm.matches(sr.localeName)) || matches(sr.otherNames);
+			}
+			String localeName = sr.getNormalizedLocaleName();
+			if (localeName != null && sm.matchesNormalized(localeName)) {
+				return true;
+			}
+			List<String> otherNames = sr.getNormalizedOtherNames();
+			if (otherNames != null) {
+				for (String v : otherNames) {
+					if (sm.matchesNormalized(v)) {
+						return true;
+					}
+				}
+			}
+			return false;
 		}
 		
 		public boolean matches(Collection<String> map) {
@@ -795,6 +823,7 @@ public class SearchPhrase {
 	
 	public int countUnknownWordsMatch(SearchResult sr, String localeName, Collection<String> otherNames, int amountMatchingWords) {
 		int r = 0;
+		boolean resultNames = localeName == sr.localeName && otherNames == sr.otherNames;
 		if (otherUnknownWords.size() > 0) {
 			for (int i = 0; i < otherUnknownWords.size(); i++) {
 				boolean match = false;
@@ -802,7 +831,7 @@ public class SearchPhrase {
 					match = true;
 				} else {
 					NameStringMatcher ms = getUnknownNameStringMatcher(i);
-					if (ms.matches(localeName) || ms.matches(otherNames)) {
+					if (resultNames ? ms.matches(sr) : (ms.matches(localeName) || ms.matches(otherNames))) {
 						match = true;
 					}
 				}
@@ -819,9 +848,10 @@ public class SearchPhrase {
 			sr.firstUnknownWordMatches = true;
 			r++;
 		} else {
-			boolean match = localeName.equals(getFirstUnknownSearchWord())
-					|| getFirstUnknownNameStringMatcher().matches(localeName)
-					|| getFirstUnknownNameStringMatcher().matches(otherNames);
+			boolean match = localeName.equals(getFirstUnknownSearchWord()) || (resultNames
+					? getFirstUnknownNameStringMatcher().matches(sr)
+					: (getFirstUnknownNameStringMatcher().matches(localeName)
+						|| getFirstUnknownNameStringMatcher().matches(otherNames)));
 			if(match) {
 				r++;
 			}
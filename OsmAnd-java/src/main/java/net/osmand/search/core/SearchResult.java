@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import net.osmand.CollatorStringMatcher;
 import net.osmand.binary.BinaryMapIndexReader;
 import net.osmand.data.City;
 import net.osmand.data.LatLon;
@@ -47,6 +48,12 @@ public class SearchResult {
 
 	private double unknownPhraseMatchWeight = 0;
 
+	// names folded by CollatorStringMatcher.normalizeKey, cached while names are not replaced
+	private String normalizedLocaleNameSrc;
+	private String normalizedLocaleName;
+	private Collection<String> normalizedOtherNamesSrc;
+	private List<String> normalizedOtherNames;
+
 	public SearchResult() {
 		this.requiredSearchPhrase = SearchPhrase.emptyPhrase();
 	}
@@ -55,6 +62,28 @@ public class SearchResult {
 		this.requiredSearchPhrase = sp;
 	}
 
+	public String getNormalizedLocaleName() {
+		if (localeName != normalizedLocaleNameSrc) {
+			normalizedLocaleNameSrc = localeName;
+			normalizedLocaleName = localeName == null ? null : CollatorStringMatcher.normalizeKey(localeName);
+		}
+		return normalizedLocaleName;
+	}
+
+	public List<String> getNormalizedOtherNames() {
+		if (otherNames != normalizedOtherNamesSrc) {
+			normalizedOtherNamesSrc = otherNames;
+			normalizedOtherNames = null;
+			if (otherNames != null) {
+				normalizedOtherNames = new ArrayList<>(otherNames.size());
+				for (String s : otherNames) {
+					normalizedOtherNames.add(CollatorStringMatcher.normalizeKey(s));
+				}
+			}
+		}
+		return normalizedOtherNames;
+	}
+
 	// maximum corresponds to the top entry
 	public double getUnknownPhraseMatchWeight() {
 		if (unknownPhraseMatchWeight != 0) {
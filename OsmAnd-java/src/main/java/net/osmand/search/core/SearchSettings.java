@@ -36,6 +36,8 @@ public class SearchSettings {
 	private ObjectType[] searchTypes;
 	private boolean emptyQueryAllowed;
 	private boolean sortByName;
+	private boolean normalizedNameKeys;
+	private int searchThreads = 1;
 	private SearchExportSettings exportSettings; // = new SearchExportSettings(true, true, -1);
 
 	public SearchSettings(SearchSettings s) {
@@ -51,6 +53,8 @@ public class SearchSettings {
 			this.searchTypes = s.searchTypes;
 			this.emptyQueryAllowed = s.emptyQueryAllowed;
 			this.sortByName = s.sortByName;
+			this.normalizedNameKeys = s.normalizedNameKeys;
+			this.searchThreads = s.searchThreads;
 			this.exportSettings = s.exportSettings;
 		}
 	}
@@ -154,6 +158,28 @@ public class SearchSettings {
 		return s;
 	}
 
+	public boolean isNormalizedNameKeys() {
+		return normalizedNameKeys;
+	}
+
+	// names are folded once to plain string keys instead of collator comparisons (close to primary collator)
+	public SearchSettings setNormalizedNameKeys(boolean normalizedNameKeys) {
+		SearchSettings s = new SearchSettings(this);
+		s.normalizedNameKeys = normalizedNameKeys;
+		return s;
+	}
+
+	public int getSearchThreads() {
+		return searchThreads;
+	}
+
+	// offline files are scanned by given number of threads (1 - sequential search)
+	public SearchSettings setSearchThreads(int searchThreads) {
+		SearchSettings s = new SearchSettings(this);
+		s.searchThreads = Math.max(1, searchThreads);
+		return s;
+	}
+
 	public SearchExportSettings getExportSettings() {
 		return exportSettings;
 	}
@@ -224,6 +250,12 @@ public class SearchSettings {
 		json.put("transliterateIfMissing", transliterateIfMissing);
 		json.put("emptyQueryAllowed", emptyQueryAllowed);
 		json.put("sortByName", sortByName);
+		if (normalizedNameKeys) {
+			json.put("normalizedNameKeys", normalizedNameKeys);
+		}
+		if (searchThreads > 1) {
+			json.put("searchThreads", searchThreads);
+		}
 		if (searchTypes != null && searchTypes.length > 0) {
 			JSONArray searchTypesArr = new JSONArray();
 			for (ObjectType type : searchTypes) {
@@ -245,6 +277,8 @@ public class SearchSettings {
 		s.transliterateIfMissing = json.optBoolean("transliterateIfMissing", false);
 		s.emptyQueryAllowed = json.optBoolean("emptyQueryAllowed", false);
 		s.sortByName = json.optBoolean("sortByName", false);
+		s.normalizedNameKeys = json.optBoolean("normalizedNameKeys", false);
+		s.searchThreads = Math.max(1, json.optInt("searchThreads", 1));
 		if (json.has("lang")) {
 			s.lang = json.getString("lang");
 		}
@@ -0,0 +1,43 @@
+package net.osmand;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CollatorStringMatcherTest {
+
+	private static final String[] NAMES = { "Auhofstraße 12", "Café de Flore", "Rue de l'Église", "Saint-Michel",
+			"Ørestad Syd", "Łódź Kaliska", "Улица Ленина", "Йошкар-Ола", "Ἀθῆναι", "central station", "Main St.", "" };
+
+	private static final String[] PARTS = { "auhofstrasse", "AUHOF", "cafe", "de", "flore", "eglise", "l'eg",
+			"michel", "saint michel", "orestad", "ørestad", "lodz", "łódź", "ленина", "улица л", "йошкар", "иошкар",
+			"αθηναι", "station", "cent", "st.", "st", "main st", "" };
+
+	@Test
+	public void testNormalizedKeys() {
+		Assert.assertEquals("auhofstrasse 12", CollatorStringMatcher.normalizeKey("Auhofstraße 12"));
+		Assert.assertEquals("cafe de flore", CollatorStringMatcher.normalizeKey("Café de Flore"));
+		Assert.assertEquals("main st.", CollatorStringMatcher.normalizeKey("Main St."));
+		String ascii = "central station";
+		Assert.assertSame(ascii, CollatorStringMatcher.normalizeKey(ascii));
+		Assert.assertEquals("йошкар-ола", CollatorStringMatcher.normalizeKey("Йошкар-Ола"));
+	}
+
+	@Test
+	public void testSameAsCollator() {
+		for (StringMatcherMode mode : StringMatcherMode.values()) {
+			for (String part : PARTS) {
+				CollatorStringMatcher collator = new CollatorStringMatcher(part, mode);
+				CollatorStringMatcher normalized = new CollatorStringMatcher(part, mode, true);
+				for (String name : NAMES) {
+					String msg = mode + " '" + part + "' in '" + name + "'";
+					// java collator distinguishes case of non latin letters, so contains mode is checked in lower case
+					Assert.assertEquals(msg, collator.matches(name.toLowerCase()), normalized.matches(name));
+					Assert.assertEquals(msg, normalized.matches(name),
+							normalized.matchesNormalized(CollatorStringMatcher.normalizeKey(name)));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Route;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+
+public class GPXBinaryCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File writeGpx() throws IOException {
+		return writeGpx("track.gpx");
+	}
+
+	private File writeGpx(String fileName) throws IOException {
+		GPXFile gpx = new GPXFile("test");
+		gpx.metadata.name = "cache test";
+		gpx.setColor(0xff00ff00);
+		Random rnd = new Random(5);
+		long time = 1500000000000L;
+		for (int t = 0; t < 2; t++) {
+			Track track = new Track();
+			track.name = "track " + t;
+			for (int s = 0; s < 2; s++) {
+				TrkSegment segment = new TrkSegment();
+				for (int i = 0; i < 300; i++) {
+					WptPt p = new WptPt(52.4 + rnd.nextDouble() / 10, -4.85 - rnd.nextDouble() / 10, time,
+							i % 9 == 0 ? Double.NaN : rnd.nextInt(20000) / 10d - 100, i % 4 == 0 ? 0 : rnd.nextInt(300) / 10d,
+							i % 5 == 0 ? rnd.nextInt(100) / 10d : Double.NaN);
+					if (i == 10) {
+						p.getExtensionsToWrite().put("hr", "120");
+					}
+					if (i % 50 == 0) {
+						p.name = "point " + i;
+						p.comment = i % 100 == 0 ? "комментарий" : null;
+						p.link = i == 100 ? "https://osmand.net" : null;
+					}
+					time += 1000 + (i % 4) * 250;
+					segment.points.add(p);
+				}
+				track.segments.add(segment);
+			}
+			gpx.tracks.add(track);
+		}
+		for (int i = 0; i < 5; i++) {
+			WptPt wpt = new WptPt(10 + i, 10 - i, 0, i, 0, Double.NaN);
+			wpt.name = "waypoint " + i;
+			wpt.desc = i % 2 == 0 ? "описание" : null;
+			wpt.category = "category " + i % 2;
+			wpt.setColor(0xff0000ff);
+			gpx.addPoint(wpt);
+		}
+		Route route = new Route();
+		route.name = "route";
+		for (int i = 0; i < 10; i++) {
+			WptPt p = new WptPt(52.4 + i / 100d, 4.85 + i / 100d, 0, Double.NaN, 0, Double.NaN);
+			p.name = i % 3 == 0 ? "turn " + i : null;
+			p.desc = i == 3 ? "desc" : null;
+			p.category = i == 6 ? "type" : null;
+			route.points.add(p);
+		}
+		gpx.routes.add(route);
+		File f = folder.newFile(fileName);
+		Assert.assertNull(GPXUtilities.writeGpxFile(f, gpx));
+		return f;
+	}
+
+	private static void assertSamePoints(List<WptPt> expected, List<WptPt> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			WptPt e = expected.get(i);
+			WptPt a = actual.get(i);
+			Assert.assertEquals(e.lat, a.lat, 0);
+			Assert.assertEquals(e.lon, a.lon, 0);
+			Assert.assertEquals(e.ele, a.ele, 0);
+			Assert.assertEquals(e.time, a.time);
+			Assert.assertEquals(e.speed, a.speed, 0);
+			Assert.assertEquals(e.hdop, a.hdop, 0);
+			Assert.assertEquals(e.name, a.name);
+			Assert.assertEquals(e.desc, a.desc);
+			Assert.assertEquals(e.category, a.category);
+			Assert.assertEquals(e.comment, a.comment);
+			Assert.assertEquals(e.link, a.link);
+			Assert.assertEquals(e.getExtensionsToRead(), a.getExtensionsToRead());
+		}
+	}
+
+	private static void assertSameGpx(GPXFile expected, GPXFile actual) {
+		Assert.assertEquals(expected.author, actual.author);
+		Assert.assertEquals(expected.metadata.name, actual.metadata.name);
+		Assert.assertEquals(expected.metadata.time, actual.metadata.time);
+		Assert.assertEquals(expected.getExtensionsToRead(), actual.getExtensionsToRead());
+		Assert.assertEquals(expected.path, actual.path);
+		Assert.assertEquals(expected.modifiedTime, actual.modifiedTime);
+		assertSamePoints(expected.getPoints(), actual.getPoints());
+		Assert.assertEquals(expected.tracks.size(), actual.tracks.size());
+		for (int t = 0; t < expected.tracks.size(); t++) {
+			Track e = expected.tracks.get(t);
+			Track a = actual.tracks.get(t);
+			Assert.assertEquals(e.name, a.name);
+			Assert.assertEquals(e.generalTrack, a.generalTrack);
+			Assert.assertEquals(e.segments.size(), a.segments.size());
+			for (int s = 0; s < e.segments.size(); s++) {
+				assertSamePoints(e.segments.get(s).points, a.segments.get(s).points);
+			}
+		}
+		Assert.assertEquals(expected.routes.size(), actual.routes.size());
+		for (int r = 0; r < expected.routes.size(); r++) {
+			Assert.assertEquals(expected.routes.get(r).name, actual.routes.get(r).name);
+			assertSamePoints(expected.routes.get(r).points, actual.routes.get(r).points);
+		}
+	}
+
+	private static void assertSameAnalysis(GPXTrackAnalysis expected, GPXTrackAnalysis actual) {
+		Assert.assertEquals(expected.name, actual.name);
+		Assert.assertEquals(expected.totalDistance, actual.totalDistance, 0);
+		Assert.assertEquals(expected.totalTracks, actual.totalTracks);
+		Assert.assertEquals(expected.points, actual.points);
+		Assert.assertEquals(expected.wptPoints, actual.wptPoints);
+		Assert.assertEquals(expected.wptCategoryNames, actual.wptCategoryNames);
+		Assert.assertEquals(expected.startTime, actual.startTime);
+		Assert.assertEquals(expected.endTime, actual.endTime);
+		Assert.assertEquals(expected.timeMoving, actual.timeMoving);
+		Assert.assertEquals(expected.totalDistanceMoving, actual.totalDistanceMoving, 0);
+		Assert.assertEquals(expected.diffElevationUp, actual.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, actual.diffElevationDown, 0);
+		Assert.assertEquals(expected.minElevation, actual.minElevation, 0);
+		Assert.assertEquals(expected.maxElevation, actual.maxElevation, 0);
+		Assert.assertEquals(expected.avgSpeed, actual.avgSpeed, 0);
+		Assert.assertEquals(expected.maxSpeed, actual.maxSpeed, 0);
+		Assert.assertEquals(expected.minHdop, actual.minHdop, 0);
+		Assert.assertEquals(expected.left, actual.left, 0);
+		Assert.assertEquals(expected.bottom, actual.bottom, 0);
+		Assert.assertEquals(expected.hasElevationData, actual.hasElevationData);
+		Assert.assertEquals(expected.locationEnd.lat, actual.locationEnd.lat, 0);
+		Assert.assertEquals(expected.locationEnd.time, actual.locationEnd.time);
+	}
+
+	@Test
+	public void testLoadFromCache() throws IOException {
+		File f = writeGpx();
+		File cacheFile = GPXBinaryCache.getCacheFile(f);
+		Assert.assertNull(GPXBinaryCache.loadFor(f));
+
+		GPXBinaryCache parsed = GPXBinaryCache.load(f);
+		Assert.assertTrue(cacheFile.exists());
+		Assert.assertTrue(cacheFile.length() < f.length() / 4);
+		GPXBinaryCache cached = GPXBinaryCache.loadFor(f);
+		Assert.assertNotNull(cached);
+
+		GPXFile expected = GPXUtilities.loadGPXFile(f);
+		assertSameGpx(expected, parsed.getGpxFile());
+		assertSameGpx(expected, cached.getGpxFile());
+		assertSameAnalysis(expected.getAnalysis(f.lastModified()), cached.getAnalysis());
+		assertSameAnalysis(parsed.getAnalysis(), GPXBinaryCache.load(f).getAnalysis());
+	}
+
+	@Test
+	public void testPointsText() throws IOException {
+		GPXFile parsed = GPXBinaryCache.load(writeGpx()).getGpxFile();
+		Assert.assertEquals("point 50", parsed.tracks.get(0).segments.get(0).points.get(50).name);
+		Assert.assertEquals("https://osmand.net", parsed.tracks.get(1).segments.get(0).points.get(100).link);
+		Assert.assertEquals("type", parsed.routes.get(0).points.get(6).category);
+		assertSameGpx(parsed, GPXBinaryCache.loadFor(new File(parsed.path)).getGpxFile());
+	}
+
+	@Test
+	public void testFileNameEncoding() throws IOException {
+		// supplementary characters are coded differently by modified UTF-8
+		File f = writeGpx("трек \uD83D\uDEB2.gpx");
+		GPXBinaryCache.load(f);
+		GPXBinaryCache cached = GPXBinaryCache.loadFor(f);
+		Assert.assertNotNull(cached);
+		Assert.assertEquals(f.getAbsolutePath(), cached.getGpxFile().path);
+	}
+
+	@Test
+	public void testRawValues() throws IOException {
+		GPXFile gpx = new GPXFile("test");
+		Track track = new Track();
+		TrkSegment segment = new TrkSegment();
+		segment.points.add(new WptPt(52.123456789012, 4.5, 1000, 1.23456, 0, Double.NaN));
+		WptPt p = new WptPt(52.1, 4.6, 0, Double.NaN, 1.1, 0.5);
+		p.heading = 90.5f;
+		segment.points.add(p);
+		segment.points.add(new WptPt(-89.9999999, 179.9999999, 2000, -12.3, 3.3f, Double.NaN));
+		track.segments.add(segment);
+		gpx.tracks.add(track);
+		File f = folder.newFile("raw.gpx");
+		File cacheFile = GPXBinaryCache.getCacheFile(f);
+		new GPXBinaryCache(f.getName(), f.length(), f.lastModified(), gpx, null).writeToFile(cacheFile);
+		GPXBinaryCache cached = GPXBinaryCache.loadFor(f);
+		Assert.assertNull(cached.getAnalysis());
+		List<WptPt> points = cached.getGpxFile().tracks.get(0).segments.get(0).points;
+		assertSamePoints(segment.points, points);
+		Assert.assertEquals(90.5f, points.get(1).heading, 0);
+		Assert.assertTrue(Float.isNaN(points.get(0).heading));
+	}
+
+	@Test
+	public void testOutdatedAndCorruptedCache() throws IOException {
+		File f = writeGpx();
+		File cacheFile = GPXBinaryCache.getCacheFile(f);
+		GPXBinaryCache.load(f);
+		Assert.assertNotNull(GPXBinaryCache.loadFor(f));
+
+		Assert.assertTrue(f.setLastModified(f.lastModified() - 10000));
+		Assert.assertNull(GPXBinaryCache.loadFor(f));
+		GPXBinaryCache.load(f);
+		Assert.assertNotNull(GPXBinaryCache.loadFor(f));
+
+		RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw");
+		raf.setLength(raf.length() / 2);
+		raf.close();
+		Assert.assertNull(GPXBinaryCache.loadFor(f));
+		Assert.assertEquals(GPXUtilities.loadGPXFile(f).getAnalysis(0).points,
+				GPXBinaryCache.load(f).getAnalysis().points);
+		Assert.assertNotNull(GPXBinaryCache.loadFor(f));
+	}
+}
@@ -0,0 +1,203 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class GPXStreamTest {
+
+	private static GPXFile generateGpx() {
+		GPXFile gpx = new GPXFile("test");
+		Random rnd = new Random(7);
+		long time = 1500000000000L;
+		for (int t = 0; t < 2; t++) {
+			Track track = new Track();
+			track.name = "track & " + t;
+			for (int s = 0; s < 3; s++) {
+				TrkSegment segment = new TrkSegment();
+				for (int i = 0; i < 50 * s; i++) {
+					WptPt p = new WptPt(52.4 + rnd.nextDouble() / 10, 4.85 - rnd.nextDouble() / 10, time,
+							i % 5 == 0 ? Double.NaN : rnd.nextInt(2000) / 10d, i % 3 == 0 ? 0 : rnd.nextInt(300) / 10d,
+							Double.NaN);
+					time += 1000 + (i % 4) * 250;
+					segment.points.add(p);
+				}
+				track.segments.add(segment);
+			}
+			gpx.tracks.add(track);
+		}
+		WptPt wpt = new WptPt(10, 10, 0, 5, 0, Double.NaN);
+		wpt.name = "waypoint";
+		gpx.addPoint(wpt);
+		return gpx;
+	}
+
+	private static byte[] toBytes(GPXFile gpx) throws IOException {
+		StringWriter writer = new StringWriter();
+		Assert.assertNull(GPXUtilities.writeGpx(writer, gpx, null));
+		return writer.toString().getBytes("UTF-8");
+	}
+
+	private static List<TrkSegment> loadedSegments(byte[] content) {
+		GPXFile gpx = GPXUtilities.loadGPXFile(new ByteArrayInputStream(content));
+		Assert.assertNull(gpx.error);
+		List<TrkSegment> segments = new ArrayList<>();
+		for (Track t : gpx.tracks) {
+			if (!t.generalTrack) {
+				segments.addAll(t.segments);
+			}
+		}
+		return segments;
+	}
+
+	private static void assertSamePoints(List<TrkSegment> expected, GPXTrackPoints points) {
+		Assert.assertEquals(expected.size(), points.getSegmentsCount());
+		for (int s = 0; s < expected.size(); s++) {
+			List<WptPt> pts = expected.get(s).points;
+			int start = points.getSegmentStart(s);
+			Assert.assertEquals(pts.size(), points.getSegmentEnd(s) - start);
+			for (int i = 0; i < pts.size(); i++) {
+				WptPt p = pts.get(i);
+				Assert.assertEquals(p.lat, points.getLatitude(start + i), 0);
+				Assert.assertEquals(p.lon, points.getLongitude(start + i), 0);
+				Assert.assertEquals(p.ele, points.getElevation(start + i), 0);
+				Assert.assertEquals(p.time, points.getTime(start + i));
+				Assert.assertEquals(p.speed, points.getSpeed(start + i), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testReadSameAsLoadGpx() throws IOException {
+		byte[] content = toBytes(generateGpx());
+		GPXTrackPoints points = GPXStreamReader.readTrackPoints(new ByteArrayInputStream(content));
+		Assert.assertEquals(300, points.size());
+		assertSamePoints(loadedSegments(content), points);
+	}
+
+	@Test
+	public void testChunks() throws IOException {
+		byte[] content = toBytes(generateGpx());
+		final List<Integer> chunks = new ArrayList<>();
+		final int[] segments = new int[1];
+		new GPXStreamReader(new ByteArrayInputStream(content), 32).read(new GPXStreamReader.TrackPointsListener() {
+			@Override
+			public void startSegment(int trackIndex, int segmentIndex) {
+				Assert.assertEquals(segments[0]++, segmentIndex);
+				Assert.assertEquals(segmentIndex / 3, trackIndex);
+			}
+
+			@Override
+			public void points(GPXTrackPoints chunk) {
+				chunks.add(chunk.size());
+			}
+		});
+		Assert.assertEquals(6, segments[0]);
+		// 50 and 100 points of each track
+		Assert.assertEquals("[32, 18, 32, 32, 32, 4, 32, 18, 32, 32, 32, 4]", chunks.toString());
+	}
+
+	@Test
+	public void testMarkupVariants() throws IOException {
+		String gpx = "<?xml version=\"1.0\"?>\n<!-- comment <trkpt lat=\"1\" lon=\"1\"/> -->\n"
+				+ "<gpx xmlns:osmand=\"https://osmand.net\"><wpt lat='5' lon='5'><ele>1</ele></wpt>\n"
+				+ "<trk><trkpt lon='4.5' lat='52.25'/><trkpt lat=\"52.5\" lon=\"4.75\">"
+				+ "<ele> 12.5 </ele><time>2020-02-29T23:59:59.5+01:00</time>"
+				+ "<extensions><osmand:speed>3.25</osmand:speed></extensions></trkpt></trk>\n"
+				+ "<trk><trkseg/><trkseg><trkpt lat=\"1e1\" lon=\"-0.5\"><ele>bad</ele></trkpt></trkseg></trk></gpx>";
+		GPXTrackPoints points = GPXStreamReader.readTrackPoints(new ByteArrayInputStream(gpx.getBytes("UTF-8")));
+		Assert.assertEquals(3, points.size());
+		Assert.assertEquals(3, points.getSegmentsCount());
+		Assert.assertEquals(2, points.getSegmentEnd(0));
+		Assert.assertEquals(2, points.getSegmentStart(2));
+		Assert.assertEquals(52.25, points.getLatitude(0), 0);
+		Assert.assertEquals(4.5, points.getLongitude(0), 0);
+		Assert.assertTrue(Float.isNaN(points.getElevation(0)));
+		Assert.assertEquals(12.5f, points.getElevation(1), 0);
+		Assert.assertEquals(1583017199500L, points.getTime(1));
+		Assert.assertEquals(3.25f, points.getSpeed(1), 0);
+		Assert.assertEquals(10, points.getLatitude(2), 0);
+		Assert.assertTrue(Float.isNaN(points.getElevation(2)));
+	}
+
+	@Test
+	public void testParseTime() {
+		String[] times = { "2017-07-14T02:40:00Z", "1970-01-01T00:00:00Z", "2000-02-29T12:30:45Z",
+				"2020-12-31T23:59:59.123Z", "1969-12-31T23:59:59Z", "2100-03-01T00:00:00Z" };
+		for (String t : times) {
+			Assert.assertEquals(t, GPXUtilities.parseTime(t), GPXStreamReader.parseTime(t));
+		}
+		Assert.assertEquals(GPXUtilities.parseTime("2017-07-14T02:40:00Z"),
+				GPXStreamReader.parseTime("2017-07-14T04:40:00+02:00"));
+		Assert.assertEquals(0, GPXStreamReader.parseTime("yesterday"));
+		Assert.assertEquals(0, GPXStreamReader.parseTime(null));
+		char[] buf = new char[32];
+		for (String t : times) {
+			long time = GPXUtilities.parseTime(t);
+			String formatted = new String(buf, 0, GPXStreamWriter.formatTime(time, buf));
+			Assert.assertEquals(GPXUtilities.formatTime(time), formatted);
+		}
+	}
+
+	@Test
+	public void testParseNumbers() throws IOException {
+		Random rnd = new Random(3);
+		for (int i = 0; i < 20000; i++) {
+			String s;
+			switch (i % 4) {
+			case 0:
+				s = Double.toString((rnd.nextDouble() - 0.5) * 360);
+				break;
+			case 1:
+				s = String.format(java.util.Locale.US, "%.7f", (rnd.nextDouble() - 0.5) * 180);
+				break;
+			case 2:
+				s = String.format(java.util.Locale.US, "%.1f", rnd.nextDouble() * 9000 - 500);
+				break;
+			default:
+				s = Integer.toString(rnd.nextInt()) + "." + rnd.nextInt(1000);
+				break;
+			}
+			byte[] b = s.getBytes("US-ASCII");
+			Assert.assertEquals(s, Double.parseDouble(s), GPXStreamReader.parseDouble(b, 0, b.length, 0), 0);
+			Assert.assertEquals(s, Float.parseFloat(s), GPXStreamReader.parseFloat(b, 0, b.length, 0), 0);
+		}
+	}
+
+	@Test
+	public void testWriteReadBack() throws IOException {
+		GPXFile gpx = generateGpx();
+		StringWriter out = new StringWriter();
+		GPXStreamWriter writer = new GPXStreamWriter(out, "test");
+		for (Track t : gpx.tracks) {
+			writer.startTrack(t.name);
+			for (TrkSegment s : t.segments) {
+				writer.startSegment();
+				for (WptPt p : s.points) {
+					writer.writePoint(p.lat, p.lon, p.ele, p.time, p.speed);
+				}
+				writer.endSegment();
+			}
+			writer.endTrack();
+		}
+		writer.finish();
+		byte[] content = out.toString().getBytes("UTF-8");
+		List<TrkSegment> loaded = loadedSegments(content);
+		assertSamePoints(loaded, GPXStreamReader.readTrackPoints(new ByteArrayInputStream(content)));
+		// same values as written by GPXUtilities
+		assertSamePoints(loadedSegments(toBytes(gpx)), GPXStreamReader.readTrackPoints(new ByteArrayInputStream(content)));
+		GPXFile read = GPXUtilities.loadGPXFile(new ByteArrayInputStream(content));
+		Assert.assertEquals("track & 1", read.tracks.get(read.tracks.size() - 1).name);
+	}
+}
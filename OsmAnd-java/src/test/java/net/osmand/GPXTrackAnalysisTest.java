@@ -0,0 +1,130 @@
+package net.osmand;
+
+import net.osmand.GPXUtilities.Elevation;
+import net.osmand.GPXUtilities.GPXFile;
+import net.osmand.GPXUtilities.GPXTrackAnalysis;
+import net.osmand.GPXUtilities.Speed;
+import net.osmand.GPXUtilities.Track;
+import net.osmand.GPXUtilities.TrkSegment;
+import net.osmand.GPXUtilities.WptPt;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class GPXTrackAnalysisTest {
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(3);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static GPXFile generateGpx(int segments, int pointsInSegment, boolean withSpeed) {
+		GPXFile gpx = new GPXFile("test");
+		Random rnd = new Random(11);
+		long time = 1500000000000L;
+		double lat = 52.3;
+		double lon = 4.9;
+		double ele = 100;
+		Track track = new Track();
+		for (int s = 0; s < segments; s++) {
+			TrkSegment segment = new TrkSegment();
+			for (int i = 0; i < pointsInSegment; i++) {
+				lat += (rnd.nextDouble() - 0.3) / 5000;
+				lon += (rnd.nextDouble() - 0.3) / 5000;
+				ele += rnd.nextDouble() * 4 - 2;
+				double speed = withSpeed && i % 7 != 0 ? rnd.nextInt(150) / 10d : 0;
+				segment.points.add(new WptPt(lat, lon, time, i % 50 == 0 ? Double.NaN : ele, speed, Double.NaN));
+				// stops and a gap in the middle of segment
+				time += i == pointsInSegment / 2 ? 600000 : 1000 + (i % 30 < 3 ? 30000 : 0);
+			}
+			track.segments.add(segment);
+		}
+		gpx.tracks.add(track);
+		gpx.addGeneralTrack();
+		return gpx;
+	}
+
+	private static void assertSameAnalysis(GPXTrackAnalysis expected, GPXTrackAnalysis actual) {
+		Assert.assertEquals(expected.points, actual.points);
+		Assert.assertEquals(expected.totalTracks, actual.totalTracks);
+		Assert.assertEquals(expected.totalDistance, actual.totalDistance, 0);
+		Assert.assertEquals(expected.totalDistanceWithoutGaps, actual.totalDistanceWithoutGaps, 0);
+		Assert.assertEquals(expected.totalDistanceMoving, actual.totalDistanceMoving, 0);
+		Assert.assertEquals(expected.totalDistanceMovingWithoutGaps, actual.totalDistanceMovingWithoutGaps, 0);
+		Assert.assertEquals(expected.startTime, actual.startTime);
+		Assert.assertEquals(expected.endTime, actual.endTime);
+		Assert.assertEquals(expected.timeSpan, actual.timeSpan);
+		Assert.assertEquals(expected.timeSpanWithoutGaps, actual.timeSpanWithoutGaps);
+		Assert.assertEquals(expected.timeMoving, actual.timeMoving);
+		Assert.assertEquals(expected.timeMovingWithoutGaps, actual.timeMovingWithoutGaps);
+		Assert.assertEquals(expected.diffElevationUp, actual.diffElevationUp, 0);
+		Assert.assertEquals(expected.diffElevationDown, actual.diffElevationDown, 0);
+		Assert.assertEquals(expected.avgElevation, actual.avgElevation, 0);
+		Assert.assertEquals(expected.minElevation, actual.minElevation, 0);
+		Assert.assertEquals(expected.maxElevation, actual.maxElevation, 0);
+		Assert.assertEquals(expected.minSpeed, actual.minSpeed, 0);
+		Assert.assertEquals(expected.maxSpeed, actual.maxSpeed, 0);
+		Assert.assertEquals(expected.avgSpeed, actual.avgSpeed, 0);
+		Assert.assertEquals(expected.left, actual.left, 0);
+		Assert.assertEquals(expected.right, actual.right, 0);
+		Assert.assertEquals(expected.top, actual.top, 0);
+		Assert.assertEquals(expected.bottom, actual.bottom, 0);
+		Assert.assertEquals(expected.hasElevationData, actual.hasElevationData);
+		Assert.assertEquals(expected.hasSpeedData, actual.hasSpeedData);
+		Assert.assertEquals(expected.hasSpeedInTrack, actual.hasSpeedInTrack);
+
+		List<Elevation> expectedElevation = expected.elevationData;
+		Assert.assertEquals(expectedElevation.size(), actual.elevationData.size());
+		for (int i = 0; i < expectedElevation.size(); i++) {
+			Elevation e = expectedElevation.get(i);
+			Elevation a = actual.elevationData.get(i);
+			Assert.assertEquals(e.distance, a.distance, 0);
+			Assert.assertEquals(e.time, a.time);
+			Assert.assertEquals(e.elevation, a.elevation, 0);
+		}
+		List<Speed> expectedSpeed = expected.speedData;
+		Assert.assertEquals(expectedSpeed.size(), actual.speedData.size());
+		for (int i = 0; i < expectedSpeed.size(); i++) {
+			Assert.assertEquals(expectedSpeed.get(i).distance, actual.speedData.get(i).distance, 0);
+			Assert.assertEquals(expectedSpeed.get(i).speed, actual.speedData.get(i).speed, 0);
+		}
+	}
+
+	@Test
+	public void testParallelDistancesSameAsSequential() {
+		for (boolean withSpeed : new boolean[] { true, false }) {
+			GPXFile gpx = generateGpx(3, GPXTrackAnalysis.PARALLEL_CHUNK_POINTS + 1000, withSpeed);
+			GPXTrackAnalysis expected = gpx.getAnalysis(0);
+			Assert.assertTrue(expected.totalDistance > 0);
+			Assert.assertTrue(expected.timeMoving > 0);
+			assertSameAnalysis(expected, gpx.getAnalysis(0, executor));
+		}
+	}
+
+	@Test
+	public void testParallelSegmentDistances() {
+		GPXFile gpx = generateGpx(1, GPXTrackAnalysis.PARALLEL_CHUNK_POINTS * 3 + 17, true);
+		TrkSegment segment = gpx.tracks.get(0).segments.get(0);
+		assertSameAnalysis(GPXTrackAnalysis.segment(0, segment), GPXTrackAnalysis.segment(0, segment, executor));
+	}
+
+	@Test
+	public void testShortTrack() {
+		GPXFile gpx = generateGpx(2, 100, true);
+		assertSameAnalysis(gpx.getAnalysis(0), gpx.getAnalysis(0, executor));
+	}
+}
@@ -0,0 +1,104 @@
+package net.osmand.binary;
+
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchReverseGeocoderTest {
+
+	private RoutingContext ctx;
+	private List<LatLon> searched;
+	private BatchReverseGeocoder geocoder;
+
+	@Before
+	public void setUp() {
+		ctx = new RoutePlannerFrontEnd().buildRoutingContext(new RoutingConfiguration(), null,
+				new BinaryMapIndexReader[0], RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		searched = new ArrayList<LatLon>();
+		// street is 20 m to the north of every searched point
+		geocoder = new BatchReverseGeocoder(ctx, Collections.<BinaryMapIndexReader>emptyList()) {
+			@Override
+			public List<GeocodingResult> reverseGeocodingSearch(RoutingContext ctx, double lat, double lon,
+					boolean allowEmptyNames) throws IOException {
+				searched.add(new LatLon(lat, lon));
+				GeocodingResult r = new GeocodingResult();
+				r.searchPoint = new LatLon(lat, lon);
+				r.connectionPoint = new LatLon(lat + 0.00018, lon);
+				r.streetName = "Street " + searched.size();
+				List<GeocodingResult> res = new ArrayList<GeocodingResult>();
+				res.add(r);
+				return res;
+			}
+		};
+	}
+
+	@Test
+	public void testCachedCell() throws IOException {
+		LatLon p1 = new LatLon(52.370001, 4.890001);
+		// ~1 m from p1
+		LatLon p2 = new LatLon(52.370008, 4.890006);
+		Assert.assertEquals(getCell(p1), getCell(p2));
+		List<GeocodingResult> r1 = geocoder.reverseGeocode(p1);
+		List<GeocodingResult> r2 = geocoder.reverseGeocode(p2);
+		Assert.assertEquals(1, searched.size());
+		Assert.assertEquals(1, geocoder.cacheHits);
+		Assert.assertEquals(2, geocoder.points);
+		Assert.assertEquals(r1.get(0).streetName, r2.get(0).streetName);
+		Assert.assertEquals(p2, r2.get(0).searchPoint);
+		Assert.assertEquals(MapUtils.getDistance(p2, r2.get(0).connectionPoint), r2.get(0).getDistance(), 1e-6);
+		// cached result is not changed by caller
+		r1.clear();
+		Assert.assertEquals(1, geocoder.reverseGeocode(p1).size());
+
+		geocoder.clearCache();
+		geocoder.reverseGeocode(p2);
+		Assert.assertEquals(2, searched.size());
+	}
+
+	@Test
+	public void testBatchOrder() throws IOException {
+		List<LatLon> points = new ArrayList<LatLon>();
+		for (int i = 0; i < 20; i++) {
+			// two distant areas one after another
+			LatLon c = i % 2 == 0 ? new LatLon(52.37, 4.89) : new LatLon(48.85, 2.35);
+			points.add(new LatLon(c.getLatitude() + (i / 2) * 0.001, c.getLongitude() + (i / 2) * 0.001));
+		}
+		points.add(points.get(0));
+		List<List<GeocodingResult>> res = geocoder.reverseGeocode(points);
+		Assert.assertEquals(points.size(), res.size());
+		for (int i = 0; i < points.size(); i++) {
+			Assert.assertEquals(points.get(i), res.get(i).get(0).searchPoint);
+		}
+		Assert.assertEquals(20, searched.size());
+		Assert.assertEquals(1, geocoder.cacheHits);
+		// points are processed area by area
+		int switches = 0;
+		for (int i = 1; i < searched.size(); i++) {
+			if (Math.abs(searched.get(i).getLatitude() - searched.get(i - 1).getLatitude()) > 1) {
+				switches++;
+			}
+		}
+		Assert.assertEquals(1, switches);
+		Assert.assertTrue(geocoder.getThroughput() > 0);
+		Assert.assertEquals(Arrays.asList(res.get(0).get(0).streetName), Arrays.asList(res.get(20).get(0).streetName));
+	}
+
+	private long getCell(LatLon l) {
+		int shift = 31 - BatchReverseGeocoder.DEFAULT_CACHE_ZOOM;
+		return (((long) MapUtils.get31TileNumberX(l.getLongitude()) >> shift) << 31)
+				+ (MapUtils.get31TileNumberY(l.getLatitude()) >> shift);
+	}
+}
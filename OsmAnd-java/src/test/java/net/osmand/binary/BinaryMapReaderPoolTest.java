@@ -0,0 +1,118 @@
+package net.osmand.binary;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapReaderPool.ReaderTask;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BinaryMapReaderPoolTest {
+
+	private static final int THREADS = 4;
+	private static final int ZOOM = 15;
+
+	private static File file;
+	private static SyntheticObfWriter city;
+
+	@BeforeClass
+	public static void writeCity() throws IOException {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, 32, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+	}
+
+	@AfterClass
+	public static void deleteCity() {
+		file.delete();
+	}
+
+	private static List<Long> searchMap(BinaryMapIndexReader reader, int[] box) throws IOException {
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(box[0], box[1], box[2],
+				box[3], ZOOM, null);
+		List<Long> ids = new ArrayList<Long>();
+		for (BinaryMapDataObject o : reader.searchMapIndex(req)) {
+			ids.add(o.getId());
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private static List<int[]> getBoxes() {
+		List<int[]> boxes = new ArrayList<int[]>();
+		int w = (city.getRight31() - city.getLeft31()) / 4;
+		int h = (city.getBottom31() - city.getTop31()) / 4;
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) {
+				int left = city.getLeft31() + i * w;
+				int top = city.getTop31() + j * h;
+				boxes.add(new int[] { left, left + w, top, top + h });
+			}
+		}
+		boxes.add(new int[] { city.getLeft31(), city.getRight31(), city.getTop31(), city.getBottom31() });
+		return boxes;
+	}
+
+	@Test
+	public void testConcurrentMapSearch() throws Exception {
+		final List<int[]> boxes = getBoxes();
+		final List<List<Long>> expected = new ArrayList<List<Long>>();
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		try {
+			for (int[] box : boxes) {
+				expected.add(searchMap(reader, box));
+			}
+		} finally {
+			reader.close();
+		}
+		Assert.assertFalse(expected.get(expected.size() - 1).isEmpty());
+
+		// structure is not read by search of any cursor before threads start
+		final BinaryMapReaderPool pool = new BinaryMapReaderPool(file, false);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<List<List<Long>>>> futures = new ArrayList<Future<List<List<Long>>>>();
+			for (int t = 0; t < THREADS; t++) {
+				final int shift = t;
+				futures.add(executor.submit(new Callable<List<List<Long>>>() {
+					@Override
+					public List<List<Long>> call() throws Exception {
+						final List<List<Long>> res = new ArrayList<List<Long>>();
+						for (int i = 0; i < boxes.size(); i++) {
+							final int[] box = boxes.get((i + shift) % boxes.size());
+							res.add(pool.execute(new ReaderTask<List<Long>>() {
+								@Override
+								public List<Long> run(BinaryMapIndexReader reader) throws IOException {
+									return searchMap(reader, box);
+								}
+							}));
+						}
+						return res;
+					}
+				}));
+			}
+			for (int t = 0; t < THREADS; t++) {
+				List<List<Long>> res = futures.get(t).get();
+				for (int i = 0; i < boxes.size(); i++) {
+					Assert.assertEquals(expected.get((i + t) % boxes.size()), res.get(i));
+				}
+			}
+			Assert.assertEquals(0, pool.getAcquiredReaders());
+		} finally {
+			executor.shutdown();
+			pool.close();
+		}
+	}
+}
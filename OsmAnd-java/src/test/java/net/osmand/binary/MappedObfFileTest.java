@@ -0,0 +1,155 @@
+package net.osmand.binary;
+
+import com.google.protobuf.CodedInputStream;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.Amenity;
+import net.osmand.data.Building;
+import net.osmand.data.MapObject;
+import net.osmand.data.Street;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class MappedObfFileTest {
+
+	// small chunks, so objects are decoded across chunk borders
+	private static final int CHUNK_SIZE = 4096;
+
+	private static File file;
+	private static SyntheticObfWriter city;
+
+	@BeforeClass
+	public static void writeCity() throws IOException {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, 24, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+	}
+
+	@AfterClass
+	public static void deleteCity() {
+		file.delete();
+	}
+
+	private static <T> ResultMatcher<T> acceptAll() {
+		return new ResultMatcher<T>() {
+			@Override
+			public boolean publish(T object) {
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+	}
+
+	private static List<String> readData(BinaryMapIndexReader reader) throws IOException {
+		List<String> res = new ArrayList<String>();
+		SearchRequest<BinaryMapDataObject> mapReq = BinaryMapIndexReader.buildSearchRequest(city.getLeft31(),
+				city.getRight31(), city.getTop31(), city.getBottom31(), 15, null);
+		for (BinaryMapDataObject o : reader.searchMapIndex(mapReq)) {
+			StringBuilder sb = new StringBuilder("map " + o.getId() + " " + o.getName() + " "
+					+ Arrays.toString(o.getTypes()));
+			for (int i = 0; i < o.getPointsLength(); i++) {
+				sb.append(" ").append(o.getPoint31XTile(i)).append(",").append(o.getPoint31YTile(i));
+			}
+			res.add(sb.toString());
+		}
+		SearchRequest<Amenity> poiReq = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, "green", city.getLeft31(),
+				city.getRight31(), city.getTop31(), city.getBottom31(), MappedObfFileTest.<Amenity>acceptAll());
+		for (Amenity a : reader.searchPoiByName(poiReq)) {
+			res.add("poi " + a.getId() + " " + a.getName() + " " + a.getLocation() + " " + a.getOpeningHours());
+		}
+		SearchRequest<MapObject> addressReq = BinaryMapIndexReader.buildAddressByNameRequest(
+				MappedObfFileTest.<MapObject>acceptAll(), "street", StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		for (MapObject o : reader.searchAddressDataByName(addressReq)) {
+			res.add("address " + o.getId() + " " + o.getName() + " " + o.getLocation());
+			if (o instanceof Street) {
+				Street s = (Street) o;
+				reader.preloadBuildings(s, BinaryMapIndexReader.buildAddressRequest(
+						MappedObfFileTest.<Building>acceptAll()));
+				for (Building b : s.getBuildings()) {
+					res.add("building " + b.getId() + " " + b.getName() + " " + b.getLocation());
+				}
+				for (Street is : s.getIntersectedStreets()) {
+					res.add("intersection " + is.getName() + " " + is.getLocation());
+				}
+			}
+		}
+		return res;
+	}
+
+	@Test
+	public void testSameDataAsFileReading() throws IOException {
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedObfFile mappedFile = MappedObfFile.map(raf, CHUNK_SIZE);
+		Assert.assertTrue(mappedFile.getChunksCount() > 10);
+		BinaryMapIndexReader mapped = new BinaryMapIndexReader(raf, file, true, mappedFile);
+		BinaryMapIndexReader mappedCopy = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), mapped);
+		try {
+			List<String> expected = readData(reader);
+			Assert.assertTrue(expected.size() > 1000);
+			Assert.assertEquals(expected, readData(mapped));
+			Assert.assertEquals(expected, readData(mappedCopy));
+		} finally {
+			reader.close();
+			mapped.close();
+			mappedCopy.close();
+		}
+	}
+
+	@Test
+	public void testSameBytesAtRandomPositions() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			CodedInputStream fileStream = CodedInputStream.newInstance(raf);
+			CodedInputStream mappedStream = MappedObfFile.map(raf, CHUNK_SIZE).newCodedInputStream();
+			fileStream.setSizeLimit(Integer.MAX_VALUE);
+			mappedStream.setSizeLimit(Integer.MAX_VALUE);
+			Random rnd = new Random(3);
+			int length = (int) raf.length();
+			for (int i = 0; i < 1000; i++) {
+				int pos = rnd.nextInt(length - 1);
+				int size = Math.min(1 + rnd.nextInt(3 * CHUNK_SIZE), length - pos);
+				fileStream.seek(pos);
+				mappedStream.seek(pos);
+				Assert.assertArrayEquals(fileStream.readRawBytes(size), mappedStream.readRawBytes(size));
+				Assert.assertEquals(fileStream.getTotalBytesRead(), mappedStream.getTotalBytesRead());
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Test
+	public void testRejectFileOver2Gb() throws IOException {
+		File big = File.createTempFile("big", ".obf");
+		RandomAccessFile raf = new RandomAccessFile(big, "rw");
+		try {
+			// sparse file, no space is used
+			raf.setLength((1L << 31) + 1);
+			MappedObfFile.map(raf);
+			Assert.fail("File over 2 GB is mapped");
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("too big"));
+		} finally {
+			raf.close();
+			big.delete();
+		}
+	}
+}
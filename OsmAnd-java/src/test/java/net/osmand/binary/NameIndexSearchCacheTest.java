@@ -0,0 +1,163 @@
+package net.osmand.binary;
+
+import net.osmand.CollatorStringMatcher.StringMatcherMode;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.data.MapObject;
+import net.osmand.data.Street;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchCoreFactory.SearchBuildingAndIntersectionsByStreetAPI;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NameIndexSearchCacheTest {
+
+	private NameIndexSearchCache<String> cache;
+
+	private SearchRequest<String> request(String query, StringMatcherMode mode) {
+		return BinaryMapIndexReader.buildAddressByNameRequest(new ResultMatcher<String>() {
+			@Override
+			public boolean publish(String object) {
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}, query, mode);
+	}
+
+	@Before
+	public void setUp() {
+		cache = new NameIndexSearchCache<String>();
+		SearchRequest<String> req = request("caf", StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		cache.startRead(req, "caf", StringMatcherMode.CHECK_STARTS_FROM_SPACE, null);
+		cache.add("Cafe");
+		cache.finishRead(req);
+	}
+
+	@Test
+	public void testRefineExtendedQuery() {
+		Assert.assertTrue(cache.canRefine(request("cafe", StringMatcherMode.CHECK_STARTS_FROM_SPACE), "cafe",
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE, null));
+		Assert.assertTrue(cache.canRefine(request("caf", StringMatcherMode.CHECK_EQUALS_FROM_SPACE), "caf",
+				StringMatcherMode.CHECK_EQUALS_FROM_SPACE, null));
+		Assert.assertFalse(cache.canRefine(request("ca", StringMatcherMode.CHECK_STARTS_FROM_SPACE), "ca",
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE, null));
+		Assert.assertFalse(cache.canRefine(request("cafe", StringMatcherMode.CHECK_CONTAINS), "cafe",
+				StringMatcherMode.CHECK_CONTAINS, null));
+		Assert.assertEquals(1, cache.getFileReads());
+	}
+
+	@Test
+	public void testRefineSameArea() {
+		SearchRequest<String> req = request("cafe", StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		req.setBBoxRadius(52.4, 4.9, 1000);
+		Assert.assertFalse(cache.canRefine(req, "cafe", StringMatcherMode.CHECK_STARTS_FROM_SPACE, null));
+		req = request("cafe", StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		req.setNormalizedNameKeys(true);
+		Assert.assertFalse(cache.canRefine(req, "cafe", StringMatcherMode.CHECK_STARTS_FROM_SPACE, null));
+	}
+
+	@Test
+	public void testIncompleteRead() {
+		SearchRequest<String> req = request("caf", StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		req.setLimit(0);
+		req.publish("Cafe");
+		cache.startRead(req, "caf", StringMatcherMode.CHECK_STARTS_FROM_SPACE, null);
+		cache.finishRead(req);
+		Assert.assertFalse(cache.canRefine(request("cafe", StringMatcherMode.CHECK_STARTS_FROM_SPACE), "cafe",
+				StringMatcherMode.CHECK_STARTS_FROM_SPACE, null));
+		cache.clear();
+		Assert.assertTrue(cache.getObjects().isEmpty());
+	}
+
+	private static List<MapObject> searchAddress(BinaryMapIndexReader reader, NameIndexSearchCache<MapObject> cache,
+			String query) throws IOException {
+		SearchRequest<MapObject> req = BinaryMapIndexReader.buildAddressByNameRequest(new ResultMatcher<MapObject>() {
+			@Override
+			public boolean publish(MapObject object) {
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE);
+		req.setNameIndexCache(cache);
+		return reader.searchAddressDataByName(req);
+	}
+
+	private static Street findStreet(List<MapObject> objects, String name) {
+		for (MapObject o : objects) {
+			if (o instanceof Street && o.getName().equals(name)) {
+				return (Street) o;
+			}
+		}
+		Assert.fail(name + " is not found");
+		return null;
+	}
+
+	private static List<String> searchBuildings(SearchBuildingAndIntersectionsByStreetAPI api,
+			BinaryMapIndexReader reader, Street street) throws IOException {
+		SearchResult sr = new SearchResult();
+		sr.object = street;
+		sr.file = reader;
+		sr.objectType = ObjectType.STREET;
+		sr.localeName = street.getName();
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(new SearchSettings((SearchSettings) null)).selectWord(sr);
+		SearchResultMatcher matcher = new SearchResultMatcher(null, phrase, 0, new AtomicInteger(0), -1);
+		api.search(phrase, matcher);
+		List<String> res = new ArrayList<String>();
+		for (SearchResult r : matcher.getRequestResults()) {
+			res.add(r.objectType + " " + r.localeName);
+		}
+		return res;
+	}
+
+	@Test
+	public void testRefinedStreetBuildings() throws IOException {
+		File file = SyntheticObfWriter.writeTempFile(16);
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		BinaryMapIndexReader freshReader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		try {
+			List<String> expected = searchBuildings(new SearchBuildingAndIntersectionsByStreetAPI(), freshReader,
+					findStreet(searchAddress(freshReader, null, "street 12"), "Street 12"));
+			// 15 houses and 16 intersections
+			Assert.assertEquals(31, expected.size());
+
+			NameIndexSearchCache<MapObject> addressCache = new NameIndexSearchCache<MapObject>();
+			SearchBuildingAndIntersectionsByStreetAPI api = new SearchBuildingAndIntersectionsByStreetAPI();
+			List<MapObject> streets = searchAddress(reader, addressCache, "street");
+			Street street = findStreet(streets, "Street 12");
+			Assert.assertEquals(expected, searchBuildings(api, reader, street));
+			searchBuildings(api, reader, findStreet(streets, "Street 13"));
+
+			// refined street is the same object with buildings read by previous search
+			Street refined = findStreet(searchAddress(reader, addressCache, "street 1"), "Street 12");
+			Assert.assertEquals(1, addressCache.getRefinements());
+			Assert.assertEquals(1, addressCache.getFileReads());
+			Assert.assertSame(street, refined);
+			Assert.assertEquals(expected, searchBuildings(api, reader, refined));
+		} finally {
+			reader.close();
+			freshReader.close();
+			file.delete();
+		}
+	}
+}
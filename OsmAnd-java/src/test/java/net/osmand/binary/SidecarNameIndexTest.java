@@ -0,0 +1,117 @@
+package net.osmand.binary;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.SidecarNameIndex.SectionBuilder;
+import net.osmand.data.Amenity;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntLongHashMap;
+
+public class SidecarNameIndexTest {
+
+	private File obf;
+	private SidecarNameIndex index;
+
+	@Before
+	public void setUp() throws IOException {
+		obf = File.createTempFile("test", ".obf");
+		SectionBuilder poi = new SectionBuilder(SidecarNameIndex.POI_SECTION, 0);
+		poi.addName("Royal Café", 10, 1000, 1000);
+		poi.addName("Café Central", 20, 5000, 5000);
+		poi.addName("Royal Bakery", 30, 1000, 1000);
+		poi.addName("Royal Bakery", 30, 1000, 1000);
+		// many words to have several blocks
+		for (int i = 0; i < 100; i++) {
+			poi.addName("Shop " + (char) ('a' + i % 26) + i, 100 + i, 0, 0);
+		}
+		SectionBuilder address = new SectionBuilder(SidecarNameIndex.ADDRESS_SECTION, 0);
+		address.addName("Straße der Pariser Kommune", 7);
+		address.addName("Parkstraße", 8);
+		List<SidecarNameIndex.Section> sections = new ArrayList<SidecarNameIndex.Section>();
+		sections.add(poi.build());
+		sections.add(address.build());
+		File f = SidecarNameIndex.getSidecarFile(obf);
+		new SidecarNameIndex(obf.getName(), obf.length(), obf.lastModified(), sections).writeToFile(f);
+		index = SidecarNameIndex.loadFor(obf);
+	}
+
+	@After
+	public void tearDown() {
+		SidecarNameIndex.getSidecarFile(obf).delete();
+		obf.delete();
+	}
+
+	@Test
+	public void testFindWords() {
+		Assert.assertNotNull(index);
+		Assert.assertEquals(Arrays.asList("royal"), index.findWords("Roy"));
+		Assert.assertEquals(Arrays.asList("cafe"), index.findWords("ca"));
+		Assert.assertEquals(Arrays.asList("c2", "c28", "c54", "c80", "cafe", "central"), index.findWords("c"));
+		Assert.assertEquals(Arrays.asList("strasse"), index.findWords("straße"));
+		Assert.assertEquals(Arrays.asList("z25", "z51", "z77"), index.findWords("z"));
+		Assert.assertTrue(index.findWords("x").contains("x23"));
+		Assert.assertTrue(index.findWords("royale").isEmpty());
+	}
+
+	@Test
+	public void testSourceNameEncoding() throws IOException {
+		// supplementary characters are encoded differently in modified UTF-8 of writeUTF
+		File named = new File(obf.getParentFile(), "Карта \uD83D\uDDFA " + System.nanoTime() + ".obf");
+		File sidecar = SidecarNameIndex.getSidecarFile(named);
+		try {
+			Assert.assertTrue(named.createNewFile());
+			new SidecarNameIndex(named.getName(), named.length(), named.lastModified(),
+					new ArrayList<SidecarNameIndex.Section>()).writeToFile(sidecar);
+			SidecarNameIndex read = SidecarNameIndex.loadFor(named);
+			Assert.assertNotNull(read);
+			Assert.assertTrue(read.isValidFor(named));
+		} finally {
+			sidecar.delete();
+			named.delete();
+		}
+	}
+
+	@Test
+	public void testFindFuzzyWords() {
+		Assert.assertEquals(Arrays.asList("cafe"), index.findFuzzyWords("cafee", 1, false));
+		Assert.assertEquals(Arrays.asList("bakery"), index.findFuzzyWords("bakrey", 2, false));
+		Assert.assertEquals(Arrays.asList("royal"), index.findFuzzyWords("rpy", 1, true));
+		Assert.assertTrue(index.findFuzzyWords("rpy", 1, false).isEmpty());
+	}
+
+	@Test
+	public void testSearchPoi() {
+		SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(0, 0, "royal caf", 0, 2000, 0, 2000,
+				(ResultMatcher<Amenity>) null);
+		TIntLongHashMap offsets = new TIntLongHashMap();
+		index.searchPoi(0, "royal caf", req, offsets);
+		Assert.assertArrayEquals(new int[] { 10 }, offsets.keys());
+		Assert.assertEquals(2000, offsets.get(10));
+		offsets.clear();
+		index.searchPoi(0, "caf", req, offsets);
+		// second cafe is out of bbox
+		Assert.assertArrayEquals(new int[] { 10 }, offsets.keys());
+	}
+
+	@Test
+	public void testSearchAddress() {
+		TIntArrayList offsets = new TIntArrayList();
+		index.searchAddress(0, "Pariser Str", offsets);
+		Assert.assertEquals(new TIntArrayList(new int[] { 7 }), offsets);
+		offsets.clear();
+		index.searchAddress(0, "park", offsets);
+		Assert.assertEquals(new TIntArrayList(new int[] { 8 }), offsets);
+	}
+}
@@ -0,0 +1,838 @@
+package net.osmand.binary;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.WireFormat;
+
+import net.osmand.binary.OsmandOdb.AddressNameIndexDataAtom;
+import net.osmand.binary.OsmandOdb.BuildingIndex;
+import net.osmand.binary.OsmandOdb.CityBlockIndex;
+import net.osmand.binary.OsmandOdb.CityIndex;
+import net.osmand.binary.OsmandOdb.IdTable;
+import net.osmand.binary.OsmandOdb.IndexedStringTable;
+import net.osmand.binary.OsmandOdb.MapData;
+import net.osmand.binary.OsmandOdb.MapDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndAddressIndex;
+import net.osmand.binary.OsmandOdb.OsmAndAddressIndex.CitiesIndex;
+import net.osmand.binary.OsmandOdb.OsmAndAddressNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndAddressNameIndexData.AddressNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndCategoryTable;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapRootLevel;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBox;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxData;
+import net.osmand.binary.OsmandOdb.OsmAndPoiBoxDataAtom;
+import net.osmand.binary.OsmandOdb.OsmAndPoiIndex;
+import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndex;
+import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndex.OsmAndPoiNameIndexData;
+import net.osmand.binary.OsmandOdb.OsmAndPoiNameIndexDataAtom;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndStructure;
+import net.osmand.binary.OsmandOdb.OsmAndTileBox;
+import net.osmand.binary.OsmandOdb.RouteData;
+import net.osmand.binary.OsmandOdb.StreetIndex;
+import net.osmand.binary.OsmandOdb.StreetIntersection;
+import net.osmand.binary.OsmandOdb.StringTable;
+import net.osmand.data.LatLon;
+import net.osmand.util.Algorithms;
+import net.osmand.util.MapUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes synthetic OBF file with map, routing, POI and address indexes, so benchmarks and tests could run offline.
+ * The city is a square grid of streets (every 8th street is primary, odd residential avenues are one way)
+ * with a building in every block and a named POI in every second block. Address index has one city
+ * with all streets, every street has numbered houses between crossings and intersects all streets
+ * of the other direction.
+ * Leaf messages are produced by OsmandOdb builders, index structure (fixed32 lengths and shifts
+ * to data blocks) is laid out the same way as map creator writes it.
+ */
+public class SyntheticObfWriter {
+
+	public static final String REGION_NAME = "Synthetic_city";
+	public static final String CITY_NAME = "Synthetic";
+	public static final LatLon DEFAULT_TOP_LEFT = new LatLon(52.40, 4.85);
+	public static final double DEFAULT_SPACING = 100;
+	public static final String[] POI_NAME_PREFIXES = { "Central", "Green", "Royal", "Golden", "Old", "Harbour",
+			"Little", "Grand" };
+	// name, poi category, poi subcategory
+	public static final String[][] POI_KINDS = { { "Cafe", "sustenance", "cafe" },
+			{ "Restaurant", "sustenance", "restaurant" }, { "Bakery", "shop", "bakery" },
+			{ "Market", "shop", "supermarket" } };
+	public static final String[] OPENING_HOURS = { "Mo-Fr 08:00-20:00; Sa 09:00-18:00", "24/7",
+			"Mo-Su 07:00-23:00", "Mo-Fr 09:00-12:00,13:00-18:00; Sa 10:00-14:00; PH off",
+			"Mo-Th 11:00-22:00; Fr-Sa 11:00-24:00; Su 12:00-21:00", "sunrise-sunset" };
+
+	private static final int OBF_VERSION = 2;
+	private static final int MAP_SHIFT = BinaryMapIndexReader.SHIFT_COORDINATES;
+	private static final int ROUTE_SHIFT = 4;
+	private static final int MAP_MIN_ZOOM = 11;
+	private static final int MAP_MAX_ZOOM = 22;
+	private static final int BASE_POI_ZOOM = 31 - BinaryMapPoiReaderAdapter.SHIFT_BITS_CATEGORY;
+	private static final int POI_BOX_ZOOM = 12;
+	private static final int POI_DATA_ZOOM = 16;
+	private static final int SEGMENT_CELLS = 4;
+	private static final int BOX_CELLS = 8;
+	private static final int PRIMARY_EACH = 8;
+
+	private static final String[][] MAP_RULES = { { "name", "" }, { "highway", "primary" },
+			{ "highway", "residential" }, { "oneway", "yes" }, { "building", "yes" } };
+	private static final int NAME_RULE = 1;
+	private static final int PRIMARY_RULE = 2;
+	private static final int RESIDENTIAL_RULE = 3;
+	private static final int ONEWAY_RULE = 4;
+	private static final int BUILDING_RULE = 5;
+
+	private final int size;
+	private final int[] nodesX;
+	private final int[] nodesY;
+	private final List<Way> ways = new ArrayList<Way>();
+	private final List<Way> buildings = new ArrayList<Way>();
+	private final List<Poi> pois = new ArrayList<Poi>();
+
+	private static class Way {
+		long id;
+		int[] x;
+		int[] y;
+		int[] types;
+		String name;
+	}
+
+	private static class Poi {
+		long id;
+		int x;
+		int y;
+		int category;
+		int subcategory;
+		String name;
+		String openingHours;
+	}
+
+	/**
+	 * @param size number of streets in each direction
+	 * @param spacing distance between streets in meters
+	 */
+	public SyntheticObfWriter(LatLon topLeft, int size, double spacing) {
+		this.size = size;
+		nodesX = new int[size];
+		nodesY = new int[size];
+		double dlat = spacing / 111320d;
+		double dlon = dlat / Math.cos(Math.toRadians(topLeft.getLatitude()));
+		for (int i = 0; i < size; i++) {
+			nodesX[i] = MapUtils.get31TileNumberX(topLeft.getLongitude() + i * dlon) & ~((1 << MAP_SHIFT) - 1);
+			nodesY[i] = MapUtils.get31TileNumberY(topLeft.getLatitude() - i * dlat) & ~((1 << MAP_SHIFT) - 1);
+		}
+		createStreets();
+		createBlocks();
+	}
+
+	public LatLon getNode(int row, int col) {
+		return new LatLon(MapUtils.get31LatitudeY(nodesY[row]), MapUtils.get31LongitudeX(nodesX[col]));
+	}
+
+	public int getLeft31() {
+		return nodesX[0];
+	}
+
+	public int getRight31() {
+		return nodesX[size - 1];
+	}
+
+	public int getTop31() {
+		return nodesY[0];
+	}
+
+	public int getBottom31() {
+		return nodesY[size - 1];
+	}
+
+	private void createStreets() {
+		long id = 1;
+		for (int line = 0; line < size; line++) {
+			boolean primary = line % PRIMARY_EACH == 0;
+			for (int s = 0; s + 1 < size; s += SEGMENT_CELLS) {
+				int e = Math.min(s + SEGMENT_CELLS, size - 1);
+				// horizontal street
+				Way w = new Way();
+				w.id = (id++) << 6;
+				w.name = "Street " + (line + 1);
+				w.types = new int[] { primary ? PRIMARY_RULE : RESIDENTIAL_RULE };
+				w.x = new int[e - s + 1];
+				w.y = new int[e - s + 1];
+				for (int i = s; i <= e; i++) {
+					w.x[i - s] = nodesX[i];
+					w.y[i - s] = nodesY[line];
+				}
+				ways.add(w);
+				// vertical avenue, one way avenues alternate direction
+				boolean oneway = !primary && line % 2 == 1;
+				boolean reverse = oneway && line % 4 == 3;
+				w = new Way();
+				w.id = (id++) << 6;
+				w.name = "Avenue " + (line + 1);
+				w.types = oneway ? new int[] { RESIDENTIAL_RULE, ONEWAY_RULE }
+						: new int[] { primary ? PRIMARY_RULE : RESIDENTIAL_RULE };
+				w.x = new int[e - s + 1];
+				w.y = new int[e - s + 1];
+				for (int i = s; i <= e; i++) {
+					int k = reverse ? e - i : i - s;
+					w.x[k] = nodesX[line];
+					w.y[k] = nodesY[i];
+				}
+				ways.add(w);
+			}
+		}
+	}
+
+	private void createBlocks() {
+		long id = ways.size() + 1;
+		// file content should be the same for the same size
+		Random rnd = new Random(size);
+		for (int r = 0; r + 1 < size; r++) {
+			for (int c = 0; c + 1 < size; c++) {
+				int l = nodesX[c], rt = nodesX[c + 1], t = nodesY[r], b = nodesY[r + 1];
+				int dx = (rt - l) / 4, dy = (b - t) / 4;
+				Way w = new Way();
+				w.id = (id++) << 6;
+				w.types = new int[] { BUILDING_RULE };
+				w.x = new int[] { l + dx, rt - dx, rt - dx, l + dx, l + dx };
+				w.y = new int[] { t + dy, t + dy, b - dy, b - dy, t + dy };
+				for (int i = 0; i < w.x.length; i++) {
+					w.x[i] &= ~((1 << MAP_SHIFT) - 1);
+					w.y[i] &= ~((1 << MAP_SHIFT) - 1);
+				}
+				buildings.add(w);
+				if ((r + c) % 2 == 0) {
+					Poi p = new Poi();
+					p.id = id << 1;
+					p.x = l + (rt - l) / 2;
+					p.y = t + (b - t) / 2;
+					String[] kind = POI_KINDS[rnd.nextInt(POI_KINDS.length)];
+					p.name = POI_NAME_PREFIXES[rnd.nextInt(POI_NAME_PREFIXES.length)] + " " + kind[0];
+					p.openingHours = OPENING_HOURS[rnd.nextInt(OPENING_HOURS.length)];
+					p.category = getPoiCategories().indexOf(kind[1]);
+					p.subcategory = getPoiSubcategories(kind[1]).indexOf(kind[2]);
+					pois.add(p);
+				}
+			}
+		}
+	}
+
+	private static List<String> getPoiCategories() {
+		List<String> l = new ArrayList<String>();
+		for (String[] k : POI_KINDS) {
+			if (!l.contains(k[1])) {
+				l.add(k[1]);
+			}
+		}
+		return l;
+	}
+
+	private static List<String> getPoiSubcategories(String category) {
+		List<String> l = new ArrayList<String>();
+		for (String[] k : POI_KINDS) {
+			if (k[1].equals(category)) {
+				l.add(k[2]);
+			}
+		}
+		return l;
+	}
+
+	private Map<Integer, List<Way>> splitByBoxes(List<Way> list) {
+		Map<Integer, List<Way>> boxes = new TreeMap<Integer, List<Way>>();
+		int boxSize = (nodesX[Math.min(BOX_CELLS, size - 1)] - nodesX[0]) + 1;
+		int boxSizeY = (nodesY[Math.min(BOX_CELLS, size - 1)] - nodesY[0]) + 1;
+		for (Way w : list) {
+			int key = ((w.y[0] - nodesY[0]) / boxSizeY) * (size + 1) + (w.x[0] - nodesX[0]) / boxSize;
+			List<Way> box = boxes.get(key);
+			if (box == null) {
+				box = new ArrayList<Way>();
+				boxes.put(key, box);
+			}
+			box.add(w);
+		}
+		return boxes;
+	}
+
+	// left, right, top, bottom
+	private static int[] bbox(List<Way> list) {
+		int[] bbox = { Integer.MAX_VALUE, 0, Integer.MAX_VALUE, 0 };
+		for (Way w : list) {
+			for (int i = 0; i < w.x.length; i++) {
+				bbox[0] = Math.min(bbox[0], w.x[i]);
+				bbox[1] = Math.max(bbox[1], w.x[i]);
+				bbox[2] = Math.min(bbox[2], w.y[i]);
+				bbox[3] = Math.max(bbox[3], w.y[i]);
+			}
+		}
+		return bbox;
+	}
+
+	public void writeFile(File file) throws IOException {
+		ObfBuffer out = new ObfBuffer();
+		out.writeTag(OsmAndStructure.VERSION_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+		out.writeVarint(OBF_VERSION);
+		out.writeTag(OsmAndStructure.DATECREATED_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+		out.writeVarint64(System.currentTimeMillis());
+		writeMapIndex(out);
+		writeRoutingIndex(out);
+		writePoiIndex(out);
+		writeAddressIndex(out);
+		out.writeTag(OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+		out.writeVarint(OBF_VERSION);
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			out.writeTo(fout);
+		} finally {
+			fout.close();
+		}
+	}
+
+	public static File writeTempFile(int size) throws IOException {
+		File file = File.createTempFile("synthetic", ".obf");
+		file.deleteOnExit();
+		new SyntheticObfWriter(DEFAULT_TOP_LEFT, size, DEFAULT_SPACING).writeFile(file);
+		return file;
+	}
+
+	private void writeMapIndex(ObfBuffer out) throws IOException {
+		int index = out.startFixedMessage(OsmAndStructure.MAPINDEX_FIELD_NUMBER);
+		out.writeString(OsmAndMapIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		for (int i = 0; i < MAP_RULES.length; i++) {
+			out.writeMessage(OsmAndMapIndex.RULES_FIELD_NUMBER, MapEncodingRule.newBuilder().setTag(MAP_RULES[i][0])
+					.setValue(MAP_RULES[i][1]).setId(i + 1).build());
+		}
+		List<Way> all = new ArrayList<Way>(ways);
+		all.addAll(buildings);
+		int[] root = bbox(all);
+		int level = out.startFixedMessage(OsmAndMapIndex.LEVELS_FIELD_NUMBER);
+		out.writeInt32(MapRootLevel.MAXZOOM_FIELD_NUMBER, MAP_MAX_ZOOM);
+		out.writeInt32(MapRootLevel.MINZOOM_FIELD_NUMBER, MAP_MIN_ZOOM);
+		out.writeInt32(MapRootLevel.LEFT_FIELD_NUMBER, root[0]);
+		out.writeInt32(MapRootLevel.RIGHT_FIELD_NUMBER, root[1]);
+		out.writeInt32(MapRootLevel.TOP_FIELD_NUMBER, root[2]);
+		out.writeInt32(MapRootLevel.BOTTOM_FIELD_NUMBER, root[3]);
+		Map<Integer, List<Way>> boxes = splitByBoxes(all);
+		List<int[]> boxBounds = new ArrayList<int[]>();
+		List<Integer> shifts = new ArrayList<Integer>();
+		for (List<Way> objects : boxes.values()) {
+			int[] b = bbox(objects);
+			int box = out.startFixedMessage(MapRootLevel.BOXES_FIELD_NUMBER);
+			out.writeSInt32(MapDataBox.LEFT_FIELD_NUMBER, b[0] - root[0]);
+			out.writeSInt32(MapDataBox.RIGHT_FIELD_NUMBER, b[1] - root[1]);
+			out.writeSInt32(MapDataBox.TOP_FIELD_NUMBER, b[2] - root[2]);
+			out.writeSInt32(MapDataBox.BOTTOM_FIELD_NUMBER, b[3] - root[3]);
+			shifts.add(out.writeFixedIntPlaceholder(MapDataBox.SHIFTTOMAPDATA_FIELD_NUMBER));
+			out.endFixedMessage(box);
+			boxBounds.add(new int[] { b[0], b[2], box + 4 });
+		}
+		int i = 0;
+		for (List<Way> objects : boxes.values()) {
+			int[] b = boxBounds.get(i);
+			// shift is counted from the box start (after its length)
+			out.patchInt(shifts.get(i), out.position() + out.tagSize(MapRootLevel.BLOCKS_FIELD_NUMBER) - b[2]);
+			out.writeMessage(MapRootLevel.BLOCKS_FIELD_NUMBER, createMapDataBlock(objects, b[0], b[1]));
+			i++;
+		}
+		out.endFixedMessage(level);
+		out.endFixedMessage(index);
+	}
+
+	private MapDataBlock createMapDataBlock(List<Way> objects, int left, int top) {
+		MapDataBlock.Builder block = MapDataBlock.newBuilder();
+		StringTable.Builder strings = StringTable.newBuilder();
+		long baseId = objects.get(0).id;
+		for (Way w : objects) {
+			baseId = Math.min(baseId, w.id);
+		}
+		block.setBaseId(baseId);
+		int mask = ~((1 << MAP_SHIFT) - 1);
+		for (Way w : objects) {
+			MapData.Builder data = MapData.newBuilder();
+			ObfBuffer coordinates = new ObfBuffer();
+			int px = left & mask;
+			int py = top & mask;
+			for (int i = 0; i < w.x.length; i++) {
+				coordinates.writeSInt32NoTag((w.x[i] - px) >> MAP_SHIFT);
+				coordinates.writeSInt32NoTag((w.y[i] - py) >> MAP_SHIFT);
+				px = w.x[i];
+				py = w.y[i];
+			}
+			if (w.types[0] == BUILDING_RULE) {
+				data.setAreaCoordinates(coordinates.toByteString());
+			} else {
+				data.setCoordinates(coordinates.toByteString());
+			}
+			data.setTypes(varints(w.types));
+			data.setId(w.id - baseId);
+			if (w.name != null) {
+				data.setStringNames(varints(NAME_RULE, strings.getSCount()));
+				strings.addS(w.name);
+			}
+			block.addDataObjects(data);
+		}
+		if (strings.getSCount() > 0) {
+			block.setStringTable(strings);
+		}
+		return block.build();
+	}
+
+	private void writeRoutingIndex(ObfBuffer out) throws IOException {
+		int index = out.startFixedMessage(OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER);
+		out.writeString(OsmAndRoutingIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		for (int i = 0; i < MAP_RULES.length; i++) {
+			if (i + 1 != BUILDING_RULE) {
+				out.writeMessage(OsmAndRoutingIndex.RULES_FIELD_NUMBER, RouteEncodingRule.newBuilder()
+						.setTag(MAP_RULES[i][0]).setValue(MAP_RULES[i][1]).setId(i + 1).build());
+			}
+		}
+		int[] root = bbox(ways);
+		int rootBox = out.startFixedMessage(OsmAndRoutingIndex.ROOTBOXES_FIELD_NUMBER);
+		out.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, root[0]);
+		out.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, root[1]);
+		out.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, root[2]);
+		out.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, root[3]);
+		Map<Integer, List<Way>> boxes = splitByBoxes(ways);
+		List<int[]> boxBounds = new ArrayList<int[]>();
+		List<Integer> shifts = new ArrayList<Integer>();
+		for (List<Way> objects : boxes.values()) {
+			int[] b = bbox(objects);
+			int box = out.startFixedMessage(RouteDataBox.BOXES_FIELD_NUMBER);
+			out.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, b[0] - root[0]);
+			out.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, b[1] - root[1]);
+			out.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, b[2] - root[2]);
+			out.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, b[3] - root[3]);
+			shifts.add(out.writeFixedIntPlaceholder(RouteDataBox.SHIFTTODATA_FIELD_NUMBER));
+			out.endFixedMessage(box);
+			boxBounds.add(new int[] { b[0], b[2], box + 4 });
+		}
+		out.endFixedMessage(rootBox);
+		int i = 0;
+		for (List<Way> objects : boxes.values()) {
+			int[] b = boxBounds.get(i);
+			out.patchInt(shifts.get(i), out.position() + out.tagSize(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER) - b[2]);
+			out.writeMessage(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER, createRouteDataBlock(objects, b[0], b[1]));
+			i++;
+		}
+		out.endFixedMessage(index);
+	}
+
+	private RouteDataBlock createRouteDataBlock(List<Way> objects, int left, int top) {
+		RouteDataBlock.Builder block = RouteDataBlock.newBuilder();
+		IdTable.Builder ids = IdTable.newBuilder();
+		StringTable.Builder strings = StringTable.newBuilder();
+		long prevId = 0;
+		for (int k = 0; k < objects.size(); k++) {
+			Way w = objects.get(k);
+			ids.addRouteId(w.id - prevId);
+			prevId = w.id;
+			RouteData.Builder data = RouteData.newBuilder();
+			ObfBuffer points = new ObfBuffer();
+			int px = left >> ROUTE_SHIFT;
+			int py = top >> ROUTE_SHIFT;
+			for (int i = 0; i < w.x.length; i++) {
+				int x = w.x[i] >> ROUTE_SHIFT;
+				int y = w.y[i] >> ROUTE_SHIFT;
+				points.writeSInt32NoTag(x - px);
+				points.writeSInt32NoTag(y - py);
+				px = x;
+				py = y;
+			}
+			data.setPoints(points.toByteString());
+			data.setTypes(varints(w.types));
+			data.setRouteId(k);
+			data.setStringNames(varints(NAME_RULE, strings.getSCount()));
+			strings.addS(w.name);
+			block.addDataObjects(data);
+		}
+		block.setIdTable(ids);
+		block.setStringTable(strings);
+		return block.build();
+	}
+
+	private void writePoiIndex(ObfBuffer out) throws IOException {
+		int index = out.startFixedMessage(OsmAndStructure.POIINDEX_FIELD_NUMBER);
+		int indexStart = index + 4;
+		out.writeString(OsmAndPoiIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		out.writeMessage(OsmAndPoiIndex.BOUNDARIES_FIELD_NUMBER, OsmAndTileBox.newBuilder().setLeft(getLeft31())
+				.setRight(getRight31()).setTop(getTop31()).setBottom(getBottom31()).build());
+		for (String category : getPoiCategories()) {
+			OsmAndCategoryTable.Builder table = OsmAndCategoryTable.newBuilder().setCategory(category);
+			for (String sub : getPoiSubcategories(category)) {
+				table.addSubcategories(sub);
+			}
+			out.writeMessage(OsmAndPoiIndex.CATEGORIESTABLE_FIELD_NUMBER, table.build());
+		}
+
+		// poi tiles (data blocks) grouped by parent boxes
+		Map<Long, Map<Long, List<Poi>>> boxes = new TreeMap<Long, Map<Long, List<Poi>>>();
+		for (Poi p : pois) {
+			long box = tileKey(p.x, p.y, POI_BOX_ZOOM);
+			long tile = tileKey(p.x, p.y, POI_DATA_ZOOM);
+			if (!boxes.containsKey(box)) {
+				boxes.put(box, new TreeMap<Long, List<Poi>>());
+			}
+			Map<Long, List<Poi>> tiles = boxes.get(box);
+			if (!tiles.containsKey(tile)) {
+				tiles.put(tile, new ArrayList<Poi>());
+			}
+			tiles.get(tile).add(p);
+		}
+		Map<Long, List<Poi>> tiles = new LinkedHashMap<Long, List<Poi>>();
+		Map<Long, List<Integer>> tileShifts = new LinkedHashMap<Long, List<Integer>>();
+		for (Long boxKey : boxes.keySet()) {
+			int bx = (int) (boxKey >> 32);
+			int by = (int) (boxKey & 0xffffffffL);
+			int box = out.startFixedMessage(OsmAndPoiIndex.BOXES_FIELD_NUMBER);
+			out.writeUInt32(OsmAndPoiBox.ZOOM_FIELD_NUMBER, POI_BOX_ZOOM);
+			out.writeSInt32(OsmAndPoiBox.LEFT_FIELD_NUMBER, bx);
+			out.writeSInt32(OsmAndPoiBox.TOP_FIELD_NUMBER, by);
+			int dz = POI_DATA_ZOOM - POI_BOX_ZOOM;
+			for (Map.Entry<Long, List<Poi>> e : boxes.get(boxKey).entrySet()) {
+				int tx = (int) (e.getKey() >> 32);
+				int ty = (int) (e.getKey() & 0xffffffffL);
+				int sub = out.startFixedMessage(OsmAndPoiBox.SUBBOXES_FIELD_NUMBER);
+				out.writeUInt32(OsmAndPoiBox.ZOOM_FIELD_NUMBER, dz);
+				out.writeSInt32(OsmAndPoiBox.LEFT_FIELD_NUMBER, tx - (bx << dz));
+				out.writeSInt32(OsmAndPoiBox.TOP_FIELD_NUMBER, ty - (by << dz));
+				tiles.put(e.getKey(), e.getValue());
+				tileShifts.put(e.getKey(), new ArrayList<Integer>());
+				tileShifts.get(e.getKey()).add(out.writeFixedIntPlaceholder(OsmAndPoiBox.SHIFTTODATA_FIELD_NUMBER));
+				out.endFixedMessage(sub);
+			}
+			out.endFixedMessage(box);
+		}
+
+		writePoiNameIndex(out, tiles, tileShifts);
+
+		for (Map.Entry<Long, List<Poi>> e : tiles.entrySet()) {
+			int tx = (int) (e.getKey() >> 32);
+			int ty = (int) (e.getKey() & 0xffffffffL);
+			int data = out.startFixedMessage(OsmAndPoiIndex.POIDATA_FIELD_NUMBER);
+			for (int shift : tileShifts.get(e.getKey())) {
+				out.patchInt(shift, data - indexStart);
+			}
+			OsmAndPoiBoxData.Builder bd = OsmAndPoiBoxData.newBuilder().setZoom(POI_DATA_ZOOM).setX(tx).setY(ty);
+			int dz = BASE_POI_ZOOM - POI_DATA_ZOOM;
+			for (Poi p : e.getValue()) {
+				bd.addPoiData(OsmAndPoiBoxDataAtom.newBuilder()
+						.setDx((p.x >> (31 - BASE_POI_ZOOM)) - (tx << dz))
+						.setDy((p.y >> (31 - BASE_POI_ZOOM)) - (ty << dz))
+						.addCategories(p.category | (p.subcategory << BinaryMapPoiReaderAdapter.SHIFT_BITS_CATEGORY))
+						.setName(p.name).setId(p.id).setOpeningHours(p.openingHours));
+			}
+			out.writeRaw(bd.build().toByteArray());
+			out.endFixedMessage(data);
+		}
+		out.endFixedMessage(index);
+	}
+
+	private void writePoiNameIndex(ObfBuffer out, Map<Long, List<Poi>> tiles, Map<Long, List<Integer>> tileShifts)
+			throws IOException {
+		// name word -> tiles with poi containing it
+		Map<String, TreeSet<Long>> words = new TreeMap<String, TreeSet<Long>>();
+		for (Map.Entry<Long, List<Poi>> e : tiles.entrySet()) {
+			for (Poi p : e.getValue()) {
+				for (String w : Algorithms.splitByWordsLowercase(p.name)) {
+					if (!words.containsKey(w)) {
+						words.put(w, new TreeSet<Long>());
+					}
+					words.get(w).add(e.getKey());
+				}
+			}
+		}
+		int nameIndex = out.startFixedMessage(OsmAndPoiIndex.NAMEINDEX_FIELD_NUMBER);
+		int table = out.startFixedMessage(OsmAndPoiNameIndex.TABLE_FIELD_NUMBER);
+		List<Integer> vals = new ArrayList<Integer>();
+		for (String w : words.keySet()) {
+			out.writeString(IndexedStringTable.KEY_FIELD_NUMBER, w);
+			vals.add(out.writeFixedIntPlaceholder(IndexedStringTable.VAL_FIELD_NUMBER));
+		}
+		out.endFixedMessage(table);
+		int i = 0;
+		for (TreeSet<Long> wordTiles : words.values()) {
+			out.writeTag(OsmAndPoiNameIndex.DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.patchInt(vals.get(i++), out.position() - (table + 4));
+			List<byte[]> atoms = new ArrayList<byte[]>();
+			int len = 0;
+			for (Long tile : wordTiles) {
+				// shift is fixed32 (last field), it is patched after poi data is written
+				byte[] atom = OsmAndPoiNameIndexDataAtom.newBuilder().setZoom(POI_DATA_ZOOM)
+						.setX((int) (tile >> 32)).setY((int) (tile & 0xffffffffL)).setShiftTo(0).build().toByteArray();
+				atoms.add(atom);
+				len += out.tagSize(OsmAndPoiNameIndexData.ATOMS_FIELD_NUMBER) + ObfBuffer.varintSize(atom.length)
+						+ atom.length;
+			}
+			out.writeVarint(len);
+			int k = 0;
+			for (Long tile : wordTiles) {
+				byte[] atom = atoms.get(k++);
+				out.writeTag(OsmAndPoiNameIndexData.ATOMS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				out.writeVarint(atom.length);
+				out.writeRaw(atom);
+				tileShifts.get(tile).add(out.position() - 4);
+			}
+		}
+		out.endFixedMessage(nameIndex);
+	}
+
+	private void writeAddressIndex(ObfBuffer out) throws IOException {
+		int index = out.startFixedMessage(OsmAndStructure.ADDRESSINDEX_FIELD_NUMBER);
+		out.writeString(OsmAndAddressIndex.NAME_FIELD_NUMBER, REGION_NAME);
+		int cities = out.startFixedMessage(OsmAndAddressIndex.CITIES_FIELD_NUMBER);
+		out.writeUInt32(CitiesIndex.TYPE_FIELD_NUMBER, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+		int cityX = nodesX[size / 2];
+		int cityY = nodesY[size / 2];
+		// shift to city block is fixed32 (last field), it is patched when block is written
+		byte[] header = CityIndex.newBuilder().setCityType(0).setName(CITY_NAME).setId(1).setX(cityX).setY(cityY)
+				.setShiftToCityBlockIndex(0).build().toByteArray();
+		out.writeTag(CitiesIndex.CITIES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		int city = out.position();
+		out.writeVarint(header.length);
+		out.writeRaw(header);
+		int shiftToBlock = out.position() - 4;
+
+		// block is written to separate buffer to know its length, offsets of streets are relative to block
+		ObfBuffer block = new ObfBuffer();
+		int shiftToCity = block.writeFixedIntPlaceholder(CityBlockIndex.SHIFTTOCITYINDEX_FIELD_NUMBER);
+		List<String> streetNames = new ArrayList<String>();
+		List<int[]> streetLocations = new ArrayList<int[]>();
+		List<Integer> streetOffsets = new ArrayList<Integer>();
+		long id = 1;
+		for (int vertical = 0; vertical < 2; vertical++) {
+			for (int line = 0; line < size; line++) {
+				String name = (vertical == 1 ? "Avenue " : "Street ") + (line + 1);
+				int sx = vertical == 1 ? nodesX[line] : nodesX[size / 2];
+				int sy = vertical == 1 ? nodesY[size / 2] : nodesY[line];
+				StreetIndex.Builder street = StreetIndex.newBuilder().setId(id++).setName(name)
+						.setX((sx >> 7) - (cityX >> 7)).setY((sy >> 7) - (cityY >> 7));
+				for (int i = 0; i < size; i++) {
+					int ix = vertical == 1 ? nodesX[line] : nodesX[i];
+					int iy = vertical == 1 ? nodesY[i] : nodesY[line];
+					street.addIntersections(StreetIntersection.newBuilder()
+							.setName((vertical == 1 ? "Street " : "Avenue ") + (i + 1))
+							.setIntersectedX((ix >> 7) - (sx >> 7)).setIntersectedY((iy >> 7) - (sy >> 7)));
+				}
+				for (int i = 0; i + 1 < size; i++) {
+					int bx = vertical == 1 ? nodesX[line] : (nodesX[i] + nodesX[i + 1]) / 2;
+					int by = vertical == 1 ? (nodesY[i] + nodesY[i + 1]) / 2 : nodesY[line];
+					street.addBuildings(BuildingIndex.newBuilder().setId(id++).setName(String.valueOf(i + 1))
+							.setX((bx >> 7) - (sx >> 7)).setY((by >> 7) - (sy >> 7)));
+				}
+				block.writeTag(CityBlockIndex.STREETS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				streetOffsets.add(block.position());
+				byte[] b = street.build().toByteArray();
+				block.writeVarint(b.length);
+				block.writeRaw(b);
+				streetNames.add(name);
+				streetLocations.add(new int[] { sx, sy });
+			}
+		}
+		out.writeTag(CitiesIndex.BLOCKS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		int blockStart = out.position();
+		out.patchInt(shiftToBlock, blockStart - city);
+		block.patchInt(shiftToCity, blockStart - city);
+		out.writeVarint(block.size());
+		int blockContent = out.position();
+		block.writeTo(out);
+		out.endFixedMessage(cities);
+
+		// name word -> indexes of streets containing it
+		Map<String, List<Integer>> words = new TreeMap<String, List<Integer>>();
+		for (int i = 0; i < streetNames.size(); i++) {
+			for (String w : Algorithms.splitByWordsLowercase(streetNames.get(i))) {
+				if (!words.containsKey(w)) {
+					words.put(w, new ArrayList<Integer>());
+				}
+				words.get(w).add(i);
+			}
+		}
+		int nameIndex = out.startFixedMessage(OsmAndAddressIndex.NAMEINDEX_FIELD_NUMBER);
+		int table = out.startFixedMessage(OsmAndAddressNameIndexData.TABLE_FIELD_NUMBER);
+		List<Integer> vals = new ArrayList<Integer>();
+		for (String w : words.keySet()) {
+			out.writeString(IndexedStringTable.KEY_FIELD_NUMBER, w);
+			vals.add(out.writeFixedIntPlaceholder(IndexedStringTable.VAL_FIELD_NUMBER));
+		}
+		out.endFixedMessage(table);
+		int k = 0;
+		for (List<Integer> wordStreets : words.values()) {
+			out.writeTag(OsmAndAddressNameIndexData.ATOM_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			int fp = out.position();
+			out.patchInt(vals.get(k++), fp - (table + 4));
+			AddressNameIndexData.Builder data = AddressNameIndexData.newBuilder();
+			for (int i : wordStreets) {
+				int[] l = streetLocations.get(i);
+				data.addAtom(AddressNameIndexDataAtom.newBuilder().setName(streetNames.get(i))
+						.setType(BinaryMapAddressReaderAdapter.STREET_TYPE)
+						.addShiftToIndex(fp - (blockContent + streetOffsets.get(i)))
+						.addShiftToCityIndex(fp - city).addXy16(((l[0] >> 15) << 16) | (l[1] >> 15)));
+			}
+			byte[] b = data.build().toByteArray();
+			out.writeVarint(b.length);
+			out.writeRaw(b);
+		}
+		out.endFixedMessage(nameIndex);
+		out.endFixedMessage(index);
+	}
+
+	private static long tileKey(int x31, int y31, int zoom) {
+		return (((long) (x31 >> (31 - zoom))) << 32) | (y31 >> (31 - zoom));
+	}
+
+	private static ByteString varints(int... values) {
+		ObfBuffer b = new ObfBuffer();
+		for (int v : values) {
+			b.writeVarint(v);
+		}
+		return b.toByteString();
+	}
+
+	/**
+	 * Buffer of whole file: OBF structure uses big endian fixed32 values (lengths and shifts)
+	 * which are patched when referenced data is written.
+	 */
+	static class ObfBuffer extends ByteArrayOutputStream {
+
+		public ObfBuffer() {
+			super(1 << 16);
+		}
+
+		public int position() {
+			return count;
+		}
+
+		public ByteString toByteString() {
+			return ByteString.copyFrom(buf, 0, count);
+		}
+
+		public static int varintSize(int value) {
+			int s = 1;
+			while ((value & ~0x7f) != 0) {
+				value >>>= 7;
+				s++;
+			}
+			return s;
+		}
+
+		public int tagSize(int field) {
+			return CodedOutputStream.computeTagSize(field);
+		}
+
+		public void writeVarint(int value) {
+			while ((value & ~0x7f) != 0) {
+				write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			write(value);
+		}
+
+		public void writeVarint64(long value) {
+			while ((value & ~0x7fL) != 0) {
+				write((int) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		public void writeTag(int field, int wireType) {
+			writeVarint((field << 3) | wireType);
+		}
+
+		public void writeSInt32NoTag(int value) {
+			writeVarint((value << 1) ^ (value >> 31));
+		}
+
+		public void writeSInt32(int field, int value) {
+			writeTag(field, WireFormat.WIRETYPE_VARINT);
+			writeSInt32NoTag(value);
+		}
+
+		public void writeUInt32(int field, int value) {
+			writeTag(field, WireFormat.WIRETYPE_VARINT);
+			writeVarint(value);
+		}
+
+		public void writeInt32(int field, int value) {
+			writeTag(field, WireFormat.WIRETYPE_VARINT);
+			if (value >= 0) {
+				writeVarint(value);
+			} else {
+				writeVarint64(value);
+			}
+		}
+
+		public void writeString(int field, String value) throws IOException {
+			writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			byte[] b = value.getBytes("UTF-8");
+			writeVarint(b.length);
+			writeRaw(b);
+		}
+
+		public void writeMessage(int field, MessageLite message) {
+			writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			byte[] b = message.toByteArray();
+			writeVarint(b.length);
+			writeRaw(b);
+		}
+
+		public void writeRaw(byte[] b) {
+			write(b, 0, b.length);
+		}
+
+		public void writeInt(int value) {
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+
+		public void patchInt(int pos, int value) {
+			buf[pos] = (byte) (value >>> 24);
+			buf[pos + 1] = (byte) (value >>> 16);
+			buf[pos + 2] = (byte) (value >>> 8);
+			buf[pos + 3] = (byte) value;
+		}
+
+		/**
+		 * @return position of the value to patch
+		 */
+		public int writeFixedIntPlaceholder(int field) {
+			writeTag(field, WireFormat.WIRETYPE_FIXED32);
+			int pos = position();
+			writeInt(0);
+			return pos;
+		}
+
+		/**
+		 * @return position of the message length, message content starts 4 bytes later
+		 */
+		public int startFixedMessage(int field) {
+			writeTag(field, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+			int pos = position();
+			writeInt(0);
+			return pos;
+		}
+
+		public void endFixedMessage(int pos) {
+			patchInt(pos, position() - pos - 4);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package net.osmand.map;
+
+import net.osmand.binary.BinaryMapDataObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RegionsSpatialIndexTest {
+
+	private static final int STEP = 1 << 16;
+
+	private static BinaryMapDataObject polygon(long id, int[] coordinates) {
+		return new BinaryMapDataObject(id, coordinates, null, 0, true, new int[0], null, 0, 0);
+	}
+
+	// star shaped polygon with vertices on coarse grid to get horizontal edges and vertices on rays
+	private static BinaryMapDataObject randomPolygon(Random rnd, long id, boolean closed) {
+		int cx = (rnd.nextInt(1 << 14) + 1000) * STEP;
+		int cy = (rnd.nextInt(1 << 14) + 1000) * STEP;
+		int n = 5 + rnd.nextInt(200);
+		int[] coordinates = new int[2 * (closed ? n + 1 : n)];
+		for (int i = 0; i < n; i++) {
+			double a = 2 * Math.PI * i / n;
+			int r = (10 + rnd.nextInt(500)) * STEP;
+			coordinates[2 * i] = cx + (int) (Math.cos(a) * r) / STEP * STEP;
+			coordinates[2 * i + 1] = cy + (int) (Math.sin(a) * r) / STEP * STEP;
+		}
+		if (closed) {
+			coordinates[2 * n] = coordinates[0];
+			coordinates[2 * n + 1] = coordinates[1];
+		}
+		return polygon(id, coordinates);
+	}
+
+	@Test
+	public void testSameAsRayCasting() {
+		Random rnd = new Random(17);
+		List<BinaryMapDataObject> objects = new ArrayList<BinaryMapDataObject>();
+		for (int i = 0; i < 300; i++) {
+			objects.add(randomPolygon(rnd, i, i % 50 != 0));
+		}
+		objects.add(polygon(1000, new int[] { 5, 5 }));
+		OsmandRegions linear = new OsmandRegions();
+		RegionsSpatialIndex index = new RegionsSpatialIndex(objects);
+		Assert.assertEquals(300, index.size());
+		int found = 0;
+		for (int k = 0; k < 4000; k++) {
+			BinaryMapDataObject near = objects.get(rnd.nextInt(300));
+			int x = near.getPoint31XTile(0) + (rnd.nextInt(600) - 300) * STEP;
+			int y = near.getPoint31YTile(0) + (rnd.nextInt(600) - 300) * STEP;
+			if (k % 2 == 0) {
+				// exactly on vertex or edge lines
+				x += rnd.nextInt(3) - 1;
+				y += rnd.nextInt(3) - 1;
+			} else {
+				x += rnd.nextInt(STEP);
+				y += rnd.nextInt(STEP);
+			}
+			List<BinaryMapDataObject> expected = new ArrayList<BinaryMapDataObject>();
+			for (BinaryMapDataObject o : objects) {
+				boolean contains = linear.contain(o, x, y);
+				if (contains) {
+					expected.add(o);
+				}
+				Assert.assertEquals(contains, index.contains(o, x, y));
+			}
+			Assert.assertEquals(expected, index.query(x, y));
+			found += expected.size();
+		}
+		Assert.assertTrue(found > 1000);
+	}
+
+	@Test
+	public void testNotIndexedObject() {
+		BinaryMapDataObject square = polygon(1, new int[] { 10, 10, 20, 10, 20, 20, 10, 20, 10, 10 });
+		RegionsSpatialIndex index = new RegionsSpatialIndex(new ArrayList<BinaryMapDataObject>());
+		Assert.assertNull(index.contains(square, 15, 15));
+		Assert.assertTrue(index.query(15, 15).isEmpty());
+		List<BinaryMapDataObject> objects = new ArrayList<BinaryMapDataObject>();
+		objects.add(square);
+		index = new RegionsSpatialIndex(objects);
+		Assert.assertTrue(index.contains(square, 15, 15));
+		Assert.assertFalse(index.contains(square, 25, 15));
+		Assert.assertEquals(1, index.query(15, 15).size());
+	}
+}
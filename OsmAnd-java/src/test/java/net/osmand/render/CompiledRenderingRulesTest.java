@@ -0,0 +1,148 @@
+package net.osmand.render;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledRenderingRulesTest {
+
+	static final String STYLE = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<renderingStyle name=\"test\" depends=\"\" defaultColor=\"#f1eee8\" version=\"1\">\n"
+			+ "	<renderingConstant name=\"roadColor\" value=\"#ff8080\"/>\n"
+			+ "	<renderingAttribute name=\"defaultColor\">\n"
+			+ "		<case nightMode=\"true\" attrColorValue=\"#003333\"/>\n"
+			+ "		<case attrColorValue=\"#f1eee8\"/>\n"
+			+ "	</renderingAttribute>\n"
+			+ "	<renderingAttribute name=\"roadWidth\">\n"
+			+ "		<case minzoom=\"15\" attrIntValue=\"6\"/>\n"
+			+ "		<case attrIntValue=\"3\"/>\n"
+			+ "	</renderingAttribute>\n"
+			+ "	<order>\n"
+			+ "		<switch objectType=\"2\">\n"
+			+ "			<case tag=\"highway\" value=\"primary\" order=\"40\"/>\n"
+			+ "			<case tag=\"highway\" value=\"\" order=\"30\"/>\n"
+			+ "			<case tag=\"waterway\" value=\"river\" order=\"20\"/>\n"
+			+ "		</switch>\n"
+			+ "		<case tag=\"landuse\" value=\"\" objectType=\"3\" order=\"5\"/>\n"
+			+ "		<case tag=\"building\" value=\"yes\" layer=\"1\" order=\"65\"/>\n"
+			+ "		<case tag=\"building\" value=\"yes\" order=\"60\"/>\n"
+			+ "	</order>\n"
+			+ "	<line>\n"
+			+ "		<switch tag=\"highway\">\n"
+			+ "			<case value=\"primary\" minzoom=\"8\" color=\"$roadColor\" strokeWidth=\"$roadWidth\">\n"
+			+ "				<apply maxzoom=\"12\" strokeWidth=\"2\"/>\n"
+			+ "				<apply nightMode=\"true\" color=\"#804040\"/>\n"
+			+ "			</case>\n"
+			+ "			<case value=\"track\" minzoom=\"14\" maxzoom=\"16\" color=\"#996600\" strokeWidth=\"1.5\"/>\n"
+			+ "			<case value=\"construction\" disable=\"true\"/>\n"
+			+ "			<case value=\"residential\" additional=\"surface=gravel\" color=\"#aa0000\" strokeWidth=\"2\"/>\n"
+			+ "			<case value=\"\" minzoom=\"13\" color=\"#ffffff\" strokeWidth=\"1\"/>\n"
+			+ "		</switch>\n"
+			+ "		<case tag=\"waterway\" value=\"river\" minzoom=\"10\" color=\"#3030ff\" strokeWidth=\"$roadWidth\"/>\n"
+			+ "	</line>\n"
+			+ "	<polygon>\n"
+			+ "		<switch minzoom=\"10\">\n"
+			+ "			<case tag=\"landuse\" value=\"forest\" color=\"#99cc99\"/>\n"
+			+ "			<case tag=\"landuse\" value=\"grass\" color=\"#ccffcc\"/>\n"
+			+ "			<case tag=\"building\" value=\"yes\" minzoom=\"15\" color=\"$defaultColor\"/>\n"
+			+ "			<apply nightMode=\"true\" color=\"#111111\"/>\n"
+			+ "		</switch>\n"
+			+ "	</polygon>\n"
+			+ "	<point>\n"
+			+ "		<case tag=\"amenity\" value=\"cafe\" minzoom=\"16\" icon=\"cafe\"/>\n"
+			+ "		<case tag=\"amenity\" value=\"\" minzoom=\"17\" icon=\"dot\"/>\n"
+			+ "	</point>\n"
+			+ "	<text>\n"
+			+ "		<switch tag=\"highway\" minzoom=\"13\">\n"
+			+ "			<case value=\"primary\" textSize=\"12\" textColor=\"#000000\"/>\n"
+			+ "			<case value=\"\" textSize=\"10\" textColor=\"#333333\"/>\n"
+			+ "		</switch>\n"
+			+ "		<case tag=\"amenity\" value=\"\" minzoom=\"17\" textSize=\"11\"/>\n"
+			+ "	</text>\n"
+			+ "</renderingStyle>\n";
+
+	static final String[][] TAG_VALUES = { { "highway", "primary" }, { "highway", "track" },
+			{ "highway", "construction" }, { "highway", "residential" }, { "waterway", "river" },
+			{ "landuse", "forest" }, { "landuse", "grass" }, { "landuse", "farm" }, { "building", "yes" },
+			{ "amenity", "cafe" }, { "amenity", "bench" }, { "natural", "tree" } };
+
+	private RenderingRulesStorage storage;
+
+	@Before
+	public void setUp() throws Exception {
+		storage = new RenderingRulesStorage("test", new HashMap<String, String>());
+		storage.parseRulesFromXmlInputStream(new ByteArrayInputStream(STYLE.getBytes("UTF-8")), null);
+	}
+
+	@Test
+	public void testSameResultsAsRuleTree() {
+		CompiledRenderingRules compiled = CompiledRenderingRules.compile(storage);
+		RenderingRuleSearchRequest interpreted = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest program = new RenderingRuleSearchRequest(storage);
+		program.setCompiledRules(compiled);
+		int checks = 0;
+		int found = 0;
+		for (int state = RenderingRulesStorage.POINT_RULES; state <= RenderingRulesStorage.ORDER_RULES; state++) {
+			for (String[] tv : TAG_VALUES) {
+				for (int zoom = 5; zoom <= 19; zoom++) {
+					for (int variant = 0; variant < 8; variant++) {
+						boolean loadOutput = (variant & 4) == 0;
+						boolean f1 = search(interpreted, state, tv, zoom, variant, loadOutput);
+						boolean f2 = search(program, state, tv, zoom, variant, loadOutput);
+						String msg = state + " " + tv[0] + "=" + tv[1] + " z" + zoom + " v" + variant;
+						Assert.assertEquals(msg, f1, f2);
+						Assert.assertEquals(msg, f1, program.isFound());
+						Assert.assertArrayEquals(msg, interpreted.values, program.values);
+						Assert.assertArrayEquals(msg, interpreted.fvalues, program.fvalues, 0f);
+						checks++;
+						if (f1) {
+							found++;
+						}
+					}
+				}
+			}
+		}
+		Assert.assertTrue(found > 0 && found < checks);
+	}
+
+	@Test
+	public void testRenderingAttributes() {
+		RenderingRuleSearchRequest interpreted = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest program = new RenderingRuleSearchRequest(storage);
+		program.setCompiledRules(CompiledRenderingRules.compile(storage));
+		for (boolean night : new boolean[] { false, true }) {
+			for (String attr : new String[] { "defaultColor", "roadWidth", "missing" }) {
+				interpreted.clearState();
+				program.clearState();
+				interpreted.setBooleanFilter(storage.PROPS.R_NIGHT_MODE, night);
+				program.setBooleanFilter(storage.PROPS.R_NIGHT_MODE, night);
+				Assert.assertEquals(interpreted.searchRenderingAttribute(attr), program.searchRenderingAttribute(attr));
+				Assert.assertArrayEquals(interpreted.values, program.values);
+				Assert.assertArrayEquals(interpreted.fvalues, program.fvalues, 0f);
+			}
+		}
+		program.clearState();
+		Assert.assertTrue(program.searchRenderingAttribute("defaultColor"));
+		Assert.assertEquals(0xfff1eee8, program.getIntPropertyValue(storage.PROPS.R_ATTR_COLOR_VALUE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOtherStorage() throws Exception {
+		RenderingRulesStorage other = new RenderingRulesStorage("other", new HashMap<String, String>());
+		other.parseRulesFromXmlInputStream(new ByteArrayInputStream(STYLE.getBytes("UTF-8")), null);
+		new RenderingRuleSearchRequest(storage).setCompiledRules(CompiledRenderingRules.compile(other));
+	}
+
+	private boolean search(RenderingRuleSearchRequest req, int state, String[] tv, int zoom, int variant,
+			boolean loadOutput) {
+		req.setInitialTagValueZoom(tv[0], tv[1], zoom, null);
+		req.setIntFilter(storage.PROPS.R_LAYER, variant & 1);
+		req.setBooleanFilter(storage.PROPS.R_NIGHT_MODE, (variant & 2) != 0);
+		req.setIntFilter(storage.PROPS.R_OBJECT_TYPE, 1 + variant % 3);
+		req.setStringFilter(storage.PROPS.R_ADDITIONAL, (variant & 1) != 0 ? "surface=gravel;lit=yes;" : "");
+		return req.search(state, loadOutput);
+	}
+}
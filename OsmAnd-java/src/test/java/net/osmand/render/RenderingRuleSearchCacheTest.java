@@ -0,0 +1,92 @@
+package net.osmand.render;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderingRuleSearchCacheTest {
+
+	private RenderingRulesStorage storage;
+
+	@Before
+	public void setUp() throws Exception {
+		storage = new RenderingRulesStorage("test", new HashMap<String, String>());
+		storage.parseRulesFromXmlInputStream(
+				new ByteArrayInputStream(CompiledRenderingRulesTest.STYLE.getBytes("UTF-8")), null);
+	}
+
+	@Test
+	public void testSameResultsAsRules() {
+		RenderingRuleSearchRequest plain = new RenderingRuleSearchRequest(storage);
+		RenderingRuleSearchRequest cached = new RenderingRuleSearchRequest(storage);
+		cached.setSearchCache(new RenderingRuleSearchCache(storage, 64));
+		for (int pass = 0; pass < 2; pass++) {
+			for (int state = RenderingRulesStorage.POINT_RULES; state <= RenderingRulesStorage.ORDER_RULES; state++) {
+				for (String[] tv : CompiledRenderingRulesTest.TAG_VALUES) {
+					for (int zoom = 12; zoom <= 16; zoom++) {
+						for (int variant = 0; variant < 4; variant++) {
+							boolean f1 = search(plain, state, tv, zoom, variant);
+							boolean f2 = search(cached, state, tv, zoom, variant);
+							String msg = state + " " + tv[0] + "=" + tv[1] + " z" + zoom + " v" + variant;
+							Assert.assertEquals(msg, f1, f2);
+							Assert.assertEquals(msg, f1, cached.isFound());
+							Assert.assertArrayEquals(msg, plain.values, cached.values);
+							Assert.assertArrayEquals(msg, plain.fvalues, cached.fvalues, 0f);
+						}
+					}
+				}
+			}
+		}
+		RenderingRuleSearchCache cache = cached.getSearchCache();
+		Assert.assertEquals(64, cache.size());
+		Assert.assertTrue(cache.getMisses() > 64);
+	}
+
+	@Test
+	public void testRepeatedSearchHitsCache() {
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		req.setSearchCache(storage.getSearchCache());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(search(req, RenderingRulesStorage.LINE_RULES, new String[] { "highway", "primary" }, 15, 2));
+			Assert.assertEquals(0xff804040, req.getIntPropertyValue(storage.PROPS.R_COLOR));
+			req.clearState();
+			Assert.assertTrue(req.searchRenderingAttribute("defaultColor"));
+			Assert.assertEquals(0xfff1eee8, req.getIntPropertyValue(storage.PROPS.R_ATTR_COLOR_VALUE));
+		}
+		Assert.assertEquals(2, storage.getSearchCache().getMisses());
+		Assert.assertEquals(18, storage.getSearchCache().getHits());
+	}
+
+	@Test
+	public void testClearedWhenRulesChange() throws Exception {
+		RenderingRuleSearchRequest req = new RenderingRuleSearchRequest(storage);
+		req.setSearchCache(storage.getSearchCache());
+		String[] tv = { "natural", "tree" };
+		Assert.assertFalse(search(req, RenderingRulesStorage.POINT_RULES, tv, 16, 0));
+		Assert.assertEquals(1, storage.getSearchCache().size());
+
+		Map<String, String> attrs = new HashMap<String, String>();
+		attrs.put("tag", "natural");
+		attrs.put("value", "tree");
+		attrs.put("icon", "tree");
+		RenderingRule rule = new RenderingRule(attrs, false, storage);
+		rule.storeAttributes(attrs);
+		storage.registerTopLevel(rule, null, Collections.<String, String>emptyMap(), RenderingRulesStorage.POINT_RULES,
+				false);
+		Assert.assertEquals(0, storage.getSearchCache().size());
+		Assert.assertTrue(search(req, RenderingRulesStorage.POINT_RULES, tv, 16, 0));
+	}
+
+	private boolean search(RenderingRuleSearchRequest req, int state, String[] tv, int zoom, int variant) {
+		req.setInitialTagValueZoom(tv[0], tv[1], zoom, null);
+		req.setBooleanFilter(storage.PROPS.R_NIGHT_MODE, (variant & 2) != 0);
+		req.setIntFilter(storage.PROPS.R_OBJECT_TYPE, 2);
+		req.setStringFilter(storage.PROPS.R_ADDITIONAL, (variant & 1) != 0 ? "surface=gravel;" : "");
+		return req.search(state);
+	}
+}
@@ -0,0 +1,108 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class BinaryRoutePlannerParallelTest {
+
+	private static final int CITY_SIZE = 48;
+
+	private static SyntheticObfWriter city;
+	private static File file;
+	private static BinaryMapIndexReader[] readers;
+
+	@BeforeClass
+	public static void writeCity() throws Exception {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, CITY_SIZE, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+	}
+
+	@AfterClass
+	public static void deleteCity() throws Exception {
+		readers[0].close();
+		file.delete();
+	}
+
+	private static List<RouteSegmentResult> searchRoute(boolean parallel, LatLon start, LatLon end) throws Exception {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		config.parallelBidirectionalSearch = parallel;
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+				RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+		List<RouteSegmentResult> res = new RoutePlannerFrontEnd().searchRoute(ctx, start, end,
+				Collections.<LatLon>emptyList());
+		Assert.assertNotNull(res);
+		Assert.assertFalse(res.isEmpty());
+		return res;
+	}
+
+	private static float getRouteTime(List<RouteSegmentResult> route) {
+		float time = 0;
+		for (RouteSegmentResult r : route) {
+			time += r.getSegmentTime();
+		}
+		return time;
+	}
+
+	private static List<String> getRoads(List<RouteSegmentResult> route) {
+		List<String> roads = new ArrayList<String>();
+		for (RouteSegmentResult r : route) {
+			roads.add(r.getObject().getId() + ":" + r.getStartPointIndex() + "-" + r.getEndPointIndex());
+		}
+		return roads;
+	}
+
+	@Test
+	public void testSameRouteAlongPrimaryRoad() throws Exception {
+		// primary road is the only fastest route, so both searches find the same roads wherever they meet
+		Random rnd = new Random(1);
+		for (int i = 0; i < 10; i++) {
+			int line = 8 * (1 + rnd.nextInt(CITY_SIZE / 8 - 1));
+			int from = 1 + rnd.nextInt(CITY_SIZE - 2);
+			int to = 1 + rnd.nextInt(CITY_SIZE - 2);
+			if (from == to) {
+				continue;
+			}
+			boolean column = rnd.nextBoolean();
+			LatLon start = column ? city.getNode(from, line) : city.getNode(line, from);
+			LatLon end = column ? city.getNode(to, line) : city.getNode(line, to);
+			List<RouteSegmentResult> sequential = searchRoute(false, start, end);
+			List<RouteSegmentResult> parallel = searchRoute(true, start, end);
+			Assert.assertEquals(start + " " + end, getRoads(sequential), getRoads(parallel));
+			Assert.assertEquals(getRouteTime(sequential), getRouteTime(parallel), 0.01);
+		}
+	}
+
+	@Test
+	public void testSameRouteTime() throws Exception {
+		// grid has many alternatives of the same cost, parallel search still stops on the same final segment
+		Random rnd = new Random(2);
+		for (int i = 0; i < 60; i++) {
+			LatLon start = city.getNode(1 + rnd.nextInt(CITY_SIZE - 2), 1 + rnd.nextInt(CITY_SIZE - 2));
+			LatLon end = city.getNode(1 + rnd.nextInt(CITY_SIZE - 2), 1 + rnd.nextInt(CITY_SIZE - 2));
+			List<RouteSegmentResult> sequential = searchRoute(false, start, end);
+			List<RouteSegmentResult> parallel = searchRoute(true, start, end);
+			Assert.assertEquals(start + " " + end, getRouteTime(sequential), getRouteTime(parallel), 0.01);
+			Assert.assertEquals(start + " " + end, getRoads(sequential), getRoads(parallel));
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class CompactRouteTileTest {
+
+	private static final int CITY_SIZE = 48;
+
+	private static SyntheticObfWriter city;
+	private static File file;
+	private static BinaryMapIndexReader[] readers;
+
+	@BeforeClass
+	public static void writeCity() throws Exception {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, CITY_SIZE, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+	}
+
+	@AfterClass
+	public static void deleteCity() throws Exception {
+		readers[0].close();
+		file.delete();
+	}
+
+	private static RoutingContext buildContext(boolean useCompactTiles) {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		config.useCompactTiles = useCompactTiles;
+		return new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers, RouteCalculationMode.NORMAL);
+	}
+
+	private static List<Long> loadRoads(boolean useCompactTiles, LatLon l) {
+		RoutingContext ctx = buildContext(useCompactTiles);
+		int x31 = MapUtils.get31TileNumberX(l.getLongitude());
+		int y31 = MapUtils.get31TileNumberY(l.getLatitude());
+		// tiles are loaded by first search and read again from loaded tiles
+		ctx.loadTileData(x31, y31, 16, new ArrayList<RouteDataObject>());
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		ctx.loadTileData(x31, y31, 16, roads);
+		List<Long> ids = new ArrayList<Long>();
+		for (RouteDataObject ro : roads) {
+			ids.add(ro.getId());
+		}
+		return ids;
+	}
+
+	private static String searchRoute(boolean useCompactTiles, LatLon start, LatLon end) throws Exception {
+		RoutingContext ctx = buildContext(useCompactTiles);
+		List<RouteSegmentResult> route = new RoutePlannerFrontEnd().searchRoute(ctx, start, end,
+				Collections.<LatLon>emptyList());
+		Assert.assertNotNull(route);
+		StringBuilder sb = new StringBuilder();
+		float time = 0;
+		for (RouteSegmentResult r : route) {
+			sb.append(r.getObject().getId()).append(':').append(r.getStartPointIndex()).append('-')
+					.append(r.getEndPointIndex()).append(' ');
+			time += r.getSegmentTime();
+		}
+		return time + " " + ctx.finalRouteSegment.distanceFromStart + " " + sb;
+	}
+
+	private static List<Long> loadAllObjects(RoutingContext.RoutingSubregionTile tile) {
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		tile.loadAllObjects(roads, null, new TLongObjectHashMap<RouteDataObject>());
+		List<Long> ids = new ArrayList<Long>();
+		for (RouteDataObject ro : roads) {
+			ids.add(ro.getId());
+		}
+		return ids;
+	}
+
+	@Test
+	public void testSameOrderAsRegularTile() {
+		// roads share points, regular tile returns them in hash order of points
+		RoutingContext.RoutingSubregionTile regular = new RoutingContext.RoutingSubregionTile(null);
+		RoutingContext.RoutingSubregionTile compact = new RoutingContext.RoutingSubregionTile(null);
+		regular.setLoadedNonNative(false);
+		compact.setLoadedNonNative(true);
+		Random rnd = new Random(3);
+		for (int i = 0; i < 500; i++) {
+			RouteDataObject ro = new RouteDataObject((BinaryMapRouteReaderAdapter.RouteRegion) null);
+			ro.id = i + 1;
+			int len = 2 + rnd.nextInt(5);
+			ro.pointsX = new int[len];
+			ro.pointsY = new int[len];
+			for (int k = 0; k < len; k++) {
+				ro.pointsX[k] = (1 << 30) + rnd.nextInt(40) * 1000;
+				ro.pointsY[k] = (1 << 29) + rnd.nextInt(40) * 1000;
+			}
+			regular.add(ro);
+			compact.add(ro);
+		}
+		List<Long> roads = loadAllObjects(regular);
+		Assert.assertEquals(500, roads.size());
+		Assert.assertEquals(roads, loadAllObjects(compact));
+	}
+
+	@Test
+	public void testSameRoadsOrder() throws Exception {
+		Random rnd = new Random(1);
+		for (int i = 0; i < 5; i++) {
+			LatLon l = city.getNode(1 + rnd.nextInt(CITY_SIZE - 2), 1 + rnd.nextInt(CITY_SIZE - 2));
+			List<Long> roads = loadRoads(false, l);
+			Assert.assertFalse(roads.isEmpty());
+			Assert.assertEquals(l.toString(), roads, loadRoads(true, l));
+		}
+	}
+
+	@Test
+	public void testSameRoutes() throws Exception {
+		// grid has many alternatives of the same cost, so any difference of roads order would change route
+		Random rnd = new Random(2);
+		for (int i = 0; i < 12; i++) {
+			LatLon start = city.getNode(1 + rnd.nextInt(CITY_SIZE - 2), 1 + rnd.nextInt(CITY_SIZE - 2));
+			LatLon end = city.getNode(1 + rnd.nextInt(CITY_SIZE - 2), 1 + rnd.nextInt(CITY_SIZE - 2));
+			Assert.assertEquals(start + " " + end, searchRoute(false, start, end), searchRoute(true, start, end));
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package net.osmand.router;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import gnu.trove.list.array.TIntArrayList;
+
+public class ContractionHierarchyTest {
+
+	private static final int SIZE = 20;
+
+	private long[] keys;
+	private List<float[]> edges;
+
+	// grid with random weights, some one way edges and missing edges
+	private ContractionHierarchy buildGrid(long seed) {
+		Random rnd = new Random(seed);
+		int nodes = SIZE * SIZE;
+		keys = new long[nodes];
+		for (int i = 0; i < nodes; i++) {
+			keys[i] = i;
+		}
+		edges = new ArrayList<float[]>();
+		ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder(null, "test");
+		builder.initNodes(keys);
+		for (int r = 0; r < SIZE; r++) {
+			for (int c = 0; c < SIZE; c++) {
+				int n = r * SIZE + c;
+				if (c + 1 < SIZE) {
+					addRoad(builder, rnd, n, n + 1);
+				}
+				if (r + 1 < SIZE) {
+					addRoad(builder, rnd, n, n + SIZE);
+				}
+			}
+		}
+		return builder.buildHierarchy();
+	}
+
+	private void addRoad(ContractionHierarchyBuilder builder, Random rnd, int a, int b) {
+		int kind = rnd.nextInt(10);
+		float w = 1 + rnd.nextInt(100);
+		if (kind == 0) {
+			return;
+		}
+		if (kind != 1) {
+			builder.addEdge(a, b, w, -1, -1);
+			edges.add(new float[] { a, b, w });
+		}
+		if (kind != 2) {
+			builder.addEdge(b, a, w, -1, -1);
+			edges.add(new float[] { b, a, w });
+		}
+	}
+
+	private float dijkstra(int start, int end) {
+		final float[] dist = new float[keys.length];
+		Arrays.fill(dist, Float.POSITIVE_INFINITY);
+		dist[start] = 0;
+		PriorityQueue<float[]> queue = new PriorityQueue<float[]>(16, new Comparator<float[]>() {
+			@Override
+			public int compare(float[] o1, float[] o2) {
+				return Float.compare(o1[1], o2[1]);
+			}
+		});
+		queue.add(new float[] { start, 0 });
+		while (!queue.isEmpty()) {
+			float[] p = queue.poll();
+			int n = (int) p[0];
+			if (p[1] > dist[n]) {
+				continue;
+			}
+			for (float[] e : edges) {
+				if ((int) e[0] == n && dist[n] + e[2] < dist[(int) e[1]]) {
+					dist[(int) e[1]] = dist[n] + e[2];
+					queue.add(new float[] { e[1], dist[(int) e[1]] });
+				}
+			}
+		}
+		return dist[end] == Float.POSITIVE_INFINITY ? -1 : dist[end];
+	}
+
+	@Test
+	public void testShortestDistances() {
+		ContractionHierarchy ch = buildGrid(7);
+		Assert.assertTrue(ch.getShortcutsCount() > 0);
+		Random rnd = new Random(3);
+		for (int i = 0; i < 200; i++) {
+			int s = rnd.nextInt(keys.length);
+			int e = rnd.nextInt(keys.length);
+			Assert.assertEquals("Route " + s + " -> " + e, dijkstra(s, e), ch.calculateDistance(s, e), 0.01);
+		}
+	}
+
+	@Test
+	public void testUnpackedPath() {
+		ContractionHierarchy ch = buildGrid(11);
+		Random rnd = new Random(5);
+		for (int i = 0; i < 100; i++) {
+			int s = rnd.nextInt(keys.length);
+			int e = rnd.nextInt(keys.length);
+			TIntArrayList path = ch.findPath(s, e);
+			if (path == null) {
+				Assert.assertEquals(-1, dijkstra(s, e), 0);
+				continue;
+			}
+			float sum = 0;
+			int node = s;
+			for (int j = 0; j < path.size(); j++) {
+				int edge = path.get(j);
+				Assert.assertTrue(ch.edgeChild1[edge] < 0);
+				Assert.assertEquals(node, ch.edgeFrom[edge]);
+				node = ch.edgeTo[edge];
+				sum += ch.edgeWeight[edge];
+			}
+			Assert.assertEquals(e, node);
+			Assert.assertEquals(ch.calculateDistance(s, e), sum, 0.01);
+		}
+	}
+
+	@Test
+	public void testSidecarFile() throws IOException {
+		ContractionHierarchy ch = buildGrid(13);
+		File f = File.createTempFile("test", ".ch.osmand");
+		try {
+			ch.writeToFile(f);
+			ContractionHierarchy read = ContractionHierarchy.readFromFile(f);
+			Assert.assertEquals(ch.getNodesCount(), read.getNodesCount());
+			Assert.assertEquals(ch.getEdgesCount(), read.getEdgesCount());
+			Assert.assertTrue(read.isValidFor("test", new ArrayList<File>()));
+			Assert.assertFalse(read.isValidFor("car", new ArrayList<File>()));
+			Random rnd = new Random(17);
+			for (int i = 0; i < 50; i++) {
+				int s = rnd.nextInt(keys.length);
+				int e = rnd.nextInt(keys.length);
+				Assert.assertEquals(ch.calculateDistance(s, e), read.calculateDistance(s, e), 0);
+			}
+		} finally {
+			f.delete();
+		}
+	}
+}
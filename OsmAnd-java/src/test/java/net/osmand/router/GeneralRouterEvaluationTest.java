@@ -0,0 +1,116 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+
+public class GeneralRouterEvaluationTest {
+
+	private static final String PROFILE = "<osmand_routing_config defaultProfile=\"car\">"
+			+ "<routingProfile name=\"car\" baseProfile=\"car\" minDefaultSpeed=\"5\" maxDefaultSpeed=\"100\">"
+			+ "<way attribute=\"access\"><select value=\"-1\" t=\"highway\" v=\"footway\"/></way>"
+			+ "<way attribute=\"oneway\"><select value=\"1\" t=\"oneway\" v=\"yes\"/></way>"
+			+ "<way attribute=\"speed\" type=\"speed\">"
+			+ "<select value=\"110\" t=\"highway\" v=\"motorway\"/>"
+			+ "<select value=\"10\" t=\"highway\" v=\"residential\"/>"
+			+ "</way>"
+			+ "<way attribute=\"priority\"><select value=\"1.5\" t=\"highway\" v=\"motorway\"/></way>"
+			+ "<point attribute=\"obstacle\"><select value=\"25\" t=\"highway\" v=\"traffic_signals\"/></point>"
+			+ "</routingProfile>"
+			+ "</osmand_routing_config>";
+
+	private GeneralRouter router;
+	private RouteRegion region;
+
+	@Before
+	public void setUp() throws Exception {
+		RoutingConfiguration.Builder builder = RoutingConfiguration.parseFromInputStream(
+				new ByteArrayInputStream(PROFILE.getBytes("UTF-8")));
+		router = builder.getRouter("car").build(new HashMap<String, String>());
+		region = new RouteRegion();
+		region.initRouteEncodingRule(0, "highway", "motorway");
+		region.initRouteEncodingRule(1, "highway", "residential");
+		region.initRouteEncodingRule(2, "highway", "footway");
+		region.initRouteEncodingRule(3, "oneway", "yes");
+		region.initRouteEncodingRule(4, "highway", "traffic_signals");
+	}
+
+	private RouteDataObject road(int... types) {
+		RouteDataObject ro = new RouteDataObject(region);
+		ro.types = types;
+		ro.pointsX = new int[] { 0, 100, 200 };
+		ro.pointsY = new int[] { 0, 100, 200 };
+		return ro;
+	}
+
+	@Test
+	public void testRoadAttributes() {
+		RouteDataObject motorway = road(0, 3);
+		RouteDataObject residential = road(1);
+		RouteDataObject footway = road(2);
+		for (int i = 0; i < 2; i++) {
+			Assert.assertTrue(router.acceptLine(motorway));
+			Assert.assertFalse(router.acceptLine(footway));
+			Assert.assertEquals(1, router.isOneWay(motorway));
+			Assert.assertEquals(0, router.isOneWay(residential));
+			// speeds in m/s, routing speed is limited by max speed
+			Assert.assertEquals(100 / 3.6f, router.defineRoutingSpeed(motorway), 0.001);
+			Assert.assertEquals(100 / 3.6f, router.defineVehicleSpeed(motorway), 0.001);
+			Assert.assertEquals(10 / 3.6f, router.defineRoutingSpeed(residential), 0.001);
+			Assert.assertEquals(1.5f, router.defineSpeedPriority(motorway), 0);
+			Assert.assertEquals(1f, router.defineSpeedPriority(residential), 0);
+		}
+	}
+
+	@Test
+	public void testShortestWaySpeed() {
+		HashMap<String, String> params = new HashMap<String, String>();
+		params.put(GeneralRouter.USE_SHORTEST_WAY, "true");
+		GeneralRouter shortest = router.build(params);
+		RouteDataObject motorway = road(0, 3);
+		for (int i = 0; i < 2; i++) {
+			// routing and vehicle speeds have different limits, but share evaluated value
+			Assert.assertEquals(55 / 3.6f, shortest.defineRoutingSpeed(motorway), 0.001);
+			Assert.assertEquals(100 / 3.6f, shortest.defineVehicleSpeed(motorway), 0.001);
+		}
+	}
+
+	@Test
+	public void testTypesIds() {
+		RouteDataObject r1 = road(0, 3);
+		RouteDataObject r2 = road(0, 3);
+		RouteDataObject r3 = road(3, 0);
+		Assert.assertEquals(r1.getTypesId(), r2.getTypesId());
+		Assert.assertNotEquals(r1.getTypesId(), r3.getTypesId());
+		// replaced types array is interned again
+		r2.types = new int[] { 1 };
+		Assert.assertNotEquals(r1.getTypesId(), r2.getTypesId());
+		Assert.assertEquals(0, router.isOneWay(r2));
+		Assert.assertEquals(10 / 3.6f, router.defineRoutingSpeed(r2), 0.001);
+	}
+
+	@Test
+	public void testPointObstacles() {
+		RouteDataObject ro = road(1);
+		ro.setPointTypes(1, new int[] { 4 });
+		Assert.assertEquals(0, router.defineRoutingObstacle(ro, 0, true), 0);
+		Assert.assertEquals(25, router.defineRoutingObstacle(ro, 1, true), 0);
+		Assert.assertEquals(25, router.defineRoutingObstacle(ro, 1, false), 0);
+		ro.setPointTypes(1, new int[] { 1 });
+		Assert.assertEquals(0, router.defineRoutingObstacle(ro, 1, true), 0);
+	}
+
+	@Test
+	public void testParallelCopy() {
+		RouteDataObject motorway = road(0, 3);
+		GeneralRouter copy = router.copyForParallelUse();
+		Assert.assertEquals(router.defineRoutingSpeed(motorway), copy.defineRoutingSpeed(motorway), 0);
+		Assert.assertEquals(router.isOneWay(motorway), copy.isOneWay(motorway));
+	}
+}
@@ -0,0 +1,139 @@
+package net.osmand.router;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class GpxMapMatcherTest {
+
+	private static final int CITY_SIZE = 32;
+	private static final double POINTS_STEP = 20;
+	private static final double GPS_NOISE = 8;
+
+	private static SyntheticObfWriter city;
+	private static File file;
+	private static BinaryMapIndexReader[] readers;
+
+	@BeforeClass
+	public static void writeCity() throws Exception {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, CITY_SIZE, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+	}
+
+	@AfterClass
+	public static void deleteCity() throws Exception {
+		readers[0].close();
+		file.delete();
+	}
+
+	private static RoutingContext buildContext() {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		return new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers, RouteCalculationMode.NORMAL);
+	}
+
+	// points of route every 20 m moved by gaussian gps noise
+	private static List<LatLon> generateTrack(List<RouteSegmentResult> route, Random rnd) {
+		List<LatLon> track = new ArrayList<LatLon>();
+		for (RouteSegmentResult s : route) {
+			int d = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += d) {
+				LatLon from = s.getPoint(i);
+				LatLon to = s.getPoint(i + d);
+				int steps = (int) Math.ceil(MapUtils.getDistance(from, to) / POINTS_STEP);
+				for (int k = 0; k < steps; k++) {
+					double lat = from.getLatitude() + (to.getLatitude() - from.getLatitude()) * k / steps;
+					double lon = from.getLongitude() + (to.getLongitude() - from.getLongitude()) * k / steps;
+					track.add(MapUtils.rhumbDestinationPoint(new LatLon(lat, lon), GPS_NOISE * Math.abs(rnd.nextGaussian()),
+							rnd.nextDouble() * 360));
+				}
+			}
+		}
+		track.add(route.get(route.size() - 1).getEndPoint());
+		return track;
+	}
+
+	// length of route geometry (distance of segments split by preparation is not exact)
+	private static double getDistance(List<RouteSegmentResult> route) {
+		double dist = 0;
+		for (RouteSegmentResult s : route) {
+			int d = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += d) {
+				dist += MapUtils.getDistance(s.getPoint(i), s.getPoint(i + d));
+			}
+		}
+		return dist;
+	}
+
+	// roads in order of route, straight lines are skipped
+	private static List<Long> getRoads(List<RouteSegmentResult> route) {
+		List<Long> roads = new ArrayList<Long>();
+		for (RouteSegmentResult s : route) {
+			long id = s.getObject().getId();
+			if (id != -1 && (roads.isEmpty() || roads.get(roads.size() - 1) != id)) {
+				roads.add(id);
+			}
+		}
+		return roads;
+	}
+
+	// route starts and ends between crossings, so the first and last points are not close to other roads
+	private static LatLon getStreetMiddle(Random rnd) {
+		int row = 2 + rnd.nextInt(CITY_SIZE - 4);
+		int col = 2 + rnd.nextInt(CITY_SIZE - 4);
+		LatLon a = city.getNode(row, col);
+		LatLon b = rnd.nextBoolean() ? city.getNode(row + 1, col) : city.getNode(row, col + 1);
+		return new LatLon((a.getLatitude() + b.getLatitude()) / 2, (a.getLongitude() + b.getLongitude()) / 2);
+	}
+
+	@Test
+	public void testNoisyTrackMatchesRoute() throws Exception {
+		Random rnd = new Random(1);
+		for (int i = 0; i < 5; i++) {
+			LatLon start = getStreetMiddle(rnd);
+			LatLon end = getStreetMiddle(rnd);
+			if (MapUtils.getDistance(start, end) < 500) {
+				continue;
+			}
+			List<RouteSegmentResult> route = new RoutePlannerFrontEnd().searchRoute(buildContext(), start, end,
+					Collections.<LatLon>emptyList());
+			List<LatLon> track = generateTrack(route, rnd);
+
+			RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+			frontEnd.setUseNativeApproximation(false);
+			frontEnd.setUseMapMatchingApproximation(true);
+			GpxRouteApproximation gctx = new GpxRouteApproximation(buildContext());
+			List<GpxPoint> points = frontEnd.generateGpxPoints(gctx, new LocationsHolder(track));
+			gctx = frontEnd.searchGpxRoute(gctx, points, null);
+
+			String msg = start + " " + end;
+			Assert.assertEquals(msg, getRoads(route), getRoads(gctx.result));
+			Assert.assertEquals(msg, 0, gctx.routeDistanceUnmatched);
+			double dist = getDistance(route);
+			Assert.assertEquals(msg, dist, getDistance(gctx.result), Math.max(2 * POINTS_STEP, dist * 0.02));
+		}
+	}
+}
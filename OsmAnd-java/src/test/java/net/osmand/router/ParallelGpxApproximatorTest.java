@@ -0,0 +1,162 @@
+package net.osmand.router;
+
+import net.osmand.LocationsHolder;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.GpxPoint;
+import net.osmand.router.RoutePlannerFrontEnd.GpxRouteApproximation;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.DirectionPoint;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ParallelGpxApproximatorTest {
+
+	private static final int CITY_SIZE = 48;
+	private static final double POINTS_STEP = 20;
+
+	private static SyntheticObfWriter city;
+	private static File file;
+	private static BinaryMapIndexReader[] readers;
+	private static List<LatLon> track;
+	private static double trackDistance;
+
+	@BeforeClass
+	public static void writeCity() throws Exception {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, CITY_SIZE, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+		// track follows primary roads through the whole city (the only fastest way) with point every 20 m
+		track = new ArrayList<LatLon>();
+		addTrackLine(city.getNode(8, 2), city.getNode(8, 40));
+		addTrackLine(city.getNode(8, 40), city.getNode(40, 40));
+		addTrackLine(city.getNode(40, 40), city.getNode(40, CITY_SIZE - 3));
+		track.add(city.getNode(40, CITY_SIZE - 3));
+	}
+
+	private static void addTrackLine(LatLon from, LatLon to) {
+		double dist = MapUtils.getDistance(from, to);
+		int steps = (int) Math.ceil(dist / POINTS_STEP);
+		for (int k = 0; k < steps; k++) {
+			track.add(new LatLon(from.getLatitude() + (to.getLatitude() - from.getLatitude()) * k / steps,
+					from.getLongitude() + (to.getLongitude() - from.getLongitude()) * k / steps));
+		}
+		trackDistance += dist;
+	}
+
+	@AfterClass
+	public static void deleteCity() throws Exception {
+		readers[0].close();
+		file.delete();
+	}
+
+	private static RoutingContext buildContext(BinaryMapIndexReader[] readers) {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		return new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers, RouteCalculationMode.NORMAL);
+	}
+
+	private static GpxRouteApproximation approximate(BinaryMapIndexReader[] readers, int threads) throws Exception {
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd();
+		frontEnd.setUseNativeApproximation(false);
+		GpxRouteApproximation gctx = new GpxRouteApproximation(buildContext(readers));
+		List<GpxPoint> points = frontEnd.generateGpxPoints(gctx, new LocationsHolder(track));
+		if (threads == 0) {
+			return frontEnd.searchGpxRoute(gctx, points, null);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			ParallelGpxApproximator approximator = new ParallelGpxApproximator(frontEnd, executor);
+			approximator.chunkDistance = 1500;
+			approximator.overlapDistance = 300;
+			return approximator.searchGpxRoute(gctx, points, null);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	// length of route geometry (distance of segments split by preparation is not exact)
+	private static double getDistance(List<RouteSegmentResult> route) {
+		double dist = 0;
+		for (RouteSegmentResult s : route) {
+			int d = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += d) {
+				dist += MapUtils.getDistance(s.getPoint(i), s.getPoint(i + d));
+			}
+		}
+		return dist;
+	}
+
+	private static List<String> getRoads(List<RouteSegmentResult> route) {
+		List<String> roads = new ArrayList<String>();
+		for (RouteSegmentResult r : route) {
+			roads.add(r.getObject().getId() + ":" + r.getStartPointIndex() + "-" + r.getEndPointIndex());
+		}
+		return roads;
+	}
+
+	@Test
+	public void testStitchedRouteIsConnected() throws Exception {
+		GpxRouteApproximation sequential = approximate(readers, 0);
+		GpxRouteApproximation parallel = approximate(readers, 3);
+		Assert.assertTrue(getDistance(parallel.result) > 5000);
+		// chunks are stitched at common road points without straight lines
+		Assert.assertEquals(0, parallel.routeGapDistance);
+		Assert.assertEquals(0, parallel.routeDistanceUnmatched);
+		for (int i = 1; i < parallel.result.size(); i++) {
+			LatLon end = parallel.result.get(i - 1).getEndPoint();
+			LatLon start = parallel.result.get(i).getStartPoint();
+			Assert.assertTrue(i + " " + end + " " + start, MapUtils.getDistance(end, start) < 1);
+		}
+		Assert.assertEquals(MapUtils.getDistance(track.get(0), parallel.result.get(0).getStartPoint()), 0, 1);
+		Assert.assertEquals(MapUtils.getDistance(track.get(track.size() - 1),
+				parallel.result.get(parallel.result.size() - 1).getEndPoint()), 0, 1);
+		Assert.assertEquals(trackDistance, getDistance(sequential.result), trackDistance * 0.01);
+		Assert.assertEquals(trackDistance, getDistance(parallel.result), trackDistance * 0.01);
+	}
+
+	@Test
+	public void testSameResultForAnyThreads() throws Exception {
+		List<String> roads = getRoads(approximate(readers, 1).result);
+		Assert.assertEquals(roads, getRoads(approximate(readers, 4).result));
+	}
+
+	@Test
+	public void testSharedRulesAreNotChangedByChunks() throws Exception {
+		// own reader, so region rules are not changed by other tests
+		BinaryMapIndexReader[] fileReaders = new BinaryMapIndexReader[] {
+				new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			RouteRegion reg = fileReaders[0].getRoutingIndexes().get(0);
+			new ParallelGpxApproximator(new RoutePlannerFrontEnd(), executor).prepareSharedData(buildContext(fileReaders));
+			Assert.assertTrue(reg.searchRouteEncodingRule(DirectionPoint.TAG, DirectionPoint.DELETE_TYPE) >= 0);
+			Assert.assertTrue(reg.searchRouteEncodingRule(DirectionPoint.TAG, DirectionPoint.CREATE_TYPE) >= 0);
+			// types used by loading and preparation of chunks already exist, so rules are only read by chunks
+			int rules = reg.routeEncodingRules.size();
+			approximate(fileReaders, 3);
+			Assert.assertEquals(rules, reg.routeEncodingRules.size());
+		} finally {
+			executor.shutdown();
+			fileReaders[0].close();
+		}
+	}
+}
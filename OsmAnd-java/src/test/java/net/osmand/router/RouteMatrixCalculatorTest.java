@@ -0,0 +1,159 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.router.RouteMatrixCalculator.RouteMatrix;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+import net.osmand.util.MapUtils;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class RouteMatrixCalculatorTest {
+
+	private static final int CITY_SIZE = 32;
+	// routed time also includes parts of start and end segments behind the points (up to one block)
+	private static final float BLOCK_TIME = 15;
+
+	private static SyntheticObfWriter city;
+	private static File file;
+	private static BinaryMapIndexReader[] readers;
+
+	@BeforeClass
+	public static void writeCity() throws Exception {
+		city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, CITY_SIZE, SyntheticObfWriter.DEFAULT_SPACING);
+		file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		readers = new BinaryMapIndexReader[] { new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+	}
+
+	@AfterClass
+	public static void deleteCity() throws Exception {
+		readers[0].close();
+		file.delete();
+	}
+
+	private static RoutingContext buildContext() {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		// matrix doesn't count turn time
+		config.router.addAttribute("leftTurn", "0");
+		config.router.addAttribute("rightTurn", "0");
+		return new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers, RouteCalculationMode.NORMAL);
+	}
+
+	// middle of street between crossing (row, col) and the next crossing down or right
+	private static LatLon getMiddle(int row, int col, boolean down) {
+		LatLon a = city.getNode(row, col);
+		LatLon b = down ? city.getNode(row + 1, col) : city.getNode(row, col + 1);
+		return new LatLon((a.getLatitude() + b.getLatitude()) / 2, (a.getLongitude() + b.getLongitude()) / 2);
+	}
+
+	private static double getDistance(List<RouteSegmentResult> route) {
+		double dist = 0;
+		for (RouteSegmentResult s : route) {
+			int d = s.isForwardDirection() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += d) {
+				dist += MapUtils.getDistance(s.getPoint(i), s.getPoint(i + d));
+			}
+		}
+		return dist;
+	}
+
+	private static void checkWithRoute(RouteMatrix matrix, int i, int j, LatLon start, LatLon end) throws Exception {
+		String msg = i + " " + j + " " + start + " " + end;
+		if (i == j) {
+			Assert.assertEquals(msg, 0, matrix.times[i][j], 0);
+			Assert.assertEquals(msg, 0, matrix.distances[i][j], 0);
+			return;
+		}
+		RoutingContext ctx = buildContext();
+		List<RouteSegmentResult> route = new RoutePlannerFrontEnd().searchRoute(ctx, start, end,
+				Collections.<LatLon>emptyList());
+		Assert.assertNotNull(msg, route);
+		float routeTime = ctx.finalRouteSegment.distanceFromStart;
+		float time = matrix.times[i][j];
+		Assert.assertTrue(msg + " " + time + " " + routeTime, time <= routeTime + 0.01f);
+		Assert.assertTrue(msg + " " + time + " " + routeTime, time >= routeTime - BLOCK_TIME);
+		Assert.assertEquals(msg, getDistance(route), matrix.distances[i][j], 1);
+	}
+
+	@Test
+	public void testSameAsRoutes() throws Exception {
+		Random rnd = new Random(1);
+		List<LatLon> points = new ArrayList<LatLon>();
+		for (int i = 0; i < 6; i++) {
+			points.add(getMiddle(2 + rnd.nextInt(CITY_SIZE - 4), 2 + rnd.nextInt(CITY_SIZE - 4), rnd.nextBoolean()));
+		}
+		RouteMatrix matrix = new RouteMatrixCalculator(buildContext()).calculate(points, points);
+		for (int i = 0; i < points.size(); i++) {
+			for (int j = 0; j < points.size(); j++) {
+				checkWithRoute(matrix, i, j, points.get(i), points.get(j));
+			}
+		}
+	}
+
+	@Test
+	public void testOneWayAvenue() throws Exception {
+		// avenue 4 is one way to the north (its points go from bottom to top), avenue 6 - to the south
+		List<LatLon> points = Arrays.asList(getMiddle(5, 3, true), getMiddle(12, 3, true), getMiddle(5, 5, true),
+				getMiddle(12, 5, true));
+		RouteMatrix matrix = new RouteMatrixCalculator(buildContext()).calculate(points, points);
+		for (int i = 0; i < points.size(); i++) {
+			for (int j = 0; j < points.size(); j++) {
+				checkWithRoute(matrix, i, j, points.get(i), points.get(j));
+			}
+		}
+		// straight along the avenue in allowed direction, around the blocks against it
+		Assert.assertEquals(700, matrix.distances[1][0], 1);
+		Assert.assertTrue(matrix.distances[0][1] > 900);
+		Assert.assertEquals(700, matrix.distances[2][3], 1);
+		Assert.assertTrue(matrix.distances[3][2] > 900);
+	}
+
+	@Test
+	public void testUnreachableTargets() throws Exception {
+		LatLon source = getMiddle(10, 10, false);
+		LatLon near = getMiddle(10, 12, false);
+		LatLon far = getMiddle(CITY_SIZE - 3, CITY_SIZE - 3, false);
+		// far from any road
+		LatLon outside = new LatLon(SyntheticObfWriter.DEFAULT_TOP_LEFT.getLatitude() + 0.5,
+				SyntheticObfWriter.DEFAULT_TOP_LEFT.getLongitude());
+		List<LatLon> targets = Arrays.asList(near, far, outside);
+		RouteMatrixCalculator calculator = new RouteMatrixCalculator(buildContext());
+		RouteMatrix matrix = calculator.calculate(Arrays.asList(source, outside), targets);
+		Assert.assertTrue(matrix.times[0][0] > 0);
+		Assert.assertTrue(matrix.times[0][1] > 0);
+		Assert.assertEquals(RouteMatrixCalculator.UNREACHABLE, matrix.times[0][2], 0);
+		Assert.assertEquals(RouteMatrixCalculator.UNREACHABLE, matrix.distances[0][2], 0);
+		for (int j = 0; j < targets.size(); j++) {
+			Assert.assertEquals(RouteMatrixCalculator.UNREACHABLE, matrix.times[1][j], 0);
+			Assert.assertEquals(RouteMatrixCalculator.UNREACHABLE, matrix.distances[1][j], 0);
+		}
+
+		// targets further than max time are not reached
+		calculator = new RouteMatrixCalculator(buildContext());
+		calculator.maxTime = 60;
+		RouteMatrix limited = calculator.calculate(Collections.singletonList(source), targets);
+		Assert.assertEquals(matrix.times[0][0], limited.times[0][0], 0.01);
+		Assert.assertEquals(matrix.distances[0][0], limited.distances[0][0], 0.01);
+		Assert.assertTrue(matrix.times[0][1] > 60);
+		Assert.assertEquals(RouteMatrixCalculator.UNREACHABLE, limited.times[0][1], 0);
+		Assert.assertEquals(RouteMatrixCalculator.UNREACHABLE, limited.distances[0][1], 0);
+	}
+}
@@ -0,0 +1,194 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration.RoutingMemoryLimits;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class RouteSegmentHeapTest {
+
+	private static final int CITY_SIZE = 48;
+
+	private RoutingContext ctx;
+
+	@Before
+	public void setUp() {
+		ctx = new RoutingContext(new RoutingConfiguration(), null, new BinaryMapIndexReader[0],
+				RouteCalculationMode.NORMAL);
+	}
+
+	private static RouteSegment segment(float distanceFromStart, float distanceToEnd) {
+		RouteSegment s = new RouteSegment(null, 0, 1);
+		s.distanceFromStart = distanceFromStart;
+		s.distanceToEnd = distanceToEnd;
+		return s;
+	}
+
+	private double priority(RouteSegment s) {
+		return s.distanceFromStart + ctx.config.heuristicCoefficient * s.distanceToEnd;
+	}
+
+	@Test
+	public void testPollOrder() {
+		RouteSegmentHeap heap = new RouteSegmentHeap(ctx, 2);
+		Random rnd = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			heap.add(segment(rnd.nextFloat() * 100, rnd.nextFloat() * 100));
+		}
+		Assert.assertEquals(1000, heap.size());
+		double prev = -1;
+		while (!heap.isEmpty()) {
+			RouteSegment s = heap.poll();
+			Assert.assertTrue(prev <= priority(s));
+			prev = priority(s);
+		}
+		Assert.assertNull(heap.poll());
+	}
+
+	@Test
+	public void testDecreaseKey() {
+		// as planner does: distance of segment which is already queued is changed and segment is offered again
+		RouteSegmentHeap heap = new RouteSegmentHeap(ctx, 2);
+		Map<RouteSegment, Double> queued = new IdentityHashMap<RouteSegment, Double>();
+		List<RouteSegment> segments = new ArrayList<RouteSegment>();
+		Random rnd = new Random(2);
+		for (int i = 0; i < 20000; i++) {
+			int op = rnd.nextInt(3);
+			if (op == 0 && !segments.isEmpty()) {
+				RouteSegment s = segments.get(rnd.nextInt(segments.size()));
+				s.distanceFromStart = Math.max(0, s.distanceFromStart + rnd.nextInt(20) - 15);
+				heap.add(s);
+				queued.put(s, priority(s));
+			} else if (op == 1) {
+				RouteSegment s = heap.poll();
+				if (s == null) {
+					Assert.assertTrue(queued.isEmpty());
+				} else {
+					double p = queued.remove(s);
+					for (double other : queued.values()) {
+						Assert.assertTrue(p <= other);
+					}
+				}
+			} else {
+				RouteSegment s = segment(rnd.nextInt(100), rnd.nextInt(100));
+				segments.add(s);
+				heap.add(s);
+				queued.put(s, priority(s));
+			}
+			// no duplicates
+			Assert.assertEquals(queued.size(), heap.size());
+		}
+	}
+
+	@Test
+	public void testChangedSegmentKeepsOrder() {
+		// queued segment is changed and not offered again: heap order is kept by priority of offer
+		RouteSegmentHeap heap = new RouteSegmentHeap(ctx, 2);
+		RouteSegment a = segment(10, 0);
+		RouteSegment b = segment(20, 0);
+		RouteSegment c = segment(30, 0);
+		heap.add(a);
+		heap.add(b);
+		heap.add(c);
+		c.distanceFromStart = 0;
+		Assert.assertSame(a, heap.poll());
+		Assert.assertSame(b, heap.poll());
+		Assert.assertSame(c, heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testSegmentOfOtherHeap() {
+		// segment left in previous heap (search is finished) is added to new heap
+		RouteSegmentHeap previous = new RouteSegmentHeap(ctx, 2);
+		RouteSegment a = segment(10, 0);
+		RouteSegment b = segment(20, 0);
+		previous.add(a);
+		previous.add(b);
+		RouteSegmentHeap heap = new RouteSegmentHeap(ctx, 2);
+		heap.add(b);
+		Assert.assertEquals(1, heap.size());
+		Assert.assertSame(b, heap.poll());
+		Assert.assertTrue(heap.isEmpty());
+	}
+
+	private static List<RouteSegmentResult> searchRoute(BinaryMapIndexReader[] readers, boolean useIndexedHeap,
+			LatLon start, LatLon end) throws Exception {
+		RoutingMemoryLimits memoryLimits = new RoutingMemoryLimits(RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				RoutingConfiguration.DEFAULT_NATIVE_MEMORY_LIMIT);
+		RoutingConfiguration config = RoutingConfiguration.getDefault().build("car", memoryLimits,
+				new HashMap<String, String>());
+		config.useIndexedHeap = useIndexedHeap;
+		RoutingContext ctx = new RoutePlannerFrontEnd().buildRoutingContext(config, null, readers,
+				RouteCalculationMode.NORMAL);
+		List<RouteSegmentResult> route = new RoutePlannerFrontEnd().searchRoute(ctx, start, end,
+				Collections.<LatLon>emptyList());
+		Assert.assertNotNull(route);
+		return route;
+	}
+
+	private static float getRouteTime(List<RouteSegmentResult> route) {
+		float time = 0;
+		for (RouteSegmentResult r : route) {
+			time += r.getSegmentTime();
+		}
+		return time;
+	}
+
+	private static List<String> getRoads(List<RouteSegmentResult> route) {
+		List<String> roads = new ArrayList<String>();
+		for (RouteSegmentResult r : route) {
+			roads.add(r.getObject().getId() + ":" + r.getStartPointIndex() + "-" + r.getEndPointIndex());
+		}
+		return roads;
+	}
+
+	@Test
+	public void testSameRouteAlongPrimaryRoad() throws Exception {
+		// heap polls segments of the same priority in other order than PriorityQueue, so on the grid with many
+		// alternatives of the same cost roads could differ, primary road is the only fastest route
+		SyntheticObfWriter city = new SyntheticObfWriter(SyntheticObfWriter.DEFAULT_TOP_LEFT, CITY_SIZE,
+				SyntheticObfWriter.DEFAULT_SPACING);
+		File file = File.createTempFile("synthetic", ".obf");
+		city.writeFile(file);
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[] {
+				new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file) };
+		try {
+			Random rnd = new Random(1);
+			for (int i = 0; i < 20; i++) {
+				int line = 8 * (1 + rnd.nextInt(CITY_SIZE / 8 - 1));
+				int from = 1 + rnd.nextInt(CITY_SIZE - 2);
+				int to = 1 + rnd.nextInt(CITY_SIZE - 2);
+				if (from == to) {
+					continue;
+				}
+				boolean column = rnd.nextBoolean();
+				LatLon start = column ? city.getNode(from, line) : city.getNode(line, from);
+				LatLon end = column ? city.getNode(to, line) : city.getNode(line, to);
+				List<RouteSegmentResult> queueRoute = searchRoute(readers, false, start, end);
+				List<RouteSegmentResult> heapRoute = searchRoute(readers, true, start, end);
+				Assert.assertEquals(start + " " + end, getRoads(queueRoute), getRoads(heapRoute));
+				Assert.assertEquals(getRouteTime(queueRoute), getRouteTime(heapRoute), 0.01);
+			}
+		} finally {
+			readers[0].close();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package net.osmand.router;
+
+import net.osmand.data.LatLon;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportSchedule;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteResultSegment;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import gnu.trove.list.array.TIntArrayList;
+
+public class TransportRaptorPlannerTest {
+
+	private static long routeId = 1;
+
+	private static TransportStop stop(long id, double lat, double lon) {
+		TransportStop s = new TransportStop();
+		s.setId(id);
+		s.setName("Stop " + id);
+		s.setLocation(lat, lon);
+		return s;
+	}
+
+	private static TransportRoute route(String ref, TransportStop... stops) {
+		TransportRoute r = new TransportRoute();
+		r.setId(routeId++);
+		r.setRef(ref);
+		r.setName(ref);
+		r.setType("bus");
+		r.setForwardStops(new ArrayList<TransportStop>(Arrays.asList(stops)));
+		return r;
+	}
+
+	// trips from the first stop at startTime + k * interval, stop intervals in seconds
+	private static void schedule(TransportRoute r, int startTime, int interval, int trips, int... stopIntervals) {
+		TransportSchedule sc = r.getOrCreateSchedule();
+		for (int i = 0; i < trips; i++) {
+			sc.tripIntervals.add((i == 0 ? startTime : interval) / 10);
+		}
+		for (int si : stopIntervals) {
+			sc.avgStopIntervals.add(si / 10);
+		}
+	}
+
+	private static TransportRoutingConfiguration config(boolean useSchedule) {
+		TransportRoutingConfiguration cfg = new TransportRoutingConfiguration(null, new HashMap<String, String>());
+		cfg.useSchedule = useSchedule;
+		cfg.walkRadius = 200;
+		cfg.scheduleTimeOfDay = 8 * 60 * 6;
+		return cfg;
+	}
+
+	@Test
+	public void testParetoChanges() {
+		// slow direct line and fast line with change in the middle
+		TransportStop a = stop(1, 52.0, 4.0);
+		TransportStop b = stop(2, 52.0, 4.05);
+		TransportStop c = stop(3, 52.0, 4.1);
+		TransportStop c2 = stop(4, 52.0005, 4.1);
+		TransportStop d = stop(5, 52.0, 4.15);
+		TransportRoute slow = route("slow", a, b, c, d);
+		schedule(slow, 8 * 3600 + 300, 3600, 3, 900, 900, 900);
+		TransportRoute fast1 = route("fast1", a, c);
+		schedule(fast1, 8 * 3600 + 120, 600, 10, 600);
+		TransportRoute fast2 = route("fast2", c2, d);
+		schedule(fast2, 8 * 3600 + 900, 600, 10, 300);
+		TransportRoutingConfiguration cfg = config(true);
+		TransportTimetable tt = TransportTimetable.build(cfg, Arrays.asList(slow, fast1, fast2));
+		Assert.assertEquals(5, tt.getStopsCount());
+		Assert.assertEquals(23, tt.getTripsCount());
+
+		TransportRaptorPlanner planner = new TransportRaptorPlanner(tt);
+		List<TransportRouteResult> res = planner.buildRoute(new LatLon(52.0, 4.0), new LatLon(52.0, 4.15));
+		Assert.assertEquals(2, res.size());
+		TransportRouteResult direct = res.get(0);
+		Assert.assertEquals(0, direct.getChanges());
+		Assert.assertEquals("slow", direct.getSegments().get(0).route.getRef());
+		Assert.assertEquals(300 + 2700, direct.getRouteTime(), 0);
+		Assert.assertEquals((8 * 3600 + 300) / 10, direct.getSegments().get(0).depTime);
+
+		TransportRouteResult changes = res.get(1);
+		Assert.assertEquals(1, changes.getChanges());
+		TransportRouteResultSegment first = changes.getSegments().get(0);
+		TransportRouteResultSegment second = changes.getSegments().get(1);
+		Assert.assertEquals("fast1", first.route.getRef());
+		Assert.assertEquals("fast2", second.route.getRef());
+		// arrive to c at 8:12, walk ~56 m to c2 (no change time with schedule) and catch trip of 8:15
+		Assert.assertEquals(0, first.walkDist, 0);
+		Assert.assertEquals(55.6, second.walkDist, 1);
+		Assert.assertEquals((8 * 3600 + 900) / 10, second.depTime);
+		Assert.assertEquals(900 + 300, changes.getRouteTime(), 0);
+		Assert.assertTrue(changes.getRouteTime() < direct.getRouteTime());
+
+		// the same with one vehicle only
+		cfg.maxNumberOfChanges = 0;
+		res = new TransportRaptorPlanner(tt).buildRoute(new LatLon(52.0, 4.0), new LatLon(52.0, 4.15));
+		Assert.assertEquals(1, res.size());
+		Assert.assertEquals("slow", res.get(0).getSegments().get(0).route.getRef());
+	}
+
+	@Test
+	public void testWithoutSchedule() {
+		TransportStop a = stop(1, 52.0, 4.0);
+		TransportStop b = stop(2, 52.0, 4.01);
+		TransportStop c = stop(3, 52.01, 4.01);
+		TransportRoute r1 = route("1", a, b);
+		TransportRoute r2 = route("2", b, c);
+		TransportRoutingConfiguration cfg = config(false);
+		TransportTimetable tt = TransportTimetable.build(cfg, Arrays.asList(r1, r2));
+		TransportRouteResult res = new TransportRaptorPlanner(tt).earliestArrival(a.getLocation(), c.getLocation());
+		Assert.assertNotNull(res);
+		Assert.assertEquals(1, res.getChanges());
+		double expected = 0;
+		for (TransportRouteResultSegment s : res.getSegments()) {
+			Assert.assertEquals(-1, s.depTime);
+			expected += cfg.getBoardingTime() + cfg.stopTime + s.getTravelDist() / cfg.defaultTravelSpeed;
+		}
+		expected += cfg.getChangeTime();
+		Assert.assertEquals(expected, res.getRouteTime(), 2);
+		Assert.assertNull(new TransportRaptorPlanner(tt).earliestArrival(c.getLocation(), a.getLocation()));
+	}
+
+	@Test
+	public void testDestinationAfterWalkedStop() {
+		// A - 2 km - P - 150 m - S - 100 m - end, S is reached by walking from P before vehicle P -> S arrives
+		double lonPerMeter = 1 / MapUtils.getDistance(52, 4, 52, 5);
+		TransportStop a = stop(1, 52.0, 4.0);
+		TransportStop p = stop(2, 52.0, 4.0 + 2000 * lonPerMeter);
+		TransportStop st = stop(3, 52.0, 4.0 + 2150 * lonPerMeter);
+		LatLon end = new LatLon(52.0, 4.0 + 2250 * lonPerMeter);
+		TransportRoute r1 = route("1", a, p);
+		TransportRoute r2 = route("2", p, st);
+		TransportRoutingConfiguration cfg = config(false);
+		TransportTimetable tt = TransportTimetable.build(cfg, Arrays.asList(r1, r2));
+		List<TransportRouteResult> res = new TransportRaptorPlanner(tt).buildRoute(a.getLocation(), end);
+		Assert.assertFalse(res.isEmpty());
+		TransportRouteResult walked = res.get(0);
+		// the only vehicle is 1 and the rest is walked through S
+		Assert.assertEquals(0, walked.getChanges());
+		Assert.assertEquals("1", walked.getSegments().get(0).route.getRef());
+		Assert.assertEquals(250, walked.getFinishWalkDist(), 2);
+		Assert.assertEquals(fixpointArrival(tt, cfg, a.getLocation(), end), res.get(res.size() - 1).getRouteTime(), 0);
+
+		// without walking between P and S only the second vehicle reaches destination
+		cfg.walkChangeRadius = 50;
+		tt = TransportTimetable.build(cfg, Arrays.asList(r1, r2));
+		res = new TransportRaptorPlanner(tt).buildRoute(a.getLocation(), end);
+		Assert.assertEquals(1, res.size());
+		Assert.assertEquals(1, res.get(0).getChanges());
+		Assert.assertEquals(fixpointArrival(tt, cfg, a.getLocation(), end), res.get(0).getRouteTime(), 0);
+		Assert.assertTrue(res.get(0).getRouteTime() > walked.getRouteTime());
+	}
+
+	@Test
+	public void testSameAsFixpoint() {
+		// stops are too far to walk between them, so changes are possible only at the same stop
+		checkSameAsFixpoint(1);
+	}
+
+	@Test
+	public void testSameAsFixpointWithTransfers() {
+		// stops of neighbour cells by longitude are ~690 m from each other
+		checkSameAsFixpoint(1000);
+	}
+
+	private void checkSameAsFixpoint(int walkChangeRadius) {
+		for (boolean useSchedule : new boolean[] { false, true }) {
+			Random rnd = new Random(11);
+			List<TransportStop> stops = new ArrayList<TransportStop>();
+			List<Integer> cells = new ArrayList<Integer>();
+			for (int i = 0; i < 900; i++) {
+				cells.add(i);
+			}
+			Collections.shuffle(cells, rnd);
+			for (int i = 0; i < 80; i++) {
+				stops.add(stop(i + 1, 52 + cells.get(i) / 30 * 0.01, 4 + cells.get(i) % 30 * 0.01));
+			}
+			List<TransportRoute> routes = new ArrayList<TransportRoute>();
+			for (int i = 0; i < 40; i++) {
+				List<TransportStop> lst = new ArrayList<TransportStop>(stops);
+				Collections.shuffle(lst, rnd);
+				TransportRoute r = route("r" + i, lst.subList(0, 3 + rnd.nextInt(8)).toArray(new TransportStop[0]));
+				int[] intervals = new int[r.getForwardStops().size() - 1];
+				for (int k = 0; k < intervals.length; k++) {
+					intervals[k] = 60 + rnd.nextInt(600);
+				}
+				schedule(r, 7 * 3600 + rnd.nextInt(7200), 300 + rnd.nextInt(1800), 1 + rnd.nextInt(20), intervals);
+				routes.add(r);
+			}
+			TransportRoutingConfiguration cfg = config(useSchedule);
+			cfg.walkChangeRadius = walkChangeRadius;
+			cfg.maxNumberOfChanges = 30;
+			cfg.maxRouteTime = 24 * 3600;
+			TransportTimetable tt = TransportTimetable.build(cfg, routes);
+			TransportRaptorPlanner planner = new TransportRaptorPlanner(tt);
+			int found = 0;
+			for (int q = 0; q < 300; q++) {
+				TransportStop from = stops.get(rnd.nextInt(stops.size()));
+				TransportStop to = stops.get(rnd.nextInt(stops.size()));
+				if (from == to) {
+					continue;
+				}
+				List<TransportRouteResult> res = planner.buildRoute(from.getLocation(), to.getLocation());
+				int expected = fixpointArrival(tt, cfg, from.getLocation(), to.getLocation());
+				if (expected == Integer.MAX_VALUE) {
+					Assert.assertTrue(res.isEmpty());
+					continue;
+				}
+				found++;
+				Assert.assertFalse(res.isEmpty());
+				Assert.assertEquals(expected, res.get(res.size() - 1).getRouteTime(), 0);
+				for (int i = 1; i < res.size(); i++) {
+					Assert.assertTrue(res.get(i).getChanges() > res.get(i - 1).getChanges());
+					Assert.assertTrue(res.get(i).getRouteTime() < res.get(i - 1).getRouteTime());
+				}
+				for (TransportRouteResult r : res) {
+					checkConnected(r, from, to, walkChangeRadius);
+				}
+			}
+			Assert.assertTrue(found > 100);
+		}
+	}
+
+	// segments are connected by stops in walking distance
+	private static void checkConnected(TransportRouteResult r, TransportStop from, TransportStop to,
+			int walkChangeRadius) {
+		List<TransportRouteResultSegment> segments = r.getSegments();
+		Assert.assertEquals(from, segments.get(0).getStart());
+		checkWalk(segments.get(segments.size() - 1).getEnd(), to, walkChangeRadius);
+		for (int i = 1; i < segments.size(); i++) {
+			checkWalk(segments.get(i - 1).getEnd(), segments.get(i).getStart(), walkChangeRadius);
+		}
+	}
+
+	private static void checkWalk(TransportStop from, TransportStop to, int walkChangeRadius) {
+		if (from != to) {
+			Assert.assertTrue(MapUtils.getDistance(from.getLocation(), to.getLocation()) <= walkChangeRadius);
+		}
+	}
+
+	// earliest arrival by relaxing all routes and walking transfers after vehicles until nothing changes
+	private static int fixpointArrival(TransportTimetable tt, TransportRoutingConfiguration cfg, LatLon start,
+			LatLon end) {
+		int departure = cfg.useSchedule ? cfg.scheduleTimeOfDay * 10 : 0;
+		int[] ready = new int[tt.getStopsCount()];
+		Arrays.fill(ready, Integer.MAX_VALUE);
+		TIntArrayList near = new TIntArrayList();
+		TIntArrayList dists = new TIntArrayList();
+		tt.findStops(start, cfg.walkRadius, near, dists);
+		for (int i = 0; i < near.size(); i++) {
+			ready[near.get(i)] = departure + (int) (dists.get(i) / cfg.walkSpeed);
+		}
+		int[] arrival = new int[tt.getStopsCount()];
+		Arrays.fill(arrival, Integer.MAX_VALUE);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int r = 0; r < tt.getRoutesCount(); r++) {
+				int rs = tt.routeStopsStart[r];
+				for (int i = rs; i < tt.routeStopsStart[r + 1]; i++) {
+					int s = tt.routeStops[i];
+					if (ready[s] == Integer.MAX_VALUE) {
+						continue;
+					}
+					int trip = tt.earliestTrip(r, i - rs, ready[s]);
+					if (trip == Integer.MAX_VALUE) {
+						continue;
+					}
+					for (int j = i + 1; j < tt.routeStopsStart[r + 1]; j++) {
+						int s2 = tt.routeStops[j];
+						arrival[s2] = Math.min(arrival[s2], trip + tt.routeTimes[j]);
+					}
+				}
+			}
+			for (int s = 0; s < tt.getStopsCount(); s++) {
+				if (arrival[s] == Integer.MAX_VALUE) {
+					continue;
+				}
+				int t = arrival[s] + cfg.getChangeTime();
+				if (t < ready[s]) {
+					ready[s] = t;
+					changed = true;
+				}
+				for (int i = tt.transfersStart[s]; i < tt.transfersStart[s + 1]; i++) {
+					int to = tt.transferStops[i];
+					if (t + tt.transferTimes[i] < ready[to]) {
+						ready[to] = t + tt.transferTimes[i];
+						changed = true;
+					}
+				}
+			}
+		}
+		// walking to destination directly or through one more stop
+		near.clear();
+		dists.clear();
+		tt.findStops(end, cfg.walkRadius, near, dists);
+		int[] endTime = new int[tt.getStopsCount()];
+		Arrays.fill(endTime, Integer.MAX_VALUE);
+		for (int i = 0; i < near.size(); i++) {
+			int s = near.get(i);
+			int w = (int) (dists.get(i) / cfg.walkSpeed);
+			endTime[s] = Math.min(endTime[s], w);
+			for (int j = tt.transfersStart[s]; j < tt.transfersStart[s + 1]; j++) {
+				int from = tt.transferStops[j];
+				endTime[from] = Math.min(endTime[from], tt.transferTimes[j] + w);
+			}
+		}
+		int best = Integer.MAX_VALUE;
+		for (int s = 0; s < tt.getStopsCount(); s++) {
+			if (arrival[s] != Integer.MAX_VALUE && endTime[s] != Integer.MAX_VALUE) {
+				int t = arrival[s] + endTime[s] - departure;
+				if (t < cfg.maxRouteTime) {
+					best = Math.min(best, t);
+				}
+			}
+		}
+		return best;
+	}
+}
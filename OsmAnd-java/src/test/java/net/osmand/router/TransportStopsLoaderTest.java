@@ -0,0 +1,94 @@
+package net.osmand.router;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.data.QuadRect;
+import net.osmand.data.TransportRoute;
+import net.osmand.data.TransportStop;
+import net.osmand.router.TransportRoutePlanner.TransportRouteSegment;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TransportStopsLoaderTest {
+
+	private static final LatLon START = new LatLon(52.37, 4.89);
+	private static final LatLon END = new LatLon(52.38, 4.95);
+
+	private static TransportRoutingConfiguration config() {
+		return new TransportRoutingConfiguration(null, new HashMap<String, String>());
+	}
+
+	@Test
+	public void testCacheIsSharedByContexts() throws Exception {
+		TransportRoutingConfiguration cfg = config();
+		TransportStopsLoader loader = new TransportStopsLoader(cfg, null, null, new BinaryMapIndexReader[0]);
+		TransportRoutingContext ctx = new TransportRoutingContext(cfg, null, loader);
+		ctx.getTransportStops(START);
+		Assert.assertTrue(ctx.tileCacheMisses > 0);
+		Assert.assertEquals(0, ctx.tileCacheHits);
+		Assert.assertEquals(ctx.tileCacheMisses, ctx.quadTree.size());
+
+		TransportRoutingContext next = new TransportRoutingContext(cfg, null, loader);
+		next.getTransportStops(START);
+		Assert.assertEquals(0, next.tileCacheMisses);
+		Assert.assertEquals(ctx.tileCacheMisses, next.tileCacheHits);
+		Assert.assertEquals(0, next.tilePrefetchHits);
+	}
+
+	@Test
+	public void testPrefetch() throws Exception {
+		TransportRoutingConfiguration cfg = config();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			TransportStopsLoader loader = new TransportStopsLoader(cfg, null, executor, new BinaryMapIndexReader[0]);
+			Assert.assertTrue(loader.isPrefetchEnabled());
+			TransportRoutingContext ctx = new TransportRoutingContext(cfg, null, loader);
+			List<TransportStop> stops = new ArrayList<TransportStop>();
+			for (int i = 0; i < 5; i++) {
+				TransportStop s = new TransportStop();
+				s.setId((long) i + 1);
+				s.setLocation(24, MapUtils.get31TileNumberX(START.getLongitude() + i * 0.05) >> 7,
+						MapUtils.get31TileNumberY(START.getLatitude()) >> 7);
+				stops.add(s);
+			}
+			TransportRoute route = new TransportRoute();
+			route.setId(1L);
+			route.setForwardStops(stops);
+			ctx.prefetchTransportStops(new TransportRouteSegment(route, 0));
+			for (int i = 1; i < stops.size(); i++) {
+				ctx.getTransportStops(stops.get(i).x31, stops.get(i).y31, true, new ArrayList<TransportRouteSegment>());
+			}
+			Assert.assertTrue(ctx.tilePrefetchHits > 0);
+			Assert.assertEquals(0, ctx.tileCacheMisses);
+			// tiles of the first stop were not prefetched
+			ctx.getTransportStops(stops.get(0).x31, stops.get(0).y31, true, new ArrayList<TransportRouteSegment>());
+			Assert.assertTrue(ctx.tileCacheMisses > 0);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSearchArea() {
+		QuadRect area = TransportStopsLoader.getSearchArea(START, END, 1000);
+		int sx = MapUtils.get31TileNumberX(START.getLongitude());
+		int ey = MapUtils.get31TileNumberY(END.getLatitude());
+		Assert.assertTrue(area.left < sx && area.bottom > MapUtils.get31TileNumberY(START.getLatitude()));
+		Assert.assertTrue(area.right > MapUtils.get31TileNumberX(END.getLongitude()) && area.top < ey);
+		// margin is ~1000 m
+		double d = MapUtils.getDistance(MapUtils.get31LatitudeY((int) area.top), START.getLongitude(),
+				END.getLatitude(), START.getLongitude());
+		Assert.assertEquals(1000, d, 50);
+		d = MapUtils.getDistance(START.getLatitude(), MapUtils.get31LongitudeX((int) area.left),
+				START.getLatitude(), START.getLongitude());
+		Assert.assertEquals(1000, d, 50);
+	}
+}
@@ -0,0 +1,127 @@
+package net.osmand.search;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.SyntheticObfWriter;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SearchRegionsParallelTest {
+
+	private static final int CITIES = 4;
+	private static final int CITY_SIZE = 16;
+
+	private static List<File> files = new ArrayList<File>();
+	private static List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+	private static LatLon location;
+	private static SearchUICore core;
+
+	@BeforeClass
+	public static void writeCities() throws Exception {
+		// overlapping cities, so every file has results within search radius, and of different size,
+		// so most poi ids differ between files (search skips poi with already found id)
+		for (int i = 0; i < CITIES; i++) {
+			LatLon topLeft = new LatLon(SyntheticObfWriter.DEFAULT_TOP_LEFT.getLatitude(),
+					SyntheticObfWriter.DEFAULT_TOP_LEFT.getLongitude() + i * 0.004);
+			SyntheticObfWriter city = new SyntheticObfWriter(topLeft, CITY_SIZE + i, SyntheticObfWriter.DEFAULT_SPACING);
+			File file = File.createTempFile("synthetic" + i, ".obf");
+			city.writeFile(file);
+			files.add(file);
+			readers.add(new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file));
+			if (i == 0) {
+				location = city.getNode(CITY_SIZE / 2, CITY_SIZE - 1);
+			}
+		}
+		core = new SearchUICore(MapPoiTypes.getDefault(), "en", false);
+		core.init();
+	}
+
+	@AfterClass
+	public static void deleteCities() throws Exception {
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+		for (File f : files) {
+			f.delete();
+		}
+	}
+
+	// all results and region finished events in order they are published
+	private static List<String> search(String text, ExecutorService executor) {
+		SearchSettings settings = new SearchSettings(readers).setOriginalLocation(location).setRadiusLevel(3);
+		SearchPhrase phrase = SearchPhrase.emptyPhrase(settings).generateNewPhrase(text, settings);
+		final List<String> published = new ArrayList<String>();
+		ResultMatcher<SearchResult> rm = new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				String file = object.file == null ? "" : object.file.getFile().getName();
+				published.add(object.objectType + " " + file + " " + object.toString() + " " + object.location);
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		SearchResultMatcher matcher = new SearchResultMatcher(rm, phrase, 1, new AtomicInteger(1), -1);
+		matcher.setRegionsExecutor(executor);
+		core.searchInternal(phrase, matcher);
+		return published;
+	}
+
+	private static void checkSameResults(String text, ObjectType... types) {
+		ForkJoinPool executor = new ForkJoinPool(CITIES);
+		try {
+			List<String> sequential = search(text, null);
+			List<String> parallel = search(text, executor);
+			Assert.assertEquals(text, sequential, parallel);
+			for (ObjectType type : types) {
+				Set<String> found = new HashSet<String>();
+				for (String s : sequential) {
+					if (s.startsWith(type + " ")) {
+						found.add(s.split(" ")[1]);
+					}
+				}
+				Assert.assertEquals(text + " " + type, CITIES, found.size());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testPoiByName() {
+		checkSameResults("Green", ObjectType.POI, ObjectType.SEARCH_API_REGION_FINISHED);
+	}
+
+	@Test
+	public void testPoiByType() {
+		checkSameResults("Cafe ", ObjectType.POI);
+	}
+
+	@Test
+	public void testAddressByName() {
+		checkSameResults("Avenue 5", ObjectType.STREET);
+	}
+}